@@ -0,0 +1,398 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+
+package org.forgerock.json.resource.http;
+
+import static org.forgerock.json.resource.http.HttpUtils.HEADER_CONTENT_ENCODING;
+import static org.forgerock.json.resource.http.HttpUtils.HEADER_CONTENT_LENGTH;
+import static org.forgerock.json.resource.http.HttpUtils.HEADER_VARY;
+import static org.forgerock.json.resource.http.HttpUtils.parseQuality;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.forgerock.http.protocol.Header;
+import org.forgerock.http.protocol.Request;
+import org.forgerock.http.protocol.Response;
+import org.forgerock.json.resource.ResourceException;
+
+/**
+ * Negotiates and applies the HTTP content codings supported by the adapter:
+ * {@code gzip} and {@code deflate}. Responses are compressed while they are
+ * being generated, and request entities are decompressed while they are being
+ * parsed, so that neither is ever held in memory in its uncompressed form.
+ * <p>
+ * Compression is configured using system properties, which are read once:
+ * <ul>
+ * <li>{@value #COMPRESSION_THRESHOLD_PROPERTY}: the minimum size in bytes of
+ * the uncompressed response for it to be compressed, defaulting to
+ * {@value #DEFAULT_COMPRESSION_THRESHOLD}. Compression is disabled when
+ * negative</li>
+ * <li>{@value #COMPRESSION_LEVEL_PROPERTY}: the compression level between 1
+ * (fastest) and 9 (smallest), defaulting to
+ * {@value #DEFAULT_COMPRESSION_LEVEL}</li>
+ * <li>{@value #MAX_DECODED_SIZE_PROPERTY}: the maximum size in bytes of a
+ * decompressed request entity, and of a multipart request entity spilled to a
+ * temporary file, defaulting to 64 MiB. Requests whose entity exceeds it are
+ * rejected with a 413 status. The limit is disabled when it is not
+ * positive</li>
+ * </ul>
+ */
+final class ContentEncodings {
+
+    /** The name of the system property which defines the compression threshold. */
+    static final String COMPRESSION_THRESHOLD_PROPERTY = "org.forgerock.json.resource.http.compressionThreshold";
+    /** The name of the system property which defines the compression level. */
+    static final String COMPRESSION_LEVEL_PROPERTY = "org.forgerock.json.resource.http.compressionLevel";
+    /** The name of the system property which defines the maximum size of a decoded request entity. */
+    static final String MAX_DECODED_SIZE_PROPERTY = "org.forgerock.json.resource.http.maxDecodedSize";
+
+    static final int DEFAULT_COMPRESSION_THRESHOLD = 1_024;
+    static final int DEFAULT_COMPRESSION_LEVEL = 6;
+    static final long DEFAULT_MAX_DECODED_SIZE = 64L * 1_024 * 1_024;
+
+    static final String GZIP = "gzip";
+    static final String DEFLATE = "deflate";
+    private static final String IDENTITY = "identity";
+    private static final String X_GZIP = "x-gzip";
+    private static final String ANY = "*";
+    private static final String HEADER_ACCEPT_ENCODING = "Accept-Encoding";
+    private static final int BUFFER_SIZE = 8_192;
+
+    private static final int COMPRESSION_THRESHOLD =
+            Integer.getInteger(COMPRESSION_THRESHOLD_PROPERTY, DEFAULT_COMPRESSION_THRESHOLD);
+    private static final int COMPRESSION_LEVEL = Math.max(Deflater.BEST_SPEED, Math.min(Deflater.BEST_COMPRESSION,
+            Integer.getInteger(COMPRESSION_LEVEL_PROPERTY, DEFAULT_COMPRESSION_LEVEL)));
+    private static final long MAX_DECODED_SIZE = Long.getLong(MAX_DECODED_SIZE_PROPERTY, DEFAULT_MAX_DECODED_SIZE);
+
+    /**
+     * Returns the content coding which should be used for the response to the
+     * provided request, according to its {@literal Accept-Encoding} header.
+     * The {@code gzip} coding is preferred over {@code deflate} when the
+     * client accepts both equally.
+     *
+     * @param req
+     *            The HTTP request.
+     * @return The content coding, or {@code null} if the response should not
+     *         be compressed.
+     */
+    static String negotiate(final Request req) {
+        if (COMPRESSION_THRESHOLD < 0) {
+            return null;
+        }
+        final Header header = req.getHeaders().get(HEADER_ACCEPT_ENCODING);
+        if (header == null) {
+            return null;
+        }
+        float gzip = -1;
+        float deflate = -1;
+        float any = -1;
+        for (final String value : header.getValues()) {
+            for (final String element : value.split(",")) {
+                final int semicolon = element.indexOf(';');
+                final String coding = (semicolon < 0 ? element : element.substring(0, semicolon))
+                        .trim().toLowerCase(Locale.ROOT);
+                final float quality = semicolon < 0 ? 1 : parseQuality(element.substring(semicolon + 1));
+                if (GZIP.equals(coding) || X_GZIP.equals(coding)) {
+                    gzip = Math.max(gzip, quality);
+                } else if (DEFLATE.equals(coding)) {
+                    deflate = Math.max(deflate, quality);
+                } else if (ANY.equals(coding)) {
+                    any = quality;
+                }
+            }
+        }
+        gzip = gzip < 0 ? any : gzip;
+        deflate = deflate < 0 ? any : deflate;
+        if (gzip > 0 && gzip >= deflate) {
+            return GZIP;
+        } else if (deflate > 0) {
+            return DEFLATE;
+        }
+        return null;
+    }
+
+    /**
+     * Returns a stream which compresses the content written to it using the
+     * provided content coding before writing it to the provided output, once
+     * the content exceeds the compression threshold. Content below the
+     * threshold is written unchanged. The response headers are updated when
+     * the returned stream is closed, which must happen before the response is
+     * sent.
+     *
+     * @param out
+     *            The output to which the response entity is written.
+     * @param resp
+     *            The HTTP response.
+     * @param coding
+     *            The negotiated content coding.
+     * @return A stream which compresses the content written to it.
+     */
+    static OutputStream newCompressingOutputStream(final OutputStream out, final Response resp,
+            final String coding) {
+        return new CompressingOutputStream(out, resp, coding, COMPRESSION_THRESHOLD);
+    }
+
+    /**
+     * Returns a stream which reads the request entity, decompressing it
+     * according to its {@literal Content-Encoding} header. Reading from the
+     * returned stream fails with an {@link EntityTooLargeException} once the
+     * decompressed entity exceeds the configured maximum size.
+     *
+     * @param req
+     *            The HTTP request.
+     * @return A stream which reads the decoded request entity.
+     * @throws ResourceException
+     *             If the request entity uses an unsupported content coding.
+     * @throws IOException
+     *             If the request entity could not be read.
+     */
+    static InputStream newDecodedInputStream(final Request req) throws ResourceException, IOException {
+        return newDecodedInputStream(req, MAX_DECODED_SIZE);
+    }
+
+    static InputStream newDecodedInputStream(final Request req, final long maxDecodedSize)
+            throws ResourceException, IOException {
+        final InputStream in = req.getEntity().getRawContentInputStream();
+        final Header header = req.getHeaders().get(HEADER_CONTENT_ENCODING);
+        if (header == null) {
+            return in;
+        }
+        // Codings are listed in the order in which they were applied, so they are removed in reverse order.
+        final List<String> codings = new ArrayList<>();
+        for (final String value : header.getValues()) {
+            codings.addAll(Arrays.asList(value.split(",")));
+        }
+        InputStream decoded = in;
+        for (int i = codings.size() - 1; i >= 0; i--) {
+            final String coding = codings.get(i).trim().toLowerCase(Locale.ROOT);
+            if (GZIP.equals(coding) || X_GZIP.equals(coding)) {
+                decoded = new GZIPInputStream(decoded, BUFFER_SIZE);
+            } else if (DEFLATE.equals(coding)) {
+                decoded = new InflaterInputStream(decoded);
+            } else if (!coding.isEmpty() && !IDENTITY.equals(coding)) {
+                throw ResourceException.newResourceException(415,
+                        "The request could not be processed because the content encoding '" + coding
+                                + "' is not supported");
+            }
+        }
+        // Only decompressed content is limited: the size of the raw entity is bounded by the container.
+        if (decoded == in || maxDecodedSize <= 0) {
+            return decoded;
+        }
+        return new LimitedInputStream(decoded, maxDecodedSize);
+    }
+
+    /**
+     * Returns a stream which reads the decoded request entity like
+     * {@link #newDecodedInputStream(Request)}, and which also limits the size
+     * of an entity which is not compressed, for callers which copy the entity
+     * to disk rather than parse it as it is read.
+     *
+     * @param req
+     *            The HTTP request.
+     * @return A stream which reads the decoded request entity.
+     * @throws ResourceException
+     *             If the request entity uses an unsupported content coding.
+     * @throws IOException
+     *             If the request entity could not be read.
+     */
+    static InputStream newBoundedInputStream(final Request req) throws ResourceException, IOException {
+        return newBoundedInputStream(req, MAX_DECODED_SIZE);
+    }
+
+    static InputStream newBoundedInputStream(final Request req, final long maxDecodedSize)
+            throws ResourceException, IOException {
+        final InputStream decoded = newDecodedInputStream(req, maxDecodedSize);
+        if (decoded instanceof LimitedInputStream || maxDecodedSize <= 0) {
+            return decoded;
+        }
+        return new LimitedInputStream(decoded, maxDecodedSize);
+    }
+
+    /**
+     * Thrown when a decoded request entity exceeds the maximum size. It is
+     * an {@link IOException} so that it propagates through the JSON and
+     * multipart parsers which read the entity.
+     */
+    static final class EntityTooLargeException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        private EntityTooLargeException(final long maxDecodedSize) {
+            super("The decoded request entity exceeds " + maxDecodedSize + " bytes");
+        }
+
+        /**
+         * Returns the resource exception which should be sent to the client.
+         *
+         * @return A resource exception with a 413 status.
+         */
+        ResourceException toResourceException() {
+            return ResourceException.newResourceException(413,
+                    "The request could not be processed because its content is too large", this);
+        }
+    }
+
+    /**
+     * Counts the bytes read from the decoded entity and fails once they
+     * exceed the limit, so that a small compressed entity cannot expand without
+     * bound.
+     */
+    private static final class LimitedInputStream extends FilterInputStream {
+        private final long limit;
+        private long count;
+
+        private LimitedInputStream(final InputStream in, final long limit) {
+            super(in);
+            this.limit = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int b = super.read();
+            if (b >= 0) {
+                count(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            final int n = super.read(b, off, len);
+            if (n > 0) {
+                count(n);
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(final long n) throws IOException {
+            final long skipped = super.skip(n);
+            count(skipped);
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        private void count(final long n) throws EntityTooLargeException {
+            count += n;
+            if (count > limit) {
+                throw new EntityTooLargeException(limit);
+            }
+        }
+    }
+
+    /**
+     * Buffers the start of the content until it exceeds the threshold, and
+     * then compresses it. The {@link Deflater} is only allocated once the
+     * threshold has been exceeded, and is released when the stream is closed.
+     */
+    private static final class CompressingOutputStream extends OutputStream {
+        private final OutputStream out;
+        private final Response resp;
+        private final String coding;
+        private final byte[] head;
+        private final byte[] single = new byte[1];
+        private int headLength;
+        private DeflaterOutputStream compressor;
+        private boolean closed;
+
+        private CompressingOutputStream(final OutputStream out, final Response resp, final String coding,
+                final int threshold) {
+            this.out = out;
+            this.resp = resp;
+            this.coding = coding;
+            this.head = new byte[threshold];
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            single[0] = (byte) b;
+            write(single, 0, 1);
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException {
+            if (compressor != null) {
+                compressor.write(b, off, len);
+            } else if (headLength + len <= head.length) {
+                System.arraycopy(b, off, head, headLength, len);
+                headLength += len;
+            } else {
+                compressor = newCompressor();
+                compressor.write(head, 0, headLength);
+                compressor.write(b, off, len);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (compressor != null) {
+                // Closing the compressor finishes the stream and releases the deflater.
+                compressor.close();
+                resp.getHeaders().put(HEADER_CONTENT_ENCODING, coding);
+                resp.getHeaders().remove(HEADER_CONTENT_LENGTH);
+            } else {
+                out.write(head, 0, headLength);
+                out.close();
+            }
+            resp.getHeaders().add(HEADER_VARY, HEADER_ACCEPT_ENCODING);
+        }
+
+        private DeflaterOutputStream newCompressor() throws IOException {
+            if (GZIP.equals(coding)) {
+                return new GZIPOutputStream(out, BUFFER_SIZE) {
+                    {
+                        def.setLevel(COMPRESSION_LEVEL);
+                    }
+                };
+            }
+            return new DeflaterOutputStream(out, new Deflater(COMPRESSION_LEVEL), BUFFER_SIZE) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        // The deflater was provided, so it is not released by the stream itself.
+                        def.end();
+                    }
+                }
+            };
+        }
+    }
+
+    private ContentEncodings() {
+        // Prevent instantiation.
+    }
+}
@@ -12,6 +12,7 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2015 ForgeRock AS.
+ * Portions Copyright 2026 Wren Security.
  */
 
 package org.forgerock.json.resource.http;
@@ -41,6 +42,7 @@ import static org.forgerock.json.resource.Responses.newResourceResponse;
 import static org.forgerock.json.resource.http.HttpUtils.DEFAULT_PROTOCOL_VERSION;
 import static org.forgerock.json.resource.http.HttpUtils.ETAG_ANY;
 import static org.forgerock.json.resource.http.HttpUtils.FIELDS_DELIMITER;
+import static org.forgerock.json.resource.http.HttpUtils.HEADER_ACCEPT;
 import static org.forgerock.json.resource.http.HttpUtils.HEADER_IF_MATCH;
 import static org.forgerock.json.resource.http.HttpUtils.HEADER_IF_NONE_MATCH;
 import static org.forgerock.json.resource.http.HttpUtils.METHOD_DELETE;
@@ -48,6 +50,7 @@ import static org.forgerock.json.resource.http.HttpUtils.METHOD_GET;
 import static org.forgerock.json.resource.http.HttpUtils.METHOD_PATCH;
 import static org.forgerock.json.resource.http.HttpUtils.METHOD_POST;
 import static org.forgerock.json.resource.http.HttpUtils.METHOD_PUT;
+import static org.forgerock.json.resource.http.HttpUtils.MIME_TYPE_APPLICATION_CBOR;
 import static org.forgerock.json.resource.http.HttpUtils.MIME_TYPE_APPLICATION_JSON;
 import static org.forgerock.json.resource.http.HttpUtils.PARAM_ACTION;
 import static org.forgerock.json.resource.http.HttpUtils.PARAM_FIELDS;
@@ -64,6 +67,7 @@ import static org.forgerock.util.Reject.checkNotNull;
 import static org.forgerock.util.Utils.joinAsString;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.LinkedList;
@@ -146,6 +150,13 @@ final class CrestAdapter implements RequestHandler {
             }
         };
 
+    /**
+     * CREST endpoints which support it respond using CBOR, which is more compact and cheaper to encode and parse
+     * than JSON. Other endpoints ignore the preference and respond using JSON.
+     */
+    private static final String ACCEPT_BINARY_JSON =
+            MIME_TYPE_APPLICATION_CBOR + ", " + MIME_TYPE_APPLICATION_JSON + ";q=0.9";
+
     private final Handler handler;
     private final URI baseUri;
 
@@ -417,12 +428,19 @@ final class CrestAdapter implements RequestHandler {
     }
 
     private static JsonValue loadJsonValueContent(final Response response) throws ResourceException {
-        if (MIME_TYPE_APPLICATION_JSON.equals(ContentTypeHeader.valueOf(response).getType())) {
+        final String contentType = ContentTypeHeader.valueOf(response).getType();
+        if (MIME_TYPE_APPLICATION_JSON.equals(contentType)) {
             try {
                 return new JsonValue(response.getEntity().getJson());
             } catch (IOException e) {
                 throw new InternalServerErrorException("Cannot parse HTTP response content as JSON", e);
             }
+        } else if (HttpUtils.isBinaryJsonContentType(contentType)) {
+            try (InputStream in = response.getEntity().getRawContentInputStream()) {
+                return new JsonValue(HttpUtils.parseJson(contentType, in));
+            } catch (IOException e) {
+                throw new InternalServerErrorException("Cannot parse HTTP response content as " + contentType, e);
+            }
         }
         throw new InternalServerErrorException("Response is not application/json");
     }
@@ -478,6 +496,7 @@ final class CrestAdapter implements RequestHandler {
 
     private void prepareHttpRequest(final org.forgerock.json.resource.Request request, final Request httpRequest) {
         setRequestedResourceVersion(httpRequest, request.getResourceVersion());
+        httpRequest.getHeaders().put(HEADER_ACCEPT, ACCEPT_BINARY_JSON);
 
         httpRequest.setUri(baseUri.resolve(request.getResourcePath()));
 
@@ -12,6 +12,7 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2012-2015 ForgeRock AS.
+ * Portions Copyright 2026 Wren Security.
  */
 
 package org.forgerock.json.resource.http;
@@ -153,22 +154,34 @@ final class HttpAdapter implements Handler {
      */
     @Override
     public Promise<Response, NeverThrowsException> handle(Context context,
-            org.forgerock.http.protocol.Request request) {
+            final org.forgerock.http.protocol.Request request) {
+        final SpilledContent spilled = new SpilledContent();
+        return dispatch(context, request, spilled).thenAlways(new Runnable() {
+            @Override
+            public void run() {
+                // Attachments of the request are only valid while it is processed.
+                spilled.close();
+            }
+        });
+    }
+
+    private Promise<Response, NeverThrowsException> dispatch(Context context,
+            org.forgerock.http.protocol.Request request, SpilledContent spilled) {
         try {
             RequestType requestType = determineRequestType(request);
             switch (requestType) {
             case CREATE:
-                return doCreate(context, request);
+                return doCreate(context, request, spilled);
             case READ:
                 return doRead(context, request);
             case UPDATE:
-                return doUpdate(context, request);
+                return doUpdate(context, request, spilled);
             case DELETE:
                 return doDelete(context, request);
             case PATCH:
-                return doPatch(context, request);
+                return doPatch(context, request, spilled);
             case ACTION:
-                return doAction(context, request);
+                return doAction(context, request, spilled);
             case QUERY:
                 return doQuery(context, request);
             default:
@@ -361,7 +374,8 @@ final class HttpAdapter implements Handler {
         }
     }
 
-    Promise<Response, NeverThrowsException> doPatch(Context context, org.forgerock.http.protocol.Request req) {
+    Promise<Response, NeverThrowsException> doPatch(Context context, org.forgerock.http.protocol.Request req,
+            SpilledContent spilled) {
         try {
             Version requestedResourceVersion = getRequestedResourceVersion(req);
 
@@ -383,7 +397,7 @@ final class HttpAdapter implements Handler {
                     Requests.newPatchRequest(getResourcePath(context, req))
                             .setRevision(ifMatchRevision)
                             .setResourceVersion(requestedResourceVersion);
-            request.getPatchOperations().addAll(getJsonPatchContent(req));
+            request.getPatchOperations().addAll(getJsonPatchContent(req, spilled));
             for (final Map.Entry<String, List<String>> p : parameters.entrySet()) {
                 final String name = p.getKey();
                 final List<String> values = p.getValue();
@@ -399,7 +413,8 @@ final class HttpAdapter implements Handler {
         }
     }
 
-    Promise<Response, NeverThrowsException> doCreate(Context context, org.forgerock.http.protocol.Request req) {
+    Promise<Response, NeverThrowsException> doCreate(Context context, org.forgerock.http.protocol.Request req,
+            SpilledContent spilled) {
         try {
             Version requestedResourceVersion = getRequestedResourceVersion(req);
             // Prepare response.
@@ -414,7 +429,7 @@ final class HttpAdapter implements Handler {
                 rejectIfMatch(req);
 
                 final Form parameters = req.getForm();
-                final JsonValue content = getJsonContent(req);
+                final JsonValue content = getJsonContent(req, spilled);
                 final CreateRequest request =
                         Requests.newCreateRequest(getResourcePath(context, req), content)
                                 .setResourceVersion(requestedResourceVersion);
@@ -440,7 +455,7 @@ final class HttpAdapter implements Handler {
                 }
 
                 final Form parameters = req.getForm();
-                final JsonValue content = getJsonContent(req);
+                final JsonValue content = getJsonContent(req, spilled);
 
                 // This is a create with a user provided resource ID: split the
                 // path into the parent resource name and resource ID.
@@ -471,7 +486,8 @@ final class HttpAdapter implements Handler {
         }
     }
 
-    Promise<Response, NeverThrowsException> doAction(Context context, org.forgerock.http.protocol.Request req) {
+    Promise<Response, NeverThrowsException> doAction(Context context, org.forgerock.http.protocol.Request req,
+            SpilledContent spilled) {
         try {
             Version requestedResourceVersion = getRequestedResourceVersion(req);
 
@@ -486,7 +502,7 @@ final class HttpAdapter implements Handler {
             final Form parameters = req.getForm();
             final String action = asSingleValue(PARAM_ACTION, getParameter(req, PARAM_ACTION));
             // Action request.
-            final JsonValue content = getJsonActionContent(req);
+            final JsonValue content = getJsonActionContent(req, spilled);
             final ActionRequest request =
                     Requests.newActionRequest(getResourcePath(context, req), action)
                             .setContent(content)
@@ -508,7 +524,8 @@ final class HttpAdapter implements Handler {
         }
     }
 
-    Promise<Response, NeverThrowsException> doUpdate(Context context, org.forgerock.http.protocol.Request req) {
+    Promise<Response, NeverThrowsException> doUpdate(Context context, org.forgerock.http.protocol.Request req,
+            SpilledContent spilled) {
         try {
             Version requestedResourceVersion = getRequestedResourceVersion(req);
 
@@ -528,7 +545,7 @@ final class HttpAdapter implements Handler {
             // use the version 1 meaning of getIfMatch; i.e., treat * as null
             final String ifMatchRevision = getIfMatch(req, PROTOCOL_VERSION_1);
             final Form parameters = req.getForm();
-            final JsonValue content = getJsonContent(req);
+            final JsonValue content = getJsonContent(req, spilled);
 
             final UpdateRequest request =
                     Requests.newUpdateRequest(getResourcePath(context, req), content)
@@ -643,12 +660,15 @@ final class HttpAdapter implements Handler {
         if (!req.getMethod().equalsIgnoreCase(HttpUtils.METHOD_GET)
                 && contentType != null
                 && !CONTENT_TYPE_REGEX.matcher(contentType).matches()
+                && !HttpUtils.isBinaryJsonContentType(contentType)
                 && !HttpUtils.isMultiPartRequest(contentType)) {
             // TODO: i18n
             throw new BadRequestException(
                     "The request could not be processed because it specified the content-type '"
-                            + contentType + "' when only the content-type '"
-                            + MIME_TYPE_APPLICATION_JSON + "' and '"
+                            + contentType + "' when only the content-types '"
+                            + MIME_TYPE_APPLICATION_JSON + "', '"
+                            + MIME_TYPE_APPLICATION_CBOR + "', '"
+                            + MIME_TYPE_APPLICATION_SMILE + "' and '"
                             + MIME_TYPE_MULTIPART_FORM_DATA + "' are supported");
         }
 
@@ -12,12 +12,15 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2012-2015 ForgeRock AS.
+ * Portions Copyright 2026 Wren Security.
  */
 
 package org.forgerock.json.resource.http;
 
+import java.util.AbstractMap;
+import java.util.AbstractSet;
 import java.util.Collections;
-import java.util.LinkedHashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -25,6 +28,7 @@ import java.util.TreeMap;
 
 import org.forgerock.services.context.AbstractContext;
 import org.forgerock.services.context.Context;
+import org.forgerock.http.MutableUri;
 import org.forgerock.http.protocol.Header;
 import org.forgerock.json.JsonValue;
 import org.forgerock.util.Factory;
@@ -66,37 +70,33 @@ public final class HttpContext extends AbstractContext {
         super(parent, "http");
         data.put(ATTR_METHOD, HttpUtils.getMethod(req));
         data.put(ATTR_PATH, getRequestPath(req));
-        this.headers = Collections.unmodifiableMap(new LazyMap<>(
-            new Factory<Map<String, List<String>>>() {
-                @Override
-                public Map<String, List<String>> newInstance() {
-                    Map<String, List<String>> result = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
-                    for (Map.Entry<String, Header> header : req.getHeaders().asMapOfHeaders().entrySet()) {
-                        String name = header.getKey();
-                        List<String> values = header.getValue().getValues();
-                        result.put(name, values);
-                    }
-                    return result;
-                }
-            }));
+        // Headers and parameters are exposed as read-only views of the request, which are only copied if this
+        // context is serialized. The form is still created lazily because the request parses it on each call.
+        this.headers = new HeadersView(req.getHeaders().asMapOfHeaders());
         data.put(ATTR_HEADERS, headers);
         this.parameters = Collections.unmodifiableMap(new LazyMap<>(
             new Factory<Map<String, List<String>>>() {
                 @Override
                 public Map<String, List<String>> newInstance() {
-                    Map<String, List<String>> result = new LinkedHashMap<>();
-                    Set<Map.Entry<String, List<String>>> parameters = req.getForm().entrySet();
-                    for (Map.Entry<String, List<String>> parameter : parameters) {
-                        String name = parameter.getKey();
-                        List<String> values = parameter.getValue();
-                        result.put(name, values);
-                    }
-                    return result;
+                    return req.getForm();
                 }
             }));
         data.put(ATTR_PARAMETERS, parameters);
     }
 
+    HttpContext(final Context parent, final String method, final String path,
+            final Map<String, List<String>> headers, final Map<String, List<String>> parameters) {
+        super(parent, "http");
+        data.put(ATTR_METHOD, method);
+        data.put(ATTR_PATH, path);
+        final Map<String, List<String>> caseInsensitiveHeaders = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        caseInsensitiveHeaders.putAll(headers);
+        this.headers = Collections.unmodifiableMap(caseInsensitiveHeaders);
+        data.put(ATTR_HEADERS, this.headers);
+        this.parameters = Collections.unmodifiableMap(parameters);
+        data.put(ATTR_PARAMETERS, this.parameters);
+    }
+
     /**
      * Restore from JSON representation.
      *
@@ -109,16 +109,15 @@ public final class HttpContext extends AbstractContext {
      */
     public HttpContext(final JsonValue savedContext, final ClassLoader classLoader) {
         super(savedContext, classLoader);
-        this.headers = data.get(ATTR_HEADERS).required().asMapOfList(String.class);
+        final Map<String, List<String>> savedHeaders = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        savedHeaders.putAll(data.get(ATTR_HEADERS).required().asMapOfList(String.class));
+        this.headers = Collections.unmodifiableMap(savedHeaders);
         this.parameters = data.get(ATTR_PARAMETERS).required().asMapOfList(String.class);
     }
 
     private String getRequestPath(org.forgerock.http.protocol.Request req) {
-        return new StringBuilder()
-            .append(req.getUri().getScheme())
-            .append("://")
-            .append(req.getUri().getRawAuthority())
-            .append(req.getUri().getRawPath()).toString();
+        final MutableUri uri = req.getUri();
+        return uri.getScheme() + "://" + uri.getRawAuthority() + uri.getRawPath();
     }
 
     /**
@@ -214,4 +213,62 @@ public final class HttpContext extends AbstractContext {
     public String getPath() {
         return data.get(ATTR_PATH).asString();
     }
+
+    /** A read-only, case-insensitive view of the request headers which does not copy them. */
+    private static final class HeadersView extends AbstractMap<String, List<String>> {
+        private final Map<String, Header> headers;
+
+        HeadersView(final Map<String, Header> headers) {
+            this.headers = headers;
+        }
+
+        @Override
+        public List<String> get(final Object name) {
+            final Header header = headers.get(name);
+            return header != null ? Collections.unmodifiableList(header.getValues()) : null;
+        }
+
+        @Override
+        public boolean containsKey(final Object name) {
+            return headers.containsKey(name);
+        }
+
+        @Override
+        public int size() {
+            return headers.size();
+        }
+
+        @Override
+        public Set<Map.Entry<String, List<String>>> entrySet() {
+            return new AbstractSet<Map.Entry<String, List<String>>>() {
+                @Override
+                public Iterator<Map.Entry<String, List<String>>> iterator() {
+                    final Iterator<Map.Entry<String, Header>> iterator = headers.entrySet().iterator();
+                    return new Iterator<Map.Entry<String, List<String>>>() {
+                        @Override
+                        public boolean hasNext() {
+                            return iterator.hasNext();
+                        }
+
+                        @Override
+                        public Map.Entry<String, List<String>> next() {
+                            final Map.Entry<String, Header> header = iterator.next();
+                            return new SimpleImmutableEntry<>(header.getKey(),
+                                    Collections.unmodifiableList(header.getValue().getValues()));
+                        }
+
+                        @Override
+                        public void remove() {
+                            throw new UnsupportedOperationException();
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return headers.size();
+                }
+            };
+        }
+    }
 }
@@ -0,0 +1,82 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+
+package org.forgerock.json.resource.http;
+
+import static org.forgerock.json.resource.ContextSerializer.readString;
+import static org.forgerock.json.resource.ContextSerializer.readStringListMap;
+import static org.forgerock.json.resource.ContextSerializer.writeString;
+import static org.forgerock.json.resource.ContextSerializer.writeStringListMap;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.forgerock.json.resource.ContextCodec;
+import org.forgerock.json.resource.ContextSerializer;
+import org.forgerock.services.context.Context;
+
+/**
+ * A {@link ContextCodec} for {@link HttpContext}s, which should be provided
+ * when creating a {@link ContextSerializer} for context chains originating
+ * from HTTP requests:
+ *
+ * <pre>
+ * ContextSerializer serializer = new ContextSerializer(new HttpContextCodec());
+ * </pre>
+ */
+public final class HttpContextCodec implements ContextCodec<HttpContext> {
+
+    @Override
+    public Class<HttpContext> getContextClass() {
+        return HttpContext.class;
+    }
+
+    @Override
+    public String getName() {
+        return "http";
+    }
+
+    @Override
+    public int getVersion() {
+        return 1;
+    }
+
+    @Override
+    public void encode(final HttpContext context, final DataOutput out) throws IOException {
+        writeString(out, context.getMethod());
+        writeString(out, context.getPath());
+        writeStringListMap(out, context.getHeaders());
+        writeStringListMap(out, context.getParameters());
+    }
+
+    @Override
+    public HttpContext decode(final Context parent, final int version, final DataInput in) throws IOException {
+        if (version != 1) {
+            throw new StreamCorruptedException("Unsupported HTTP context version " + version);
+        }
+        final String method = readString(in);
+        final String path = readString(in);
+        final Map<String, List<String>> headers = readStringListMap(in, new LinkedHashMap<String, List<String>>());
+        final Map<String, List<String>> parameters =
+                readStringListMap(in, new LinkedHashMap<String, List<String>>());
+        return new HttpContext(parent, method, path, headers, parameters);
+    }
+}
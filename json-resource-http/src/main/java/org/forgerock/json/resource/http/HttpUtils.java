@@ -12,6 +12,7 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2012-2015 ForgeRock AS.
+ * Portions Copyright 2026 Wren Security.
  */
 
 package org.forgerock.json.resource.http;
@@ -31,31 +32,46 @@ import javax.mail.internet.ContentType;
 import javax.mail.internet.MimeBodyPart;
 import javax.mail.internet.MimeMultipart;
 import javax.mail.internet.ParseException;
+import javax.mail.internet.SharedInputStream;
+import javax.mail.util.SharedByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.zip.ZipException;
 
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 import org.forgerock.http.header.ContentTypeHeader;
+import org.forgerock.http.protocol.Header;
 import org.forgerock.http.protocol.Response;
 import org.forgerock.http.protocol.Status;
 import org.forgerock.json.JsonValue;
 import org.forgerock.http.routing.Version;
 import org.forgerock.json.resource.ActionRequest;
+import org.forgerock.json.resource.Attachment;
 import org.forgerock.json.resource.BadRequestException;
 import org.forgerock.json.resource.InternalServerErrorException;
 import org.forgerock.json.resource.NotSupportedException;
@@ -81,16 +97,25 @@ public final class HttpUtils {
     static final String ETAG_ANY = "*";
 
     static final String MIME_TYPE_APPLICATION_JSON = "application/json";
+    static final String MIME_TYPE_APPLICATION_CBOR = "application/cbor";
+    static final String MIME_TYPE_APPLICATION_SMILE = "application/x-jackson-smile";
     static final String MIME_TYPE_MULTIPART_FORM_DATA = "multipart/form-data";
     static final String MIME_TYPE_TEXT_PLAIN = "text/plain";
 
+    static final String HEADER_ACCEPT = "Accept";
+    static final String HEADER_ACCEPT_RANGES = "Accept-Ranges";
     static final String HEADER_CACHE_CONTROL = "Cache-Control";
+    static final String HEADER_CONTENT_ENCODING = "Content-Encoding";
+    static final String HEADER_CONTENT_LENGTH = "Content-Length";
+    static final String HEADER_CONTENT_RANGE = "Content-Range";
     static final String HEADER_ETAG = "ETag";
     static final String HEADER_IF_MATCH = "If-Match";
     static final String HEADER_IF_NONE_MATCH = "If-None-Match";
     static final String HEADER_IF_MODIFIED_SINCE = "If-Modified-Since";
     static final String HEADER_IF_UNMODIFIED_SINCE = "If-Unmodified-Since";
     static final String HEADER_LOCATION = "Location";
+    static final String HEADER_RANGE = "Range";
+    static final String HEADER_VARY = "Vary";
     static final String HEADER_X_HTTP_METHOD_OVERRIDE = "X-HTTP-Method-Override";
     /** the HTTP header for {@literal Content-Disposition}. */
     public static final String CONTENT_DISPOSITION = "Content-Disposition";
@@ -154,18 +179,23 @@ public final class HttpUtils {
     static final String SORT_KEYS_DELIMITER = ",";
 
     private static final ObjectMapper JSON_MAPPER = new ObjectMapper();
+    private static final ObjectMapper CBOR_MAPPER = new ObjectMapper(new CBORFactory());
+    private static final ObjectMapper SMILE_MAPPER = new ObjectMapper(new SmileFactory());
 
     private static final String FILENAME = "filename";
     private static final String MIME_TYPE = "mimetype";
     private static final String CONTENT = "content";
     private static final String NAME = "name";
-    private static final Pattern MULTIPART_FIELD_REGEX = Pattern.compile("^cid:(.*)#(" + FILENAME
-            + "|" + MIME_TYPE + "|" + CONTENT + ")$", Pattern.CASE_INSENSITIVE);
+    /** A reference without a data type resolves to an {@link Attachment}. */
+    private static final Pattern MULTIPART_FIELD_REGEX = Pattern.compile("^cid:(.*?)(?:#(" + FILENAME
+            + "|" + MIME_TYPE + "|" + CONTENT + "))?$", Pattern.CASE_INSENSITIVE);
     private static final int PART_NAME = 1;
     private static final int PART_DATA_TYPE = 2;
     private static final String REFERENCE_TAG = "$ref";
 
-    private static final int BUFFER_SIZE = 1_024;
+    private static final int BUFFER_SIZE = 8_192;
+    /** Multipart requests larger than this are spilled to a temporary file while they are processed. */
+    private static final int MULTIPART_MEMORY_LIMIT = 64 * 1_024;
     private static final int EOF = -1;
 
     /**
@@ -178,11 +208,32 @@ public final class HttpUtils {
     static ResourceException adapt(final Throwable t) {
         if (t instanceof ResourceException) {
             return (ResourceException) t;
+        } else if (t instanceof ContentEncodings.EntityTooLargeException) {
+            return ((ContentEncodings.EntityTooLargeException) t).toResourceException();
         } else {
             return new InternalServerErrorException(t);
         }
     }
 
+    /**
+     * Adapts a {@code MessagingException} thrown while parsing a multipart
+     * request to a {@code ResourceException}. The multipart parser wraps the
+     * errors raised while reading the entity, so an entity which was too large
+     * is still reported as such.
+     *
+     * @param e
+     *            The exception which caused the request to fail.
+     * @param message
+     *            The message of the bad request exception returned otherwise.
+     * @return The equivalent resource exception.
+     */
+    private static ResourceException adapt(final MessagingException e, final String message) {
+        if (e.getNextException() instanceof ContentEncodings.EntityTooLargeException) {
+            return adapt(e.getNextException());
+        }
+        return new BadRequestException(message, e);
+    }
+
     /**
      * Parses a header or request parameter as a boolean value.
      *
@@ -285,7 +336,7 @@ public final class HttpUtils {
             }
             resp.setStatus(Status.valueOf(re.getCode()));
             final JsonGenerator writer = getJsonGenerator(req, resp);
-            writer.writeObject(re.toJsonValue().getObject());
+            JsonValueWriter.writeValue(writer, re.toJsonValue().getObject());
             closeSilently(writer);
             return newResultPromise(resp);
         } catch (final IOException ignored) {
@@ -500,14 +551,18 @@ public final class HttpUtils {
      *
      * @param req
      *            The HTTP request.
+     * @param spilled
+     *            Holds the spilled entity of a multipart request until the
+     *            request completes.
      * @return The content of the provided HTTP request decoded as a JSON
      *         object.
      * @throws ResourceException
      *             If the content could not be read or if the content was not
      *             valid JSON.
      */
-    static JsonValue getJsonContentIfPresent(org.forgerock.http.protocol.Request req) throws ResourceException {
-        return getJsonContent0(req, true);
+    static JsonValue getJsonContentIfPresent(org.forgerock.http.protocol.Request req, SpilledContent spilled)
+            throws ResourceException {
+        return getJsonContent0(req, spilled, true);
     }
 
     /**
@@ -517,14 +572,18 @@ public final class HttpUtils {
      *
      * @param req
      *            The HTTP request.
+     * @param spilled
+     *            Holds the spilled entity of a multipart request until the
+     *            request completes.
      * @return The content of the provided HTTP request decoded as a JSON
      *         object.
      * @throws ResourceException
      *             If the content could not be read or if the content was not
      *             valid JSON.
      */
-    static JsonValue getJsonContent(org.forgerock.http.protocol.Request req) throws ResourceException {
-        return getJsonContent0(req, false);
+    static JsonValue getJsonContent(org.forgerock.http.protocol.Request req, SpilledContent spilled)
+            throws ResourceException {
+        return getJsonContent0(req, spilled, false);
     }
 
     /**
@@ -545,12 +604,21 @@ public final class HttpUtils {
         PipeBufferedStream pipeStream = new PipeBufferedStream();
         resp.setEntity(pipeStream.getOut());
 
-        final JsonGenerator writer =
-                JSON_MAPPER.getFactory().createGenerator(pipeStream.getIn());
-        writer.configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+        // The format was negotiated by prepareResponse.
+        final ObjectMapper mapper = getMapper(resp.getHeaders().getFirst(ContentTypeHeader.class));
+        final String coding = ContentEncodings.negotiate(req);
+        final JsonGenerator writer;
+        if (coding != null) {
+            // Compress while generating. Closing the generator must finish the compressed stream.
+            writer = mapper.getFactory().createGenerator(
+                    ContentEncodings.newCompressingOutputStream(pipeStream.getIn(), resp, coding));
+        } else {
+            writer = mapper.getFactory().createGenerator(pipeStream.getIn());
+            writer.configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+        }
 
         // Enable pretty printer if requested.
-        final List<String> values = getParameter(req, PARAM_PRETTY_PRINT);
+        final List<String> values = mapper == JSON_MAPPER ? getParameter(req, PARAM_PRETTY_PRINT) : null;
         if (values != null) {
             try {
                 if (asBooleanValue(PARAM_PRETTY_PRINT, values)) {
@@ -570,15 +638,18 @@ public final class HttpUtils {
      *
      * @param req
      *            The HTTP request.
+     * @param spilled
+     *            Holds the spilled entity of a multipart request until the
+     *            request completes.
      * @return The content of the provided HTTP request decoded as a JSON patch
      *         object.
      * @throws ResourceException
      *             If the content could not be read or if the content was not a
      *             valid JSON patch.
      */
-    static List<PatchOperation> getJsonPatchContent(org.forgerock.http.protocol.Request req)
-            throws ResourceException {
-        return PatchOperation.valueOfList(new JsonValue(parseJsonBody(req, false)));
+    static List<PatchOperation> getJsonPatchContent(org.forgerock.http.protocol.Request req,
+            SpilledContent spilled) throws ResourceException {
+        return PatchOperation.valueOfList(new JsonValue(parseJsonBody(req, spilled, false)));
     }
 
     /**
@@ -587,14 +658,18 @@ public final class HttpUtils {
      *
      * @param req
      *            The HTTP request.
+     * @param spilled
+     *            Holds the spilled entity of a multipart request until the
+     *            request completes.
      * @return The content of the provided HTTP request decoded as a JSON action
      *         content.
      * @throws ResourceException
      *             If the content could not be read or if the content was not
      *             valid JSON.
      */
-    static JsonValue getJsonActionContent(org.forgerock.http.protocol.Request req) throws ResourceException {
-        return new JsonValue(parseJsonBody(req, true));
+    static JsonValue getJsonActionContent(org.forgerock.http.protocol.Request req, SpilledContent spilled)
+            throws ResourceException {
+        return new JsonValue(parseJsonBody(req, spilled, true));
     }
 
     /**
@@ -662,7 +737,9 @@ public final class HttpUtils {
                 ContentType contentType = new ContentType(mimeType);
                 resp.getHeaders().put(new ContentTypeHeader(contentType.toString(), CHARACTER_ENCODING, null));
             } else {
-                resp.getHeaders().put(new ContentTypeHeader(MIME_TYPE_APPLICATION_JSON, CHARACTER_ENCODING, null));
+                final String mediaType = negotiateMediaType(req);
+                resp.getHeaders().put(new ContentTypeHeader(mediaType,
+                        MIME_TYPE_APPLICATION_JSON.equals(mediaType) ? CHARACTER_ENCODING : null, null));
             }
 
             resp.getHeaders().put(HEADER_CACHE_CONTROL, CACHE_CONTROL);
@@ -689,9 +766,9 @@ public final class HttpUtils {
         }
     }
 
-    private static JsonValue getJsonContent0(org.forgerock.http.protocol.Request req, boolean allowEmpty)
-            throws ResourceException {
-        final Object body = parseJsonBody(req, allowEmpty);
+    private static JsonValue getJsonContent0(org.forgerock.http.protocol.Request req, SpilledContent spilled,
+            boolean allowEmpty) throws ResourceException {
+        final Object body = parseJsonBody(req, spilled, allowEmpty);
         if (body == null) {
             return new JsonValue(new LinkedHashMap<>(0));
         } else if (!(body instanceof Map)) {
@@ -717,41 +794,38 @@ public final class HttpUtils {
                     "The request could not be processed because the multipart request "
                     + "does not include Content-Type: " + MIME_TYPE_APPLICATION_JSON);
         } catch (final MessagingException e) {
-            throw new BadRequestException(
-                    "The request could not be processed because the request cant be parsed", e);
+            throw adapt(e, "The request could not be processed because the request cant be parsed");
         } catch (final IOException e) {
             throw adapt(e);
         }
 
     }
 
-    private static String getRequestPartData(final MimeMultipart mimeMultiparts,
-            final String partName, final String partDataType) throws IOException, MessagingException {
+    private static MimeBodyPart getRequestPart(final MimeMultipart mimeMultiparts, final String partName)
+            throws IOException, MessagingException {
         if (mimeMultiparts == null) {
             throw new BadRequestException(
                     "The request parameter is null when retrieving part data for part name: "
                             + partName);
         }
-
-        if (partDataType == null || partDataType.isEmpty()) {
-            throw new BadRequestException("The request is requesting an unknown part field");
-        }
-        MimeBodyPart part = null;
         for (int i = 0; i < mimeMultiparts.getCount(); i++) {
-            part = (MimeBodyPart) mimeMultiparts.getBodyPart(i);
-            ContentDisposition disposition =
-                    new ContentDisposition(part.getHeader(CONTENT_DISPOSITION, null));
-            if (disposition.getParameter(NAME).equalsIgnoreCase(partName)) {
-                break;
+            final MimeBodyPart part = (MimeBodyPart) mimeMultiparts.getBodyPart(i);
+            final String disposition = part.getHeader(CONTENT_DISPOSITION, null);
+            if (disposition != null
+                    && partName.equalsIgnoreCase(new ContentDisposition(disposition).getParameter(NAME))) {
+                return part;
             }
         }
+        throw new BadRequestException(
+                "The request is missing a referenced part for part name: " + partName);
+    }
 
-        if (part == null) {
-            throw new BadRequestException(
-                    "The request is missing a referenced part for part name: " + partName);
-        }
-
-        if (MIME_TYPE.equalsIgnoreCase(partDataType)) {
+    private static Object getRequestPartData(final MimeMultipart mimeMultiparts,
+            final String partName, final String partDataType) throws IOException, MessagingException {
+        final MimeBodyPart part = getRequestPart(mimeMultiparts, partName);
+        if (partDataType == null) {
+            return new MultipartAttachment(partName, part);
+        } else if (MIME_TYPE.equalsIgnoreCase(partDataType)) {
             return new ContentType(part.getContentType()).toString();
         } else if (FILENAME.equalsIgnoreCase(partDataType)) {
             return part.getFileName();
@@ -785,7 +859,7 @@ public final class HttpUtils {
                             MULTIPART_FIELD_REGEX.matcher(node.get(REFERENCE_TAG).asString());
                     if (matcher.matches()) {
                         String partName = matcher.group(PART_NAME);
-                        String requestPartData =
+                        Object requestPartData =
                                 getRequestPartData(mimeMultiparts, partName, matcher
                                         .group(PART_DATA_TYPE));
                         root.put(node.getPointer(), requestPartData);
@@ -801,11 +875,13 @@ public final class HttpUtils {
                 }
             }
             return root;
+        } catch (final ZipException e) {
+            throw new BadRequestException("The request could not be processed because the content "
+                    + "could not be decoded", e);
         } catch (final IOException e) {
             throw adapt(e);
         } catch (final MessagingException e) {
-            throw new BadRequestException(
-                    "The request could not be processed because the request is not a valid multipart request");
+            throw adapt(e, "The request could not be processed because the request is not a valid multipart request");
         }
     }
 
@@ -821,8 +897,121 @@ public final class HttpUtils {
         }
     }
 
-    private static Object parseJsonBody(org.forgerock.http.protocol.Request req, boolean allowEmpty)
-            throws ResourceException {
+    /**
+     * Returns {@code true} if the provided content type is one of the binary
+     * JSON formats supported as an alternative to JSON: CBOR or Smile.
+     *
+     * @param contentType
+     *            The content type, which may include parameters.
+     * @return {@code true} if the content type is CBOR or Smile.
+     */
+    static boolean isBinaryJsonContentType(final String contentType) {
+        return getMapper(contentType) != JSON_MAPPER;
+    }
+
+    /**
+     * Returns the media type of the JSON content in the response to the
+     * provided request, according to its {@literal Accept} header. JSON is
+     * used unless the client prefers CBOR or Smile, and is preferred when the
+     * client accepts them equally.
+     *
+     * @param req
+     *            The HTTP request.
+     * @return The media type of the JSON content in the response.
+     */
+    static String negotiateMediaType(org.forgerock.http.protocol.Request req) {
+        final Header accept = req.getHeaders().get(HEADER_ACCEPT);
+        if (accept == null) {
+            return MIME_TYPE_APPLICATION_JSON;
+        }
+        float json = -1;
+        float anyJson = -1;
+        float cbor = -1;
+        float smile = -1;
+        for (final String value : accept.getValues()) {
+            for (final String element : value.split(",")) {
+                final int semicolon = element.indexOf(';');
+                final String mediaType = (semicolon < 0 ? element : element.substring(0, semicolon))
+                        .trim().toLowerCase(Locale.ROOT);
+                final float quality = semicolon < 0 ? 1 : parseQuality(element.substring(semicolon + 1));
+                if (MIME_TYPE_APPLICATION_JSON.equals(mediaType)) {
+                    json = Math.max(json, quality);
+                } else if (MIME_TYPE_APPLICATION_CBOR.equals(mediaType)) {
+                    cbor = Math.max(cbor, quality);
+                } else if (MIME_TYPE_APPLICATION_SMILE.equals(mediaType)) {
+                    smile = Math.max(smile, quality);
+                } else if ("*/*".equals(mediaType) || "application/*".equals(mediaType)) {
+                    anyJson = Math.max(anyJson, quality);
+                }
+            }
+        }
+        json = json < 0 ? anyJson : json;
+        if (cbor > 0 && cbor > json && cbor >= smile) {
+            return MIME_TYPE_APPLICATION_CBOR;
+        } else if (smile > 0 && smile > json) {
+            return MIME_TYPE_APPLICATION_SMILE;
+        }
+        // Fall back to JSON even if the client did not ask for it, as before.
+        return MIME_TYPE_APPLICATION_JSON;
+    }
+
+    /**
+     * Parses the quality value from the parameters of an element of an
+     * {@literal Accept} or {@literal Accept-Encoding} header.
+     *
+     * @param parameters
+     *            The parameters following the first semicolon of the element.
+     * @return The quality value, which is {@code 1} if it is not specified
+     *         and {@code 0} if it is invalid.
+     */
+    static float parseQuality(final String parameters) {
+        for (final String parameter : parameters.split(";")) {
+            final String trimmed = parameter.trim();
+            if (trimmed.startsWith("q=") || trimmed.startsWith("Q=")) {
+                try {
+                    return Float.parseFloat(trimmed.substring(2).trim());
+                } catch (final NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+
+    /** Returns the mapper for the provided content type, defaulting to JSON. */
+    private static ObjectMapper getMapper(final String contentType) {
+        if (contentType != null) {
+            final int semicolon = contentType.indexOf(';');
+            final String mediaType = (semicolon < 0 ? contentType : contentType.substring(0, semicolon)).trim();
+            if (MIME_TYPE_APPLICATION_CBOR.equalsIgnoreCase(mediaType)) {
+                return CBOR_MAPPER;
+            } else if (MIME_TYPE_APPLICATION_SMILE.equalsIgnoreCase(mediaType)) {
+                return SMILE_MAPPER;
+            }
+        }
+        return JSON_MAPPER;
+    }
+
+    /**
+     * Parses JSON content in the provided stream, which may be encoded using
+     * one of the binary JSON formats.
+     *
+     * @param contentType
+     *            The content type of the stream.
+     * @param in
+     *            The stream to be parsed.
+     * @return The parsed content.
+     * @throws IOException
+     *             If the content could not be parsed.
+     */
+    static Object parseJson(final String contentType, final InputStream in) throws IOException {
+        try (JsonParser parser = getMapper(contentType).getFactory().createParser(in)) {
+            return parser.readValueAs(Object.class);
+        }
+    }
+
+    private static Object parseJsonBody(org.forgerock.http.protocol.Request req, SpilledContent spilled,
+            boolean allowEmpty) throws ResourceException {
         try {
             String contentType = req.getHeaders().getFirst(ContentTypeHeader.class);
             if (contentType == null && !allowEmpty) {
@@ -833,11 +1022,12 @@ public final class HttpUtils {
             MimeMultipart mimeMultiparts = null;
             JsonParser jsonParser;
             if (isMultiPartRequest) {
-                mimeMultiparts = new MimeMultipart(new HttpServletRequestDataSource(req));
+                mimeMultiparts = new MimeMultipart(new HttpServletRequestDataSource(req, spilled));
                 BodyPart jsonPart = getJsonRequestPart(mimeMultiparts);
                 jsonParser = JSON_MAPPER.getFactory().createParser(jsonPart.getInputStream());
             } else {
-                jsonParser = JSON_MAPPER.getFactory().createParser(req.getEntity().getRawContentInputStream());
+                jsonParser = getMapper(contentType).getFactory()
+                        .createParser(ContentEncodings.newDecodedInputStream(req));
             }
             try (JsonParser parser = jsonParser) {
                 Object content = parser.readValueAs(Object.class);
@@ -876,8 +1066,7 @@ public final class HttpUtils {
         } catch (final IOException e) {
             throw adapt(e);
         } catch (final MessagingException e) {
-            throw new BadRequestException(
-                    "The request could not be processed because it can't be parsed", e);
+            throw adapt(e, "The request could not be processed because it can't be parsed");
         }
     }
 
@@ -889,15 +1078,31 @@ public final class HttpUtils {
         // Prevent instantiation.
     }
 
+    /**
+     * Exposes the request entity to {@link MimeMultipart} as a {@link SharedInputStream}, so that parts reference
+     * ranges of the spilled entity instead of being copied onto the heap.
+     */
     private static class HttpServletRequestDataSource implements DataSource {
         private org.forgerock.http.protocol.Request request;
+        private final SpilledContent spilled;
+        private InputStream content;
 
-        HttpServletRequestDataSource(org.forgerock.http.protocol.Request request) {
+        HttpServletRequestDataSource(org.forgerock.http.protocol.Request request, SpilledContent spilled) {
             this.request = request;
+            this.spilled = spilled;
         }
 
         public InputStream getInputStream() throws IOException {
-            return request.getEntity().getRawContentInputStream();
+            if (content == null) {
+                // Unlike a parsed entity, a spilled entity is copied to disk in full, so its size is always bounded.
+                try (InputStream in = ContentEncodings.newBoundedInputStream(request)) {
+                    content = spill(in);
+                }
+                if (content instanceof SpilledFileInputStream) {
+                    spilled.add(content);
+                }
+            }
+            return ((SharedInputStream) content).newStream(0, -1);
         }
 
         public OutputStream getOutputStream() throws IOException {
@@ -913,6 +1118,230 @@ public final class HttpUtils {
         }
     }
 
+    /**
+     * The spilled entities of a multipart request, which are closed once the request completes, after which its
+     * attachments can no longer be read. A holder is created for each request by the adapter handling it.
+     */
+    static final class SpilledContent implements Closeable {
+        private final List<Closeable> spilled = new ArrayList<>(1);
+
+        private synchronized void add(final Closeable content) {
+            spilled.add(content);
+        }
+
+        @Override
+        public synchronized void close() {
+            for (final Closeable content : spilled) {
+                closeSilently(content);
+            }
+            spilled.clear();
+        }
+    }
+
+    /** An attachment whose data is read lazily from its part of the spilled request entity. */
+    private static final class MultipartAttachment implements Attachment {
+        private final String name;
+        private final MimeBodyPart part;
+
+        MultipartAttachment(final String name, final MimeBodyPart part) {
+            this.name = name;
+            this.part = part;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public String getFileName() {
+            try {
+                return part.getFileName();
+            } catch (final MessagingException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public String getContentType() {
+            try {
+                return part.getContentType();
+            } catch (final MessagingException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public long getSize() {
+            try {
+                return part.getSize();
+            } catch (final MessagingException e) {
+                return -1;
+            }
+        }
+
+        @Override
+        public InputStream newInputStream() throws IOException {
+            try {
+                return part.getInputStream();
+            } catch (final MessagingException e) {
+                throw new IOException(e);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "cid:" + name;
+        }
+    }
+
+    /**
+     * Copies the provided stream into a shared stream, which is held in memory when it is small and backed by a
+     * temporary file otherwise. The file is unlinked as soon as it has been opened where the platform allows it, and
+     * is otherwise deleted when the returned stream is closed.
+     */
+    private static InputStream spill(final InputStream in) throws IOException {
+        final ByteArrayOutputStream memory = new ByteArrayOutputStream(BUFFER_SIZE);
+        final byte[] data = new byte[BUFFER_SIZE];
+        int size;
+        while ((size = in.read(data)) != EOF) {
+            memory.write(data, 0, size);
+            if (memory.size() > MULTIPART_MEMORY_LIMIT) {
+                final File file = File.createTempFile("multipart", ".tmp");
+                FileChannel channel = null;
+                try {
+                    try (OutputStream out = new FileOutputStream(file)) {
+                        memory.writeTo(out);
+                        while ((size = in.read(data)) != EOF) {
+                            out.write(data, 0, size);
+                        }
+                    }
+                    channel = new RandomAccessFile(file, "r").getChannel();
+                    return new SpilledFileInputStream(file, channel, true, 0, channel.size());
+                } finally {
+                    if (!file.delete() && channel == null) {
+                        file.deleteOnExit();
+                    }
+                }
+            }
+        }
+        return new SharedByteArrayInputStream(memory.toByteArray());
+    }
+
+    /**
+     * A shared stream reading a spilled request entity from a temporary file. Unlike
+     * {@link javax.mail.util.SharedFileInputStream}, closing the stream returned by {@link #spill(InputStream)}
+     * closes the file even though streams created from it, such as those of the parts of the entity, have not been
+     * closed, and deletes the file if it could not be deleted while it was open.
+     */
+    private static final class SpilledFileInputStream extends InputStream implements SharedInputStream {
+        private final File file;
+        private final FileChannel channel;
+        private final boolean root;
+        private final long start;
+        private final long end;
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        private long bufferPosition;
+        private int bufferLength;
+        private long position;
+        private long mark;
+
+        private SpilledFileInputStream(final File file, final FileChannel channel, final boolean root,
+                final long start, final long end) {
+            this.file = file;
+            this.channel = channel;
+            this.root = root;
+            this.start = start;
+            this.end = end;
+            this.position = start;
+            this.mark = start;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!fill()) {
+                return EOF;
+            }
+            return buffer[(int) (position++ - bufferPosition)] & 0xff;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            } else if (!fill()) {
+                return EOF;
+            }
+            final int size = (int) Math.min(len, bufferPosition + bufferLength - position);
+            System.arraycopy(buffer, (int) (position - bufferPosition), b, off, size);
+            position += size;
+            return size;
+        }
+
+        @Override
+        public long skip(final long n) {
+            final long skipped = Math.max(0, Math.min(n, end - position));
+            position += skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return (int) Math.min(end - position, Integer.MAX_VALUE);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return true;
+        }
+
+        @Override
+        public void mark(final int readLimit) {
+            mark = position;
+        }
+
+        @Override
+        public void reset() {
+            position = mark;
+        }
+
+        @Override
+        public long getPosition() {
+            return position - start;
+        }
+
+        @Override
+        public InputStream newStream(final long start, final long end) {
+            return new SpilledFileInputStream(file, channel, false, this.start + start,
+                    end < 0 ? this.end : this.start + end);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (root) {
+                channel.close();
+                file.delete();
+            }
+        }
+
+        /** Makes sure that the buffer holds the byte at the current position, returning false at the end. */
+        private boolean fill() throws IOException {
+            if (position >= end) {
+                return false;
+            } else if (position >= bufferPosition && position < bufferPosition + bufferLength) {
+                return true;
+            }
+            final ByteBuffer target = ByteBuffer.wrap(buffer, 0, (int) Math.min(buffer.length, end - position));
+            bufferPosition = position;
+            bufferLength = 0;
+            while (target.hasRemaining() && channel.read(target, position + target.position()) != EOF) {
+                // Keep reading until the buffer is full or the end of the file is reached.
+            }
+            bufferLength = target.position();
+            return bufferLength > 0;
+        }
+    }
+
     private static byte[] toByteArray(final InputStream inputStream) throws IOException {
         final ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
         final byte[] data = new byte[BUFFER_SIZE];
@@ -0,0 +1,199 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+
+package org.forgerock.json.resource.http;
+
+import static org.forgerock.json.resource.ResourceResponse.FIELD_CONTENT_ID;
+import static org.forgerock.json.resource.ResourceResponse.FIELD_CONTENT_REVISION;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import org.forgerock.json.JsonValue;
+import org.forgerock.json.resource.ResourceResponse;
+
+/**
+ * Serializes the JSON object model used by {@link JsonValue} (maps, lists,
+ * strings, numbers, booleans and {@code null}) directly as tokens to a
+ * {@link JsonGenerator}, avoiding the per-value type dispatch performed by
+ * the {@code ObjectMapper}. Values of any other type are delegated to the
+ * generator's codec.
+ * <p>
+ * Field names are written using pre-encoded {@link SerializedString}s which
+ * are cached, up to a limit, so that the names which are common to most
+ * resources are only escaped and encoded once.
+ */
+final class JsonValueWriter {
+    /** The maximum number of field names which will be cached. */
+    private static final int MAX_CACHED_FIELD_NAMES = 4096;
+
+    private static final ConcurrentHashMap<String, SerializedString> FIELD_NAMES = new ConcurrentHashMap<>();
+
+    static final SerializedString FIELD_NAME_ID = fieldName(FIELD_CONTENT_ID);
+    static final SerializedString FIELD_NAME_REVISION = fieldName(FIELD_CONTENT_REVISION);
+
+    /**
+     * Returns the pre-encoded representation of the provided field name.
+     *
+     * @param name
+     *            The field name.
+     * @return The pre-encoded field name.
+     */
+    static SerializedString fieldName(final String name) {
+        SerializedString serialized = FIELD_NAMES.get(name);
+        if (serialized == null) {
+            serialized = new SerializedString(name);
+            if (FIELD_NAMES.size() < MAX_CACHED_FIELD_NAMES) {
+                final SerializedString existing = FIELD_NAMES.putIfAbsent(name, serialized);
+                if (existing != null) {
+                    serialized = existing;
+                }
+            }
+        }
+        return serialized;
+    }
+
+    /**
+     * Writes a resource as a JSON object, ensuring that the {@code _id} and
+     * {@code _rev} fields are written first when they are known. Resource
+     * content which is not a JSON object is written as is.
+     *
+     * @param writer
+     *            The generator to which the resource will be written.
+     * @param resource
+     *            The resource.
+     * @throws IOException
+     *             If the resource could not be written.
+     */
+    static void writeResource(final JsonGenerator writer, final ResourceResponse resource) throws IOException {
+        final Object content = resource.getContent().getObject();
+        final Map<?, ?> properties = content instanceof Map ? (Map<?, ?>) content : null;
+        if (properties == null && content != null) {
+            writeValue(writer, content);
+            return;
+        }
+        writer.writeStartObject();
+        // Defensively extract an object instead of a string in case application code has stored a UUID
+        // or Number, or some other non-JSON primitive. Also assume that a null ID or revision means none.
+        final Object id = resource.getId() != null ? resource.getId() : get(properties, FIELD_CONTENT_ID);
+        if (id != null) {
+            writer.writeFieldName(FIELD_NAME_ID);
+            writer.writeString(id.toString());
+        }
+        final Object rev = resource.getRevision() != null
+                ? resource.getRevision()
+                : get(properties, FIELD_CONTENT_REVISION);
+        if (rev != null) {
+            writer.writeFieldName(FIELD_NAME_REVISION);
+            writer.writeString(rev.toString());
+        }
+        if (properties != null) {
+            for (final Map.Entry<?, ?> property : properties.entrySet()) {
+                final String key = String.valueOf(property.getKey());
+                if (!FIELD_CONTENT_ID.equals(key) && !FIELD_CONTENT_REVISION.equals(key)) {
+                    writer.writeFieldName(fieldName(key));
+                    writeValue(writer, property.getValue());
+                }
+            }
+        }
+        writer.writeEndObject();
+    }
+
+    /**
+     * Writes a field whose name is pre-encoded and whose value is a JSON
+     * object model value.
+     *
+     * @param writer
+     *            The generator to which the field will be written.
+     * @param name
+     *            The pre-encoded field name.
+     * @param value
+     *            The field value.
+     * @throws IOException
+     *             If the field could not be written.
+     */
+    static void writeField(final JsonGenerator writer, final SerializableString name, final Object value)
+            throws IOException {
+        writer.writeFieldName(name);
+        writeValue(writer, value);
+    }
+
+    /**
+     * Writes a JSON object model value.
+     *
+     * @param writer
+     *            The generator to which the value will be written.
+     * @param value
+     *            The value, which may be a {@link JsonValue}.
+     * @throws IOException
+     *             If the value could not be written.
+     */
+    static void writeValue(final JsonGenerator writer, final Object value) throws IOException {
+        if (value == null) {
+            writer.writeNull();
+        } else if (value instanceof String) {
+            writer.writeString((String) value);
+        } else if (value instanceof Map) {
+            writer.writeStartObject();
+            for (final Map.Entry<?, ?> property : ((Map<?, ?>) value).entrySet()) {
+                writer.writeFieldName(fieldName(String.valueOf(property.getKey())));
+                writeValue(writer, property.getValue());
+            }
+            writer.writeEndObject();
+        } else if (value instanceof List) {
+            final List<?> list = (List<?>) value;
+            writer.writeStartArray();
+            for (final Object element : list) {
+                writeValue(writer, element);
+            }
+            writer.writeEndArray();
+        } else if (value instanceof Boolean) {
+            writer.writeBoolean((Boolean) value);
+        } else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            writer.writeNumber(((Number) value).intValue());
+        } else if (value instanceof Long) {
+            writer.writeNumber((Long) value);
+        } else if (value instanceof Double) {
+            writer.writeNumber((Double) value);
+        } else if (value instanceof Float) {
+            writer.writeNumber((Float) value);
+        } else if (value instanceof BigDecimal) {
+            writer.writeNumber((BigDecimal) value);
+        } else if (value instanceof BigInteger) {
+            writer.writeNumber((BigInteger) value);
+        } else if (value instanceof JsonValue) {
+            writeValue(writer, ((JsonValue) value).getObject());
+        } else {
+            // Not part of the JSON object model, so let the codec deal with it.
+            writer.writeObject(value);
+        }
+    }
+
+    private static Object get(final Map<?, ?> properties, final String key) {
+        return properties != null ? properties.get(key) : null;
+    }
+
+    private JsonValueWriter() {
+        // Prevent instantiation.
+    }
+}
@@ -12,6 +12,7 @@
  * information: "Portions Copyright [year] [name of copyright owner]".
  *
  * Portions Copyright 2014 ForgeRock AS.
+ * Portions Copyright 2026 Wren Security.
  */
 
 package org.forgerock.json.resource.http;
@@ -30,9 +31,15 @@ import org.forgerock.util.Factory;
 /**
  * Represents a pipe for transferring bytes from an {@link java.io.OutputStream} to a
  * {@link org.forgerock.http.io.BranchingInputStream}.
+ * <p>
+ * Bytes are transferred in bulk whenever possible, since the JSON generators writing to the pipe flush their
+ * (recycled) internal buffers in blocks, and the HTTP layer reads the entity in blocks.
  */
 final class PipeBufferedStream {
 
+    /** The temporary storage factory is stateless, so it can be shared by all pipes. */
+    private static final Factory<Buffer> TEMPORARY_STORAGE = IO.newTemporaryStorage();
+
     private final OutputStream outputStream;
     private final BranchingInputStream inputStream;
     private final Buffer buffer;
@@ -40,9 +47,8 @@ final class PipeBufferedStream {
 
     PipeBufferedStream() {
         outputStream = new PipeOutputStream();
-        Factory<Buffer> bufferFactory = IO.newTemporaryStorage();
-        inputStream = newBranchingInputStream(new PipeInputStream(), bufferFactory);
-        this.buffer = bufferFactory.newInstance();
+        inputStream = newBranchingInputStream(new PipeInputStream(), TEMPORARY_STORAGE);
+        this.buffer = TEMPORARY_STORAGE.newInstance();
     }
 
     /**
@@ -64,22 +70,47 @@ final class PipeBufferedStream {
     }
 
     private class PipeOutputStream extends OutputStream {
+        private final byte[] single = new byte[1];
+
         @Override
         public void write(int i) throws IOException {
-            buffer.append(new byte[]{(byte) i}, 0, 1);
+            single[0] = (byte) i;
+            buffer.append(single, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (len > 0) {
+                buffer.append(b, off, len);
+            }
         }
     }
 
     private class PipeInputStream extends InputStream {
+        private final byte[] single = new byte[1];
+
         @Override
         public int read() throws IOException {
-            if (position >= buffer.length()) {
+            return read(single, 0, 1) == -1 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            final int available = available();
+            if (available <= 0) {
                 return -1;
-            } else {
-                byte[] b = new byte[1];
-                buffer.read(position++, b, 0, 1);
-                return b[0];
             }
+            final int n = buffer.read(position, b, off, Math.min(len, available));
+            position += n;
+            return n;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return buffer.length() - position;
         }
     }
 }
@@ -12,6 +12,7 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2012-2015 ForgeRock AS.
+ * Portions Copyright 2026 Wren Security.
  */
 
 package org.forgerock.json.resource.http;
@@ -19,21 +20,23 @@ package org.forgerock.json.resource.http;
 import static org.forgerock.json.resource.QueryResponse.*;
 import static org.forgerock.json.resource.Requests.newUpdateRequest;
 import static org.forgerock.json.resource.ResourceException.newResourceException;
-import static org.forgerock.json.resource.ResourceResponse.FIELD_CONTENT_ID;
-import static org.forgerock.json.resource.ResourceResponse.FIELD_CONTENT_REVISION;
 import static org.forgerock.json.resource.http.HttpUtils.*;
 import static org.forgerock.util.Utils.closeSilently;
 import static org.forgerock.util.promise.Promises.newResultPromise;
 
 import javax.mail.internet.ContentType;
 import javax.mail.internet.ParseException;
+import java.io.EOFException;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
 import org.forgerock.http.header.ContentApiVersionHeader;
 import org.forgerock.http.header.ContentTypeHeader;
 import org.forgerock.http.protocol.Response;
@@ -44,13 +47,14 @@ import org.forgerock.json.JsonValue;
 import org.forgerock.json.resource.ActionRequest;
 import org.forgerock.json.resource.ActionResponse;
 import org.forgerock.json.resource.AdviceContext;
+import org.forgerock.json.resource.Attachment;
+import org.forgerock.json.resource.BatchQueryResourceHandler;
 import org.forgerock.json.resource.Connection;
 import org.forgerock.json.resource.CreateRequest;
 import org.forgerock.json.resource.DeleteRequest;
 import org.forgerock.json.resource.PatchRequest;
 import org.forgerock.json.resource.PreconditionFailedException;
 import org.forgerock.json.resource.QueryRequest;
-import org.forgerock.json.resource.QueryResourceHandler;
 import org.forgerock.json.resource.QueryResponse;
 import org.forgerock.json.resource.ReadRequest;
 import org.forgerock.json.resource.Request;
@@ -72,6 +76,18 @@ import org.forgerock.util.promise.ResultHandler;
  */
 final class RequestRunner implements RequestVisitor<Promise<Response, NeverThrowsException>, Void> {
 
+    private static final SerializedString FIELD_NAME_RESULT = JsonValueWriter.fieldName(FIELD_RESULT);
+    private static final SerializedString FIELD_NAME_RESULT_COUNT = JsonValueWriter.fieldName(FIELD_RESULT_COUNT);
+    private static final SerializedString FIELD_NAME_PAGED_RESULTS_COOKIE =
+            JsonValueWriter.fieldName(FIELD_PAGED_RESULTS_COOKIE);
+    private static final SerializedString FIELD_NAME_TOTAL_PAGED_RESULTS_POLICY =
+            JsonValueWriter.fieldName(FIELD_TOTAL_PAGED_RESULTS_POLICY);
+    private static final SerializedString FIELD_NAME_TOTAL_PAGED_RESULTS =
+            JsonValueWriter.fieldName(FIELD_TOTAL_PAGED_RESULTS);
+    private static final SerializedString FIELD_NAME_REMAINING_PAGED_RESULTS =
+            JsonValueWriter.fieldName(FIELD_REMAINING_PAGED_RESULTS);
+    private static final SerializedString FIELD_NAME_ERROR = JsonValueWriter.fieldName(FIELD_ERROR);
+
     // Connection set on handleResult(Connection).
     private Connection connection = null;
     private final Context context;
@@ -132,7 +148,7 @@ final class RequestRunner implements RequestVisitor<Promise<Response, NeverThrow
                             writeApiVersionHeaders(result);
                             writeAdvice();
                             if (result != null) {
-                                writer.writeObject(result.getJsonContent().getObject());
+                                JsonValueWriter.writeValue(writer, result.getJsonContent().getObject());
                             } else {
                                 // No content.
                                 httpResponse.setStatus(Status.NO_CONTENT);
@@ -235,7 +251,7 @@ final class RequestRunner implements RequestVisitor<Promise<Response, NeverThrow
     public final Promise<Response, NeverThrowsException> visitQueryRequest(final Void p, final QueryRequest request) {
         final AtomicBoolean isFirstResult = new AtomicBoolean(true);
         final AtomicInteger resultCount = new AtomicInteger(0);
-        return connection.queryAsync(context, request, new QueryResourceHandler() {
+        return connection.queryAsync(context, request, new BatchQueryResourceHandler() {
             @Override
             public boolean handleResource(final ResourceResponse resource) {
                 try {
@@ -248,19 +264,41 @@ final class RequestRunner implements RequestVisitor<Promise<Response, NeverThrow
                     return false;
                 }
             }
+
+            @Override
+            public boolean handleResources(final List<ResourceResponse> resources) {
+                if (resources.isEmpty()) {
+                    return true;
+                }
+                try {
+                    writeHeader(resources.get(0), isFirstResult);
+                    for (final ResourceResponse resource : resources) {
+                        writeResourceJsonContent(resource);
+                    }
+                    resultCount.addAndGet(resources.size());
+                    return true;
+                } catch (final Exception e) {
+                    handleError(adapt(e));
+                    return false;
+                }
+            }
         }).thenOnResult(new ResultHandler<QueryResponse>() {
             @Override
             public void handleResult(QueryResponse result) {
                 try {
                     writeHeader(result, isFirstResult);
                     writer.writeEndArray();
-                    writer.writeNumberField(FIELD_RESULT_COUNT, resultCount.get());
-                    writer.writeStringField(FIELD_PAGED_RESULTS_COOKIE, result.getPagedResultsCookie());
-                    writer.writeStringField(FIELD_TOTAL_PAGED_RESULTS_POLICY,
-                            result.getTotalPagedResultsPolicy().toString());
-                    writer.writeNumberField(FIELD_TOTAL_PAGED_RESULTS, result.getTotalPagedResults());
+                    writer.writeFieldName(FIELD_NAME_RESULT_COUNT);
+                    writer.writeNumber(resultCount.get());
+                    writer.writeFieldName(FIELD_NAME_PAGED_RESULTS_COOKIE);
+                    writer.writeString(result.getPagedResultsCookie());
+                    writer.writeFieldName(FIELD_NAME_TOTAL_PAGED_RESULTS_POLICY);
+                    writer.writeString(result.getTotalPagedResultsPolicy().toString());
+                    writer.writeFieldName(FIELD_NAME_TOTAL_PAGED_RESULTS);
+                    writer.writeNumber(result.getTotalPagedResults());
                     // Remaining is only present for backwards compatibility with CREST2 via Accept-API-Version
-                    writer.writeNumberField(FIELD_REMAINING_PAGED_RESULTS, result.getRemainingPagedResults());
+                    writer.writeFieldName(FIELD_NAME_REMAINING_PAGED_RESULTS);
+                    writer.writeNumber(result.getRemainingPagedResults());
                     writer.writeEndObject();
                     onSuccess();
                 } catch (final Exception e) {
@@ -276,8 +314,9 @@ final class RequestRunner implements RequestVisitor<Promise<Response, NeverThrow
                     // Partial results - it's too late to set the status.
                     try {
                         writer.writeEndArray();
-                        writer.writeNumberField(FIELD_RESULT_COUNT, resultCount.get());
-                        writer.writeObjectField(FIELD_ERROR, error.toJsonValue().getObject());
+                        writer.writeFieldName(FIELD_NAME_RESULT_COUNT);
+                        writer.writeNumber(resultCount.get());
+                        JsonValueWriter.writeField(writer, FIELD_NAME_ERROR, error.toJsonValue().getObject());
                         writer.writeEndObject();
                         onSuccess();
                     } catch (final Exception e) {
@@ -304,7 +343,8 @@ final class RequestRunner implements RequestVisitor<Promise<Response, NeverThrow
             writeApiVersionHeaders(response);
             writeAdvice();
             writer.writeStartObject();
-            writer.writeArrayFieldStart(FIELD_RESULT);
+            writer.writeFieldName(FIELD_NAME_RESULT);
+            writer.writeStartArray();
         }
     }
 
@@ -416,8 +456,15 @@ final class RequestRunner implements RequestVisitor<Promise<Response, NeverThrow
     }
 
     private void writeBinaryValue(final JsonValue json) throws IOException {
-        if (json.isMap() && !json.asMap().isEmpty()) {
-            writeToResponse(Base64url.decode(json.asMap().entrySet().iterator().next().getValue().toString()));
+        if (json.getObject() instanceof Attachment) {
+            writeAttachment((Attachment) json.getObject());
+        } else if (json.isMap() && !json.asMap().isEmpty()) {
+            final Object value = json.asMap().values().iterator().next();
+            if (value instanceof Attachment) {
+                writeAttachment((Attachment) value);
+            } else {
+                writeToResponse(Base64url.decode(value.toString()));
+            }
         } else if (json.isList() && !json.asList().isEmpty()) {
             writeToResponse(Base64url.decode(json.asList(String.class).iterator().next()));
         } else if (json.isString()) {
@@ -427,6 +474,142 @@ final class RequestRunner implements RequestVisitor<Promise<Response, NeverThrow
         }
     }
 
+    /*
+     * Streams an attachment returned by the resource provider to the client without buffering it in memory. A
+     * single byte range may be requested when the size of the attachment is known, in which case only the
+     * requested range is read from the attachment. Malformed and multiple ranges are ignored, as allowed by
+     * RFC 7233, and the whole attachment is returned instead.
+     */
+    private void writeAttachment(final Attachment attachment) throws IOException {
+        final long size = attachment.getSize();
+        long start = 0;
+        long length = size;
+        if (size >= 0) {
+            httpResponse.getHeaders().put(HEADER_ACCEPT_RANGES, "bytes");
+            final long[] range = parseByteRange(httpRequest.getHeaders().getFirst(HEADER_RANGE), size);
+            if (range != null && range.length == 0) {
+                httpResponse.setStatus(Status.valueOf(416));
+                httpResponse.getHeaders().put(HEADER_CONTENT_RANGE, "bytes */" + size);
+                return;
+            } else if (range != null) {
+                start = range[0];
+                length = range[1] - range[0] + 1;
+                httpResponse.setStatus(Status.valueOf(206));
+                httpResponse.getHeaders().put(HEADER_CONTENT_RANGE,
+                        "bytes " + range[0] + "-" + range[1] + "/" + size);
+            }
+            httpResponse.getHeaders().put(HEADER_CONTENT_LENGTH, String.valueOf(length));
+        }
+        final InputStream data = attachment.newInputStream();
+        try {
+            skipFully(data, start);
+        } catch (final IOException e) {
+            closeSilently(data);
+            throw e;
+        }
+        httpResponse.setEntity(length >= 0 ? new RangeInputStream(data, length) : data);
+    }
+
+    /*
+     * Returns the first and last byte positions of the single byte range requested by the provided Range header,
+     * null if the header is absent, malformed or requests several ranges, or an empty array if the range cannot be
+     * satisfied.
+     */
+    static long[] parseByteRange(final String header, final long size) {
+        if (header == null || !header.regionMatches(true, 0, "bytes=", 0, 6) || header.indexOf(',') >= 0) {
+            return null;
+        }
+        final String spec = header.substring(6).trim();
+        final int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+        try {
+            if (dash == 0) {
+                // Suffix range: the last N bytes.
+                final long suffix = Long.parseLong(spec.substring(1));
+                if (suffix < 0) {
+                    return null;
+                }
+                return suffix == 0 || size == 0 ? new long[0] : new long[] { Math.max(0, size - suffix), size - 1 };
+            }
+            final long first = Long.parseLong(spec.substring(0, dash));
+            final String end = spec.substring(dash + 1);
+            final long last = end.isEmpty() ? Long.MAX_VALUE : Long.parseLong(end);
+            if (last < first) {
+                return null;
+            }
+            return first >= size ? new long[0] : new long[] { first, Math.min(last, size - 1) };
+        } catch (final NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static void skipFully(final InputStream in, long n) throws IOException {
+        while (n > 0) {
+            final long skipped = in.skip(n);
+            if (skipped <= 0) {
+                if (in.read() == -1) {
+                    throw new EOFException("Attachment is shorter than its declared size");
+                }
+                n--;
+            } else {
+                n -= skipped;
+            }
+        }
+    }
+
+    /** Limits the number of bytes which can be read from the underlying stream. */
+    private static final class RangeInputStream extends FilterInputStream {
+        private long remaining;
+
+        RangeInputStream(final InputStream in, final long length) {
+            super(in);
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            final int b = super.read();
+            if (b != -1) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            final int n = super.read(b, off, (int) Math.min(len, remaining));
+            if (n > 0) {
+                remaining -= n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(final long n) throws IOException {
+            final long skipped = super.skip(Math.min(n, remaining));
+            remaining -= skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(super.available(), remaining);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+
     private void writeToResponse(byte[] data) throws IOException {
         if (data == null || data.length == 0) {
             throw new IOException("Content is empty or corrupt");
@@ -445,7 +628,10 @@ final class RequestRunner implements RequestVisitor<Promise<Response, NeverThrow
 
         ContentType contentType = new ContentType(httpResponse.getHeaders().getFirst(ContentTypeHeader.class));
 
-        if (contentType.match(MIME_TYPE_APPLICATION_JSON)) {
+        // A binary JSON content type may also have been requested as the MIME type of a field.
+        if (contentType.match(MIME_TYPE_APPLICATION_JSON)
+                || (isBinaryJsonContentType(contentType.getBaseType())
+                        && contentType.match(negotiateMediaType(httpRequest)))) {
             writeResourceJsonContent(resource);
         } else if (contentType.match(MIME_TYPE_TEXT_PLAIN)) {
             writeTextValue(resource.getContent());
@@ -463,40 +649,9 @@ final class RequestRunner implements RequestVisitor<Promise<Response, NeverThrow
      */
     private void writeResourceJsonContent(final ResourceResponse resource) throws IOException {
         if (getRequestedProtocolVersion(httpRequest).getMajor() >= PROTOCOL_VERSION_2.getMajor()) {
-            writer.writeStartObject();
-            final JsonValue content = resource.getContent();
-
-            if (resource.getId() != null) {
-                writer.writeObjectField(FIELD_CONTENT_ID, resource.getId());
-            } else {
-                // Defensively extract an object instead of a string in case application code has stored a UUID
-                // object, or some other non-JSON primitive. Also assume that a null ID means no ID.
-                final Object id = content.get(FIELD_CONTENT_ID).getObject();
-                if (id != null) {
-                    writer.writeObjectField(FIELD_CONTENT_ID, id.toString());
-                }
-            }
-
-            if (resource.getRevision() != null) {
-                writer.writeObjectField(FIELD_CONTENT_REVISION, resource.getRevision());
-            } else {
-                // Defensively extract an object instead of a string in case application code has stored a Number
-                // object, or some other non-JSON primitive. Also assume that a null revision means no revision.
-                final Object rev = content.get(FIELD_CONTENT_REVISION).getObject();
-                if (rev != null) {
-                    writer.writeObjectField(FIELD_CONTENT_REVISION, rev.toString());
-                }
-            }
-
-            for (Map.Entry<String, Object> property : content.asMap().entrySet()) {
-                final String key = property.getKey();
-                if (!FIELD_CONTENT_ID.equals(key) && !FIELD_CONTENT_REVISION.equals(key)) {
-                    writer.writeObjectField(key, property.getValue());
-                }
-            }
-            writer.writeEndObject();
+            JsonValueWriter.writeResource(writer, resource);
         } else {
-            writer.writeObject(resource.getContent().getObject());
+            JsonValueWriter.writeValue(writer, resource.getContent().getObject());
         }
     }
 
@@ -0,0 +1,211 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+
+package org.forgerock.json.resource.http;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.forgerock.json.resource.http.HttpUtils.HEADER_CONTENT_ENCODING;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.forgerock.http.header.ContentTypeHeader;
+import org.forgerock.http.protocol.Request;
+import org.forgerock.http.protocol.Response;
+import org.forgerock.json.JsonValue;
+import org.forgerock.json.resource.ResourceException;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public class ContentEncodingsTest {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @DataProvider
+    public Object[][] acceptEncodings() {
+        // @formatter:off
+        return new Object[][] {
+            { null, null },
+            { "gzip", "gzip" },
+            { "deflate", "deflate" },
+            { "deflate, gzip", "gzip" },
+            { "gzip;q=0, deflate", "deflate" },
+            { "gzip;q=0.5, deflate;q=0.8", "deflate" },
+            { "*", "gzip" },
+            { "*, gzip;q=0", "deflate" },
+            { "identity", null },
+            { "br", null },
+        };
+        // @formatter:on
+    }
+
+    @Test(dataProvider = "acceptEncodings")
+    public void testNegotiate(final String acceptEncoding, final String expected) {
+        final Request request = new Request();
+        if (acceptEncoding != null) {
+            request.getHeaders().put("Accept-Encoding", acceptEncoding);
+        }
+        assertThat(ContentEncodings.negotiate(request)).isEqualTo(expected);
+    }
+
+    @Test
+    public void testLargeResponseIsCompressed() throws Exception {
+        final Request request = new Request();
+        request.getHeaders().put("Accept-Encoding", "gzip, deflate");
+        final Response response = new Response();
+        final StringBuilder value = new StringBuilder();
+        for (int i = 0; i < 1_000; i++) {
+            value.append("resource-").append(i).append(' ');
+        }
+
+        writeJson(request, response, value.toString());
+
+        assertThat(response.getHeaders().getFirst(HEADER_CONTENT_ENCODING)).isEqualTo("gzip");
+        assertThat(response.getHeaders().getFirst("Vary")).isEqualTo("Accept-Encoding");
+        try (InputStream in = new GZIPInputStream(response.getEntity().getRawContentInputStream())) {
+            assertThat(MAPPER.readValue(in, Object.class)).isEqualTo(value.toString());
+        }
+    }
+
+    @Test
+    public void testSmallResponseIsNotCompressed() throws Exception {
+        final Request request = new Request();
+        request.getHeaders().put("Accept-Encoding", "gzip");
+        final Response response = new Response();
+
+        writeJson(request, response, "small");
+
+        assertThat(response.getHeaders().getFirst(HEADER_CONTENT_ENCODING)).isNull();
+        assertThat(response.getEntity().getString()).isEqualTo("\"small\"");
+    }
+
+    @Test
+    public void testResponseIsNotCompressedWithoutAcceptEncoding() throws Exception {
+        final Response response = new Response();
+        final char[] value = new char[4_096];
+        Arrays.fill(value, 'a');
+
+        writeJson(new Request(), response, new String(value));
+
+        assertThat(response.getHeaders().getFirst(HEADER_CONTENT_ENCODING)).isNull();
+        assertThat(response.getHeaders().getFirst("Vary")).isNull();
+    }
+
+    @DataProvider
+    public Object[][] contentEncodings() {
+        return new Object[][] { { "gzip" }, { "deflate" }, { "identity" }, { null } };
+    }
+
+    @Test(dataProvider = "contentEncodings")
+    public void testRequestIsDecompressed(final String contentEncoding) throws Exception {
+        final byte[] json = "{\"uid\":\"alice\"}".getBytes(StandardCharsets.UTF_8);
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream out = "gzip".equals(contentEncoding) ? new GZIPOutputStream(bytes)
+                : "deflate".equals(contentEncoding) ? new DeflaterOutputStream(bytes) : bytes) {
+            out.write(json);
+        }
+        final Request request = new Request();
+        request.getHeaders().put(ContentTypeHeader.NAME, "application/json");
+        if (contentEncoding != null) {
+            request.getHeaders().put(HEADER_CONTENT_ENCODING, contentEncoding);
+        }
+        request.setEntity(bytes.toByteArray());
+
+        final JsonValue content = HttpUtils.getJsonContent(request, new HttpUtils.SpilledContent());
+
+        assertThat(content.get("uid").asString()).isEqualTo("alice");
+    }
+
+    @Test
+    public void testUnsupportedRequestEncodingIsRejected() throws Exception {
+        final Request request = new Request();
+        request.getHeaders().put(HEADER_CONTENT_ENCODING, "br");
+        request.setEntity(new byte[0]);
+        try {
+            ContentEncodings.newDecodedInputStream(request);
+            throw new AssertionError("Expected the request to be rejected");
+        } catch (ResourceException e) {
+            assertThat(e.getCode()).isEqualTo(415);
+        }
+    }
+
+    @Test
+    public void testDecompressedRequestIsLimited() throws Exception {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(new byte[1_024 * 1_024]);
+        }
+        final Request request = new Request();
+        request.getHeaders().put(HEADER_CONTENT_ENCODING, "gzip");
+        request.setEntity(bytes.toByteArray());
+        try (InputStream in = ContentEncodings.newDecodedInputStream(request, 64 * 1_024)) {
+            final byte[] buffer = new byte[4_096];
+            while (in.read(buffer) >= 0) {
+                // Drain the entity.
+            }
+            throw new AssertionError("Expected the request to be rejected");
+        } catch (ContentEncodings.EntityTooLargeException e) {
+            assertThat(HttpUtils.adapt(e).getCode()).isEqualTo(413);
+        }
+    }
+
+    @Test
+    public void testUncompressedRequestIsLimitedWhenBounded() throws Exception {
+        final Request request = new Request();
+        request.setEntity(new byte[1_024 * 1_024]);
+        try (InputStream in = ContentEncodings.newBoundedInputStream(request, 64 * 1_024)) {
+            final byte[] buffer = new byte[4_096];
+            while (in.read(buffer) >= 0) {
+                // Drain the entity.
+            }
+            throw new AssertionError("Expected the request to be rejected");
+        } catch (ContentEncodings.EntityTooLargeException e) {
+            assertThat(HttpUtils.adapt(e).getCode()).isEqualTo(413);
+        }
+    }
+
+    @Test
+    public void testDeflateResponseRoundTrip() throws Exception {
+        final Request request = new Request();
+        request.getHeaders().put("Accept-Encoding", "deflate");
+        final Response response = new Response();
+        final char[] value = new char[4_096];
+        Arrays.fill(value, 'b');
+
+        writeJson(request, response, new String(value));
+
+        assertThat(response.getHeaders().getFirst(HEADER_CONTENT_ENCODING)).isEqualTo("deflate");
+        try (InputStream in = new InflaterInputStream(response.getEntity().getRawContentInputStream())) {
+            assertThat(MAPPER.readValue(in, Object.class)).isEqualTo(new String(value));
+        }
+    }
+
+    private static void writeJson(final Request request, final Response response, final String value)
+            throws Exception {
+        try (JsonGenerator writer = HttpUtils.getJsonGenerator(request, response)) {
+            writer.writeString(value);
+        }
+    }
+}
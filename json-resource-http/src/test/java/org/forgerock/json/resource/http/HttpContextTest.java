@@ -0,0 +1,84 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+
+package org.forgerock.json.resource.http;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.Map;
+
+import org.forgerock.http.protocol.Request;
+import org.forgerock.json.resource.ContextSerializer;
+import org.forgerock.services.context.RootContext;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public class HttpContextTest {
+
+    @Test
+    public void testHeadersAreCaseInsensitiveViews() throws Exception {
+        Request request = new Request().setMethod("GET").setUri("http://localhost:8080/users?_prettyPrint=true");
+        request.getHeaders().put("X-Custom", "value");
+        HttpContext context = new HttpContext(new RootContext(), request);
+
+        assertThat(context.getHeaderAsString("x-custom")).isEqualTo("value");
+        assertThat(context.getHeaders().get("X-CUSTOM")).containsExactly("value");
+        assertThat(context.getHeader("missing")).isEmpty();
+
+        // Headers added later are visible because the context does not copy them.
+        request.getHeaders().put("X-Other", "other");
+        assertThat(context.getHeaders()).containsKey("x-other");
+        assertThat(context.getParameterAsString("_prettyPrint")).isEqualTo("true");
+        assertThat(context.getPath()).isEqualTo("http://localhost:8080/users");
+    }
+
+    @Test
+    public void testSavedContextHeadersAreCaseInsensitive() throws Exception {
+        Request request = new Request().setMethod("GET").setUri("http://localhost/users");
+        request.getHeaders().put("X-Custom", "value");
+        HttpContext saved = new HttpContext(new RootContext(), request);
+
+        HttpContext restored = new HttpContext(saved.toJsonValue(), getClass().getClassLoader());
+
+        assertThat(restored.getHeaderAsString("x-custom")).isEqualTo("value");
+        Map<String, List<String>> parameters = restored.getParameters();
+        assertThat(parameters).isEmpty();
+        assertThat(restored.getMethod()).isEqualTo("GET");
+    }
+
+    @Test(expectedExceptions = UnsupportedOperationException.class)
+    public void testHeadersAreReadOnly() throws Exception {
+        Request request = new Request().setMethod("GET").setUri("http://localhost/users");
+        request.getHeaders().put("X-Custom", "value");
+        new HttpContext(new RootContext(), request).getHeaders().clear();
+    }
+
+    @Test
+    public void testBinaryRoundTrip() throws Exception {
+        Request request = new Request().setMethod("POST").setUri("http://localhost/users?_action=create");
+        request.getHeaders().put("X-Custom", "value");
+        HttpContext context = new HttpContext(new RootContext(), request);
+        ContextSerializer serializer = new ContextSerializer(new HttpContextCodec());
+
+        HttpContext restored = serializer.deserialize(serializer.serialize(context)).asContext(HttpContext.class);
+
+        assertThat(restored.getMethod()).isEqualTo("POST");
+        assertThat(restored.getPath()).isEqualTo("http://localhost/users");
+        assertThat(restored.getHeaderAsString("x-custom")).isEqualTo("value");
+        assertThat(restored.getParameterAsString("_action")).isEqualTo("create");
+    }
+}
@@ -12,6 +12,7 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2014-2015 ForgeRock AS.
+ * Portions Copyright 2026 Wren Security.
  */
 
 package org.forgerock.json.resource.http;
@@ -19,14 +20,17 @@ package org.forgerock.json.resource.http;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.data.MapEntry.entry;
 import static org.forgerock.json.resource.http.HttpUtils.*;
+import static org.testng.Assert.fail;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.PrintStream;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.List;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import org.forgerock.http.header.AcceptApiVersionHeader;
 import org.forgerock.http.header.ContentTypeHeader;
 import org.forgerock.http.header.GenericHeader;
@@ -34,12 +38,15 @@ import org.forgerock.http.protocol.Request;
 import org.forgerock.http.protocol.Response;
 import org.forgerock.json.JsonValue;
 import org.forgerock.json.resource.ActionRequest;
+import org.forgerock.json.resource.Attachment;
 import org.forgerock.json.resource.BadRequestException;
 import org.forgerock.json.resource.PatchOperation;
 import org.forgerock.json.resource.RequestType;
 import org.forgerock.json.resource.ResourceException;
 import org.forgerock.util.encode.Base64url;
+import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
@@ -62,11 +69,23 @@ public class HttpUtilsTest {
 
     private org.forgerock.http.protocol.Request request;
 
+    private SpilledContent spilled;
+
     private byte[] requestInputStreamData;
 
     private String jsonBody;
     private String jsonPatchBody;
 
+    @BeforeMethod
+    public void setUp() {
+        spilled = new SpilledContent();
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        spilled.close();
+    }
+
     @BeforeClass
     public void onTimeSetup() {
         StringBuilder jsonBody = new StringBuilder();
@@ -98,6 +117,10 @@ public class HttpUtilsTest {
     }
 
     private void createMultiPartRequest(String jsonBody) {
+        createMultiPartRequest(jsonBody, JPEG_CONTENT);
+    }
+
+    private void createMultiPartRequest(String jsonBody, String partContent) {
         ByteArrayOutputStream requestInputStreamData = new ByteArrayOutputStream();
 
         PrintStream reguestInputStreamData = new PrintStream(requestInputStreamData);
@@ -114,7 +137,7 @@ public class HttpUtilsTest {
                 + "\"; filename=\"" + JPEG_PART_FILENAME + "\"");
         reguestInputStreamData.println("Content-Type: " + JPEG_CONTENT_TYPE);
         reguestInputStreamData.println();
-        reguestInputStreamData.println(JPEG_CONTENT);
+        reguestInputStreamData.println(partContent);
         reguestInputStreamData.println("--kwkIqb-fsdbtcNpB4dJ_Xqf1-3b0Hp_VF9D0vsgL");
 
         reguestInputStreamData.close();
@@ -182,7 +205,7 @@ public class HttpUtilsTest {
         setUpRequestMock(request, REQUEST_CONTENT_TYPE);
 
         //when
-        JsonValue result = HttpUtils.getJsonActionContent(request);
+        JsonValue result = HttpUtils.getJsonActionContent(request, spilled);
 
         //then
         testMultiPartResult(result);
@@ -197,7 +220,7 @@ public class HttpUtilsTest {
         setUpRequestMock(request, REQUEST_CONTENT_TYPE);
 
         ///when
-        List<PatchOperation> result = HttpUtils.getJsonPatchContent(request);
+        List<PatchOperation> result = HttpUtils.getJsonPatchContent(request, spilled);
 
         //then
         for (PatchOperation operation : result) {
@@ -224,12 +247,79 @@ public class HttpUtilsTest {
         setUpRequestMock(request, REQUEST_CONTENT_TYPE);
 
         //when
-        JsonValue result = HttpUtils.getJsonContent(request);
+        JsonValue result = HttpUtils.getJsonContent(request, spilled);
 
         //then
         testMultiPartResult(result);
     }
 
+    @DataProvider
+    public Object[][] attachmentContents() {
+        StringBuilder largeContent = new StringBuilder();
+        while (largeContent.length() < 256 * 1024) {
+            largeContent.append(JPEG_CONTENT);
+        }
+        return new Object[][] {
+            { JPEG_CONTENT },
+            { largeContent.toString() }
+        };
+    }
+
+    @Test(dataProvider = "attachmentContents")
+    public void testShouldResolveAttachmentReferencesWhenGetJsonContentIsCalled(String partContent)
+            throws ResourceException, IOException {
+        //given
+        request = newRequest();
+        createMultiPartRequest("{ \"" + UID + "\" : \"" + ALICE + "\", \"" + PROFILE_CONTENT_KEY
+                + "\" : { \"$ref\" : \"cid:" + JPEG_PART_NAME + "\" } }", partContent);
+        setUpRequestMock(request, REQUEST_CONTENT_TYPE);
+
+        //when
+        JsonValue result = HttpUtils.getJsonContent(request, spilled);
+
+        //then
+        assertThat(result.get(UID).asString()).isEqualTo(ALICE);
+        assertThat(result.get(PROFILE_CONTENT_KEY).getObject()).isInstanceOf(Attachment.class);
+        Attachment attachment = (Attachment) result.get(PROFILE_CONTENT_KEY).getObject();
+        assertThat(attachment.getName()).isEqualTo(JPEG_PART_NAME);
+        assertThat(attachment.getFileName()).isEqualTo(JPEG_PART_FILENAME);
+        assertThat(attachment.getContentType()).isEqualTo(JPEG_CONTENT_TYPE);
+        for (int i = 0; i < 2; i++) {
+            try (InputStream in = attachment.newInputStream()) {
+                ByteArrayOutputStream data = new ByteArrayOutputStream();
+                byte[] buffer = new byte[4096];
+                int size;
+                while ((size = in.read(buffer)) != -1) {
+                    data.write(buffer, 0, size);
+                }
+                assertThat(data.toString("UTF-8")).isEqualTo(partContent);
+            }
+        }
+    }
+
+    @Test
+    public void testShouldCloseSpilledAttachmentsWhenRequestCompletes() throws Exception {
+        //given
+        String partContent = (String) attachmentContents()[1][0];
+        request = newRequest();
+        createMultiPartRequest("{ \"" + PROFILE_CONTENT_KEY + "\" : { \"$ref\" : \"cid:" + JPEG_PART_NAME
+                + "\" } }", partContent);
+        setUpRequestMock(request, REQUEST_CONTENT_TYPE);
+        Attachment attachment =
+                (Attachment) HttpUtils.getJsonContent(request, spilled).get(PROFILE_CONTENT_KEY).getObject();
+
+        //when
+        spilled.close();
+
+        //then
+        try (InputStream in = attachment.newInputStream()) {
+            in.read();
+            fail("The spilled attachment could still be read");
+        } catch (IOException e) {
+            // Expected.
+        }
+    }
+
     @Test
     public void testShouldProcessARequestThatIsNotMultiPartWhenGetJsonActionContentIsCalled()
             throws ResourceException, IOException {
@@ -239,7 +329,7 @@ public class HttpUtilsTest {
         setUpRequestMock(request, HttpUtils.MIME_TYPE_APPLICATION_JSON);
 
         //when
-        JsonValue result = HttpUtils.getJsonActionContent(request);
+        JsonValue result = HttpUtils.getJsonActionContent(request, spilled);
 
         //then
         testNonMultiPartResult(result);
@@ -254,7 +344,7 @@ public class HttpUtilsTest {
         setUpRequestMock(request, HttpUtils.MIME_TYPE_APPLICATION_JSON);
 
         //when
-        List<PatchOperation> result = HttpUtils.getJsonPatchContent(request);
+        List<PatchOperation> result = HttpUtils.getJsonPatchContent(request, spilled);
 
         //then
         for (PatchOperation operation : result) {
@@ -283,7 +373,7 @@ public class HttpUtilsTest {
         setUpRequestMock(request, HttpUtils.MIME_TYPE_APPLICATION_JSON);
 
         //when
-        JsonValue result = HttpUtils.getJsonContent(request);
+        JsonValue result = HttpUtils.getJsonContent(request, spilled);
 
         //then
         testNonMultiPartResult(result);
@@ -387,7 +477,7 @@ public class HttpUtilsTest {
 
         // when
         try {
-            HttpUtils.getJsonContent(request);
+            HttpUtils.getJsonContent(request, spilled);
         } catch (BadRequestException e) {
             assertThat(e.getClass()).isEqualTo(BadRequestException.class);
             throw e;
@@ -453,6 +543,54 @@ public class HttpUtilsTest {
         assertThat(determineRequestType(request)).isEqualTo(requestType);
     }
 
+    @DataProvider
+    public Object[][] acceptToMediaType() {
+        // @formatter:off
+        return new Object[][] {
+            { null, MIME_TYPE_APPLICATION_JSON },
+            { "*/*", MIME_TYPE_APPLICATION_JSON },
+            { "application/json", MIME_TYPE_APPLICATION_JSON },
+            { "application/cbor", MIME_TYPE_APPLICATION_CBOR },
+            { "application/cbor, application/json;q=0.9", MIME_TYPE_APPLICATION_CBOR },
+            { "application/json, application/cbor", MIME_TYPE_APPLICATION_JSON },
+            { "application/x-jackson-smile, */*;q=0.1", MIME_TYPE_APPLICATION_SMILE },
+            { "application/cbor;q=0, application/json", MIME_TYPE_APPLICATION_JSON },
+            { "text/html", MIME_TYPE_APPLICATION_JSON },
+        };
+        // @formatter:on
+    }
+
+    @Test(dataProvider = "acceptToMediaType")
+    public void testNegotiateMediaType(String accept, String expectedMediaType) {
+        Request request = newRequest();
+        if (accept != null) {
+            request.getHeaders().put(HEADER_ACCEPT, accept);
+        }
+        assertThat(negotiateMediaType(request)).isEqualTo(expectedMediaType);
+    }
+
+    @DataProvider
+    public Object[][] binaryJsonMediaTypes() {
+        return new Object[][] { { MIME_TYPE_APPLICATION_CBOR }, { MIME_TYPE_APPLICATION_SMILE } };
+    }
+
+    @Test(dataProvider = "binaryJsonMediaTypes")
+    public void testBinaryJsonRoundTrip(String mediaType) throws Exception {
+        Request request = newRequest().setMethod(HttpUtils.METHOD_GET);
+        request.getHeaders().put(HEADER_ACCEPT, mediaType);
+        Response response = prepareResponse(request);
+        assertThat(response.getHeaders().getFirst(ContentTypeHeader.class)).isEqualTo(mediaType);
+
+        try (JsonGenerator writer = getJsonGenerator(request, response)) {
+            JsonValueWriter.writeValue(writer, JsonValue.object(JsonValue.field(UID, ALICE)));
+        }
+
+        Request echo = newRequest().setMethod(HttpUtils.METHOD_POST);
+        echo.getHeaders().put(ContentTypeHeader.NAME, mediaType);
+        echo.setEntity(response.getEntity().getBytes());
+        assertThat(getJsonContent(echo, spilled).get(UID).asString()).isEqualTo(ALICE);
+    }
+
     private Request getRequestNoParams() {
         Request request = newRequest()
                 .setMethod(HttpUtils.METHOD_GET);
@@ -0,0 +1,90 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+
+package org.forgerock.json.resource.http;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.forgerock.json.JsonValue.array;
+import static org.forgerock.json.JsonValue.field;
+import static org.forgerock.json.JsonValue.json;
+import static org.forgerock.json.JsonValue.object;
+import static org.forgerock.json.resource.Responses.newResourceResponse;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.forgerock.json.JsonValue;
+import org.forgerock.json.resource.ResourceResponse;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public class JsonValueWriterTest {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @DataProvider
+    public Object[][] values() {
+        // @formatter:off
+        return new Object[][] {
+            { null },
+            { "a \"quoted\" string" },
+            { 42 },
+            { 4200000000L },
+            { 1.5d },
+            { new BigDecimal("1.25") },
+            { true },
+            { array("a", 1, false, null) },
+            { object(field("a", object(field("b", array(1, 2)))), field("c", null)) },
+            { json(object(field("name", "alice"))) },
+        };
+        // @formatter:on
+    }
+
+    @Test(dataProvider = "values")
+    public void testWriteValueMatchesObjectMapper(final Object value) throws Exception {
+        final StringWriter out = new StringWriter();
+        try (JsonGenerator writer = MAPPER.getFactory().createGenerator(out)) {
+            JsonValueWriter.writeValue(writer, value);
+        }
+        assertThat(out.toString()).isEqualTo(MAPPER.writeValueAsString(
+                value instanceof JsonValue ? ((JsonValue) value).getObject() : value));
+    }
+
+    @Test
+    public void testWriteResourceWritesIdAndRevisionFirst() throws Exception {
+        final ResourceResponse resource = newResourceResponse("1", "2",
+                json(object(field("name", "alice"), field("_id", "ignored"), field("_rev", "ignored"))));
+        assertThat(writeResource(resource)).isEqualTo("{\"_id\":\"1\",\"_rev\":\"2\",\"name\":\"alice\"}");
+    }
+
+    @Test
+    public void testWriteResourceUsesContentIdAndRevision() throws Exception {
+        final ResourceResponse resource = newResourceResponse(null, null,
+                json(object(field("name", "alice"), field("_rev", 3), field("_id", "1"))));
+        assertThat(writeResource(resource)).isEqualTo("{\"_id\":\"1\",\"_rev\":\"3\",\"name\":\"alice\"}");
+    }
+
+    private String writeResource(final ResourceResponse resource) throws IOException {
+        final StringWriter out = new StringWriter();
+        try (JsonGenerator writer = MAPPER.getFactory().createGenerator(out)) {
+            JsonValueWriter.writeResource(writer, resource);
+        }
+        return out.toString();
+    }
+}
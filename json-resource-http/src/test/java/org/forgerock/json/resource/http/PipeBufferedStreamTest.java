@@ -12,6 +12,7 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2014 ForgeRock AS.
+ * Portions Copyright 2026 Wren Security.
  */
 
 package org.forgerock.json.resource.http;
@@ -100,4 +101,27 @@ public class PipeBufferedStreamTest {
                 + "{\"intField\":42,\"stringField\":\"stringValue\"}" + "]," + "\"resultCount\":1,"
                 + "\"error\":{\"code\":404,\"reason\":\"Not Found\",\"message\":\"Not Found\"}}");
     }
+
+    @Test
+    public void shouldTransferBytesInBulkWithoutSignExtension() throws IOException {
+
+        //Given
+        byte[] bytes = "{\"name\":\"J\u00fcrgen \u00ff\"}".getBytes(Charset.forName("UTF-8"));
+
+        PipeBufferedStream pipe = new PipeBufferedStream();
+        OutputStream outputStream = pipe.getIn();
+        BranchingInputStream inputStream = pipe.getOut();
+
+        //When
+        outputStream.write(bytes, 0, bytes.length);
+        outputStream.write(0xff);
+        byte[] read = new byte[bytes.length];
+        int count = inputStream.read(read);
+
+        //Then
+        assertEquals(count, bytes.length);
+        assertEquals(new String(read, Charset.forName("UTF-8")), "{\"name\":\"J\u00fcrgen \u00ff\"}");
+        assertEquals(inputStream.read(), 0xff);
+        assertEquals(inputStream.read(), -1);
+    }
 }
@@ -12,6 +12,7 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2013-2015 ForgeRock AS.
+ * Portions Copyright 2026 Wren Security.
  */
 
 package org.forgerock.json.resource.http;
@@ -43,6 +44,7 @@ import org.forgerock.json.resource.ResourceResponse;
 import org.forgerock.util.promise.Promise;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
+import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
 @SuppressWarnings("javadoc")
@@ -101,6 +103,29 @@ public class RequestRunnerTest {
         assertEquals(getResponseContent(response), "{\"code\":404,\"reason\":\"Not Found\",\"message\":\"Not Found\"}");
     }
 
+    @DataProvider
+    public Object[][] byteRanges() {
+        return new Object[][] {
+            { null, null },
+            { "bytes=0-9", new long[] { 0, 9 } },
+            { "bytes=10-", new long[] { 10, 99 } },
+            { "bytes=90-200", new long[] { 90, 99 } },
+            { "bytes=-10", new long[] { 90, 99 } },
+            { "bytes=-200", new long[] { 0, 99 } },
+            { "bytes=100-", new long[0] },
+            { "bytes=-0", new long[0] },
+            { "bytes=9-0", null },
+            { "bytes=0-1,5-6", null },
+            { "items=0-9", null },
+            { "bytes=a-b", null },
+        };
+    }
+
+    @Test(dataProvider = "byteRanges")
+    public void testParseByteRange(String header, long[] expected) {
+        assertEquals(RequestRunner.parseByteRange(header, 100), expected);
+    }
+
     private String getResponseContent(Response response) throws IOException {
         ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
         response.getEntity().copyDecodedContentTo(outputStream);
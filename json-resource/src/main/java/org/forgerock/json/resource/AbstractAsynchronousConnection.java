@@ -12,11 +12,13 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2012-2015 ForgeRock AS.
+ * Portions Copyright 2026 Wren Security.
  */
 
 package org.forgerock.json.resource;
 
 import java.util.Collection;
+import java.util.List;
 
 import org.forgerock.services.context.Context;
 
@@ -65,12 +67,18 @@ public abstract class AbstractAsynchronousConnection implements Connection {
     @Override
     public QueryResponse query(final Context context, final QueryRequest request,
             final Collection<? super ResourceResponse> results) throws ResourceException {
-        return query(context, request, new QueryResourceHandler() {
+        return query(context, request, new BatchQueryResourceHandler() {
             @Override
             public boolean handleResource(final ResourceResponse resource) {
                 results.add(resource);
                 return true;
             }
+
+            @Override
+            public boolean handleResources(final List<ResourceResponse> resources) {
+                results.addAll(resources);
+                return true;
+            }
         });
     }
 
@@ -12,6 +12,7 @@
 * information: "Portions copyright [year] [name of copyright owner]".
 *
 * Copyright 2014-2015 ForgeRock AS.
+* Portions Copyright 2026 Wren Security.
 */
 
 package org.forgerock.json.resource;
@@ -89,6 +90,15 @@ public class AdviceContext extends AbstractContext {
         return advice;
     }
 
+    /**
+     * Returns the advice names which cannot be used by this context.
+     *
+     * @return The restricted advice names.
+     */
+    Collection<String> getRestrictedAdviceNames() {
+        return restrictedAdviceNames;
+    }
+
     /**
      * Adds advice to the context, which can be retrieved and later returned to the user.
      *
@@ -12,12 +12,13 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2015 ForgeRock AS.
+ * Portions Copyright 2026 Wren Security.
  */
 
 package org.forgerock.json.resource;
 
 import java.lang.reflect.Method;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 import org.forgerock.services.context.Context;
@@ -28,21 +29,78 @@ import org.forgerock.util.promise.Promise;
  * This class is used to find all methods annotated with {@link Action}, and provides
  * a method for invoking the appropriate action method or handling the failure case
  * for when an action isn't supported - i.e. no matching annotated method exists.
+ * <p>
+ * The action methods are bound when the request handler is created, into an immutable
+ * open addressing table which is sized so that the action names do not collide. Looking
+ * up an action therefore usually costs a single string comparison.
  */
-class AnnotatedActionMethods {
+final class AnnotatedActionMethods {
 
-    private Map<String, AnnotatedMethod> methods = new HashMap<>();
+    /** The table is enlarged up to this factor of its minimum size in order to avoid collisions. */
+    private static final int MAX_TABLE_GROWTH = 8;
+
+    private final String[] actions;
+    private final AnnotatedMethod[] methods;
+    private final int mask;
+
+    private AnnotatedActionMethods(Map<String, AnnotatedMethod> methods) {
+        final int minSize = Integer.highestOneBit(Math.max(1, methods.size()) * 2 - 1) << 1;
+        int size = minSize;
+        while (size < minSize * MAX_TABLE_GROWTH && hasCollisions(methods.keySet().toArray(new String[0]), size)) {
+            size <<= 1;
+        }
+        this.actions = new String[size];
+        this.methods = new AnnotatedMethod[size];
+        this.mask = size - 1;
+        for (Map.Entry<String, AnnotatedMethod> method : methods.entrySet()) {
+            int i = indexOf(method.getKey(), mask);
+            while (actions[i] != null) {
+                i = (i + 1) & mask;
+            }
+            actions[i] = method.getKey();
+            this.methods[i] = method.getValue();
+        }
+    }
 
     Promise<ActionResponse, ResourceException> invoke(Context context, ActionRequest request, String id) {
-        AnnotatedMethod method = methods.get(request.getAction());
+        AnnotatedMethod method = get(request.getAction());
         if (method == null) {
-            return new NotSupportedException(request.getAction() + "not supported").asPromise();
+            return new NotSupportedException(request.getAction() + " not supported").asPromise();
         }
         return method.invoke(context, request, id);
     }
 
+    private AnnotatedMethod get(String action) {
+        if (action == null) {
+            return null;
+        }
+        for (int i = indexOf(action, mask); actions[i] != null; i = (i + 1) & mask) {
+            if (actions[i].equals(action)) {
+                return methods[i];
+            }
+        }
+        return null;
+    }
+
+    private static boolean hasCollisions(String[] actions, int size) {
+        final boolean[] used = new boolean[size];
+        for (String action : actions) {
+            final int i = indexOf(action, size - 1);
+            if (used[i]) {
+                return true;
+            }
+            used[i] = true;
+        }
+        return false;
+    }
+
+    private static int indexOf(String action, int mask) {
+        final int h = action.hashCode();
+        return (h ^ (h >>> 16)) & mask;
+    }
+
     static AnnotatedActionMethods findAll(Object requestHandler, boolean needsId) {
-        AnnotatedActionMethods methods = new AnnotatedActionMethods();
+        Map<String, AnnotatedMethod> methods = new LinkedHashMap<>();
         for (Method method : requestHandler.getClass().getMethods()) {
             Action action = method.getAnnotation(Action.class);
             if (action != null) {
@@ -52,11 +110,11 @@ class AnnotatedActionMethods {
                     if (actionName == null || actionName.length() == 0) {
                         actionName = method.getName();
                     }
-                    methods.methods.put(actionName, checked);
+                    methods.put(actionName, checked);
                 }
             }
         }
-        return methods;
+        return new AnnotatedActionMethods(methods);
     }
 
 }
@@ -12,20 +12,27 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2015 ForgeRock AS.
+ * Portions Copyright 2026 Wren Security.
  */
-
 package org.forgerock.json.resource;
 
 import java.lang.annotation.Annotation;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
 import java.util.Arrays;
+import java.util.List;
 
 import org.forgerock.services.context.Context;
+import org.forgerock.json.JsonValue;
+import org.forgerock.json.resource.annotations.Action;
 import org.forgerock.json.resource.annotations.Create;
 import org.forgerock.json.resource.annotations.Patch;
 import org.forgerock.json.resource.annotations.Query;
+import org.forgerock.json.resource.annotations.Read;
 import org.forgerock.json.resource.annotations.Update;
+import org.forgerock.util.Function;
 import org.forgerock.util.promise.Promise;
 
 /**
@@ -37,19 +44,45 @@ import org.forgerock.util.promise.Promise;
  * <p>
  * If no appropriately annotated method is found, an attempt to invoke that method will result in
  * it being handled with a {@link NotSupportedException}.
+ * <p>
+ * The parameters of the method are bound once, when the method is checked, so that invoking it only
+ * needs to fill in the argument array. Action, create and update methods may also declare a parameter
+ * which is bound to the content of the request, and read, create and update methods may return a
+ * promise of a typed object which becomes the content of the resource response. Typed content is
+ * converted using the cached {@link JsonCodec} of its type. Parameters whose type cannot be converted are
+ * left unbound, and are passed {@code null}.
  */
 final class AnnotatedMethod {
+
+    /** The annotations of methods which may declare a parameter bound to the content of the request. */
+    private static final List<Class<?>> CONTENT_PARAMETER_ANNOTATIONS =
+            Arrays.<Class<?>>asList(Action.class, Create.class, Update.class);
+
+    /** The annotations of methods which may return typed resource content. */
+    private static final List<Class<?>> CONTENT_RESULT_ANNOTATIONS =
+            Arrays.<Class<?>>asList(Read.class, Create.class, Update.class);
+
     private final Object requestHandler;
     private final Method method;
     private final int idParameter;
     private final int contextParameter;
     private final int requestParameter;
     private final int queryHandlerParameter;
+    private final int contentParameter;
+    private final JsonCodec<Object> contentCodec;
+    private final JsonCodec<Object> resultCodec;
     private final int numberOfParameters;
     private final String operation;
 
     AnnotatedMethod(String operation, Object requestHandler, Method method, int idParameter, int contextParameter,
             int requestParameter, int queryHandlerParameter, int numberOfParameters) {
+        this(operation, requestHandler, method, idParameter, contextParameter, requestParameter,
+                queryHandlerParameter, -1, null, null, numberOfParameters);
+    }
+
+    private AnnotatedMethod(String operation, Object requestHandler, Method method, int idParameter,
+            int contextParameter, int requestParameter, int queryHandlerParameter, int contentParameter,
+            JsonCodec<Object> contentCodec, JsonCodec<Object> resultCodec, int numberOfParameters) {
         this.operation = operation;
         this.requestHandler = requestHandler;
         this.method = method;
@@ -57,7 +90,18 @@ final class AnnotatedMethod {
         this.contextParameter = contextParameter;
         this.requestParameter = requestParameter;
         this.queryHandlerParameter = queryHandlerParameter;
+        this.contentParameter = contentParameter;
+        this.contentCodec = contentCodec;
+        this.resultCodec = resultCodec;
         this.numberOfParameters = numberOfParameters;
+        if (method != null) {
+            try {
+                // Public methods of non-public classes would otherwise fail the access check on every invocation.
+                method.setAccessible(true);
+            } catch (final RuntimeException e) {
+                // Denied by a security manager or by module encapsulation: fall back to checked invocations.
+            }
+        }
     }
 
     <T> Promise<T, ResourceException> invoke(Context context, Request request, String id) {
@@ -65,8 +109,8 @@ final class AnnotatedMethod {
     }
 
     @SuppressWarnings("unchecked")
-    <T> Promise<T, ResourceException> invoke(Context context, Request request,
-            QueryResourceHandler queryHandler, String id) {
+    <T> Promise<T, ResourceException> invoke(Context context, final Request request,
+            QueryResourceHandler queryHandler, final String id) {
         if (method == null) {
             return new NotSupportedException(operation + " not supported").asPromise();
         }
@@ -83,13 +127,65 @@ final class AnnotatedMethod {
         if (queryHandlerParameter > -1) {
             args[queryHandlerParameter] = queryHandler;
         }
+        if (contentParameter > -1) {
+            try {
+                args[contentParameter] = contentCodec.decodeContent(contentOf(request));
+            } catch (final RuntimeException e) {
+                return decodingFailed(e).asPromise();
+            }
+        }
+        final Promise<Object, ResourceException> result;
         try {
-            return (Promise<T, ResourceException>) method.invoke(requestHandler, args);
+            result = (Promise<Object, ResourceException>) method.invoke(requestHandler, args);
         } catch (IllegalAccessException e) {
             throw new IllegalStateException("Cannot access the annotated method: " + method.getName(), e);
         } catch (InvocationTargetException e) {
             throw new IllegalStateException("Exception from invocation expected to be handled by promise", e);
         }
+        if (resultCodec == null) {
+            return (Promise<T, ResourceException>) result;
+        }
+        return (Promise<T, ResourceException>) result.then(new Function<Object, ResourceResponse, ResourceException>() {
+            @Override
+            public ResourceResponse apply(final Object value) {
+                return newResourceResponse(value, id, request);
+            }
+        });
+    }
+
+    /*
+     * Returns a resource response whose content is the encoded value. The identifier and revision of the resource
+     * are read from the content, the identifier defaulting to the requested one.
+     */
+    private ResourceResponse newResourceResponse(final Object value, final String id, final Request request) {
+        final JsonValue content = new JsonValue(resultCodec.encode(value));
+        String resourceId = content.get(ResourceResponse.FIELD_CONTENT_ID).asString();
+        if (resourceId == null) {
+            resourceId = id == null && request instanceof CreateRequest
+                    ? ((CreateRequest) request).getNewResourceId()
+                    : id;
+        }
+        final String revision = content.get(ResourceResponse.FIELD_CONTENT_REVISION).asString();
+        return Responses.newResourceResponse(resourceId, revision, content);
+    }
+
+    private static JsonValue contentOf(final Request request) {
+        if (request instanceof ActionRequest) {
+            return ((ActionRequest) request).getContent();
+        } else if (request instanceof CreateRequest) {
+            return ((CreateRequest) request).getContent();
+        } else {
+            return ((UpdateRequest) request).getContent();
+        }
+    }
+
+    private ResourceException decodingFailed(final RuntimeException e) {
+        if (e.getCause() instanceof ResourceException) {
+            return (ResourceException) e.getCause();
+        } else if (e instanceof IllegalArgumentException) {
+            return new BadRequestException("Invalid " + operation + " content: " + e.getMessage(), e);
+        }
+        return new InternalServerErrorException("Unable to decode " + operation + " content", e);
     }
 
     static AnnotatedMethod findMethod(Object requestHandler, Class<? extends Annotation> annotation, boolean needsId) {
@@ -118,6 +214,8 @@ final class AnnotatedMethod {
             int contextParam = -1;
             int requestParam = -1;
             int queryHandlerParam = -1;
+            int contentParam = -1;
+            JsonCodec<Object> contentCodec = null;
             for (int i = 0; i < method.getParameterTypes().length; i++) {
                 Class<?> type = method.getParameterTypes()[i];
                 if (String.class.equals(type)) {
@@ -128,6 +226,9 @@ final class AnnotatedMethod {
                     requestParam = i;
                 } else if (type.isAssignableFrom(QueryResourceHandler.class)) {
                     queryHandlerParam = i;
+                } else if (CONTENT_PARAMETER_ANNOTATIONS.contains(annotation) && contentCodec == null) {
+                    contentCodec = codecOf(method.getGenericParameterTypes()[i]);
+                    contentParam = contentCodec != null ? i : -1;
                 }
             }
             if (Arrays.asList(Create.class, Update.class, Patch.class, Query.class).contains(annotation)
@@ -140,9 +241,36 @@ final class AnnotatedMethod {
             }
             if (!needsId || idParam > -1) {
                 return new AnnotatedMethod(annotation.getSimpleName(), requestHandler, method, idParam, contextParam,
-                        requestParam, queryHandlerParam, method.getParameterTypes().length);
+                        requestParam, queryHandlerParam, contentParam, contentCodec, resultCodec(annotation, method),
+                        method.getParameterTypes().length);
             }
         }
         return null;
     }
+
+    /** Returns the codec of the typed content returned by the method, or {@code null} if it returns a response. */
+    private static JsonCodec<Object> resultCodec(Class<?> annotation, Method method) {
+        if (!CONTENT_RESULT_ANNOTATIONS.contains(annotation)
+                || !(method.getGenericReturnType() instanceof ParameterizedType)) {
+            return null;
+        }
+        Type result = ((ParameterizedType) method.getGenericReturnType()).getActualTypeArguments()[0];
+        if (result instanceof Class && Response.class.isAssignableFrom((Class<?>) result)) {
+            return null;
+        }
+        return codecOf(result);
+    }
+
+    /**
+     * Returns the codec of a type, or {@code null} if it cannot be converted, including classes having a field
+     * which cannot be converted. Such parameters are left unbound, as they were before content was bound, rather
+     * than preventing the request handler from being created.
+     */
+    private static JsonCodec<Object> codecOf(Type type) {
+        try {
+            return JsonCodec.of(type);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
 }
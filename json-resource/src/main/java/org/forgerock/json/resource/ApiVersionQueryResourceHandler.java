@@ -0,0 +1,143 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+
+package org.forgerock.json.resource;
+
+import static org.forgerock.json.resource.ResourceApiVersionRoutingFilter.addApiVersionWarning;
+import static org.forgerock.json.resource.ResourceApiVersionRoutingFilter.setResourceApiVersion;
+import static org.forgerock.json.resource.Resources.asBatchQueryResourceHandler;
+
+import java.util.List;
+
+import org.forgerock.http.routing.ApiVersionRouterContext;
+import org.forgerock.http.routing.Version;
+
+/**
+ * A query resource handler which sets the resource API version selected by
+ * the routers traversed by a query on each resource it returns.
+ * <p>
+ * Each router contributes a version source, which is either the
+ * {@link ApiVersionRouterContext} it resolved when routing the query, or the
+ * version of the route it selected. Routers nested beneath one another add
+ * their source to the handler created by the enclosing router instead of
+ * wrapping it again, so the cost of each resource does not grow with the
+ * depth of the routing tree, and the context chain is never searched while
+ * resources are being returned. Batches of resources are passed on as
+ * batches.
+ */
+final class ApiVersionQueryResourceHandler implements BatchQueryResourceHandler {
+
+    /**
+     * Returns a handler which sets the resource API version of the provided
+     * context on each resource before passing it to the provided handler.
+     *
+     * @param handler
+     *            The handler to which resources are passed.
+     * @param context
+     *            The API version router context resolved by a router.
+     * @param request
+     *            The query request.
+     * @return The fused handler.
+     */
+    static QueryResourceHandler wrap(final QueryResourceHandler handler, final ApiVersionRouterContext context,
+            final Request request) {
+        return wrap(handler, new Source(null, context, request));
+    }
+
+    /**
+     * Returns a handler which sets the provided resource API version on each
+     * resource before passing it to the provided handler.
+     *
+     * @param handler
+     *            The handler to which resources are passed.
+     * @param version
+     *            The resource API version selected by a router.
+     * @return The fused handler.
+     */
+    static QueryResourceHandler wrap(final QueryResourceHandler handler, final Version version) {
+        return wrap(handler, new Source(version, null, null));
+    }
+
+    private static QueryResourceHandler wrap(final QueryResourceHandler handler, final Source source) {
+        if (!(handler instanceof ApiVersionQueryResourceHandler)) {
+            return new ApiVersionQueryResourceHandler(handler, new Source[] { source });
+        }
+        final ApiVersionQueryResourceHandler enclosing = (ApiVersionQueryResourceHandler) handler;
+        if (source.context != null) {
+            for (final Source existing : enclosing.sources) {
+                if (existing.context == source.context) {
+                    // Routers beneath the same routing filter share its context, which only needs applying once.
+                    return enclosing;
+                }
+            }
+        }
+        // Sources are applied innermost first, so that the version selected by the outermost router prevails.
+        final Source[] sources = new Source[enclosing.sources.length + 1];
+        sources[0] = source;
+        System.arraycopy(enclosing.sources, 0, sources, 1, enclosing.sources.length);
+        return new ApiVersionQueryResourceHandler(enclosing.delegate, sources);
+    }
+
+    private final BatchQueryResourceHandler delegate;
+    private final Source[] sources;
+    private boolean first = true;
+
+    private ApiVersionQueryResourceHandler(final QueryResourceHandler delegate, final Source[] sources) {
+        this.delegate = asBatchQueryResourceHandler(delegate);
+        this.sources = sources;
+    }
+
+    @Override
+    public boolean handleResource(final ResourceResponse resource) {
+        setApiVersionInfo(resource);
+        return delegate.handleResource(resource);
+    }
+
+    @Override
+    public boolean handleResources(final List<ResourceResponse> resources) {
+        for (final ResourceResponse resource : resources) {
+            setApiVersionInfo(resource);
+        }
+        return delegate.handleResources(resources);
+    }
+
+    private void setApiVersionInfo(final ResourceResponse resource) {
+        for (final Source source : sources) {
+            if (source.version != null) {
+                resource.setResourceApiVersion(source.version);
+            } else {
+                setResourceApiVersion(source.context, resource);
+                if (first) {
+                    addApiVersionWarning(source.context, source.request);
+                }
+            }
+        }
+        first = false;
+    }
+
+    /** Either a fixed version or the context from which the version is read. */
+    private static final class Source {
+        private final Version version;
+        private final ApiVersionRouterContext context;
+        private final Request request;
+
+        private Source(final Version version, final ApiVersionRouterContext context, final Request request) {
+            this.version = version;
+            this.context = context;
+            this.request = request;
+        }
+    }
+}
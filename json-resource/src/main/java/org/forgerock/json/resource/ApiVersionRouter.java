@@ -0,0 +1,392 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+
+package org.forgerock.json.resource;
+
+import static org.forgerock.json.resource.Resources.newCollection;
+import static org.forgerock.json.resource.Resources.newSingleton;
+import static org.forgerock.util.promise.Promises.newExceptionPromise;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.forgerock.http.routing.ApiVersionRouterContext;
+import org.forgerock.http.routing.DefaultVersionBehaviour;
+import org.forgerock.http.routing.ResourceApiVersionBehaviourManager;
+import org.forgerock.http.routing.Version;
+import org.forgerock.services.context.Context;
+import org.forgerock.util.Reject;
+import org.forgerock.util.promise.ExceptionHandler;
+import org.forgerock.util.promise.Promise;
+import org.forgerock.util.promise.ResultHandler;
+
+/**
+ * A request handler which routes requests to one of several versions of a
+ * resource according to the resource API version requested by the client.
+ * <p>
+ * This is a faster alternative to a {@link Router} whose routes are all
+ * {@link Router#addRoute(Version, RequestHandler) version routes} placed
+ * behind the
+ * {@link RouteMatchers#resourceApiVersionContextFilter resource API version
+ * context filter}. Rather than evaluating a route matcher for every route, the
+ * versions are compiled into a dispatch table whenever they change, so that
+ * requests are routed using a single lookup. No {@link ApiVersionRouterContext}
+ * is created, and the selected version is set on responses using a handler
+ * which is shared by all requests routed to that version.
+ * <p>
+ * The default version behaviour and warnings are taken from the provided
+ * {@link ResourceApiVersionBehaviourManager} for each request, so they may be
+ * changed at any time. As with version routes, requests are routed to the
+ * highest minor version having the requested major version, provided it is
+ * not older than the requested version. Requests which do not specify a
+ * version are routed according to the default version behaviour, and fail
+ * when it is {@link DefaultVersionBehaviour#NONE}.
+ *
+ * <pre>
+ * ApiVersionRouter users = new ApiVersionRouter(behaviourManager);
+ * users.addVersion(version(1), usersV1);
+ * users.addVersion(version(2), usersV2);
+ * router.addRoute(STARTS_WITH, uriTemplate(&quot;users&quot;), users);
+ * </pre>
+ */
+public class ApiVersionRouter implements RequestHandler {
+
+    private static final DispatchTable EMPTY_TABLE = new DispatchTable(new Route[0]);
+
+    private final ResourceApiVersionBehaviourManager behaviourManager;
+    private final Object writeLock = new Object();
+    private volatile DispatchTable table = EMPTY_TABLE;
+
+    /**
+     * Creates a new API version router with no versions defined.
+     *
+     * @param behaviourManager
+     *            The manager which determines the default version behaviour
+     *            and whether warnings are returned.
+     */
+    public ApiVersionRouter(final ResourceApiVersionBehaviourManager behaviourManager) {
+        Reject.ifNull(behaviourManager);
+        this.behaviourManager = behaviourManager;
+    }
+
+    /**
+     * Adds a version of the resource served by the provided collection
+     * resource provider, replacing any existing handler for the same version.
+     *
+     * @param version
+     *            The resource API version.
+     * @param provider
+     *            The collection resource provider to which requests for the
+     *            version will be routed.
+     * @return This API version router.
+     */
+    public ApiVersionRouter addVersion(final Version version, final CollectionResourceProvider provider) {
+        return addVersion(version, newCollection(provider));
+    }
+
+    /**
+     * Adds a version of the resource served by the provided singleton resource
+     * provider, replacing any existing handler for the same version.
+     *
+     * @param version
+     *            The resource API version.
+     * @param provider
+     *            The singleton resource provider to which requests for the
+     *            version will be routed.
+     * @return This API version router.
+     */
+    public ApiVersionRouter addVersion(final Version version, final SingletonResourceProvider provider) {
+        return addVersion(version, newSingleton(provider));
+    }
+
+    /**
+     * Adds a version of the resource served by the provided request handler,
+     * replacing any existing handler for the same version. Versions may be
+     * added while this router is processing requests.
+     *
+     * @param version
+     *            The resource API version.
+     * @param handler
+     *            The request handler to which requests for the version will
+     *            be routed.
+     * @return This API version router.
+     */
+    public ApiVersionRouter addVersion(final Version version, final RequestHandler handler) {
+        Reject.ifNull(version, handler);
+        synchronized (writeLock) {
+            final Route[] routes = table.routes;
+            final int index = indexOf(routes, version);
+            final Route[] newRoutes;
+            if (index >= 0) {
+                newRoutes = routes.clone();
+                newRoutes[index] = new Route(version, handler);
+            } else {
+                newRoutes = Arrays.copyOf(routes, routes.length + 1);
+                newRoutes[routes.length] = new Route(version, handler);
+            }
+            table = new DispatchTable(newRoutes);
+        }
+        return this;
+    }
+
+    /**
+     * Removes the provided versions from this router. Versions may be removed
+     * while this router is processing requests.
+     *
+     * @param versions
+     *            The versions to be removed.
+     * @return {@code true} if at least one version was removed.
+     */
+    public boolean removeVersion(final Version... versions) {
+        synchronized (writeLock) {
+            Route[] routes = table.routes;
+            boolean isModified = false;
+            for (final Version version : versions) {
+                final int index = indexOf(routes, version);
+                if (index >= 0) {
+                    final Route[] newRoutes = new Route[routes.length - 1];
+                    System.arraycopy(routes, 0, newRoutes, 0, index);
+                    System.arraycopy(routes, index + 1, newRoutes, index, newRoutes.length - index);
+                    routes = newRoutes;
+                    isModified = true;
+                }
+            }
+            if (isModified) {
+                table = routes.length == 0 ? EMPTY_TABLE : new DispatchTable(routes);
+            }
+            return isModified;
+        }
+    }
+
+    /**
+     * Returns the handlers for each version of the resource, ordered from the
+     * oldest to the latest version.
+     *
+     * @return An unmodifiable map of the handlers for each version.
+     */
+    public Map<Version, RequestHandler> getVersions() {
+        final Map<Version, RequestHandler> versions = new LinkedHashMap<>();
+        for (final Route route : table.routes) {
+            versions.put(route.version, route.handler);
+        }
+        return Collections.unmodifiableMap(versions);
+    }
+
+    @Override
+    public Promise<ActionResponse, ResourceException> handleAction(Context context, ActionRequest request) {
+        try {
+            final Route route = getRoute(context, request);
+            return route.stamp(route.handler.handleAction(context, request));
+        } catch (ResourceException e) {
+            return newExceptionPromise(e);
+        }
+    }
+
+    @Override
+    public Promise<ResourceResponse, ResourceException> handleCreate(Context context, CreateRequest request) {
+        try {
+            final Route route = getRoute(context, request);
+            return route.stamp(route.handler.handleCreate(context, request));
+        } catch (ResourceException e) {
+            return newExceptionPromise(e);
+        }
+    }
+
+    @Override
+    public Promise<ResourceResponse, ResourceException> handleDelete(Context context, DeleteRequest request) {
+        try {
+            final Route route = getRoute(context, request);
+            return route.stamp(route.handler.handleDelete(context, request));
+        } catch (ResourceException e) {
+            return newExceptionPromise(e);
+        }
+    }
+
+    @Override
+    public Promise<ResourceResponse, ResourceException> handlePatch(Context context, PatchRequest request) {
+        try {
+            final Route route = getRoute(context, request);
+            return route.stamp(route.handler.handlePatch(context, request));
+        } catch (ResourceException e) {
+            return newExceptionPromise(e);
+        }
+    }
+
+    @Override
+    public Promise<QueryResponse, ResourceException> handleQuery(final Context context, final QueryRequest request,
+            final QueryResourceHandler handler) {
+        try {
+            final Route route = getRoute(context, request);
+            final QueryResourceHandler resourceHandler = ApiVersionQueryResourceHandler.wrap(handler, route.version);
+            return route.stamp(route.handler.handleQuery(context, request, resourceHandler));
+        } catch (ResourceException e) {
+            return newExceptionPromise(e);
+        }
+    }
+
+    @Override
+    public Promise<ResourceResponse, ResourceException> handleRead(Context context, ReadRequest request) {
+        try {
+            final Route route = getRoute(context, request);
+            return route.stamp(route.handler.handleRead(context, request));
+        } catch (ResourceException e) {
+            return newExceptionPromise(e);
+        }
+    }
+
+    @Override
+    public Promise<ResourceResponse, ResourceException> handleUpdate(Context context, UpdateRequest request) {
+        try {
+            final Route route = getRoute(context, request);
+            return route.stamp(route.handler.handleUpdate(context, request));
+        } catch (ResourceException e) {
+            return newExceptionPromise(e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ApiVersionRouter" + getVersions().keySet();
+    }
+
+    /**
+     * Selects the route for the request, adding the warning for requests
+     * which do not specify a version if enabled. Routing is recorded in any
+     * enclosing {@link ApiVersionRouterContext}, so that this router may be
+     * used behind the resource API version context filter, which then adds
+     * the warning itself.
+     */
+    private Route getRoute(final Context context, final Request request) throws ResourceException {
+        final Version requested = request.getResourceVersion();
+        final Route route;
+        if (requested != null) {
+            route = table.get(requested);
+        } else {
+            if (behaviourManager.isWarningEnabled() && context.containsContext(AdviceContext.class)
+                    && !context.containsContext(ApiVersionRouterContext.class)) {
+                context.asContext(AdviceContext.class).putAdvice("Warning",
+                        AdviceWarning.getNotPresent("CREST", "Accept-API-Version").toString());
+            }
+            final DefaultVersionBehaviour behaviour = behaviourManager.getDefaultVersionBehaviour();
+            route = behaviour == DefaultVersionBehaviour.NONE ? null
+                    : behaviour == DefaultVersionBehaviour.OLDEST ? table.oldest : table.latest;
+        }
+        if (route == null) {
+            throw new NotFoundException(String.format("Resource '%s' not found", request.getResourcePath()));
+        }
+        if (context.containsContext(ApiVersionRouterContext.class)) {
+            context.asContext(ApiVersionRouterContext.class).setResourceVersion(route.version);
+        }
+        return route;
+    }
+
+    private static int indexOf(final Route[] routes, final Version version) {
+        for (int i = 0; i < routes.length; i++) {
+            if (sameVersion(routes[i].version, version)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean sameVersion(final Version v1, final Version v2) {
+        return v1.getMajor() == v2.getMajor() && v1.getMinor() == v2.getMinor();
+    }
+
+    /**
+     * The immutable dispatch table compiled from the versions of the resource.
+     * It maps each major version to the route having the highest minor
+     * version, which is the best match for any request with that major
+     * version, unless the requested minor version is newer still.
+     */
+    private static final class DispatchTable {
+        private final Route[] routes;
+        private final Map<Integer, Route> latestByMajor = new HashMap<>();
+        private final Route oldest;
+        private final Route latest;
+
+        private DispatchTable(final Route[] routes) {
+            Route oldest = null;
+            Route latest = null;
+            for (final Route route : routes) {
+                final Route current = latestByMajor.get(route.version.getMajor());
+                if (current == null || route.version.getMinor() > current.version.getMinor()) {
+                    latestByMajor.put(route.version.getMajor(), route);
+                }
+                if (oldest == null || compare(route.version, oldest.version) < 0) {
+                    oldest = route;
+                }
+                if (latest == null || compare(route.version, latest.version) > 0) {
+                    latest = route;
+                }
+            }
+            this.routes = routes.clone();
+            Arrays.sort(this.routes, new Comparator<Route>() {
+                @Override
+                public int compare(final Route r1, final Route r2) {
+                    return DispatchTable.compare(r1.version, r2.version);
+                }
+            });
+            this.oldest = oldest;
+            this.latest = latest;
+        }
+
+        private Route get(final Version requested) {
+            final Route route = latestByMajor.get(requested.getMajor());
+            return route != null && route.version.getMinor() >= requested.getMinor() ? route : null;
+        }
+
+        private static int compare(final Version v1, final Version v2) {
+            if (v1.getMajor() != v2.getMajor()) {
+                return v1.getMajor() < v2.getMajor() ? -1 : 1;
+            }
+            return v1.getMinor() < v2.getMinor() ? -1 : v1.getMinor() == v2.getMinor() ? 0 : 1;
+        }
+    }
+
+    /**
+     * A version of the resource, which also sets its version on the responses
+     * of the requests routed to it. The handler is stateless, so a single
+     * instance serves all requests rather than one per request.
+     */
+    private static final class Route implements ResultHandler<Response>, ExceptionHandler<ResourceException> {
+        private final Version version;
+        private final RequestHandler handler;
+
+        private Route(final Version version, final RequestHandler handler) {
+            this.version = version;
+            this.handler = handler;
+        }
+
+        private <V extends Response> Promise<V, ResourceException> stamp(final Promise<V, ResourceException> promise) {
+            return promise.thenOnResultOrException(this, this);
+        }
+
+        @Override
+        public void handleResult(final Response response) {
+            response.setResourceApiVersion(version);
+        }
+
+        @Override
+        public void handleException(final ResourceException exception) {
+            exception.setResourceApiVersion(version);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+
+package org.forgerock.json.resource;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Binary content which has been transferred alongside the JSON content of a
+ * request, for example as a part of a multipart HTTP request. Attachments
+ * appear as values within the request content wherever the client referenced
+ * them, and their data is only read when a resource provider asks for it, so
+ * that large attachments do not have to be held in memory.
+ * <p>
+ * Attachments received with a request are only valid while the request is
+ * being processed. Resource providers which need to retain the data must copy
+ * it before returning.
+ * <p>
+ * Resource providers may also return attachments as resource content, in
+ * which case the HTTP adapter streams the data of the attachment to clients
+ * which read the resource using the {@code _mimeType} parameter, rather than
+ * requiring the data to be Base64url encoded. Such attachments should report
+ * their size whenever possible, so that clients can be sent a
+ * {@code Content-Length} and may request byte ranges.
+ */
+public interface Attachment {
+
+    /**
+     * Returns the name which the client used to reference this attachment.
+     *
+     * @return The name of this attachment.
+     */
+    String getName();
+
+    /**
+     * Returns the file name provided by the client, if any.
+     *
+     * @return The file name, or {@code null} if none was provided.
+     */
+    String getFileName();
+
+    /**
+     * Returns the MIME type of this attachment's data.
+     *
+     * @return The MIME type, or {@code null} if it is not known.
+     */
+    String getContentType();
+
+    /**
+     * Returns the size of this attachment's data in bytes, if known. The size
+     * may be approximate when the data was transferred using an encoding.
+     *
+     * @return The size of this attachment's data in bytes, or {@code -1} if it
+     *         is not known.
+     */
+    long getSize();
+
+    /**
+     * Returns a new input stream for reading this attachment's data from the
+     * beginning. The caller is responsible for closing the stream.
+     *
+     * @return A new input stream for reading this attachment's data.
+     * @throws IOException
+     *             If the data could not be read.
+     */
+    InputStream newInputStream() throws IOException;
+}
@@ -0,0 +1,56 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+
+package org.forgerock.json.resource;
+
+import java.util.List;
+
+/**
+ * A {@link QueryResourceHandler} which can also consume query results in
+ * batches, so that providers returning many results and handlers wrapping
+ * other handlers can amortize their per-resource overhead.
+ * <p>
+ * Providers should obtain a batch handler for the handler they were given
+ * using {@link Resources#asBatchQueryResourceHandler(QueryResourceHandler)},
+ * which adapts handlers only implementing {@link QueryResourceHandler}.
+ * Handlers wrapping another handler should implement this interface and pass
+ * batches on, so that batches are not split into single resources along the
+ * way.
+ * <p>
+ * The same synchronization guarantees apply to batches as to single
+ * resources: invocations of {@link #handleResources(List)} and
+ * {@link #handleResource(ResourceResponse)} occur sequentially and one at a
+ * time.
+ */
+public interface BatchQueryResourceHandler extends QueryResourceHandler {
+
+    /**
+     * Invoked with a batch of matching JSON resources returned from a query
+     * request, in the order in which they would have been passed to
+     * {@link #handleResource(ResourceResponse)}.
+     * <p>
+     * The list may be reused by the caller once this method returns, so
+     * implementations must neither modify nor retain it.
+     *
+     * @param resources
+     *            The matching JSON resources.
+     * @return {@code true} if this handler should continue to be notified of
+     *         any remaining matching JSON resources, or {@code false} if the
+     *         remaining JSON resources should be skipped for some reason (e.g.
+     *         a client side size limit has been reached).
+     */
+    boolean handleResources(List<ResourceResponse> resources);
+}
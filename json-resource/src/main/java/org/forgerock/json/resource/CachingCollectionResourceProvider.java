@@ -0,0 +1,447 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+
+package org.forgerock.json.resource;
+
+import static org.forgerock.json.resource.Resources.asBatchQueryResourceHandler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.forgerock.services.context.Context;
+import org.forgerock.util.Reject;
+import org.forgerock.util.promise.Promise;
+import org.forgerock.util.promise.ResultHandler;
+
+/**
+ * A collection resource provider which caches the resources read from another
+ * provider, and optionally the pages of results of its queries, for providers
+ * fronting slow stores. The decorated provider can be exposed as any other
+ * provider, for example using {@link Resources#newCollection(Object)}:
+ *
+ * <pre>
+ * CachingCollectionResourceProvider users = new CachingCollectionResourceProvider(provider, 10000, true);
+ * router.addRoute(uriTemplate(&quot;users&quot;), Resources.newCollection(users));
+ * </pre>
+ *
+ * The cache is bounded by a total weight: a resource weighs one, and a page
+ * of query results weighs one plus the number of resources it contains. The
+ * least recently used entries are evicted once the total weight exceeds the
+ * limit.
+ * <p>
+ * All the requests for the collection must go through this provider, so that
+ * it can invalidate its entries:
+ * <ul>
+ * <li>creating, updating, patching, deleting or performing an action on a
+ * resource invalidates the cached resource and all the cached query pages</li>
+ * <li>performing an action on the collection invalidates the whole cache</li>
+ * <li>the result of a read or a query which was in progress when one of these
+ * invalidations occurred is not cached, so the cache never retains a revision
+ * older than the last one written through this provider</li>
+ * </ul>
+ * Reads requesting a subset of the fields of a resource are served from the
+ * cached resource when it is present, but only reads of whole resources are
+ * cached. Query pages are cached by the normalized query request.
+ * <p>
+ * Entries are shared between all requests regardless of their context, so
+ * this provider must not be used for providers whose results depend on the
+ * caller. The cached resources are shared too, and must not be modified.
+ */
+public class CachingCollectionResourceProvider implements CollectionResourceProvider {
+
+    /** The number of stripes of the invalidation stamps of resources, which must be a power of two. */
+    private static final int STAMP_STRIPES = 64;
+
+    /** A cached entry, whose weight is accounted in the total weight of the cache. */
+    private static final class Entry {
+        private final Object value;
+        private final long weight;
+        /** The query generation at which a query page was cached. */
+        private final long generation;
+
+        private Entry(final Object value, final long weight, final long generation) {
+            this.value = value;
+            this.weight = weight;
+            this.generation = generation;
+        }
+    }
+
+    /** A cached page of query results. */
+    private static final class Page {
+        private final List<ResourceResponse> resources;
+        private final QueryResponse response;
+
+        private Page(final List<ResourceResponse> resources, final QueryResponse response) {
+            this.resources = resources;
+            this.response = response;
+        }
+    }
+
+    /** Identifies cached resources, which are kept in the same map as query pages. */
+    private static final class ResourceKey {
+        private final String id;
+
+        private ResourceKey(final String id) {
+            this.id = id;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            return o instanceof ResourceKey && ((ResourceKey) o).id.equals(id);
+        }
+
+        @Override
+        public int hashCode() {
+            return id.hashCode();
+        }
+    }
+
+    private final CollectionResourceProvider provider;
+    private final long maxWeight;
+    private final boolean cacheQueries;
+
+    /** The cached entries in least recently used order, guarded by itself. */
+    private final LinkedHashMap<Object, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long weight;
+
+    /** Incremented when a resource is written, per stripe of resource identifiers. */
+    private final AtomicLong[] stamps = new AtomicLong[STAMP_STRIPES];
+    /** Incremented when any resource is written, which invalidates all the cached query pages. */
+    private final AtomicLong queryGeneration = new AtomicLong();
+
+    private final AtomicLong readHits = new AtomicLong();
+    private final AtomicLong readMisses = new AtomicLong();
+    private final AtomicLong queryHits = new AtomicLong();
+    private final AtomicLong queryMisses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Creates a new caching provider.
+     *
+     * @param provider
+     *            The provider whose resources are cached.
+     * @param maxWeight
+     *            The maximum total weight of the cached entries.
+     * @param cacheQueries
+     *            {@code true} if pages of query results should be cached as
+     *            well as resources.
+     */
+    public CachingCollectionResourceProvider(final CollectionResourceProvider provider, final long maxWeight,
+            final boolean cacheQueries) {
+        Reject.ifNull(provider);
+        Reject.ifTrue(maxWeight < 1, "The maximum weight must be positive");
+        this.provider = provider;
+        this.maxWeight = maxWeight;
+        this.cacheQueries = cacheQueries;
+        for (int i = 0; i < STAMP_STRIPES; i++) {
+            stamps[i] = new AtomicLong();
+        }
+    }
+
+    @Override
+    public Promise<ActionResponse, ResourceException> actionCollection(final Context context,
+            final ActionRequest request) {
+        // Collection actions may change any resource.
+        invalidateAll();
+        return provider.actionCollection(context, request).thenAlways(new Runnable() {
+            @Override
+            public void run() {
+                invalidateAll();
+            }
+        });
+    }
+
+    @Override
+    public Promise<ActionResponse, ResourceException> actionInstance(final Context context, final String resourceId,
+            final ActionRequest request) {
+        invalidate(resourceId);
+        return provider.actionInstance(context, resourceId, request).thenAlways(invalidation(resourceId));
+    }
+
+    @Override
+    public Promise<ResourceResponse, ResourceException> createInstance(final Context context,
+            final CreateRequest request) {
+        // New resources may match any of the cached queries.
+        queryGeneration.incrementAndGet();
+        return provider.createInstance(context, request).thenAlways(new Runnable() {
+            @Override
+            public void run() {
+                queryGeneration.incrementAndGet();
+            }
+        });
+    }
+
+    @Override
+    public Promise<ResourceResponse, ResourceException> deleteInstance(final Context context, final String resourceId,
+            final DeleteRequest request) {
+        invalidate(resourceId);
+        return provider.deleteInstance(context, resourceId, request).thenAlways(invalidation(resourceId));
+    }
+
+    @Override
+    public Promise<ResourceResponse, ResourceException> patchInstance(final Context context, final String resourceId,
+            final PatchRequest request) {
+        invalidate(resourceId);
+        return provider.patchInstance(context, resourceId, request).thenAlways(invalidation(resourceId));
+    }
+
+    @Override
+    public Promise<QueryResponse, ResourceException> queryCollection(final Context context,
+            final QueryRequest request, final QueryResourceHandler handler) {
+        if (!cacheQueries) {
+            return provider.queryCollection(context, request, handler);
+        }
+        final String key = queryKey(request);
+        final long generation = queryGeneration.get();
+        final Entry entry = get(key);
+        if (entry != null && entry.generation == generation) {
+            queryHits.incrementAndGet();
+            final Page page = (Page) entry.value;
+            asBatchQueryResourceHandler(handler).handleResources(page.resources);
+            return page.response.asPromise();
+        } else if (entry != null && entry.generation < generation) {
+            // The page is stale, so release its weight now rather than waiting for it to be evicted.
+            remove(key, entry);
+        }
+        queryMisses.incrementAndGet();
+
+        // Collect the page while passing it on, unless it becomes too heavy or the handler stops it early.
+        final BatchQueryResourceHandler batchHandler = asBatchQueryResourceHandler(handler);
+        final List<ResourceResponse> resources = new ArrayList<>();
+        final boolean[] cacheable = { true };
+        final BatchQueryResourceHandler collector = new BatchQueryResourceHandler() {
+            @Override
+            public boolean handleResource(final ResourceResponse resource) {
+                collect(Collections.singletonList(resource));
+                return keepGoing(batchHandler.handleResource(resource));
+            }
+
+            @Override
+            public boolean handleResources(final List<ResourceResponse> batch) {
+                collect(batch);
+                return keepGoing(batchHandler.handleResources(batch));
+            }
+
+            private void collect(final List<ResourceResponse> batch) {
+                if (cacheable[0] && resources.size() + batch.size() < maxWeight) {
+                    resources.addAll(batch);
+                } else {
+                    cacheable[0] = false;
+                    resources.clear();
+                }
+            }
+
+            private boolean keepGoing(final boolean keepGoing) {
+                cacheable[0] &= keepGoing;
+                return keepGoing;
+            }
+        };
+        return provider.queryCollection(context, request, collector).thenOnResult(new ResultHandler<QueryResponse>() {
+            @Override
+            public void handleResult(final QueryResponse response) {
+                if (cacheable[0] && queryGeneration.get() == generation) {
+                    put(key, new Page(Collections.unmodifiableList(resources), response), 1 + resources.size(),
+                            generation);
+                }
+            }
+        });
+    }
+
+    @Override
+    public Promise<ResourceResponse, ResourceException> readInstance(final Context context, final String resourceId,
+            final ReadRequest request) {
+        final ResourceKey key = new ResourceKey(resourceId);
+        final Entry entry = get(key);
+        if (entry != null) {
+            readHits.incrementAndGet();
+            final ResourceResponse resource = (ResourceResponse) entry.value;
+            return (request.getFields().isEmpty() ? resource : FieldProjection.of(request).project(resource))
+                    .asPromise();
+        }
+        readMisses.incrementAndGet();
+        if (!request.getFields().isEmpty()) {
+            return provider.readInstance(context, resourceId, request);
+        }
+        final AtomicLong stamp = stampOf(resourceId);
+        final long expected = stamp.get();
+        return provider.readInstance(context, resourceId, request).thenOnResult(new ResultHandler<ResourceResponse>() {
+            @Override
+            public void handleResult(final ResourceResponse resource) {
+                synchronized (entries) {
+                    // Checked while holding the lock, so that a concurrent invalidation either precedes this check
+                    // or removes the entry afterwards.
+                    if (stamp.get() == expected) {
+                        put(key, resource, 1, 0);
+                    }
+                }
+            }
+        });
+    }
+
+    @Override
+    public Promise<ResourceResponse, ResourceException> updateInstance(final Context context, final String resourceId,
+            final UpdateRequest request) {
+        invalidate(resourceId);
+        return provider.updateInstance(context, resourceId, request).thenAlways(invalidation(resourceId));
+    }
+
+    /**
+     * Returns the number of reads which were served from the cache.
+     *
+     * @return The number of reads which were served from the cache.
+     */
+    public long getReadHitCount() {
+        return readHits.get();
+    }
+
+    /**
+     * Returns the number of reads which were forwarded to the provider.
+     *
+     * @return The number of reads which were forwarded to the provider.
+     */
+    public long getReadMissCount() {
+        return readMisses.get();
+    }
+
+    /**
+     * Returns the number of queries which were served from the cache.
+     *
+     * @return The number of queries which were served from the cache.
+     */
+    public long getQueryHitCount() {
+        return queryHits.get();
+    }
+
+    /**
+     * Returns the number of queries which were forwarded to the provider.
+     *
+     * @return The number of queries which were forwarded to the provider.
+     */
+    public long getQueryMissCount() {
+        return queryMisses.get();
+    }
+
+    /**
+     * Returns the number of entries which were evicted in order to remain
+     * within the maximum weight.
+     *
+     * @return The number of evicted entries.
+     */
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    /**
+     * Returns the total weight of the cached entries.
+     *
+     * @return The total weight of the cached entries.
+     */
+    public long getWeight() {
+        synchronized (entries) {
+            return weight;
+        }
+    }
+
+    /** Returns a key identifying the page of results returned by a query, independent of parameter ordering. */
+    private static String queryKey(final QueryRequest request) {
+        final StringBuilder key = new StringBuilder();
+        key.append(request.getResourcePath()).append('\n')
+                .append(request.getQueryId()).append('\n')
+                .append(request.getQueryExpression()).append('\n')
+                .append(request.getQueryFilter()).append('\n')
+                .append(request.getSortKeys()).append('\n')
+                .append(request.getFields()).append('\n')
+                .append(request.getPageSize()).append('\n')
+                .append(request.getPagedResultsOffset()).append('\n')
+                .append(request.getPagedResultsCookie()).append('\n')
+                .append(request.getTotalPagedResultsPolicy()).append('\n')
+                .append(new TreeMap<>(request.getAdditionalParameters()));
+        return key.toString();
+    }
+
+    private AtomicLong stampOf(final String resourceId) {
+        final int h = resourceId.hashCode();
+        return stamps[(h ^ (h >>> 16)) & (STAMP_STRIPES - 1)];
+    }
+
+    private Entry get(final Object key) {
+        synchronized (entries) {
+            return entries.get(key);
+        }
+    }
+
+    private void put(final Object key, final Object value, final long entryWeight, final long generation) {
+        if (entryWeight > maxWeight) {
+            return;
+        }
+        synchronized (entries) {
+            final Entry previous = entries.put(key, new Entry(value, entryWeight, generation));
+            weight += entryWeight - (previous != null ? previous.weight : 0);
+            final Iterator<Entry> eldest = entries.values().iterator();
+            while (weight > maxWeight) {
+                weight -= eldest.next().weight;
+                eldest.remove();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    private void remove(final Object key, final Entry entry) {
+        synchronized (entries) {
+            if (entries.get(key) == entry) {
+                entries.remove(key);
+                weight -= entry.weight;
+            }
+        }
+    }
+
+    private void invalidate(final String resourceId) {
+        queryGeneration.incrementAndGet();
+        synchronized (entries) {
+            stampOf(resourceId).incrementAndGet();
+            final Entry removed = entries.remove(new ResourceKey(resourceId));
+            if (removed != null) {
+                weight -= removed.weight;
+            }
+        }
+    }
+
+    private Runnable invalidation(final String resourceId) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                invalidate(resourceId);
+            }
+        };
+    }
+
+    private void invalidateAll() {
+        queryGeneration.incrementAndGet();
+        synchronized (entries) {
+            for (final AtomicLong stamp : stamps) {
+                stamp.incrementAndGet();
+            }
+            entries.clear();
+            weight = 0;
+        }
+    }
+}
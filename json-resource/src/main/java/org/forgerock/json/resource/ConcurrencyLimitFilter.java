@@ -0,0 +1,286 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+
+package org.forgerock.json.resource;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.forgerock.services.context.Context;
+import org.forgerock.util.Reject;
+import org.forgerock.util.promise.Promise;
+import org.forgerock.util.time.TimeService;
+
+/**
+ * A filter which limits the number of requests being processed concurrently,
+ * and rejects excess requests immediately with a
+ * {@link ServiceUnavailableException} and a {@literal Retry-After} advice,
+ * rather than letting them queue up behind a slow backend.
+ * <p>
+ * The limit adapts to the observed latency using an additive increase,
+ * multiplicative decrease (AIMD) policy: it grows by one once as many
+ * requests as the current limit have completed within the latency threshold
+ * while the limit was being used, and shrinks by 10% whenever a request takes
+ * longer than the latency threshold. Each {@link RequestType} has its own
+ * limit, so that slow writes do not prevent reads, for example.
+ * <p>
+ * A filter instance protects the handlers behind it, so a separate instance
+ * should be used for each route which needs its own quota. The request types
+ * which are limited may be restricted using a conditional filter:
+ *
+ * <pre>
+ * Filter limiter = new ConcurrencyLimitFilter(20, 200, 500, TimeUnit.MILLISECONDS);
+ * router.addRoute(STARTS_WITH, uriTemplate(&quot;users&quot;), new FilterChain(users,
+ *         Filters.conditionalFilter(Filters.matchRequestType(RequestType.READ, RequestType.QUERY), limiter)));
+ * </pre>
+ */
+public class ConcurrencyLimitFilter implements Filter {
+
+    /** The name of the advice which tells clients how many seconds to wait before retrying. */
+    public static final String RETRY_AFTER_ADVICE = "Retry-After";
+
+    private static final double BACKOFF_RATIO = 0.9;
+
+    private final TimeService time;
+    private final Map<RequestType, Limiter> limiters = new EnumMap<>(RequestType.class);
+
+    /**
+     * Creates a new concurrency limit filter.
+     *
+     * @param initialLimit
+     *            The initial number of concurrent requests of each type.
+     * @param maxLimit
+     *            The maximum number of concurrent requests of each type.
+     * @param latencyThreshold
+     *            The latency above which a request indicates that the backend
+     *            is overloaded.
+     * @param unit
+     *            The unit of the latency threshold.
+     */
+    public ConcurrencyLimitFilter(final int initialLimit, final int maxLimit, final long latencyThreshold,
+            final TimeUnit unit) {
+        this(TimeService.SYSTEM, initialLimit, maxLimit, latencyThreshold, unit);
+    }
+
+    ConcurrencyLimitFilter(final TimeService time, final int initialLimit, final int maxLimit,
+            final long latencyThreshold, final TimeUnit unit) {
+        Reject.ifNull(time, unit);
+        Reject.ifTrue(initialLimit < 1 || maxLimit < initialLimit, "Invalid concurrency limits");
+        this.time = time;
+        final long latencyThresholdMillis = unit.toMillis(latencyThreshold);
+        for (final RequestType type : RequestType.values()) {
+            limiters.put(type, new Limiter(initialLimit, maxLimit, latencyThresholdMillis));
+        }
+    }
+
+    /**
+     * Returns the current concurrency limit for the provided type of request.
+     *
+     * @param type
+     *            The type of request.
+     * @return The current concurrency limit.
+     */
+    public int getLimit(final RequestType type) {
+        return limiters.get(type).limit.get();
+    }
+
+    /**
+     * Returns the number of requests of the provided type which are being
+     * processed.
+     *
+     * @param type
+     *            The type of request.
+     * @return The number of requests being processed.
+     */
+    public int getInFlight(final RequestType type) {
+        return limiters.get(type).inFlight.get();
+    }
+
+    @Override
+    public Promise<ActionResponse, ResourceException> filterAction(final Context context,
+            final ActionRequest request, final RequestHandler next) {
+        final Limiter limiter = limiters.get(RequestType.ACTION);
+        if (!limiter.tryAcquire()) {
+            return reject(context, limiter);
+        }
+        final long start = time.now();
+        try {
+            return limiter.releaseOnCompletion(next.handleAction(context, request), start);
+        } catch (final RuntimeException e) {
+            limiter.release(time.since(start));
+            throw e;
+        }
+    }
+
+    @Override
+    public Promise<ResourceResponse, ResourceException> filterCreate(final Context context,
+            final CreateRequest request, final RequestHandler next) {
+        final Limiter limiter = limiters.get(RequestType.CREATE);
+        if (!limiter.tryAcquire()) {
+            return reject(context, limiter);
+        }
+        final long start = time.now();
+        try {
+            return limiter.releaseOnCompletion(next.handleCreate(context, request), start);
+        } catch (final RuntimeException e) {
+            limiter.release(time.since(start));
+            throw e;
+        }
+    }
+
+    @Override
+    public Promise<ResourceResponse, ResourceException> filterDelete(final Context context,
+            final DeleteRequest request, final RequestHandler next) {
+        final Limiter limiter = limiters.get(RequestType.DELETE);
+        if (!limiter.tryAcquire()) {
+            return reject(context, limiter);
+        }
+        final long start = time.now();
+        try {
+            return limiter.releaseOnCompletion(next.handleDelete(context, request), start);
+        } catch (final RuntimeException e) {
+            limiter.release(time.since(start));
+            throw e;
+        }
+    }
+
+    @Override
+    public Promise<ResourceResponse, ResourceException> filterPatch(final Context context,
+            final PatchRequest request, final RequestHandler next) {
+        final Limiter limiter = limiters.get(RequestType.PATCH);
+        if (!limiter.tryAcquire()) {
+            return reject(context, limiter);
+        }
+        final long start = time.now();
+        try {
+            return limiter.releaseOnCompletion(next.handlePatch(context, request), start);
+        } catch (final RuntimeException e) {
+            limiter.release(time.since(start));
+            throw e;
+        }
+    }
+
+    @Override
+    public Promise<QueryResponse, ResourceException> filterQuery(final Context context,
+            final QueryRequest request, final QueryResourceHandler handler, final RequestHandler next) {
+        final Limiter limiter = limiters.get(RequestType.QUERY);
+        if (!limiter.tryAcquire()) {
+            return reject(context, limiter);
+        }
+        final long start = time.now();
+        try {
+            return limiter.releaseOnCompletion(next.handleQuery(context, request, handler), start);
+        } catch (final RuntimeException e) {
+            limiter.release(time.since(start));
+            throw e;
+        }
+    }
+
+    @Override
+    public Promise<ResourceResponse, ResourceException> filterRead(final Context context,
+            final ReadRequest request, final RequestHandler next) {
+        final Limiter limiter = limiters.get(RequestType.READ);
+        if (!limiter.tryAcquire()) {
+            return reject(context, limiter);
+        }
+        final long start = time.now();
+        try {
+            return limiter.releaseOnCompletion(next.handleRead(context, request), start);
+        } catch (final RuntimeException e) {
+            limiter.release(time.since(start));
+            throw e;
+        }
+    }
+
+    @Override
+    public Promise<ResourceResponse, ResourceException> filterUpdate(final Context context,
+            final UpdateRequest request, final RequestHandler next) {
+        final Limiter limiter = limiters.get(RequestType.UPDATE);
+        if (!limiter.tryAcquire()) {
+            return reject(context, limiter);
+        }
+        final long start = time.now();
+        try {
+            return limiter.releaseOnCompletion(next.handleUpdate(context, request), start);
+        } catch (final RuntimeException e) {
+            limiter.release(time.since(start));
+            throw e;
+        }
+    }
+
+    private static <V> Promise<V, ResourceException> reject(final Context context, final Limiter limiter) {
+        if (context.containsContext(AdviceContext.class)) {
+            context.asContext(AdviceContext.class).putAdvice(RETRY_AFTER_ADVICE,
+                    String.valueOf(limiter.getRetryAfterSeconds()));
+        }
+        return new ServiceUnavailableException("Too many concurrent requests").asPromise();
+    }
+
+    /** The adaptive concurrency limit for one type of request. */
+    private final class Limiter {
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger limit;
+        private final AtomicInteger successes = new AtomicInteger();
+        private final int maxLimit;
+        private final long latencyThreshold;
+        /** The moving average of the latency in milliseconds, which is only used as a hint for clients. */
+        private volatile long averageLatency;
+
+        private Limiter(final int initialLimit, final int maxLimit, final long latencyThreshold) {
+            this.limit = new AtomicInteger(initialLimit);
+            this.maxLimit = maxLimit;
+            this.latencyThreshold = latencyThreshold;
+        }
+
+        private boolean tryAcquire() {
+            if (inFlight.incrementAndGet() > limit.get()) {
+                inFlight.decrementAndGet();
+                return false;
+            }
+            return true;
+        }
+
+        private <V> Promise<V, ResourceException> releaseOnCompletion(final Promise<V, ResourceException> promise,
+                final long start) {
+            return promise.thenAlways(new Runnable() {
+                @Override
+                public void run() {
+                    release(time.since(start));
+                }
+            });
+        }
+
+        private void release(final long latency) {
+            final int concurrency = inFlight.getAndDecrement();
+            averageLatency = (averageLatency * 7 + latency) / 8;
+            final int current = limit.get();
+            if (latency > latencyThreshold) {
+                successes.set(0);
+                limit.compareAndSet(current, Math.max(1, (int) (current * BACKOFF_RATIO)));
+            } else if (concurrency * 2 >= current && successes.incrementAndGet() >= current) {
+                // Only grow the limit when it is actually being used.
+                successes.set(0);
+                limit.compareAndSet(current, Math.min(maxLimit, current + 1));
+            }
+        }
+
+        private long getRetryAfterSeconds() {
+            return Math.max(1, TimeUnit.MILLISECONDS.toSeconds(averageLatency + 999));
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+
+package org.forgerock.json.resource;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.forgerock.services.context.Context;
+
+/**
+ * Encodes and decodes the state of one type of {@link Context} using the
+ * compact binary form produced by a {@link ContextSerializer}. Codecs only
+ * encode the state of the context itself: its parent is encoded separately
+ * and passed back when the context is decoded.
+ * <p>
+ * Codecs are identified in the binary form by their name, which must
+ * therefore never change once contexts have been persisted. The version is
+ * written alongside each encoded context, so that a codec may continue to
+ * decode contexts which were encoded by older versions of itself.
+ * Implementations may use the helper methods provided by
+ * {@link ContextSerializer} for encoding strings and JSON values.
+ *
+ * @param <C>
+ *            The type of context encoded by this codec.
+ */
+public interface ContextCodec<C extends Context> {
+
+    /**
+     * Returns the exact class of the contexts which this codec can encode.
+     *
+     * @return The class of the contexts which this codec can encode.
+     */
+    Class<C> getContextClass();
+
+    /**
+     * Returns the name which identifies this codec in the binary form.
+     *
+     * @return The name which identifies this codec.
+     */
+    String getName();
+
+    /**
+     * Returns the version of the binary form written by {@link #encode}.
+     *
+     * @return The version of the binary form written by this codec, between 0
+     *         and 255.
+     */
+    int getVersion();
+
+    /**
+     * Encodes the state of the provided context, excluding its parent.
+     *
+     * @param context
+     *            The context to be encoded.
+     * @param out
+     *            The output to which the context should be written.
+     * @throws IOException
+     *             If the context could not be written.
+     */
+    void encode(C context, DataOutput out) throws IOException;
+
+    /**
+     * Decodes a context which was encoded by this codec.
+     *
+     * @param parent
+     *            The decoded parent of the context, or {@code null} if the
+     *            context is a root context.
+     * @param version
+     *            The version of the codec which encoded the context.
+     * @param in
+     *            The input from which the context should be read.
+     * @return The decoded context.
+     * @throws IOException
+     *             If the context could not be read or was encoded using an
+     *             unsupported version.
+     */
+    C decode(Context parent, int version, DataInput in) throws IOException;
+}
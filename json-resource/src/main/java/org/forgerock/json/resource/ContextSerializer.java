@@ -0,0 +1,676 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+
+package org.forgerock.json.resource;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.forgerock.http.routing.ApiVersionRouterContext;
+import org.forgerock.http.routing.DefaultVersionBehaviour;
+import org.forgerock.http.routing.Version;
+import org.forgerock.json.JsonValue;
+import org.forgerock.services.context.Context;
+import org.forgerock.services.context.RootContext;
+import org.forgerock.services.context.SecurityContext;
+
+/**
+ * Serializes chains of {@link Context}s using a compact, versioned binary
+ * form, which is much cheaper to produce and parse than the JSON form returned
+ * by {@link Context#toJsonValue()}. Contexts may be serialized in order to be
+ * persisted or forwarded to another service, and then deserialized in order
+ * to resume processing.
+ * <p>
+ * Each context in the chain is encoded by the {@link ContextCodec} registered
+ * for its class. Codecs for the {@link RootContext}, {@link AdviceContext},
+ * {@link ApiVersionRouterContext} and {@link SecurityContext} are always
+ * registered, and codecs for other contexts, such as the HTTP context, may be
+ * provided when the serializer is created. Serialization fails if a context
+ * in the chain has no codec.
+ * <p>
+ * The identifier of the root context is preserved, whereas the other contexts
+ * in the chain are assigned new identifiers when they are deserialized.
+ * Context serializers are immutable and may be shared between threads.
+ */
+public final class ContextSerializer {
+    private static final int MAGIC = 0xC7;
+    private static final int FORMAT_VERSION = 1;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * The maximum number of elements or bytes which are allocated up-front when reading a collection or string,
+     * since the length read from the input cannot be trusted. Larger values grow as they are read.
+     */
+    private static final int MAX_INITIAL_CAPACITY = 1024;
+    /**
+     * The maximum depth of the lists and maps which are read, so that untrusted input cannot exhaust the stack.
+     */
+    private static final int MAX_NESTING_DEPTH = 128;
+
+    // Tags used for encoding JSON values.
+    private static final int TAG_NULL = 0;
+    private static final int TAG_FALSE = 1;
+    private static final int TAG_TRUE = 2;
+    private static final int TAG_INTEGER = 3;
+    private static final int TAG_LONG = 4;
+    private static final int TAG_DOUBLE = 5;
+    private static final int TAG_FLOAT = 6;
+    private static final int TAG_BIG_INTEGER = 7;
+    private static final int TAG_BIG_DECIMAL = 8;
+    private static final int TAG_STRING = 9;
+    private static final int TAG_LIST = 10;
+    private static final int TAG_MAP = 11;
+
+    private final Map<Class<?>, ContextCodec<?>> codecsByClass = new HashMap<>();
+    private final Map<String, ContextCodec<?>> codecsByName = new HashMap<>();
+
+    /**
+     * Creates a new context serializer which supports the default contexts as
+     * well as the contexts supported by the provided codecs.
+     *
+     * @param codecs
+     *            The codecs for additional types of context, which may
+     *            replace the codecs for the default contexts.
+     */
+    public ContextSerializer(final ContextCodec<?>... codecs) {
+        register(ROOT_CODEC);
+        register(ADVICE_CODEC);
+        register(API_VERSION_ROUTER_CODEC);
+        register(SECURITY_CODEC);
+        for (final ContextCodec<?> codec : codecs) {
+            register(codec);
+        }
+    }
+
+    private void register(final ContextCodec<?> codec) {
+        codecsByClass.put(codec.getContextClass(), codec);
+        codecsByName.put(codec.getName(), codec);
+    }
+
+    /**
+     * Serializes the provided context and all of its parents.
+     *
+     * @param context
+     *            The context to be serialized.
+     * @return The binary form of the context chain.
+     * @throws IOException
+     *             If one of the contexts could not be serialized, for example
+     *             because no codec is registered for it.
+     */
+    public byte[] serialize(final Context context) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        serialize(context, new DataOutputStream(bytes));
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Serializes the provided context and all of its parents to the provided
+     * output.
+     *
+     * @param context
+     *            The context to be serialized.
+     * @param out
+     *            The output to which the context chain should be written.
+     * @throws IOException
+     *             If one of the contexts could not be serialized, for example
+     *             because no codec is registered for it.
+     */
+    public void serialize(final Context context, final DataOutput out) throws IOException {
+        final Deque<Context> chain = new ArrayDeque<>();
+        for (Context c = context; c != null; c = c.getParent()) {
+            chain.push(c);
+        }
+        out.writeByte(MAGIC);
+        out.writeByte(FORMAT_VERSION);
+        writeVarInt(out, chain.size());
+        for (final Context c : chain) {
+            final ContextCodec<Context> codec = getCodec(c);
+            writeString(out, codec.getName());
+            out.writeByte(codec.getVersion());
+            codec.encode(c, out);
+        }
+    }
+
+    /**
+     * Deserializes a context chain which was serialized by a compatible
+     * serializer.
+     *
+     * @param bytes
+     *            The binary form of the context chain.
+     * @return The deserialized context.
+     * @throws IOException
+     *             If the context chain could not be deserialized.
+     */
+    public Context deserialize(final byte[] bytes) throws IOException {
+        return deserialize(new DataInputStream(new ByteArrayInputStream(bytes)));
+    }
+
+    /**
+     * Deserializes a context chain which was serialized by a compatible
+     * serializer from the provided input.
+     *
+     * @param in
+     *            The input from which the context chain should be read.
+     * @return The deserialized context.
+     * @throws IOException
+     *             If the context chain could not be deserialized.
+     */
+    public Context deserialize(final DataInput in) throws IOException {
+        if (in.readUnsignedByte() != MAGIC) {
+            throw new StreamCorruptedException("Not a serialized context");
+        }
+        final int formatVersion = in.readUnsignedByte();
+        if (formatVersion != FORMAT_VERSION) {
+            throw new StreamCorruptedException("Unsupported serialized context version " + formatVersion);
+        }
+        final int length = readLength(in);
+        Context context = null;
+        for (int i = 0; i < length; i++) {
+            final String name = readString(in);
+            final ContextCodec<?> codec = codecsByName.get(name);
+            if (codec == null) {
+                throw new StreamCorruptedException("No codec is registered for the context '" + name + "'");
+            }
+            context = codec.decode(context, in.readUnsignedByte(), in);
+        }
+        if (context == null) {
+            throw new StreamCorruptedException("The serialized context chain is empty");
+        }
+        return context;
+    }
+
+    @SuppressWarnings("unchecked")
+    private ContextCodec<Context> getCodec(final Context context) throws IOException {
+        final ContextCodec<?> codec = codecsByClass.get(context.getClass());
+        if (codec == null) {
+            throw new IOException("No codec is registered for the context class " + context.getClass().getName());
+        }
+        return (ContextCodec<Context>) codec;
+    }
+
+    /**
+     * Writes a string, which may be {@code null}, using a compact encoding.
+     *
+     * @param out
+     *            The output.
+     * @param value
+     *            The string, which may be {@code null}.
+     * @throws IOException
+     *             If the string could not be written.
+     */
+    public static void writeString(final DataOutput out, final String value) throws IOException {
+        if (value == null) {
+            writeVarInt(out, 0);
+        } else {
+            final byte[] bytes = value.getBytes(UTF_8);
+            writeVarInt(out, bytes.length + 1);
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Reads a string written by {@link #writeString(DataOutput, String)}.
+     *
+     * @param in
+     *            The input.
+     * @return The string, which may be {@code null}.
+     * @throws IOException
+     *             If the string could not be read.
+     */
+    public static String readString(final DataInput in) throws IOException {
+        final int length = readLength(in) - 1;
+        if (length < 0) {
+            return null;
+        } else if (length <= MAX_INITIAL_CAPACITY) {
+            final byte[] bytes = new byte[length];
+            in.readFully(bytes);
+            return new String(bytes, UTF_8);
+        }
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(MAX_INITIAL_CAPACITY);
+        final byte[] chunk = new byte[MAX_INITIAL_CAPACITY];
+        for (int remaining = length; remaining > 0; remaining -= chunk.length) {
+            final int size = Math.min(remaining, chunk.length);
+            in.readFully(chunk, 0, size);
+            bytes.write(chunk, 0, size);
+        }
+        return new String(bytes.toByteArray(), UTF_8);
+    }
+
+    /**
+     * Writes a map of string lists, such as HTTP headers or advice.
+     *
+     * @param out
+     *            The output.
+     * @param values
+     *            The map of string lists.
+     * @throws IOException
+     *             If the map could not be written.
+     */
+    public static void writeStringListMap(final DataOutput out, final Map<String, List<String>> values)
+            throws IOException {
+        writeVarInt(out, values.size());
+        for (final Map.Entry<String, List<String>> entry : values.entrySet()) {
+            writeString(out, entry.getKey());
+            writeStrings(out, entry.getValue());
+        }
+    }
+
+    /**
+     * Reads a map of string lists written by
+     * {@link #writeStringListMap(DataOutput, Map)} into the provided map.
+     *
+     * @param in
+     *            The input.
+     * @param values
+     *            The map to which the entries should be added.
+     * @return The provided map.
+     * @throws IOException
+     *             If the map could not be read.
+     */
+    public static Map<String, List<String>> readStringListMap(final DataInput in,
+            final Map<String, List<String>> values) throws IOException {
+        final int size = readLength(in);
+        for (int i = 0; i < size; i++) {
+            values.put(readString(in), readStrings(in, new ArrayList<String>()));
+        }
+        return values;
+    }
+
+    /**
+     * Writes a collection of strings.
+     *
+     * @param out
+     *            The output.
+     * @param values
+     *            The strings.
+     * @throws IOException
+     *             If the strings could not be written.
+     */
+    public static void writeStrings(final DataOutput out, final Collection<String> values) throws IOException {
+        writeVarInt(out, values.size());
+        for (final String value : values) {
+            writeString(out, value);
+        }
+    }
+
+    /**
+     * Reads strings written by {@link #writeStrings(DataOutput, Collection)}
+     * into the provided collection.
+     *
+     * @param <C>
+     *            The type of collection.
+     * @param in
+     *            The input.
+     * @param values
+     *            The collection to which the strings should be added.
+     * @return The provided collection.
+     * @throws IOException
+     *             If the strings could not be read.
+     */
+    public static <C extends Collection<String>> C readStrings(final DataInput in, final C values)
+            throws IOException {
+        final int size = readLength(in);
+        for (int i = 0; i < size; i++) {
+            values.add(readString(in));
+        }
+        return values;
+    }
+
+    /**
+     * Writes a JSON value, which must only contain maps, lists, strings,
+     * numbers, booleans and {@code null}s.
+     *
+     * @param out
+     *            The output.
+     * @param value
+     *            The JSON value, which may be a {@link JsonValue}.
+     * @throws IOException
+     *             If the value could not be written, or if it contains
+     *             objects which are not JSON values.
+     */
+    public static void writeValue(final DataOutput out, final Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(TAG_NULL);
+        } else if (value instanceof String) {
+            out.writeByte(TAG_STRING);
+            writeString(out, (String) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte((Boolean) value ? TAG_TRUE : TAG_FALSE);
+        } else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            out.writeByte(TAG_INTEGER);
+            writeVarLong(out, ((Number) value).intValue());
+        } else if (value instanceof Long) {
+            out.writeByte(TAG_LONG);
+            writeVarLong(out, (Long) value);
+        } else if (value instanceof Double) {
+            out.writeByte(TAG_DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (value instanceof Float) {
+            out.writeByte(TAG_FLOAT);
+            out.writeFloat((Float) value);
+        } else if (value instanceof BigInteger) {
+            out.writeByte(TAG_BIG_INTEGER);
+            writeString(out, value.toString());
+        } else if (value instanceof BigDecimal) {
+            out.writeByte(TAG_BIG_DECIMAL);
+            writeString(out, value.toString());
+        } else if (value instanceof List) {
+            final List<?> list = (List<?>) value;
+            out.writeByte(TAG_LIST);
+            writeVarInt(out, list.size());
+            for (final Object element : list) {
+                writeValue(out, element);
+            }
+        } else if (value instanceof Map) {
+            final Map<?, ?> map = (Map<?, ?>) value;
+            out.writeByte(TAG_MAP);
+            writeVarInt(out, map.size());
+            for (final Map.Entry<?, ?> entry : map.entrySet()) {
+                writeString(out, String.valueOf(entry.getKey()));
+                writeValue(out, entry.getValue());
+            }
+        } else if (value instanceof JsonValue) {
+            writeValue(out, ((JsonValue) value).getObject());
+        } else {
+            throw new IOException("Unable to serialize a value of type " + value.getClass().getName());
+        }
+    }
+
+    /**
+     * Reads a JSON value written by {@link #writeValue(DataOutput, Object)}.
+     *
+     * @param in
+     *            The input.
+     * @return The JSON value, which may be {@code null}.
+     * @throws IOException
+     *             If the value could not be read.
+     */
+    public static Object readValue(final DataInput in) throws IOException {
+        return readValue(in, 0);
+    }
+
+    private static Object readValue(final DataInput in, final int depth) throws IOException {
+        final int tag = in.readUnsignedByte();
+        switch (tag) {
+        case TAG_NULL:
+            return null;
+        case TAG_FALSE:
+            return Boolean.FALSE;
+        case TAG_TRUE:
+            return Boolean.TRUE;
+        case TAG_INTEGER:
+            return (int) readVarLong(in);
+        case TAG_LONG:
+            return readVarLong(in);
+        case TAG_DOUBLE:
+            return in.readDouble();
+        case TAG_FLOAT:
+            return in.readFloat();
+        case TAG_BIG_INTEGER:
+            return new BigInteger(readString(in));
+        case TAG_BIG_DECIMAL:
+            return new BigDecimal(readString(in));
+        case TAG_STRING:
+            return readString(in);
+        case TAG_LIST:
+            checkNestingDepth(depth);
+            final int length = readLength(in);
+            final List<Object> list = new ArrayList<>(Math.min(length, MAX_INITIAL_CAPACITY));
+            for (int i = 0; i < length; i++) {
+                list.add(readValue(in, depth + 1));
+            }
+            return list;
+        case TAG_MAP:
+            checkNestingDepth(depth);
+            final int size = readLength(in);
+            final Map<String, Object> map = new LinkedHashMap<>(Math.min(size, MAX_INITIAL_CAPACITY) * 2);
+            for (int i = 0; i < size; i++) {
+                map.put(readString(in), readValue(in, depth + 1));
+            }
+            return map;
+        default:
+            throw new StreamCorruptedException("Unknown JSON value tag " + tag);
+        }
+    }
+
+    private static void checkNestingDepth(final int depth) throws StreamCorruptedException {
+        if (depth >= MAX_NESTING_DEPTH) {
+            throw new StreamCorruptedException("JSON values are nested more than " + MAX_NESTING_DEPTH + " deep");
+        }
+    }
+
+    private static void writeVarInt(final DataOutput out, final int value) throws IOException {
+        int v = value;
+        while ((v & ~0x7F) != 0) {
+            out.writeByte((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        out.writeByte(v);
+    }
+
+    private static int readVarInt(final DataInput in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            final int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new StreamCorruptedException("Malformed variable length integer");
+    }
+
+    private static int readLength(final DataInput in) throws IOException {
+        final int length = readVarInt(in);
+        if (length < 0) {
+            throw new StreamCorruptedException("Invalid length " + length);
+        }
+        return length;
+    }
+
+    private static void checkVersion(final ContextCodec<?> codec, final int version)
+            throws StreamCorruptedException {
+        if (version != codec.getVersion()) {
+            throw new StreamCorruptedException("Unsupported " + codec.getName() + " context version " + version);
+        }
+    }
+
+    // Zig-zag encoding so that small negative numbers remain small.
+    private static void writeVarLong(final DataOutput out, final long value) throws IOException {
+        long v = (value << 1) ^ (value >> 63);
+        while ((v & ~0x7FL) != 0) {
+            out.writeByte((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.writeByte((int) v);
+    }
+
+    private static long readVarLong(final DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            final int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return (value >>> 1) ^ -(value & 1);
+            }
+        }
+        throw new StreamCorruptedException("Malformed variable length integer");
+    }
+
+    private static final ContextCodec<RootContext> ROOT_CODEC = new ContextCodec<RootContext>() {
+        @Override
+        public Class<RootContext> getContextClass() {
+            return RootContext.class;
+        }
+
+        @Override
+        public String getName() {
+            return "root";
+        }
+
+        @Override
+        public int getVersion() {
+            return 1;
+        }
+
+        @Override
+        public void encode(final RootContext context, final DataOutput out) throws IOException {
+            writeString(out, context.getId());
+        }
+
+        @Override
+        public RootContext decode(final Context parent, final int version, final DataInput in) throws IOException {
+            checkVersion(this, version);
+            if (parent != null) {
+                throw new StreamCorruptedException("A root context cannot have a parent");
+            }
+            return new RootContext(readString(in));
+        }
+    };
+
+    private static final ContextCodec<AdviceContext> ADVICE_CODEC = new ContextCodec<AdviceContext>() {
+        @Override
+        public Class<AdviceContext> getContextClass() {
+            return AdviceContext.class;
+        }
+
+        @Override
+        public String getName() {
+            return "advice";
+        }
+
+        @Override
+        public int getVersion() {
+            return 1;
+        }
+
+        @Override
+        public void encode(final AdviceContext context, final DataOutput out) throws IOException {
+            writeStrings(out, context.getRestrictedAdviceNames());
+            writeStringListMap(out, context.getAdvices());
+        }
+
+        @Override
+        public AdviceContext decode(final Context parent, final int version, final DataInput in)
+                throws IOException {
+            checkVersion(this, version);
+            final AdviceContext context =
+                    new AdviceContext(parent, readStrings(in, new ArrayList<String>()));
+            // The advice was validated when it was added to the original context.
+            readStringListMap(in, context.getAdvices());
+            return context;
+        }
+    };
+
+    private static final ContextCodec<ApiVersionRouterContext> API_VERSION_ROUTER_CODEC =
+            new ContextCodec<ApiVersionRouterContext>() {
+                @Override
+                public Class<ApiVersionRouterContext> getContextClass() {
+                    return ApiVersionRouterContext.class;
+                }
+
+                @Override
+                public String getName() {
+                    return "apiVersionRouter";
+                }
+
+                @Override
+                public int getVersion() {
+                    return 1;
+                }
+
+                @Override
+                public void encode(final ApiVersionRouterContext context, final DataOutput out)
+                        throws IOException {
+                    final DefaultVersionBehaviour behaviour = context.getDefaultVersionBehaviour();
+                    writeString(out, behaviour != null ? behaviour.name() : null);
+                    out.writeBoolean(context.isWarningEnabled());
+                    final Version resourceVersion = context.getResourceVersion();
+                    writeString(out, resourceVersion != null ? resourceVersion.toString() : null);
+                }
+
+                @Override
+                public ApiVersionRouterContext decode(final Context parent, final int version,
+                        final DataInput in) throws IOException {
+                    checkVersion(this, version);
+                    final String behaviour = readString(in);
+                    final ApiVersionRouterContext context = new ApiVersionRouterContext(parent,
+                            behaviour != null ? DefaultVersionBehaviour.valueOf(behaviour) : null);
+                    context.setWarningEnabled(in.readBoolean());
+                    final String resourceVersion = readString(in);
+                    if (resourceVersion != null) {
+                        context.setResourceVersion(Version.version(resourceVersion));
+                    }
+                    return context;
+                }
+            };
+
+    private static final ContextCodec<SecurityContext> SECURITY_CODEC = new ContextCodec<SecurityContext>() {
+        @Override
+        public Class<SecurityContext> getContextClass() {
+            return SecurityContext.class;
+        }
+
+        @Override
+        public String getName() {
+            return "security";
+        }
+
+        @Override
+        public int getVersion() {
+            return 1;
+        }
+
+        @Override
+        public void encode(final SecurityContext context, final DataOutput out) throws IOException {
+            writeString(out, context.getAuthenticationId());
+            writeValue(out, context.getAuthorization());
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public SecurityContext decode(final Context parent, final int version, final DataInput in)
+                throws IOException {
+            checkVersion(this, version);
+            final String authenticationId = readString(in);
+            final Object authorization = readValue(in);
+            if (authorization != null && !(authorization instanceof Map)) {
+                throw new StreamCorruptedException("The authorization of a security context is not a JSON object");
+            }
+            return new SecurityContext(parent, authenticationId, authorization != null
+                    ? (Map<String, Object>) authorization
+                    : Collections.<String, Object>emptyMap());
+        }
+    };
+}
@@ -0,0 +1,312 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+
+package org.forgerock.json.resource;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.forgerock.json.JsonPointer;
+import org.forgerock.json.JsonValue;
+
+/**
+ * A compiled representation of the list of fields requested by a client,
+ * which may be used by resource providers in order to avoid loading or
+ * copying data which will not be returned, and for projecting resources onto
+ * the requested fields.
+ * <p>
+ * Projection follows the usual field filtering rules: each requested field
+ * is included in the projected resource using the last element of its JSON
+ * pointer as its name, and the empty pointer includes all fields of the
+ * resource. When a pointer traverses an array using an element which is not
+ * an array index, the remainder of the pointer is applied to each element of
+ * the array, and the projected value is the list of the matching values. For
+ * example, the field {@code /emails/type} applied to the resource:
+ *
+ * <pre>
+ * { "emails" : [ { "type" : "work", ... }, { "type" : "home", ... } ] }
+ * </pre>
+ *
+ * yields the projected resource:
+ *
+ * <pre>
+ * { "type" : [ "work", "home" ] }
+ * </pre>
+ *
+ * Projections are immutable and may be shared between threads.
+ *
+ * @see Request#getFields()
+ */
+public final class FieldProjection {
+    private static final FieldProjection ALL = new FieldProjection(Collections.<JsonPointer>emptyList());
+
+    /** Indicates that a field could not be resolved, as opposed to a field whose value is null. */
+    private static final Object MISSING = new Object();
+
+    /**
+     * Returns the projection of the fields requested by the provided request.
+     *
+     * @param request
+     *            The request.
+     * @return The projection of the fields requested by the provided request.
+     */
+    public static FieldProjection of(final Request request) {
+        return of(request.getFields());
+    }
+
+    /**
+     * Returns the projection of the provided list of fields. An empty list
+     * indicates that all fields should be included.
+     *
+     * @param fields
+     *            The list of fields to be included.
+     * @return The projection of the provided list of fields.
+     */
+    public static FieldProjection of(final Collection<JsonPointer> fields) {
+        return fields.isEmpty() ? ALL : new FieldProjection(fields);
+    }
+
+    private final List<JsonPointer> fields;
+    private final String[][] paths;
+    private final boolean includesAll;
+
+    private FieldProjection(final Collection<JsonPointer> fields) {
+        this.fields = Collections.unmodifiableList(new ArrayList<>(fields));
+        this.paths = new String[fields.size()][];
+        boolean all = fields.isEmpty();
+        int i = 0;
+        for (final JsonPointer field : fields) {
+            final String[] path = new String[field.size()];
+            for (int j = 0; j < path.length; j++) {
+                path[j] = field.get(j);
+            }
+            paths[i++] = path;
+            all |= path.length == 0;
+        }
+        this.includesAll = all;
+    }
+
+    /**
+     * Returns the list of fields from which this projection was compiled.
+     *
+     * @return The unmodifiable list of fields.
+     */
+    public List<JsonPointer> getFields() {
+        return fields;
+    }
+
+    /**
+     * Returns {@code true} if the projection leaves resources unchanged, which
+     * is the case when no fields were requested.
+     *
+     * @return {@code true} if the projection leaves resources unchanged.
+     */
+    public boolean isIdentity() {
+        return fields.isEmpty();
+    }
+
+    /**
+     * Returns {@code true} if all the fields of a resource are required in
+     * order to compute this projection.
+     *
+     * @return {@code true} if all the fields of a resource are required.
+     */
+    public boolean includesAll() {
+        return includesAll;
+    }
+
+    /**
+     * Returns {@code true} if the content at the provided JSON pointer is
+     * required in order to compute this projection. This is the case if the
+     * pointer references a requested field, or a field containing or contained
+     * in a requested field. Resource providers may use this method in order to
+     * avoid loading or copying data which will not be returned to the client.
+     *
+     * @param pointer
+     *            The JSON pointer referencing the content.
+     * @return {@code true} if the content at the provided JSON pointer is
+     *         required.
+     */
+    public boolean includes(final JsonPointer pointer) {
+        if (includesAll) {
+            return true;
+        }
+        final int size = pointer.size();
+        for (final String[] path : paths) {
+            final int length = Math.min(size, path.length);
+            boolean matches = true;
+            for (int i = 0; i < length && matches; i++) {
+                matches = path[i].equals(pointer.get(i)) || isIndexOrWildcard(path[i], pointer.get(i));
+            }
+            if (matches) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns {@code true} if the top-level field having the provided name is
+     * required in order to compute this projection.
+     *
+     * @param name
+     *            The name of the top-level field.
+     * @return {@code true} if the named field is required.
+     */
+    public boolean includesField(final String name) {
+        if (includesAll) {
+            return true;
+        }
+        for (final String[] path : paths) {
+            if (path[0].equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns a JSON object containing only the projected fields of the
+     * provided JSON value. If this projection is the identity, or the value is
+     * {@code null} or empty, then the value is returned unchanged.
+     * <p>
+     * <b>NOTE:</b> this method only performs a shallow copy of extracted
+     * fields, so changes to the projected JSON value may impact the original
+     * JSON value, and vice-versa.
+     *
+     * @param resource
+     *            The JSON value to be projected.
+     * @return The projected JSON value.
+     */
+    public JsonValue project(final JsonValue resource) {
+        if (fields.isEmpty() || resource.isNull() || resource.size() == 0) {
+            return resource;
+        }
+        final Object content = resource.getObject();
+        final Map<String, Object> projected = new LinkedHashMap<>(paths.length);
+        for (final String[] path : paths) {
+            if (path.length == 0) {
+                // Special case - copy resource fields (assumes Map).
+                projected.putAll(resource.asMap());
+            } else {
+                final Object value = resolve(content, path, 0);
+                if (value != MISSING) {
+                    projected.put(path[path.length - 1], value);
+                }
+            }
+        }
+        return new JsonValue(projected);
+    }
+
+    /**
+     * Returns a resource containing only the projected fields of the provided
+     * resource. If the resource specifies its own list of fields then they
+     * take precedence over this projection.
+     *
+     * @param resource
+     *            The resource to be projected.
+     * @return The projected resource, which may be the provided resource if
+     *         the projection left it unchanged.
+     */
+    public ResourceResponse project(final ResourceResponse resource) {
+        final FieldProjection projection = resource.hasFields() ? of(resource.getFields()) : this;
+        final JsonValue unprojected = resource.getContent();
+        final JsonValue projected = projection.project(unprojected);
+        if (projected == unprojected) {
+            return resource; // Unchanged.
+        } else {
+            return Responses.newResourceResponse(resource.getId(), resource.getRevision(), projected);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return fields.toString();
+    }
+
+    private static Object resolve(final Object node, final String[] path, final int index) {
+        if (index == path.length) {
+            return node;
+        } else if (node instanceof Map) {
+            final Map<?, ?> map = (Map<?, ?>) node;
+            final String key = path[index];
+            final Object child = map.get(key);
+            return child != null || map.containsKey(key) ? resolve(child, path, index + 1) : MISSING;
+        } else if (node instanceof List) {
+            final List<?> list = (List<?>) node;
+            final int element = toIndex(path[index]);
+            if (element >= 0) {
+                return element < list.size() ? resolve(list.get(element), path, index + 1) : MISSING;
+            }
+            // Apply the remainder of the pointer to each element of the array.
+            final List<Object> values = new ArrayList<>(list.size());
+            for (final Object item : list) {
+                collect(item, path, index, values);
+            }
+            return values.isEmpty() ? MISSING : values;
+        } else {
+            return MISSING;
+        }
+    }
+
+    // Nested array traversals are flattened into a single list of matching values.
+    private static void collect(final Object node, final String[] path, final int index, final List<Object> values) {
+        if (index == path.length) {
+            if (node != null) {
+                values.add(node);
+            }
+        } else if (node instanceof Map) {
+            final Map<?, ?> map = (Map<?, ?>) node;
+            final String key = path[index];
+            if (map.containsKey(key)) {
+                collect(map.get(key), path, index + 1, values);
+            }
+        } else if (node instanceof List) {
+            final List<?> list = (List<?>) node;
+            final int element = toIndex(path[index]);
+            if (element < 0) {
+                for (final Object item : list) {
+                    collect(item, path, index, values);
+                }
+            } else if (element < list.size()) {
+                collect(list.get(element), path, index + 1, values);
+            }
+        }
+    }
+
+    private static boolean isIndexOrWildcard(final String requested, final String token) {
+        // Array elements are matched by any non-index token and vice versa.
+        return toIndex(requested) >= 0 != toIndex(token) >= 0;
+    }
+
+    private static int toIndex(final String token) {
+        final int length = token.length();
+        if (length == 0 || length > 9) {
+            return -1;
+        }
+        for (int i = 0; i < length; i++) {
+            final char c = token.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+        }
+        return length > 1 && token.charAt(0) == '0' ? -1 : Integer.parseInt(token);
+    }
+}
@@ -12,10 +12,16 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2012-2015 ForgeRock AS.
+ * Portions Copyright 2026 Wren Security.
  */
 
 package org.forgerock.json.resource;
 
+import static org.forgerock.json.resource.Resources.asBatchQueryResourceHandler;
+
+import java.util.ArrayList;
+import java.util.List;
+
 import org.forgerock.services.context.Context;
 import org.forgerock.util.Function;
 import org.forgerock.util.promise.Promise;
@@ -75,11 +81,22 @@ final class InternalConnection extends AbstractAsynchronousConnection {
     @Override
     public Promise<QueryResponse, ResourceException> queryAsync(final Context context,
             final QueryRequest request, final QueryResourceHandler handler) {
+        final FieldProjection projection = FieldProjection.of(request);
+        final BatchQueryResourceHandler batchHandler = asBatchQueryResourceHandler(handler);
         return requestHandler.handleQuery(context, request,
-                new QueryResourceHandler() {
+                new BatchQueryResourceHandler() {
                     @Override
                     public boolean handleResource(ResourceResponse resource) {
-                        return handler.handleResource(Resources.filterResource(resource, request.getFields()));
+                        return batchHandler.handleResource(projection.project(resource));
+                    }
+
+                    @Override
+                    public boolean handleResources(List<ResourceResponse> resources) {
+                        final List<ResourceResponse> projected = new ArrayList<>(resources.size());
+                        for (final ResourceResponse resource : resources) {
+                            projected.add(projection.project(resource));
+                        }
+                        return batchHandler.handleResources(projected);
                     }
                 });
     }
@@ -98,11 +115,12 @@ final class InternalConnection extends AbstractAsynchronousConnection {
     }
 
     private Function<ResourceResponse, ResourceResponse, ResourceException> filterResponse(final Request request) {
+        final FieldProjection projection = FieldProjection.of(request);
         return new Function<ResourceResponse, ResourceResponse, ResourceException>() {
             @Override
             public ResourceResponse apply(final ResourceResponse response)
                     throws ResourceException {
-                return Resources.filterResource(response, request.getFields());
+                return projection.project(response);
             }
         };
     }
@@ -0,0 +1,568 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+
+package org.forgerock.json.resource;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.forgerock.json.JsonValue;
+
+/**
+ * Converts between the JSON content of requests and responses and the typed
+ * parameters and results of annotated request handler methods.
+ * <p>
+ * A codec is built once per class and cached alongside the class, so the
+ * cache does not prevent classes from being unloaded. Codecs of generic
+ * collections and maps are cheap wrappers around the cached codecs of their
+ * elements, and are not cached. Codecs read and write the
+ * objects wrapped by {@link JsonValue}s directly, so binding content to a
+ * typed object does not create any intermediate JSON tree, nor serialize the
+ * content. The following types are supported:
+ * <ul>
+ * <li>{@link JsonValue} and {@link Object}, which are bound to the JSON content itself</li>
+ * <li>strings, booleans, numbers, their primitive types and enums</li>
+ * <li>lists, sets and collections, and maps whose keys are strings, of any supported type</li>
+ * <li>types providing a public static {@code valueOf(JsonValue)} method or a public constructor taking a
+ * {@code JsonValue}, which are encoded using their {@code toJsonValue()} method if they have one</li>
+ * <li>concrete classes having a no-argument constructor, whose non-static and non-transient fields are
+ * bound to the fields of a JSON object having the same names. All of these fields must have a supported
+ * type</li>
+ * </ul>
+ * Decoding content which does not match the expected type fails with an
+ * {@link IllegalArgumentException}.
+ *
+ * @param <T>
+ *            The type of the values converted by the codec.
+ */
+abstract class JsonCodec<T> {
+
+    /** The cached codecs of classes, which are {@code null} for classes which cannot be converted. */
+    private static final ClassValue<JsonCodec<?>> CODECS = new ClassValue<JsonCodec<?>>() {
+        @Override
+        protected JsonCodec<?> computeValue(final Class<?> type) {
+            return newCodec(type);
+        }
+    };
+
+    private static final JsonCodec<Object> OBJECT = new JsonCodec<Object>() {
+        @Override
+        Object decode(final Object json) {
+            return json;
+        }
+
+        @Override
+        Object encode(final Object value) {
+            return value instanceof JsonValue ? ((JsonValue) value).getObject() : value;
+        }
+    };
+
+    private static final JsonCodec<JsonValue> JSON_VALUE = new JsonCodec<JsonValue>() {
+        @Override
+        JsonValue decode(final Object json) {
+            return new JsonValue(json);
+        }
+
+        @Override
+        JsonValue decodeContent(final JsonValue content) {
+            return content;
+        }
+
+        @Override
+        Object encode(final JsonValue value) {
+            return value.getObject();
+        }
+    };
+
+    private static final JsonCodec<String> STRING = new JsonCodec<String>() {
+        @Override
+        String decode(final Object json) {
+            return json == null ? null : cast(json, String.class);
+        }
+
+        @Override
+        Object encode(final String value) {
+            return value;
+        }
+    };
+
+    private static final JsonCodec<Boolean> BOOLEAN = new JsonCodec<Boolean>() {
+        @Override
+        Boolean decode(final Object json) {
+            return json == null ? null : cast(json, Boolean.class);
+        }
+
+        @Override
+        Object encode(final Boolean value) {
+            return value;
+        }
+    };
+
+    private static final Map<Class<?>, Class<?>> BOXED_TYPES = new HashMap<>();
+
+    static {
+        BOXED_TYPES.put(boolean.class, Boolean.class);
+        BOXED_TYPES.put(byte.class, Byte.class);
+        BOXED_TYPES.put(short.class, Short.class);
+        BOXED_TYPES.put(int.class, Integer.class);
+        BOXED_TYPES.put(long.class, Long.class);
+        BOXED_TYPES.put(float.class, Float.class);
+        BOXED_TYPES.put(double.class, Double.class);
+    }
+
+    /** Decodes and encodes numbers, converting them to the expected number type. */
+    private static final class NumberCodec extends JsonCodec<Number> {
+        private final Class<?> type;
+
+        private NumberCodec(final Class<?> type) {
+            this.type = type;
+        }
+
+        @Override
+        Number decode(final Object json) {
+            if (json == null) {
+                return null;
+            }
+            final Number number = cast(json, Number.class);
+            if (type == Integer.class) {
+                return number.intValue();
+            } else if (type == Long.class) {
+                return number.longValue();
+            } else if (type == Double.class) {
+                return number.doubleValue();
+            } else if (type == Float.class) {
+                return number.floatValue();
+            } else if (type == Short.class) {
+                return number.shortValue();
+            } else if (type == Byte.class) {
+                return number.byteValue();
+            }
+            return number;
+        }
+
+        @Override
+        Object encode(final Number value) {
+            return value;
+        }
+    }
+
+    /** Decodes and encodes enum constants using their names. */
+    private static final class EnumCodec<E extends Enum<E>> extends JsonCodec<E> {
+        private final Class<E> type;
+
+        private EnumCodec(final Class<E> type) {
+            this.type = type;
+        }
+
+        @Override
+        E decode(final Object json) {
+            return json == null ? null : Enum.valueOf(type, cast(json, String.class));
+        }
+
+        @Override
+        Object encode(final E value) {
+            return value == null ? null : value.name();
+        }
+    }
+
+    /** Decodes and encodes lists, sets and collections, converting each element. */
+    private static final class CollectionCodec extends JsonCodec<Collection<Object>> {
+        private final boolean set;
+        private final JsonCodec<Object> elements;
+
+        private CollectionCodec(final boolean set, final JsonCodec<Object> elements) {
+            this.set = set;
+            this.elements = elements;
+        }
+
+        @Override
+        void checkBinding(final Set<JsonCodec<?>> checked) {
+            elements.checkBinding(checked);
+        }
+
+        @Override
+        Collection<Object> decode(final Object json) {
+            if (json == null) {
+                return null;
+            }
+            final List<?> list = cast(json, List.class);
+            final Collection<Object> collection = set ? new LinkedHashSet<>() : new ArrayList<>(list.size());
+            for (final Object element : list) {
+                collection.add(elements.decode(element));
+            }
+            return collection;
+        }
+
+        @Override
+        Object encode(final Collection<Object> value) {
+            if (value == null) {
+                return null;
+            }
+            final List<Object> list = new ArrayList<>(value.size());
+            for (final Object element : value) {
+                list.add(elements.encode(element));
+            }
+            return list;
+        }
+    }
+
+    /** Decodes and encodes maps having string keys, converting each value. */
+    private static final class MapCodec extends JsonCodec<Map<String, Object>> {
+        private final JsonCodec<Object> values;
+
+        private MapCodec(final JsonCodec<Object> values) {
+            this.values = values;
+        }
+
+        @Override
+        void checkBinding(final Set<JsonCodec<?>> checked) {
+            values.checkBinding(checked);
+        }
+
+        @Override
+        Map<String, Object> decode(final Object json) {
+            if (json == null) {
+                return null;
+            }
+            final Map<?, ?> map = cast(json, Map.class);
+            final Map<String, Object> decoded = new LinkedHashMap<>(map.size());
+            for (final Map.Entry<?, ?> entry : map.entrySet()) {
+                decoded.put(String.valueOf(entry.getKey()), values.decode(entry.getValue()));
+            }
+            return decoded;
+        }
+
+        @Override
+        Object encode(final Map<String, Object> value) {
+            if (value == null) {
+                return null;
+            }
+            final Map<String, Object> encoded = new LinkedHashMap<>(value.size());
+            for (final Map.Entry<String, Object> entry : value.entrySet()) {
+                encoded.put(entry.getKey(), values.encode(entry.getValue()));
+            }
+            return encoded;
+        }
+    }
+
+    /** Decodes values using their static {@code valueOf(JsonValue)} method or their {@code JsonValue} constructor. */
+    private static final class JsonValueFactoryCodec extends JsonCodec<Object> {
+        private final Method valueOf;
+        private final Constructor<?> constructor;
+        private final Method toJsonValue;
+
+        private JsonValueFactoryCodec(final Method valueOf, final Constructor<?> constructor,
+                final Method toJsonValue) {
+            this.valueOf = valueOf;
+            this.constructor = constructor;
+            this.toJsonValue = toJsonValue;
+        }
+
+        @Override
+        Object decode(final Object json) {
+            return json == null ? null : decodeContent(new JsonValue(json));
+        }
+
+        @Override
+        Object decodeContent(final JsonValue content) {
+            try {
+                return valueOf != null ? valueOf.invoke(null, content) : constructor.newInstance(content);
+            } catch (final InvocationTargetException e) {
+                throw new IllegalArgumentException(e.getCause().getMessage(), e.getCause());
+            } catch (final ReflectiveOperationException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        Object encode(final Object value) {
+            if (value == null) {
+                return null;
+            } else if (toJsonValue == null) {
+                return value.toString();
+            }
+            try {
+                return ((JsonValue) toJsonValue.invoke(value)).getObject();
+            } catch (final InvocationTargetException e) {
+                throw new IllegalStateException(e.getCause());
+            } catch (final IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    /**
+     * Decodes and encodes objects as JSON objects whose fields are the fields of the object. The fields of the
+     * class are resolved once the codec has been cached, so that classes may refer to themselves.
+     */
+    private static final class BeanCodec extends JsonCodec<Object> {
+        /** The bound fields of the class and their codecs. */
+        private static final class Binding {
+            private final Field[] fields;
+            private final JsonCodec<Object>[] codecs;
+
+            private Binding(final Field[] fields, final JsonCodec<Object>[] codecs) {
+                this.fields = fields;
+                this.codecs = codecs;
+            }
+        }
+
+        private final Constructor<?> constructor;
+        private volatile Binding binding;
+
+        private BeanCodec(final Constructor<?> constructor) {
+            this.constructor = constructor;
+        }
+
+        @Override
+        Object decode(final Object json) {
+            if (json == null) {
+                return null;
+            }
+            final Map<?, ?> map = cast(json, Map.class);
+            final Binding binding = getBinding();
+            try {
+                final Object bean = constructor.newInstance();
+                for (int i = 0; i < binding.fields.length; i++) {
+                    final Object value = map.get(binding.fields[i].getName());
+                    if (value != null) {
+                        binding.fields[i].set(bean, binding.codecs[i].decode(value));
+                    }
+                }
+                return bean;
+            } catch (final InvocationTargetException e) {
+                throw new IllegalStateException(e.getCause());
+            } catch (final ReflectiveOperationException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        Object encode(final Object value) {
+            if (value == null) {
+                return null;
+            }
+            final Binding binding = getBinding();
+            final Map<String, Object> map = new LinkedHashMap<>(binding.fields.length * 2);
+            try {
+                for (int i = 0; i < binding.fields.length; i++) {
+                    map.put(binding.fields[i].getName(), binding.codecs[i].encode(binding.fields[i].get(value)));
+                }
+            } catch (final IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+            return map;
+        }
+
+        @SuppressWarnings("unchecked")
+        private Binding getBinding() {
+            if (binding != null) {
+                return binding;
+            }
+            final List<Field> fields = new ArrayList<>();
+            final List<JsonCodec<Object>> codecs = new ArrayList<>();
+            for (Class<?> c = constructor.getDeclaringClass(); c != Object.class; c = c.getSuperclass()) {
+                for (final Field field : c.getDeclaredFields()) {
+                    final int modifiers = field.getModifiers();
+                    if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || field.isSynthetic()) {
+                        continue;
+                    }
+                    final JsonCodec<Object> codec = codecOf(field.getGenericType());
+                    if (codec == null) {
+                        throw new IllegalArgumentException("The field '" + field.getName() + "' of "
+                                + c.getName() + " has the unsupported type " + field.getGenericType());
+                    }
+                    field.setAccessible(true);
+                    fields.add(field);
+                    codecs.add(codec);
+                }
+            }
+            binding = new Binding(fields.toArray(new Field[fields.size()]),
+                    codecs.toArray(new JsonCodec[codecs.size()]));
+            return binding;
+        }
+
+        @Override
+        void checkBinding(final Set<JsonCodec<?>> checked) {
+            if (checked.add(this)) {
+                for (final JsonCodec<Object> codec : getBinding().codecs) {
+                    codec.checkBinding(checked);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the codec for the provided type.
+     *
+     * @param type
+     *            The type of the values to be converted.
+     * @return The codec, or {@code null} if values of the type cannot be
+     *         converted.
+     * @throws IllegalArgumentException
+     *             If the type is a class having a field whose type cannot be
+     *             converted.
+     */
+    static JsonCodec<Object> of(final Type type) {
+        final JsonCodec<Object> codec = codecOf(type);
+        if (codec != null) {
+            // The fields of classes are bound now so that unsupported fields are reported by this method.
+            codec.checkBinding(Collections.newSetFromMap(new IdentityHashMap<JsonCodec<?>, Boolean>()));
+        }
+        return codec;
+    }
+
+    /** Returns the codec for the provided type, without checking that the fields of classes can be bound. */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static JsonCodec<Object> codecOf(final Type type) {
+        if (type instanceof Class) {
+            return (JsonCodec<Object>) CODECS.get((Class<?>) type);
+        } else if (type instanceof ParameterizedType) {
+            final ParameterizedType parameterized = (ParameterizedType) type;
+            final Type[] arguments = parameterized.getActualTypeArguments();
+            final Type raw = parameterized.getRawType();
+            if (raw == List.class || raw == Collection.class || raw == Set.class) {
+                final JsonCodec<Object> elements = codecOf(arguments[0]);
+                return elements != null ? new CollectionCodec(raw == Set.class, elements) : null;
+            } else if (raw == Map.class && arguments[0] == String.class) {
+                final JsonCodec<Object> values = codecOf(arguments[1]);
+                return values != null ? new MapCodec(values) : null;
+            }
+        }
+        return null;
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static JsonCodec<?> newCodec(final Class<?> type) {
+        final Class<?> c = BOXED_TYPES.containsKey(type) ? BOXED_TYPES.get(type) : type;
+        if (c == Object.class) {
+            return OBJECT;
+        } else if (c == JsonValue.class) {
+            return JSON_VALUE;
+        } else if (c == String.class) {
+            return STRING;
+        } else if (c == Boolean.class) {
+            return BOOLEAN;
+        } else if (c == Number.class || BOXED_TYPES.containsValue(c)) {
+            return new NumberCodec(c);
+        } else if (c.isEnum()) {
+            return new EnumCodec(c);
+        } else if (c == List.class || c == Collection.class || c == Set.class) {
+            return new CollectionCodec(c == Set.class, OBJECT);
+        } else if (c == Map.class) {
+            return new MapCodec(OBJECT);
+        } else if (c.isInterface() || c.isArray() || Modifier.isAbstract(c.getModifiers())) {
+            return null;
+        }
+        final Method toJsonValue = findMethod(c, "toJsonValue");
+        final Method valueOf = findMethod(c, "valueOf", JsonValue.class);
+        if (valueOf != null && Modifier.isStatic(valueOf.getModifiers())
+                && c.isAssignableFrom(valueOf.getReturnType())) {
+            return new JsonValueFactoryCodec(valueOf, null, toJsonValue);
+        }
+        try {
+            return new JsonValueFactoryCodec(null, c.getConstructor(JsonValue.class), toJsonValue);
+        } catch (final NoSuchMethodException e) {
+            // Try binding the fields instead.
+        }
+        if (c.getName().startsWith("java.")
+                || c.getEnclosingClass() != null && !Modifier.isStatic(c.getModifiers())) {
+            return null;
+        }
+        try {
+            final Constructor<?> constructor = c.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            return new BeanCodec(constructor);
+        } catch (final NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    private static Method findMethod(final Class<?> c, final String name, final Class<?>... parameterTypes) {
+        try {
+            return c.getMethod(name, parameterTypes);
+        } catch (final NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    private static <V> V cast(final Object json, final Class<V> type) {
+        if (!type.isInstance(json)) {
+            throw new IllegalArgumentException("Expected " + type.getSimpleName().toLowerCase() + " but got "
+                    + json.getClass().getSimpleName().toLowerCase());
+        }
+        return type.cast(json);
+    }
+
+    /**
+     * Decodes a JSON value.
+     *
+     * @param json
+     *            The object wrapped by a JSON value, which may be {@code null}.
+     * @return The decoded value.
+     */
+    abstract T decode(Object json);
+
+    /**
+     * Checks that the fields of the classes converted by this codec can be
+     * bound. By default there is nothing to check.
+     *
+     * @param checked
+     *            The codecs which have already been checked, so that classes
+     *            may refer to themselves.
+     * @throws IllegalArgumentException
+     *             If a class has a field whose type cannot be converted.
+     */
+    void checkBinding(final Set<JsonCodec<?>> checked) {
+        // Nothing to check.
+    }
+
+    /**
+     * Decodes the content of a request. By default the object wrapped by the
+     * content is decoded.
+     *
+     * @param content
+     *            The content of the request.
+     * @return The decoded value.
+     */
+    T decodeContent(JsonValue content) {
+        return decode(content.getObject());
+    }
+
+    /**
+     * Encodes a value as an object which may be wrapped by a JSON value.
+     *
+     * @param value
+     *            The value to be encoded, which may be {@code null}.
+     * @return The encoded value.
+     */
+    abstract Object encode(T value);
+}
@@ -12,11 +12,14 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2012-2015 ForgeRock AS.
+ * Portions Copyright 2026 Wren Security.
  */
 
 package org.forgerock.json.resource;
 
+import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.forgerock.json.resource.Responses.newQueryResponse;
+import static org.forgerock.json.resource.Resources.asBatchQueryResourceHandler;
 import static org.forgerock.json.resource.Responses.newResourceResponse;
 import static org.forgerock.util.promise.Promises.newExceptionPromise;
 import static org.forgerock.util.promise.Promises.newResultPromise;
@@ -24,12 +27,15 @@ import static org.forgerock.util.promise.Promises.newResultPromise;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.forgerock.services.context.Context;
@@ -45,6 +51,21 @@ import org.forgerock.util.query.QueryFilterVisitor;
  * A simple in-memory collection resource provider which uses a {@code Map} to
  * store resources. This resource provider is intended for testing purposes only
  * and there are no performance guarantees.
+ * <p>
+ * The backend may be configured with a set of indexed fields for which value
+ * counts are maintained as resources are created, updated, patched and deleted.
+ * These counts are used for computing the total number of paged results: an
+ * {@link CountPolicy#ESTIMATE estimated} count is returned in constant time, and
+ * an {@link CountPolicy#EXACT exact} count only requires a scan of the
+ * collection when the query filter cannot be fully evaluated using the indexes.
+ * <p>
+ * Paged queries retain their state in a {@link QueryCursorRegistry bounded}
+ * set of server-side cursors, so that each subsequent page is returned without
+ * filtering and sorting the collection again. Sorted queries return their pages
+ * from the results sorted for the first page, which are discarded as soon as
+ * the collection is modified, so that pages never contain stale resources.
+ * Queries whose cursor has been discarded continue from the index encoded in
+ * the paged results cookie instead.
  */
 public final class MemoryBackend implements CollectionResourceProvider {
     private enum FilterResult {
@@ -107,10 +128,48 @@ public final class MemoryBackend implements CollectionResourceProvider {
         }
     }
 
-    private static final class ResourceComparator implements Comparator<ResourceResponse> {
+    /**
+     * The server-side state of a paged query, which allows the next page to be
+     * returned without filtering and sorting the collection again. Streamed
+     * queries retain the position of their iterator and the ID of the first
+     * resource of the next page, while sorted queries retain their sorted results along
+     * with the modification count of the collection when they were sorted.
+     */
+    private static final class QueryCursor {
+        /** The filter and sort keys of the query, which must match those of the query resuming the cursor. */
+        private final String query;
+        private final int nextResultIndex;
+        private final Iterator<ResourceResponse> iterator;
+        private final String nextId;
+        private final List<ResourceResponse> results;
+        private final long modificationCount;
+
+        private QueryCursor(final String query, final int nextResultIndex, final Iterator<ResourceResponse> iterator,
+                final String nextId) {
+            this.query = query;
+            this.nextResultIndex = nextResultIndex;
+            this.iterator = iterator;
+            this.nextId = nextId;
+            this.results = null;
+            this.modificationCount = 0;
+        }
+
+        private QueryCursor(final String query, final int nextResultIndex, final List<ResourceResponse> results,
+                final long modificationCount) {
+            this.query = query;
+            this.nextResultIndex = nextResultIndex;
+            this.iterator = null;
+            this.nextId = null;
+            this.results = results;
+            this.modificationCount = modificationCount;
+        }
+    }
+
+    /** Orders resources according to a list of sort keys, as server-side sorting does. */
+    static final class ResourceComparator implements Comparator<ResourceResponse> {
         private final List<SortKey> sortKeys;
 
-        private ResourceComparator(final List<SortKey> sortKeys) {
+        ResourceComparator(final List<SortKey> sortKeys) {
             this.sortKeys = sortKeys;
         }
 
@@ -161,6 +220,124 @@ public final class MemoryBackend implements CollectionResourceProvider {
         }
     }
 
+    /**
+     * The number of resources matching a query filter, and whether or not the
+     * number is exact or an upper bound estimate.
+     */
+    static final class Count {
+        private final int count;
+        private final boolean exact;
+
+        Count(final int count, final boolean exact) {
+            this.count = count;
+            this.exact = exact;
+        }
+
+        int getCount() {
+            return count;
+        }
+
+        boolean isExact() {
+            return exact;
+        }
+    }
+
+    /**
+     * Maintains the number of resources having each distinct value of an
+     * indexed field, as well as the number of resources in which the field is
+     * present. Updates are performed while holding the write lock, whereas
+     * reads may be performed concurrently.
+     */
+    private static final class FieldIndex {
+        private final JsonPointer field;
+        private final AtomicInteger presentCount = new AtomicInteger();
+        private final Map<Object, Integer> valueCounts = new ConcurrentHashMap<>();
+
+        FieldIndex(final JsonPointer field) {
+            this.field = field;
+        }
+
+        void add(final ResourceResponse resource) {
+            update(resource, 1);
+        }
+
+        void remove(final ResourceResponse resource) {
+            update(resource, -1);
+        }
+
+        void clear() {
+            presentCount.set(0);
+            valueCounts.clear();
+        }
+
+        int getPresentCount() {
+            return presentCount.get();
+        }
+
+        int getValueCount(final Object valueAssertion) {
+            final Object key = normalizeValue(valueAssertion);
+            if (key == null) {
+                return 0;
+            }
+            final Integer count = valueCounts.get(key);
+            return count != null ? count : 0;
+        }
+
+        private void update(final ResourceResponse resource, final int delta) {
+            final JsonValue value = resource.getContent().get(field);
+            if (value == null) {
+                return;
+            }
+            presentCount.addAndGet(delta);
+            if (value.isList()) {
+                // Multi-valued fields: each resource only counts once for a given value.
+                final Set<Object> keys = new HashSet<>();
+                for (final Object element : value.asList()) {
+                    final Object key = normalizeValue(element);
+                    if (key != null && keys.add(key)) {
+                        updateValueCount(key, delta);
+                    }
+                }
+            } else {
+                final Object key = normalizeValue(value.getObject());
+                if (key != null) {
+                    updateValueCount(key, delta);
+                }
+            }
+        }
+
+        private void updateValueCount(final Object key, final int delta) {
+            final Integer count = valueCounts.get(key);
+            final int newCount = (count != null ? count : 0) + delta;
+            if (newCount > 0) {
+                valueCounts.put(key, newCount);
+            } else {
+                valueCounts.remove(key);
+            }
+        }
+
+        /*
+         * Returns a key which is equal for all values which compare as equal
+         * using compareValues(), or null if the value cannot be indexed.
+         */
+        private static Object normalizeValue(final Object value) {
+            if (value instanceof String) {
+                // Same case folding as String.compareToIgnoreCase().
+                final char[] chars = ((String) value).toCharArray();
+                for (int i = 0; i < chars.length; i++) {
+                    chars[i] = Character.toLowerCase(Character.toUpperCase(chars[i]));
+                }
+                return new String(chars);
+            } else if (value instanceof Number) {
+                return ((Number) value).doubleValue();
+            } else if (value instanceof Boolean) {
+                return value;
+            } else {
+                return null;
+            }
+        }
+    }
+
     private static final QueryFilterVisitor<FilterResult, ResourceResponse, JsonPointer> RESOURCE_FILTER =
             new QueryFilterVisitor<FilterResult, ResourceResponse, JsonPointer>() {
 
@@ -347,6 +524,25 @@ public final class MemoryBackend implements CollectionResourceProvider {
 
         };
 
+    /** The maximum number of query results passed to the query resource handler at once. */
+    static final int QUERY_BATCH_SIZE = 64;
+
+    /**
+     * Separates the stateless part of a paged results cookie from the
+     * identifier of the query cursor holding the state of the query. It is not
+     * a Base64 character.
+     */
+    private static final char QUERY_CURSOR_SEPARATOR = '.';
+
+    /** The maximum number of query cursors retained between pages. */
+    private static final int MAX_QUERY_CURSORS = 1000;
+
+    /** The maximum total number of sorted query results retained by the query cursors. */
+    private static final long MAX_QUERY_CURSOR_RESULTS = 1000000;
+
+    /** The number of seconds after which an unused query cursor is discarded. */
+    private static final long QUERY_CURSOR_IDLE_TIMEOUT = 300;
+
     private static final Comparator<Object> VALUE_COMPARATOR = new Comparator<Object>() {
         @Override
         public int compare(final Object o1, final Object o2) {
@@ -354,6 +550,14 @@ public final class MemoryBackend implements CollectionResourceProvider {
         }
     };
 
+    /**
+     * Returns {@code true} if the provided resource matches the query filter,
+     * using the same matching rules as queries against this backend.
+     */
+    static boolean matches(final QueryFilter<JsonPointer> filter, final ResourceResponse resource) {
+        return filter.accept(RESOURCE_FILTER, resource).toBoolean();
+    }
+
     private static int compareValues(final Object v1, final Object v2) {
         if (v1 instanceof String && v2 instanceof String) {
             final String s1 = (String) v1;
@@ -382,13 +586,177 @@ public final class MemoryBackend implements CollectionResourceProvider {
 
     private final AtomicLong nextResourceId = new AtomicLong();
     private final Map<String, ResourceResponse> resources = new ConcurrentHashMap<>();
+    private final Map<JsonPointer, FieldIndex> indexes;
+    private final ResourceChangeNotifier changeNotifier;
     private final Object writeLock = new Object();
+    /** The number of modifications made to the collection, which is only incremented while holding the write lock. */
+    private volatile long modificationCount;
+    private final QueryCursorRegistry<QueryCursor> queryCursors =
+            new QueryCursorRegistry<>(MAX_QUERY_CURSORS, MAX_QUERY_CURSOR_RESULTS, QUERY_CURSOR_IDLE_TIMEOUT, SECONDS);
+
+    /**
+     * Computes the number of resources matching a query filter using the
+     * maintained index counts. Sub-filters which cannot be evaluated using the
+     * indexes yield an upper bound estimate rather than an exact count.
+     */
+    private final QueryFilterVisitor<Count, Void, JsonPointer> countFilter =
+            new QueryFilterVisitor<Count, Void, JsonPointer>() {
+
+            @Override
+            public Count visitAndFilter(final Void p,
+                    final List<org.forgerock.util.query.QueryFilter<JsonPointer>> subFilters) {
+                if (subFilters.size() == 1) {
+                    return subFilters.get(0).accept(this, p);
+                }
+                int count = resources.size();
+                for (final org.forgerock.util.query.QueryFilter<JsonPointer> subFilter : subFilters) {
+                    final Count c = subFilter.accept(this, p);
+                    if (c.isExact() && c.getCount() == 0) {
+                        return c;
+                    }
+                    count = Math.min(count, c.getCount());
+                }
+                return new Count(count, false);
+            }
+
+            @Override
+            public Count visitBooleanLiteralFilter(final Void p, final boolean value) {
+                return new Count(value ? resources.size() : 0, true);
+            }
+
+            @Override
+            public Count visitContainsFilter(final Void p, final JsonPointer field,
+                    final Object valueAssertion) {
+                return estimatePresent(field);
+            }
+
+            @Override
+            public Count visitEqualsFilter(final Void p, final JsonPointer field,
+                    final Object valueAssertion) {
+                final FieldIndex index = indexes.get(field);
+                if (index == null) {
+                    return new Count(resources.size(), false);
+                }
+                return new Count(index.getValueCount(valueAssertion), true);
+            }
+
+            @Override
+            public Count visitExtendedMatchFilter(final Void p, final JsonPointer field,
+                    final String matchingRuleId, final Object valueAssertion) {
+                // Extended filters are undefined for all resources.
+                return new Count(0, false);
+            }
+
+            @Override
+            public Count visitGreaterThanFilter(final Void p, final JsonPointer field,
+                    final Object valueAssertion) {
+                return estimatePresent(field);
+            }
+
+            @Override
+            public Count visitGreaterThanOrEqualToFilter(final Void p, final JsonPointer field,
+                    final Object valueAssertion) {
+                return estimatePresent(field);
+            }
+
+            @Override
+            public Count visitLessThanFilter(final Void p, final JsonPointer field,
+                    final Object valueAssertion) {
+                return estimatePresent(field);
+            }
+
+            @Override
+            public Count visitLessThanOrEqualToFilter(final Void p, final JsonPointer field,
+                    final Object valueAssertion) {
+                return estimatePresent(field);
+            }
+
+            @Override
+            public Count visitNotFilter(final Void p,
+                    final org.forgerock.util.query.QueryFilter<JsonPointer> subFilter) {
+                final Count c = subFilter.accept(this, p);
+                final int size = resources.size();
+                return c.isExact() ? new Count(Math.max(size - c.getCount(), 0), true) : new Count(size, false);
+            }
+
+            @Override
+            public Count visitOrFilter(final Void p,
+                    final List<org.forgerock.util.query.QueryFilter<JsonPointer>> subFilters) {
+                if (subFilters.size() == 1) {
+                    return subFilters.get(0).accept(this, p);
+                }
+                final int size = resources.size();
+                long count = 0;
+                for (final org.forgerock.util.query.QueryFilter<JsonPointer> subFilter : subFilters) {
+                    final Count c = subFilter.accept(this, p);
+                    if (c.isExact() && c.getCount() >= size) {
+                        return c;
+                    }
+                    count += c.getCount();
+                }
+                return new Count((int) Math.min(count, size), false);
+            }
+
+            @Override
+            public Count visitPresentFilter(final Void p, final JsonPointer field) {
+                final FieldIndex index = indexes.get(field);
+                if (index == null) {
+                    return new Count(resources.size(), false);
+                }
+                return new Count(index.getPresentCount(), true);
+            }
+
+            @Override
+            public Count visitStartsWithFilter(final Void p, final JsonPointer field,
+                    final Object valueAssertion) {
+                return estimatePresent(field);
+            }
+
+            private Count estimatePresent(final JsonPointer field) {
+                final FieldIndex index = indexes.get(field);
+                return new Count(index != null ? index.getPresentCount() : resources.size(), false);
+            }
+        };
 
     /**
      * Creates a new in-memory collection containing no resources.
      */
     public MemoryBackend() {
-        // No implementation required.
+        this(null, new JsonPointer[0]);
+    }
+
+    /**
+     * Creates a new in-memory collection containing no resources and which
+     * maintains value counts for the provided fields. Queries whose filters
+     * only reference indexed fields using equality and presence assertions can
+     * return exact total paged results counts without scanning the collection.
+     *
+     * @param indexedFields
+     *            The fields for which value counts should be maintained.
+     */
+    public MemoryBackend(final JsonPointer... indexedFields) {
+        this(null, indexedFields);
+    }
+
+    /**
+     * Creates a new in-memory collection containing no resources and which
+     * publishes changes to the provided notifier. Resource paths of published
+     * changes are relative to the collection and the collection supports
+     * the {@link ResourceChangeNotifier#ACTION_ID_WATCH watch} action.
+     *
+     * @param changeNotifier
+     *            The notifier to which resource changes will be published, or
+     *            {@code null} if changes should not be published.
+     * @param indexedFields
+     *            The fields for which value counts should be maintained.
+     */
+    public MemoryBackend(final ResourceChangeNotifier changeNotifier, final JsonPointer... indexedFields) {
+        this.changeNotifier = changeNotifier;
+        final Map<JsonPointer, FieldIndex> tmp = new LinkedHashMap<>(indexedFields.length);
+        for (final JsonPointer field : indexedFields) {
+            tmp.put(field, new FieldIndex(field));
+        }
+        this.indexes = Collections.unmodifiableMap(tmp);
     }
 
     /**
@@ -398,18 +766,30 @@ public final class MemoryBackend implements CollectionResourceProvider {
     public Promise<ActionResponse, ResourceException> actionCollection(final Context context,
             final ActionRequest request) {
         try {
-            if (request.getAction().equals("clear")) {
+            if (changeNotifier != null && request.getAction().equals(ResourceChangeNotifier.ACTION_ID_WATCH)) {
+                return changeNotifier.handleWatchAction(ResourcePath.empty(), request);
+            } else if (request.getAction().equals("clear")) {
                 final int size;
                 synchronized (writeLock) {
-                    size = resources.size();
+                    // Each removed resource is recorded as deleted, so that watchers learn it has gone.
+                    final List<ResourceResponse> removed = new ArrayList<>(resources.values());
+                    size = removed.size();
                     resources.clear();
+                    modificationCount++;
+                    for (final FieldIndex index : indexes.values()) {
+                        index.clear();
+                    }
+                    for (final ResourceResponse resource : removed) {
+                        recordChange(RequestType.DELETE, resource);
+                    }
                 }
+                deliverChanges();
                 final JsonValue result = new JsonValue(new LinkedHashMap<>(1));
                 result.put("cleared", size);
                 return newResultPromise(Responses.newActionResponse(result));
             } else {
                 throw new NotSupportedException("Unrecognized action ID '" + request.getAction()
-                        + "'. Supported action IDs: clear");
+                        + "'. Supported action IDs: clear" + (changeNotifier != null ? ", watch" : ""));
             }
         } catch (final ResourceException e) {
             return newExceptionPromise(e);
@@ -422,6 +802,9 @@ public final class MemoryBackend implements CollectionResourceProvider {
     @Override
     public Promise<ActionResponse, ResourceException> actionInstance(final Context context, final String id,
             final ActionRequest request) {
+        if (changeNotifier != null && request.getAction().equals(ResourceChangeNotifier.ACTION_ID_WATCH)) {
+            return changeNotifier.handleWatchAction(new ResourcePath(id), request);
+        }
         final ResourceException e =
                 new NotSupportedException("Actions are not supported for resource instances");
         return newExceptionPromise(e);
@@ -457,11 +840,14 @@ public final class MemoryBackend implements CollectionResourceProvider {
                     } else {
                         // Add succeeded.
                         addIdAndRevision(tmp);
+                        addToIndexes(tmp);
+                        recordChange(RequestType.CREATE, tmp);
                         resource = tmp;
                         break;
                     }
                 }
             }
+            deliverChanges();
             return newResultPromise(resource);
         } catch (final ResourceException e) {
             return newExceptionPromise(e);
@@ -480,7 +866,10 @@ public final class MemoryBackend implements CollectionResourceProvider {
             synchronized (writeLock) {
                 resource = getResourceForUpdate(id, rev);
                 resources.remove(id);
+                removeFromIndexes(resource);
+                recordChange(RequestType.DELETE, resource);
             }
+            deliverChanges();
             return newResultPromise(resource);
         } catch (final ResourceException e) {
             return newExceptionPromise(e);
@@ -562,7 +951,11 @@ public final class MemoryBackend implements CollectionResourceProvider {
                 resource = newResourceResponse(id, newRev, newContent);
                 addIdAndRevision(resource);
                 resources.put(id, resource);
+                removeFromIndexes(existingResource);
+                addToIndexes(resource);
+                recordChange(RequestType.PATCH, resource);
             }
+            deliverChanges();
             return newResultPromise(resource);
         } catch (final ResourceException e) {
             return newExceptionPromise(e);
@@ -590,13 +983,29 @@ public final class MemoryBackend implements CollectionResourceProvider {
             final boolean pagedResultsRequested = pageSize > 0;
             final int firstResultIndex;
             final List<SortKey> sortKeys = request.getSortKeys();
+            final BatchQueryResourceHandler batchHandler = asBatchQueryResourceHandler(handler);
 
+            // Paged queries keep their state in a server-side cursor when possible, so that the next page
+            // can be returned without repeating the work done for the previous pages. The cookie also
+            // encodes the index of the next result so that the query can continue without the cursor.
+            final String query = pagedResultsRequested ? String.valueOf(filter) + sortKeys : null;
+            QueryCursor cursor = null;
             if (pageSize > 0 && pagedResultsCookie != null) {
                 if (request.getPagedResultsOffset() > 0) {
                     return new BadRequestException("Cookies and offsets are mutually exclusive").asPromise();
                 }
 
-                firstResultIndex = Cookie.valueOf(pagedResultsCookie).getLastResultIndex();
+                final int separator = pagedResultsCookie.indexOf(QUERY_CURSOR_SEPARATOR);
+                if (separator < 0) {
+                    firstResultIndex = Cookie.valueOf(pagedResultsCookie).getLastResultIndex();
+                } else {
+                    firstResultIndex = Cookie.valueOf(pagedResultsCookie.substring(0, separator))
+                            .getLastResultIndex();
+                    cursor = queryCursors.resume(pagedResultsCookie.substring(separator + 1));
+                    if (cursor != null && (!cursor.query.equals(query) || cursor.nextResultIndex != firstResultIndex)) {
+                        cursor = null;
+                    }
+                }
             } else {
                 if (request.getPagedResultsOffset() > 0) {
                     firstResultIndex = request.getPagedResultsOffset();
@@ -608,61 +1017,141 @@ public final class MemoryBackend implements CollectionResourceProvider {
             final int lastResultIndex =
                     pagedResultsRequested ? firstResultIndex + pageSize : Integer.MAX_VALUE;
 
+            // Use the index counts in order to determine the total number of results. A scan
+            // of the entire collection is only required when an exact count was requested
+            // but the filter could not be fully evaluated using the indexes.
+            final CountPolicy countPolicy = request.getTotalPagedResultsPolicy();
+            final Count count = pagedResultsRequested && countPolicy != CountPolicy.NONE
+                    ? countResults(filter)
+                    : null;
+            final boolean scanRequired = count != null && !count.isExact() && countPolicy == CountPolicy.EXACT;
+
             // Select, filter, and return the results. These can be streamed if server
             // side sorting has not been requested.
             int resultIndex = 0;
-            int resultCount;
+            final int resultCount;
+            final boolean hasMoreResults;
+            final boolean resultCountIsExact;
+            String cursorId = null;
             if (sortKeys.isEmpty()) {
-                // No sorting so stream the results.
-                for (final ResourceResponse resource : resources.values()) {
+                // No sorting so stream the results, stopping once the page is complete
+                // unless all results need to be counted. A cursor resumes the iteration where
+                // the previous page stopped, starting with the first resource of this page.
+                final Iterator<ResourceResponse> iterator;
+                String nextId = null;
+                if (cursor != null && cursor.iterator != null && !scanRequired) {
+                    iterator = cursor.iterator;
+                    nextId = cursor.nextId;
+                    resultIndex = firstResultIndex;
+                } else {
+                    iterator = resources.values().iterator();
+                }
+                boolean pageComplete = false;
+                boolean skipRemaining = false;
+                final List<ResourceResponse> batch = new ArrayList<>(QUERY_BATCH_SIZE);
+                while (nextId != null || iterator.hasNext()) {
+                    final ResourceResponse resource;
+                    if (nextId != null) {
+                        // The first resource of the page is read again in case it changed since the last page.
+                        resource = resources.get(nextId);
+                        nextId = null;
+                        if (resource == null) {
+                            continue;
+                        }
+                    } else {
+                        resource = iterator.next();
+                    }
                     if (filter == null || filter.accept(RESOURCE_FILTER, resource).toBoolean()) {
-                        if (resultIndex >= firstResultIndex && resultIndex < lastResultIndex) {
-                            handler.handleResource(resource);
+                        if (resultIndex >= lastResultIndex && !scanRequired) {
+                            pageComplete = true;
+                            if (pagedResultsRequested) {
+                                cursorId = queryCursors.register(
+                                        new QueryCursor(query, resultIndex, iterator, resource.getId()), 1);
+                            }
+                            break;
+                        }
+                        if (resultIndex >= firstResultIndex && resultIndex < lastResultIndex && !skipRemaining) {
+                            batch.add(resource);
+                            if (batch.size() == QUERY_BATCH_SIZE) {
+                                skipRemaining = !batchHandler.handleResources(batch);
+                                batch.clear();
+                            }
                         }
                         resultIndex++;
+                        if (skipRemaining && !scanRequired) {
+                            // The handler does not want more results and they do not need to be counted.
+                            break;
+                        }
                     }
                 }
+                if (!batch.isEmpty()) {
+                    batchHandler.handleResources(batch);
+                }
 
-                resultCount = resources.values().size();
+                resultCount = resultIndex;
+                resultCountIsExact = !pageComplete && (!skipRemaining || scanRequired);
+                hasMoreResults = pageComplete || resultIndex > lastResultIndex;
             } else {
-                // Server side sorting: aggregate the result set then sort. A robust implementation
-                // would need to impose administrative limits in order to control memory utilization.
-                final List<ResourceResponse> results = new ArrayList<>();
-                for (final ResourceResponse resource : resources.values()) {
-                    if (filter == null || filter.accept(RESOURCE_FILTER, resource).toBoolean()) {
-                        results.add(resource);
+                // Server side sorting: aggregate the result set then sort, unless a cursor retained
+                // the sorted results of the previous page. A robust implementation would need to impose
+                // administrative limits in order to control memory utilization.
+                // The sorted results of a cursor are only reused if the collection has not been modified since.
+                final List<ResourceResponse> results;
+                final long sortedModificationCount;
+                if (cursor != null && cursor.results != null && cursor.modificationCount == modificationCount) {
+                    results = cursor.results;
+                    sortedModificationCount = cursor.modificationCount;
+                } else {
+                    sortedModificationCount = modificationCount;
+                    results = new ArrayList<>();
+                    for (final ResourceResponse resource : resources.values()) {
+                        if (filter == null || filter.accept(RESOURCE_FILTER, resource).toBoolean()) {
+                            results.add(resource);
+                        }
                     }
+                    Collections.sort(results, new ResourceComparator(sortKeys));
                 }
-                Collections.sort(results, new ResourceComparator(sortKeys));
-                for (final ResourceResponse resource : results) {
-                    if (resultIndex >= firstResultIndex && resultIndex < lastResultIndex) {
-                        handler.handleResource(resource);
-                    }
-
-                    if (resultIndex < lastResultIndex) {
-                        resultIndex++;
-                    } else {
+                final int endIndex = Math.min(lastResultIndex, results.size());
+                for (int i = firstResultIndex; i < endIndex; i += QUERY_BATCH_SIZE) {
+                    if (!batchHandler.handleResources(results.subList(i, Math.min(i + QUERY_BATCH_SIZE, endIndex)))) {
                         break;
                     }
                 }
 
                 resultCount = results.size();
+                resultCountIsExact = true;
+                hasMoreResults = resultCount > lastResultIndex;
+                if (pagedResultsRequested && hasMoreResults) {
+                    cursorId = queryCursors.register(
+                            new QueryCursor(query, lastResultIndex, results, sortedModificationCount), resultCount);
+                }
             }
 
             if (pagedResultsRequested) {
-                final String nextCookie = resultIndex < resources.size()
-                        ? new Cookie(lastResultIndex, sortKeys).toBase64()
-                        : null;
+                String nextCookie = null;
+                if (hasMoreResults) {
+                    nextCookie = new Cookie(lastResultIndex, sortKeys).toBase64();
+                    if (cursorId != null) {
+                        nextCookie += QUERY_CURSOR_SEPARATOR + cursorId;
+                    }
+                }
 
-                switch (request.getTotalPagedResultsPolicy()) {
+                switch (countPolicy) {
                 case NONE:
                     return newResultPromise(newQueryResponse(nextCookie));
                 case EXACT:
                 case ESTIMATE:
-                    return newResultPromise(newQueryResponse(nextCookie, CountPolicy.EXACT, resultCount));
+                    if (count.isExact()) {
+                        return newResultPromise(newQueryResponse(nextCookie, CountPolicy.EXACT, count.getCount()));
+                    } else if (resultCountIsExact) {
+                        return newResultPromise(newQueryResponse(nextCookie, CountPolicy.EXACT, resultCount));
+                    } else {
+                        return newResultPromise(newQueryResponse(nextCookie, CountPolicy.ESTIMATE,
+                                Math.max(count.getCount(), resultCount)));
+                    }
                 default:
                     throw new UnsupportedOperationException("totalPagedResultsPolicy: "
-                            + request.getTotalPagedResultsPolicy().toString() + " not supported");
+                            + countPolicy.toString() + " not supported");
                 }
             } else {
                 return newResultPromise(newQueryResponse());
@@ -703,7 +1192,11 @@ public final class MemoryBackend implements CollectionResourceProvider {
                 resource = newResourceResponse(id, newRev, request.getContent());
                 addIdAndRevision(resource);
                 resources.put(id, resource);
+                removeFromIndexes(existingResource);
+                addToIndexes(resource);
+                recordChange(RequestType.UPDATE, resource);
             }
+            deliverChanges();
             return newResultPromise(resource);
         } catch (final ResourceException e) {
             return newExceptionPromise(e);
@@ -728,6 +1221,44 @@ public final class MemoryBackend implements CollectionResourceProvider {
         }
     }
 
+    private void addToIndexes(final ResourceResponse resource) {
+        for (final FieldIndex index : indexes.values()) {
+            index.add(resource);
+        }
+    }
+
+    private void removeFromIndexes(final ResourceResponse resource) {
+        for (final FieldIndex index : indexes.values()) {
+            index.remove(resource);
+        }
+    }
+
+    // Must be called while holding the write lock, so that changes are recorded in the order they are made.
+    private void recordChange(final RequestType type, final ResourceResponse resource) {
+        modificationCount++;
+        if (changeNotifier != null) {
+            changeNotifier.recordChange(type, new ResourcePath(resource.getId()), resource);
+        }
+    }
+
+    // Must be called without holding the write lock, so that listeners cannot stall other writes.
+    private void deliverChanges() {
+        if (changeNotifier != null) {
+            changeNotifier.deliverChanges();
+        }
+    }
+
+    /**
+     * Returns the number of resources matching the provided filter, using the
+     * indexes, which is exact if the filter could be fully evaluated using them.
+     */
+    Count countResults(final QueryFilter<JsonPointer> filter) {
+        if (filter == null) {
+            return new Count(resources.size(), true);
+        }
+        return filter.accept(countFilter, null);
+    }
+
     private String getNextRevision(final String rev) throws ResourceException {
         try {
             return String.valueOf(Integer.parseInt(rev) + 1);
@@ -0,0 +1,176 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+
+package org.forgerock.json.resource;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.forgerock.util.Reject;
+import org.forgerock.util.time.TimeService;
+
+/**
+ * A bounded registry of server-side query cursors, which allows a resource
+ * provider to keep the state of a paged query, such as a positioned iterator
+ * or a sorted snapshot of the results, between the requests for successive
+ * pages. The next page can then be returned without repeating the work done
+ * for the previous pages.
+ * <p>
+ * A cursor is registered under an opaque, unguessable identifier which the
+ * provider includes in its paged results cookie, and is removed from the
+ * registry when it is resumed. Cursors are discarded, oldest first, when they
+ * have been idle for longer than the idle timeout, or when registering a new
+ * cursor would exceed either the maximum number of cursors or the maximum
+ * total weight. The weight of a cursor is an estimate of the memory it
+ * retains, for example the number of resources in a snapshot, whose unit is
+ * chosen by the provider. Providers must therefore always be able to continue
+ * a query whose cursor has been discarded, typically by falling back to the
+ * state encoded in the cookie.
+ *
+ * @param <S>
+ *            The type of state held by the cursors.
+ */
+public final class QueryCursorRegistry<S> {
+
+    private static final class Cursor<S> {
+        private final S state;
+        private final long weight;
+        private final long lastAccess;
+
+        private Cursor(final S state, final long weight, final long lastAccess) {
+            this.state = state;
+            this.weight = weight;
+            this.lastAccess = lastAccess;
+        }
+    }
+
+    private final TimeService time;
+    private final int maxCursors;
+    private final long maxWeight;
+    private final long idleTimeout;
+    /** The cursors in the order in which they were registered, which is also the order in which they expire. */
+    private final Map<String, Cursor<S>> cursors = new LinkedHashMap<>();
+    private long weight;
+
+    /**
+     * Creates a new query cursor registry.
+     *
+     * @param maxCursors
+     *            The maximum number of cursors.
+     * @param maxWeight
+     *            The maximum total weight of the cursors.
+     * @param idleTimeout
+     *            The time after which an unused cursor is discarded.
+     * @param unit
+     *            The unit of the idle timeout.
+     */
+    public QueryCursorRegistry(final int maxCursors, final long maxWeight, final long idleTimeout,
+            final TimeUnit unit) {
+        this(TimeService.SYSTEM, maxCursors, maxWeight, idleTimeout, unit);
+    }
+
+    QueryCursorRegistry(final TimeService time, final int maxCursors, final long maxWeight,
+            final long idleTimeout, final TimeUnit unit) {
+        Reject.ifNull(time, unit);
+        Reject.ifTrue(maxCursors < 1 || maxWeight < 1 || idleTimeout < 1, "Invalid cursor registry limits");
+        this.time = time;
+        this.maxCursors = maxCursors;
+        this.maxWeight = maxWeight;
+        this.idleTimeout = unit.toMillis(idleTimeout);
+    }
+
+    /**
+     * Registers a cursor, discarding older cursors if needed in order to
+     * remain within the limits of this registry.
+     *
+     * @param state
+     *            The state of the cursor.
+     * @param weight
+     *            The weight of the cursor.
+     * @return The identifier of the cursor, or {@code null} if the cursor is
+     *         too heavy to be registered.
+     */
+    public synchronized String register(final S state, final long weight) {
+        Reject.ifNull(state);
+        Reject.ifTrue(weight < 0, "Negative cursor weight");
+        final long now = time.now();
+        expire(now);
+        if (weight > maxWeight) {
+            return null;
+        }
+        final Iterator<Cursor<S>> eldest = cursors.values().iterator();
+        while (cursors.size() >= maxCursors || this.weight + weight > maxWeight) {
+            this.weight -= eldest.next().weight;
+            eldest.remove();
+        }
+        final String id = UUID.randomUUID().toString();
+        cursors.put(id, new Cursor<>(state, weight, now));
+        this.weight += weight;
+        return id;
+    }
+
+    /**
+     * Removes and returns the state of the cursor having the provided
+     * identifier.
+     *
+     * @param id
+     *            The identifier of the cursor.
+     * @return The state of the cursor, or {@code null} if the cursor does not
+     *         exist, or has expired or been discarded.
+     */
+    public synchronized S resume(final String id) {
+        expire(time.now());
+        final Cursor<S> cursor = cursors.remove(id);
+        if (cursor == null) {
+            return null;
+        }
+        weight -= cursor.weight;
+        return cursor.state;
+    }
+
+    /**
+     * Returns the number of cursors in this registry.
+     *
+     * @return The number of cursors in this registry.
+     */
+    public synchronized int size() {
+        return cursors.size();
+    }
+
+    /**
+     * Returns the total weight of the cursors in this registry.
+     *
+     * @return The total weight of the cursors in this registry.
+     */
+    public synchronized long getWeight() {
+        return weight;
+    }
+
+    private void expire(final long now) {
+        final Iterator<Cursor<S>> eldest = cursors.values().iterator();
+        while (eldest.hasNext()) {
+            final Cursor<S> cursor = eldest.next();
+            if (now - cursor.lastAccess < idleTimeout) {
+                break;
+            }
+            weight -= cursor.weight;
+            eldest.remove();
+        }
+    }
+}
@@ -0,0 +1,299 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+
+package org.forgerock.json.resource;
+
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.forgerock.services.context.Context;
+import org.forgerock.services.context.SecurityContext;
+import org.forgerock.util.Reject;
+import org.forgerock.util.promise.Promise;
+import org.forgerock.util.time.TimeService;
+
+/**
+ * A filter which limits the rate at which each principal may invoke each type
+ * of request, using a token bucket per principal and {@link RequestType}.
+ * Requests exceeding the rate are rejected with a {@link RetryableException}
+ * having the code 429 (Too Many Requests) and a {@literal Retry-After} advice
+ * indicating when the next request will be accepted.
+ * <p>
+ * The principal is the authentication ID of the {@link SecurityContext}, such
+ * as the one created by the HTTP adapter's security context factory. All
+ * unauthenticated requests share a single bucket.
+ * <p>
+ * Buckets are updated with a single compare-and-set and without allocating,
+ * so that checks do not contend with each other. A bucket which has been idle
+ * long enough to refill is equivalent to a new bucket, so such buckets are
+ * evicted once the number of buckets reaches the configured maximum, at most
+ * once per period. The maximum is a hard limit: while it is reached, the
+ * principals which are not yet tracked share a single overflow bucket for each
+ * type of request, so that a flood of distinct principals can neither exhaust
+ * the memory nor escape the limit.
+ * <p>
+ * A filter instance protects the handlers behind it, so a separate instance
+ * should be used for each route which needs its own quota:
+ *
+ * <pre>
+ * router.addRoute(STARTS_WITH, uriTemplate(&quot;users&quot;),
+ *         new FilterChain(users, new RateLimitFilter(100, 1, TimeUnit.SECONDS)));
+ * </pre>
+ */
+public class RateLimitFilter implements Filter {
+
+    /** The HTTP status code indicating that the client has sent too many requests. */
+    static final int TOO_MANY_REQUESTS = 429;
+
+    private static final int DEFAULT_MAX_BUCKETS = 10_000;
+    private static final String ANONYMOUS = "";
+
+    private final TimeService time;
+    /** The time in nanoseconds needed to earn one token. */
+    private final long interval;
+    /** The time in nanoseconds by which a request may precede its theoretical arrival time. */
+    private final long tolerance;
+    private final int maxBuckets;
+    private final Map<RequestType, ConcurrentMap<String, AtomicLong>> buckets = new EnumMap<>(RequestType.class);
+    private final Map<RequestType, AtomicLong> overflow = new EnumMap<>(RequestType.class);
+    private final AtomicInteger size = new AtomicInteger();
+    /** The time in nanoseconds before which idle buckets are not evicted again. */
+    private final AtomicLong nextEviction = new AtomicLong(Long.MIN_VALUE);
+
+    /**
+     * Creates a new rate limit filter tracking up to 10000 buckets.
+     *
+     * @param permits
+     *            The number of requests of each type which each principal may
+     *            perform per period, which is also the largest burst of
+     *            requests accepted.
+     * @param period
+     *            The period over which the permits are earned.
+     * @param unit
+     *            The unit of the period.
+     */
+    public RateLimitFilter(final int permits, final long period, final TimeUnit unit) {
+        this(permits, period, unit, DEFAULT_MAX_BUCKETS);
+    }
+
+    /**
+     * Creates a new rate limit filter.
+     *
+     * @param permits
+     *            The number of requests of each type which each principal may
+     *            perform per period, which is also the largest burst of
+     *            requests accepted.
+     * @param period
+     *            The period over which the permits are earned.
+     * @param unit
+     *            The unit of the period.
+     * @param maxBuckets
+     *            The maximum number of buckets tracked. Once it is reached,
+     *            the buckets of idle principals are evicted and the
+     *            principals which cannot be tracked share an overflow bucket.
+     */
+    public RateLimitFilter(final int permits, final long period, final TimeUnit unit, final int maxBuckets) {
+        this(TimeService.SYSTEM, permits, period, unit, maxBuckets);
+    }
+
+    RateLimitFilter(final TimeService time, final int permits, final long period, final TimeUnit unit,
+            final int maxBuckets) {
+        Reject.ifNull(time, unit);
+        Reject.ifTrue(permits < 1 || period < 1 || maxBuckets < 1, "Invalid rate limit");
+        this.time = time;
+        this.interval = Math.max(1, unit.toNanos(period) / permits);
+        this.tolerance = interval * (permits - 1);
+        this.maxBuckets = maxBuckets;
+        for (final RequestType type : RequestType.values()) {
+            buckets.put(type, new ConcurrentHashMap<String, AtomicLong>());
+            overflow.put(type, new AtomicLong(Long.MIN_VALUE));
+        }
+    }
+
+    @Override
+    public Promise<ActionResponse, ResourceException> filterAction(final Context context,
+            final ActionRequest request, final RequestHandler next) {
+        final long wait = acquire(context, RequestType.ACTION);
+        if (wait != 0) {
+            return reject(context, wait);
+        }
+        return next.handleAction(context, request);
+    }
+
+    @Override
+    public Promise<ResourceResponse, ResourceException> filterCreate(final Context context,
+            final CreateRequest request, final RequestHandler next) {
+        final long wait = acquire(context, RequestType.CREATE);
+        if (wait != 0) {
+            return reject(context, wait);
+        }
+        return next.handleCreate(context, request);
+    }
+
+    @Override
+    public Promise<ResourceResponse, ResourceException> filterDelete(final Context context,
+            final DeleteRequest request, final RequestHandler next) {
+        final long wait = acquire(context, RequestType.DELETE);
+        if (wait != 0) {
+            return reject(context, wait);
+        }
+        return next.handleDelete(context, request);
+    }
+
+    @Override
+    public Promise<ResourceResponse, ResourceException> filterPatch(final Context context,
+            final PatchRequest request, final RequestHandler next) {
+        final long wait = acquire(context, RequestType.PATCH);
+        if (wait != 0) {
+            return reject(context, wait);
+        }
+        return next.handlePatch(context, request);
+    }
+
+    @Override
+    public Promise<QueryResponse, ResourceException> filterQuery(final Context context,
+            final QueryRequest request, final QueryResourceHandler handler, final RequestHandler next) {
+        final long wait = acquire(context, RequestType.QUERY);
+        if (wait != 0) {
+            return reject(context, wait);
+        }
+        return next.handleQuery(context, request, handler);
+    }
+
+    @Override
+    public Promise<ResourceResponse, ResourceException> filterRead(final Context context,
+            final ReadRequest request, final RequestHandler next) {
+        final long wait = acquire(context, RequestType.READ);
+        if (wait != 0) {
+            return reject(context, wait);
+        }
+        return next.handleRead(context, request);
+    }
+
+    @Override
+    public Promise<ResourceResponse, ResourceException> filterUpdate(final Context context,
+            final UpdateRequest request, final RequestHandler next) {
+        final long wait = acquire(context, RequestType.UPDATE);
+        if (wait != 0) {
+            return reject(context, wait);
+        }
+        return next.handleUpdate(context, request);
+    }
+
+    /**
+     * Returns the number of buckets currently being tracked, one for each
+     * principal and type of request.
+     *
+     * @return The number of buckets currently being tracked.
+     */
+    int getBucketCount() {
+        return size.get();
+    }
+
+    /**
+     * Takes a token from the bucket of the principal associated with the
+     * provided context. The bucket is represented by its theoretical arrival
+     * time, which is the time at which the bucket will be full again, so that
+     * it can be updated atomically (generic cell rate algorithm).
+     *
+     * @return Zero if the request is accepted, or the time in nanoseconds
+     *         until a token will be available.
+     */
+    private long acquire(final Context context, final RequestType type) {
+        final String principal = getPrincipal(context);
+        final ConcurrentMap<String, AtomicLong> principals = buckets.get(type);
+        final long now = TimeUnit.MILLISECONDS.toNanos(time.now());
+        AtomicLong bucket = principals.get(principal);
+        if (bucket == null) {
+            bucket = newBucket(type, principals, principal, now);
+        }
+        while (true) {
+            final long arrival = bucket.get();
+            final long start = Math.max(arrival, now);
+            if (start - now > tolerance) {
+                return start - now - tolerance;
+            }
+            if (bucket.compareAndSet(arrival, start + interval)) {
+                return 0;
+            }
+        }
+    }
+
+    private AtomicLong newBucket(final RequestType type, final ConcurrentMap<String, AtomicLong> principals,
+            final String principal, final long now) {
+        if (size.get() >= maxBuckets) {
+            evictIdleBuckets(now);
+        }
+        // Reserve the slot first so that concurrent principals cannot exceed the maximum.
+        if (size.incrementAndGet() > maxBuckets) {
+            size.decrementAndGet();
+            return overflow.get(type);
+        }
+        final AtomicLong bucket = new AtomicLong(now);
+        final AtomicLong existing = principals.putIfAbsent(principal, bucket);
+        if (existing != null) {
+            size.decrementAndGet();
+            return existing;
+        }
+        return bucket;
+    }
+
+    /**
+     * Removes the buckets which are full, since they behave exactly as new
+     * buckets. Buckets take a period to refill, so the buckets are scanned at
+     * most once per period, by a single thread while the others carry on.
+     */
+    private void evictIdleBuckets(final long now) {
+        final long next = nextEviction.get();
+        if (now < next || !nextEviction.compareAndSet(next, now + interval + tolerance)) {
+            return;
+        }
+        for (final ConcurrentMap<String, AtomicLong> principals : buckets.values()) {
+            final Iterator<Map.Entry<String, AtomicLong>> iterator = principals.entrySet().iterator();
+            while (iterator.hasNext()) {
+                final Map.Entry<String, AtomicLong> entry = iterator.next();
+                if (entry.getValue().get() <= now && principals.remove(entry.getKey(), entry.getValue())) {
+                    size.decrementAndGet();
+                }
+            }
+        }
+    }
+
+    private static String getPrincipal(final Context context) {
+        if (context.containsContext(SecurityContext.class)) {
+            final String authenticationId = context.asContext(SecurityContext.class).getAuthenticationId();
+            if (authenticationId != null) {
+                return authenticationId;
+            }
+        }
+        return ANONYMOUS;
+    }
+
+    private static <V> Promise<V, ResourceException> reject(final Context context, final long wait) {
+        if (context.containsContext(AdviceContext.class)) {
+            final long seconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(wait + TimeUnit.SECONDS.toNanos(1) - 1));
+            context.asContext(AdviceContext.class).putAdvice(ConcurrencyLimitFilter.RETRY_AFTER_ADVICE,
+                    String.valueOf(seconds));
+        }
+        return new RetryableException(TOO_MANY_REQUESTS, "Too many requests", null).asPromise();
+    }
+}
@@ -12,6 +12,7 @@
  * information: "Portions Copyright [year] [name of copyright owner]".
  *
  * Copyright 2012-2015 ForgeRock AS.
+ * Portions Copyright 2026 Wren Security.
  */
 
 package org.forgerock.json.resource;
@@ -38,16 +39,33 @@ import org.forgerock.util.i18n.PreferredLocales;
  */
 public final class Requests {
     private static abstract class AbstractRequestImpl<T extends Request> implements Request {
-        private final List<JsonPointer> fields = new LinkedList<>();
+        private List<JsonPointer> fields = new LinkedList<>();
         private ResourcePath resourcePath;
-        private final Map<String, String> parameters = new LinkedHashMap<>(2);
+        private Map<String, String> parameters = new LinkedHashMap<>(2);
         private Version resourceVersion;
         private PreferredLocales preferredLocales;
+        /** Indicates that the collections of this request are shared with another request. */
+        private boolean shared;
 
         protected AbstractRequestImpl() {
             // Default constructor.
         }
 
+        /**
+         * Creates a request sharing the state of the provided request, apart
+         * from its resource path. Both requests copy their shared collections
+         * before modifying them, and only expose read-only views of them.
+         */
+        protected AbstractRequestImpl(final AbstractRequestImpl<T> request, final ResourcePath resourcePath) {
+            this.resourcePath = resourcePath;
+            this.fields = request.fields;
+            this.parameters = request.parameters;
+            this.resourceVersion = request.resourceVersion;
+            this.preferredLocales = request.preferredLocales;
+            this.shared = true;
+            request.shared = true;
+        }
+
         protected AbstractRequestImpl(final Request request) {
             this.resourcePath = request.getResourcePathObject();
             this.fields.addAll(request.getFields());
@@ -58,6 +76,7 @@ public final class Requests {
 
         @Override
         public final T addField(final JsonPointer... fields) {
+            unshare();
             for (final JsonPointer field : fields) {
                 this.fields.add(notNull(field));
             }
@@ -66,6 +85,7 @@ public final class Requests {
 
         @Override
         public final T addField(final String... fields) {
+            unshare();
             try {
                 for (final String field : fields) {
                     this.fields.add(new JsonPointer(field));
@@ -78,7 +98,7 @@ public final class Requests {
 
         @Override
         public final List<JsonPointer> getFields() {
-            return fields;
+            return shared ? Collections.unmodifiableList(fields) : fields;
         }
 
         @Override
@@ -93,7 +113,7 @@ public final class Requests {
 
         @Override
         public Map<String, String> getAdditionalParameters() {
-            return parameters;
+            return shared ? Collections.unmodifiableMap(parameters) : parameters;
         }
 
         @Override
@@ -123,6 +143,7 @@ public final class Requests {
             if (isReservedParameter(name)) {
                 throw new BadRequestException("Unrecognized request parameter '" + name + "'");
             }
+            unshare();
             parameters.put(notNull(name), notNull(value));
             return getThis();
         }
@@ -137,6 +158,29 @@ public final class Requests {
             return name.startsWith("_");
         }
 
+        /** Returns {@code true} if the collections of this request are shared with another request. */
+        final boolean isShared() {
+            return shared;
+        }
+
+        /** Copies the collections shared with another request before they are modified. */
+        final void unshare() {
+            if (shared) {
+                fields = new LinkedList<>(fields);
+                parameters = new LinkedHashMap<>(parameters);
+                copySharedState();
+                shared = false;
+            }
+        }
+
+        /** Copies the collections specific to this type of request which are shared with another request. */
+        void copySharedState() {
+            // No additional state by default.
+        }
+
+        /** Returns a request sharing the state of this request, apart from its resource path. */
+        abstract T withResourcePath(ResourcePath resourcePath);
+
         protected abstract T getThis();
 
         @Override
@@ -180,11 +224,22 @@ public final class Requests {
             this.content = copyJsonValue(request.getContent());
         }
 
+        private ActionRequestImpl(final ActionRequestImpl request, final ResourcePath resourcePath) {
+            super(request, resourcePath);
+            this.actionId = request.actionId;
+            this.content = copyJsonValue(request.content);
+        }
+
         @Override
         public <R, P> R accept(final RequestVisitor<R, P> v, final P p) {
             return v.visitActionRequest(p, this);
         }
 
+        @Override
+        ActionRequest withResourcePath(final ResourcePath resourcePath) {
+            return new ActionRequestImpl(this, resourcePath);
+        }
+
         @Override
         public String getAction() {
             return actionId;
@@ -253,11 +308,22 @@ public final class Requests {
             this.newResourceId = request.getNewResourceId();
         }
 
+        private CreateRequestImpl(final CreateRequestImpl request, final ResourcePath resourcePath) {
+            super(request, resourcePath);
+            this.content = copyJsonValue(request.content);
+            this.newResourceId = request.newResourceId;
+        }
+
         @Override
         public <R, P> R accept(final RequestVisitor<R, P> v, final P p) {
             return v.visitCreateRequest(p, this);
         }
 
+        @Override
+        CreateRequest withResourcePath(final ResourcePath resourcePath) {
+            return new CreateRequestImpl(this, resourcePath);
+        }
+
         @Override
         public JsonValue getContent() {
             return content;
@@ -312,11 +378,21 @@ public final class Requests {
             this.version = request.getRevision();
         }
 
+        private DeleteRequestImpl(final DeleteRequestImpl request, final ResourcePath resourcePath) {
+            super(request, resourcePath);
+            this.version = request.version;
+        }
+
         @Override
         public <R, P> R accept(final RequestVisitor<R, P> v, final P p) {
             return v.visitDeleteRequest(p, this);
         }
 
+        @Override
+        DeleteRequest withResourcePath(final ResourcePath resourcePath) {
+            return new DeleteRequestImpl(this, resourcePath);
+        }
+
         @Override
         public String getRevision() {
             return version;
@@ -361,11 +437,27 @@ public final class Requests {
             this.version = request.getRevision();
         }
 
+        private PatchRequestImpl(final PatchRequestImpl request, final ResourcePath resourcePath) {
+            super(request, resourcePath);
+            this.operations = request.operations;
+            this.version = request.version;
+        }
+
         @Override
         public <R, P> R accept(final RequestVisitor<R, P> v, final P p) {
             return v.visitPatchRequest(p, this);
         }
 
+        @Override
+        PatchRequest withResourcePath(final ResourcePath resourcePath) {
+            return new PatchRequestImpl(this, resourcePath);
+        }
+
+        @Override
+        void copySharedState() {
+            operations = new LinkedList<>(operations);
+        }
+
         @Override
         public String getRevision() {
             return version;
@@ -373,17 +465,19 @@ public final class Requests {
 
         @Override
         public PatchRequest addPatchOperation(PatchOperation... operations) {
+            unshare();
             Collections.addAll(this.operations, operations);
             return this;
         }
 
         @Override
         public List<PatchOperation> getPatchOperations() {
-            return operations;
+            return isShared() ? Collections.unmodifiableList(operations) : operations;
         }
 
         @Override
         public PatchRequest addPatchOperation(String operation, String field, JsonValue value) {
+            unshare();
             operations.add(PatchOperation.operation(operation, field, value));
             return this;
         }
@@ -419,7 +513,7 @@ public final class Requests {
     private static final class QueryRequestImpl extends AbstractRequestImpl<QueryRequest> implements
             QueryRequest {
         private org.forgerock.util.query.QueryFilter<JsonPointer> filter;
-        private final List<SortKey> keys = new LinkedList<>();
+        private List<SortKey> keys = new LinkedList<>();
         private String pagedResultsCookie;
         private CountPolicy totalPagedResultsPolicy = CountPolicy.NONE;
         private int pagedResultsOffset = 0;
@@ -443,13 +537,36 @@ public final class Requests {
             this.totalPagedResultsPolicy = request.getTotalPagedResultsPolicy();
         }
 
+        private QueryRequestImpl(final QueryRequestImpl request, final ResourcePath resourcePath) {
+            super(request, resourcePath);
+            this.filter = request.filter;
+            this.queryId = request.queryId;
+            this.queryExpression = request.queryExpression;
+            this.keys = request.keys;
+            this.pageSize = request.pageSize;
+            this.pagedResultsCookie = request.pagedResultsCookie;
+            this.pagedResultsOffset = request.pagedResultsOffset;
+            this.totalPagedResultsPolicy = request.totalPagedResultsPolicy;
+        }
+
         @Override
         public <R, P> R accept(final RequestVisitor<R, P> v, final P p) {
             return v.visitQueryRequest(p, this);
         }
 
+        @Override
+        QueryRequest withResourcePath(final ResourcePath resourcePath) {
+            return new QueryRequestImpl(this, resourcePath);
+        }
+
+        @Override
+        void copySharedState() {
+            keys = new LinkedList<>(keys);
+        }
+
         @Override
         public QueryRequest addSortKey(final SortKey... keys) {
+            unshare();
             for (final SortKey key : keys) {
                 this.keys.add(notNull(key));
             }
@@ -458,6 +575,7 @@ public final class Requests {
 
         @Override
         public final QueryRequest addSortKey(final String... keys) {
+            unshare();
             for (final String key : keys) {
                 this.keys.add(SortKey.valueOf(key));
             }
@@ -501,7 +619,7 @@ public final class Requests {
 
         @Override
         public List<SortKey> getSortKeys() {
-            return keys;
+            return isShared() ? Collections.unmodifiableList(keys) : keys;
         }
 
         @Override
@@ -586,11 +704,20 @@ public final class Requests {
             super(request);
         }
 
+        private ReadRequestImpl(final ReadRequestImpl request, final ResourcePath resourcePath) {
+            super(request, resourcePath);
+        }
+
         @Override
         public <R, P> R accept(final RequestVisitor<R, P> v, final P p) {
             return v.visitReadRequest(p, this);
         }
 
+        @Override
+        ReadRequest withResourcePath(final ResourcePath resourcePath) {
+            return new ReadRequestImpl(this, resourcePath);
+        }
+
         @Override
         protected ReadRequest getThis() {
             return this;
@@ -617,11 +744,22 @@ public final class Requests {
             this.content = copyJsonValue(request.getContent());
         }
 
+        private UpdateRequestImpl(final UpdateRequestImpl request, final ResourcePath resourcePath) {
+            super(request, resourcePath);
+            this.version = request.version;
+            this.content = copyJsonValue(request.content);
+        }
+
         @Override
         public <R, P> R accept(final RequestVisitor<R, P> v, final P p) {
             return v.visitUpdateRequest(p, this);
         }
 
+        @Override
+        UpdateRequest withResourcePath(final ResourcePath resourcePath) {
+            return new UpdateRequestImpl(this, resourcePath);
+        }
+
         @Override
         public JsonValue getContent() {
             return content;
@@ -1287,6 +1425,69 @@ public final class Requests {
         return newUpdateRequest(resourceContainer.child(resourceId), newContent);
     }
 
+    /**
+     * Returns a request which is identical to the provided request but which
+     * targets a different resource, typically the resource path remaining
+     * after routing. Requests created by this class are not copied: the
+     * returned request shares their state, copying each shared collection
+     * only before it is modified by either request, and exposing it as a
+     * read-only view until then. The JSON content is copied, since resource
+     * providers may modify it. Other requests are copied as usual.
+     *
+     * @param <T>
+     *            The type of request.
+     * @param request
+     *            The request to be re-targeted.
+     * @param resourcePath
+     *            The resource path of the returned request.
+     * @return A request targeting the provided resource path.
+     */
+    @SuppressWarnings("unchecked")
+    static <T extends Request> T withResourcePath(final T request, final ResourcePath resourcePath) {
+        if (request instanceof AbstractRequestImpl) {
+            return (T) ((AbstractRequestImpl<?>) request).withResourcePath(resourcePath);
+        }
+        return (T) request.accept(COPY_WITH_RESOURCE_PATH, resourcePath);
+    }
+
+    private static final RequestVisitor<Request, ResourcePath> COPY_WITH_RESOURCE_PATH =
+            new RequestVisitor<Request, ResourcePath>() {
+                @Override
+                public Request visitActionRequest(final ResourcePath path, final ActionRequest request) {
+                    return copyOfActionRequest(request).setResourcePath(path);
+                }
+
+                @Override
+                public Request visitCreateRequest(final ResourcePath path, final CreateRequest request) {
+                    return copyOfCreateRequest(request).setResourcePath(path);
+                }
+
+                @Override
+                public Request visitDeleteRequest(final ResourcePath path, final DeleteRequest request) {
+                    return copyOfDeleteRequest(request).setResourcePath(path);
+                }
+
+                @Override
+                public Request visitPatchRequest(final ResourcePath path, final PatchRequest request) {
+                    return copyOfPatchRequest(request).setResourcePath(path);
+                }
+
+                @Override
+                public Request visitQueryRequest(final ResourcePath path, final QueryRequest request) {
+                    return copyOfQueryRequest(request).setResourcePath(path);
+                }
+
+                @Override
+                public Request visitReadRequest(final ResourcePath path, final ReadRequest request) {
+                    return copyOfReadRequest(request).setResourcePath(path);
+                }
+
+                @Override
+                public Request visitUpdateRequest(final ResourcePath path, final UpdateRequest request) {
+                    return copyOfUpdateRequest(request).setResourcePath(path);
+                }
+            };
+
     private static JsonValue copyJsonValue(final JsonValue value) {
         return value != null ? value.copy() : null;
     }
@@ -12,6 +12,7 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2015 ForgeRock AS.
+ * Portions Copyright 2026 Wren Security.
  */
 
 package org.forgerock.json.resource;
@@ -30,6 +31,9 @@ import org.forgerock.util.promise.ResultHandler;
  * {@literal Accept-API-Version} header is set on the request. In addition also
  * sets the {@literal Warning} and {@literal Content-API-Version} headers on
  * the response.
+ * <p>
+ * Resources whose versions are all served by a single handler may use an
+ * {@link ApiVersionRouter} instead, which does not require this filter.
  */
 public class ResourceApiVersionRoutingFilter extends org.forgerock.http.routing.ResourceApiVersionRoutingFilter
         implements Filter {
@@ -97,26 +101,24 @@ public class ResourceApiVersionRoutingFilter extends org.forgerock.http.routing.
     private <V extends Response> Promise<V, ResourceException> wrapWithApiVersionInfo(
             final ApiVersionRouterContext apiVersionRouterContext, final Request request,
             Promise<V, ResourceException> promise) {
-        return promise
-                .thenOnResult(new ResultHandler<V>() {
-                    @Override
-                    public void handleResult(V response) {
-                        setApiVersionInfo(apiVersionRouterContext, request, response);
-                    }
-                })
-                .thenOnException(new ExceptionHandler<ResourceException>() {
-                    @Override
-                    public void handleException(ResourceException e) {
-                        setApiVersionInfo(apiVersionRouterContext, request, e);
-                    }
-                });
+        // A single listener handles both outcomes, rather than chaining one stage for each.
+        final ApiVersionInfoHandler handler = new ApiVersionInfoHandler(apiVersionRouterContext, request);
+        return promise.thenOnResultOrException(handler, handler);
     }
 
     static void setApiVersionInfo(ApiVersionRouterContext apiVersionRouterContext, Request request, Response response) {
+        setResourceApiVersion(apiVersionRouterContext, response);
+        addApiVersionWarning(apiVersionRouterContext, request);
+    }
+
+    static void setResourceApiVersion(ApiVersionRouterContext apiVersionRouterContext, Response response) {
         Version resourceVersion = apiVersionRouterContext.getResourceVersion();
         if (resourceVersion != null) {
             response.setResourceApiVersion(resourceVersion);
         }
+    }
+
+    static void addApiVersionWarning(ApiVersionRouterContext apiVersionRouterContext, Request request) {
         if (apiVersionRouterContext.isWarningEnabled() && request.getResourceVersion() == null) {
             AdviceContext adviceContext = apiVersionRouterContext.asContext(AdviceContext.class);
             if (!adviceContext.getAdvices().containsKey("crest")) {
@@ -125,4 +127,25 @@ public class ResourceApiVersionRoutingFilter extends org.forgerock.http.routing.
             }
         }
     }
+
+    private static final class ApiVersionInfoHandler
+            implements ResultHandler<Response>, ExceptionHandler<ResourceException> {
+        private final ApiVersionRouterContext apiVersionRouterContext;
+        private final Request request;
+
+        private ApiVersionInfoHandler(ApiVersionRouterContext apiVersionRouterContext, Request request) {
+            this.apiVersionRouterContext = apiVersionRouterContext;
+            this.request = request;
+        }
+
+        @Override
+        public void handleResult(Response response) {
+            setApiVersionInfo(apiVersionRouterContext, request, response);
+        }
+
+        @Override
+        public void handleException(ResourceException e) {
+            setApiVersionInfo(apiVersionRouterContext, request, e);
+        }
+    }
 }
@@ -0,0 +1,139 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+
+package org.forgerock.json.resource;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import org.forgerock.json.JsonValue;
+
+/**
+ * A notification that a resource has been created, updated, patched or
+ * deleted. Each change is assigned a sequence number by the
+ * {@link ResourceChangeNotifier} which published it. Sequence numbers are
+ * strictly increasing and may be used by clients in order to resume watching
+ * for changes after the last change that they have received.
+ *
+ * @see ResourceChangeNotifier
+ */
+public final class ResourceChange {
+
+    /**
+     * The name of the field which contains the sequence number in the JSON
+     * representation.
+     */
+    public static final String FIELD_SEQUENCE = "sequence";
+
+    /**
+     * The name of the field which contains the type of change in the JSON
+     * representation.
+     */
+    public static final String FIELD_TYPE = "type";
+
+    /**
+     * The name of the field which contains the path of the changed resource
+     * in the JSON representation.
+     */
+    public static final String FIELD_RESOURCE_PATH = "resourcePath";
+
+    private final long sequenceNumber;
+    private final RequestType type;
+    private final ResourcePath resourcePath;
+    private final ResourceResponse resource;
+
+    ResourceChange(final long sequenceNumber, final RequestType type, final ResourcePath resourcePath,
+            final ResourceResponse resource) {
+        this.sequenceNumber = sequenceNumber;
+        this.type = type;
+        this.resourcePath = resourcePath;
+        this.resource = resource;
+    }
+
+    /**
+     * Returns the sequence number which was assigned to this change.
+     *
+     * @return The sequence number which was assigned to this change.
+     */
+    public long getSequenceNumber() {
+        return sequenceNumber;
+    }
+
+    /**
+     * Returns the type of operation which changed the resource, which will be
+     * one of {@link RequestType#CREATE}, {@link RequestType#UPDATE},
+     * {@link RequestType#PATCH} or {@link RequestType#DELETE}.
+     *
+     * @return The type of operation which changed the resource.
+     */
+    public RequestType getType() {
+        return type;
+    }
+
+    /**
+     * Returns the path of the changed resource, relative to the point at
+     * which the changes were observed.
+     *
+     * @return The path of the changed resource.
+     */
+    public ResourcePath getResourcePath() {
+        return resourcePath;
+    }
+
+    /**
+     * Returns the resource after the change was applied, or the resource
+     * which was removed in the case of a delete.
+     *
+     * @return The changed resource.
+     */
+    public ResourceResponse getResource() {
+        return resource;
+    }
+
+    /**
+     * Returns the change in a JSON object structure. The JSON representation
+     * looks like this:
+     *
+     * <pre>
+     * {
+     *     "sequence"     : 42,
+     *     "type"         : "update",
+     *     "resourcePath" : "users/bjensen",
+     *     "_id"          : "bjensen",
+     *     "_rev"         : "2",
+     *     "content"      : { ... }
+     * }
+     * </pre>
+     *
+     * @return The change in a JSON object structure.
+     */
+    public JsonValue toJsonValue() {
+        final Map<String, Object> result = new LinkedHashMap<>(6);
+        result.put(FIELD_SEQUENCE, sequenceNumber);
+        result.put(FIELD_TYPE, type.name().toLowerCase(Locale.ENGLISH));
+        result.put(FIELD_RESOURCE_PATH, resourcePath.toString());
+        result.put(ResourceResponse.FIELD_CONTENT_ID, resource.getId());
+        result.put(ResourceResponse.FIELD_CONTENT_REVISION, resource.getRevision());
+        result.put(ResourceResponse.FIELD_CONTENT, resource.getContent().getObject());
+        return new JsonValue(result);
+    }
+
+    @Override
+    public String toString() {
+        return toJsonValue().toString();
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+
+package org.forgerock.json.resource;
+
+/**
+ * A listener which is notified of changes to the resources which it has
+ * subscribed to.
+ *
+ * @see ResourceChangeNotifier#subscribe(ResourcePath, org.forgerock.util.query.QueryFilter, ResourceChangeListener)
+ */
+public interface ResourceChangeListener {
+
+    /**
+     * Invoked each time a matching resource is changed. Changes are delivered
+     * in sequence number order while the notifier's internal lock is held, so
+     * implementations must not block and should hand off any expensive
+     * processing to another thread.
+     *
+     * @param change
+     *            The resource change.
+     */
+    void handleChange(ResourceChange change);
+}
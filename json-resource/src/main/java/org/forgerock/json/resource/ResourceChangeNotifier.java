@@ -0,0 +1,585 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+
+package org.forgerock.json.resource;
+
+import static org.forgerock.json.resource.Responses.newActionResponse;
+import static org.forgerock.util.promise.Promises.newResultPromise;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.forgerock.json.JsonPointer;
+import org.forgerock.json.JsonValue;
+import org.forgerock.services.context.Context;
+import org.forgerock.util.Reject;
+import org.forgerock.util.promise.Promise;
+import org.forgerock.util.promise.PromiseImpl;
+import org.forgerock.util.promise.ResultHandler;
+import org.forgerock.util.query.QueryFilter;
+
+/**
+ * Publishes notifications of resource changes to subscribers, and retains a
+ * bounded history of recent changes so that subscribers may resume watching
+ * from the last change that they have seen.
+ * <p>
+ * Changes may be published directly by a resource provider, as is the case
+ * for a {@link MemoryBackend} created with a notifier, or by intercepting
+ * write requests using the filter returned by {@link #asFilter()}. In both
+ * cases clients may watch for changes using the {@code watch} action against
+ * the collection or one of its resources, for example over HTTP:
+ *
+ * <pre>
+ * POST /users?_action=watch&amp;since=42&amp;timeout=30000&amp;queryFilter=role+eq+"sales"
+ * </pre>
+ *
+ * The action completes as soon as there are changes following the provided
+ * sequence number, or once the timeout expires, with a response of the form:
+ *
+ * <pre>
+ * {
+ *     "sequence" : 43,
+ *     "changes"  : [ { "sequence" : 43, "type" : "update", ... } ]
+ * }
+ * </pre>
+ *
+ * The returned sequence number should be used as the {@code since} parameter
+ * of the next watch request. A watch request whose sequence number is older
+ * than the retained history fails with a {@link PreconditionFailedException},
+ * in which case the client must re-synchronize using a query.
+ */
+public final class ResourceChangeNotifier {
+
+    /** The action ID used for watching resource changes. */
+    public static final String ACTION_ID_WATCH = "watch";
+
+    /**
+     * The name of the watch action parameter containing the sequence number of
+     * the last change seen by the client. Only changes following it will be
+     * returned. If absent, only changes made after the request are returned.
+     */
+    public static final String PARAM_SINCE = "since";
+
+    /**
+     * The name of the watch action parameter containing the maximum number of
+     * milliseconds to wait for a change. If absent or zero the watch action
+     * completes immediately.
+     */
+    public static final String PARAM_TIMEOUT = "timeout";
+
+    /**
+     * The name of the watch action parameter containing an optional query
+     * filter which changed resources must match.
+     */
+    public static final String PARAM_QUERY_FILTER = "queryFilter";
+
+    /**
+     * The name of the field in the watch action response which contains the
+     * list of changes.
+     */
+    public static final String FIELD_CHANGES = "changes";
+
+    private static final int DEFAULT_HISTORY_SIZE = 1000;
+
+    /**
+     * A registration of interest in changes to resources beneath a resource
+     * path, optionally restricted to resources matching a query filter.
+     */
+    public final class Subscription {
+        private final ResourcePath resourcePath;
+        private final QueryFilter<JsonPointer> filter;
+        private final ResourceChangeListener listener;
+        private volatile boolean cancelled;
+
+        private Subscription(final ResourcePath resourcePath, final QueryFilter<JsonPointer> filter,
+                final ResourceChangeListener listener) {
+            this.resourcePath = resourcePath;
+            this.filter = filter;
+            this.listener = listener;
+        }
+
+        /**
+         * Cancels this subscription. The listener will not be notified of any
+         * subsequent changes.
+         */
+        public void cancel() {
+            cancelled = true;
+            subscriptions.remove(this);
+        }
+
+        private boolean matches(final ResourceChange change) {
+            return change.getResourcePath().startsWith(resourcePath)
+                    && (filter == null || MemoryBackend.matches(filter, change.getResource()));
+        }
+    }
+
+    /** A change which has been recorded but not yet delivered to the subscriptions it matches. */
+    private static final class Notification {
+        private final ResourceChange change;
+        private final List<Subscription> subscriptions;
+
+        private Notification(final ResourceChange change, final List<Subscription> subscriptions) {
+            this.change = change;
+            this.subscriptions = subscriptions;
+        }
+
+        private void deliver() {
+            for (final Subscription subscription : subscriptions) {
+                if (!subscription.cancelled) {
+                    subscription.listener.handleChange(change);
+                }
+            }
+        }
+    }
+
+    /**
+     * A pending watch request which completes with the first matching change or
+     * once its timeout expires, whichever comes first.
+     */
+    private final class PendingWatch implements ResourceChangeListener, Runnable {
+        private final PromiseImpl<ActionResponse, ResourceException> promise = PromiseImpl.create();
+        private Subscription subscription;
+        private ScheduledFuture<?> timeout;
+
+        @Override
+        public void handleChange(final ResourceChange change) {
+            if (promise.tryHandleResult(
+                    newWatchResponse(Collections.singletonList(change), change.getSequenceNumber()))) {
+                subscription.cancel();
+                timeout.cancel(false);
+            }
+        }
+
+        @Override
+        public void run() {
+            synchronized (lock) {
+                if (isUndelivered(subscription)) {
+                    // The watch will complete with the change which is being delivered.
+                    return;
+                }
+                if (promise.tryHandleResult(
+                        newWatchResponse(Collections.<ResourceChange>emptyList(), lastSequenceNumber))) {
+                    subscription.cancel();
+                }
+            }
+        }
+    }
+
+    /**
+     * Publishes changes for successful create, update, patch and delete
+     * requests, and handles watch actions.
+     */
+    private final class ChangeNotificationFilter implements Filter {
+
+        @Override
+        public Promise<ActionResponse, ResourceException> filterAction(final Context context,
+                final ActionRequest request, final RequestHandler next) {
+            if (ACTION_ID_WATCH.equals(request.getAction())) {
+                return handleWatchAction(request.getResourcePathObject(), request);
+            } else {
+                return next.handleAction(context, request);
+            }
+        }
+
+        @Override
+        public Promise<ResourceResponse, ResourceException> filterCreate(final Context context,
+                final CreateRequest request, final RequestHandler next) {
+            return next.handleCreate(context, request).thenOnResult(new ResultHandler<ResourceResponse>() {
+                @Override
+                public void handleResult(final ResourceResponse resource) {
+                    final ResourcePath container = request.getResourcePathObject();
+                    notifyChange(RequestType.CREATE,
+                            resource.getId() != null ? container.child(resource.getId()) : container, resource);
+                }
+            });
+        }
+
+        @Override
+        public Promise<ResourceResponse, ResourceException> filterDelete(final Context context,
+                final DeleteRequest request, final RequestHandler next) {
+            return next.handleDelete(context, request).thenOnResult(newNotifier(RequestType.DELETE, request));
+        }
+
+        @Override
+        public Promise<ResourceResponse, ResourceException> filterPatch(final Context context,
+                final PatchRequest request, final RequestHandler next) {
+            return next.handlePatch(context, request).thenOnResult(newNotifier(RequestType.PATCH, request));
+        }
+
+        @Override
+        public Promise<QueryResponse, ResourceException> filterQuery(final Context context,
+                final QueryRequest request, final QueryResourceHandler handler, final RequestHandler next) {
+            return next.handleQuery(context, request, handler);
+        }
+
+        @Override
+        public Promise<ResourceResponse, ResourceException> filterRead(final Context context,
+                final ReadRequest request, final RequestHandler next) {
+            return next.handleRead(context, request);
+        }
+
+        @Override
+        public Promise<ResourceResponse, ResourceException> filterUpdate(final Context context,
+                final UpdateRequest request, final RequestHandler next) {
+            return next.handleUpdate(context, request).thenOnResult(newNotifier(RequestType.UPDATE, request));
+        }
+
+        private ResultHandler<ResourceResponse> newNotifier(final RequestType type, final Request request) {
+            return new ResultHandler<ResourceResponse>() {
+                @Override
+                public void handleResult(final ResourceResponse resource) {
+                    notifyChange(type, request.getResourcePathObject(), resource);
+                }
+            };
+        }
+    }
+
+    private final Object lock = new Object();
+    private final int historySize;
+    private final ArrayDeque<ResourceChange> history;
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService scheduler;
+    private long lastSequenceNumber;
+    /** The changes waiting to be delivered to listeners, in sequence order, guarded by the lock. */
+    private final ArrayDeque<Notification> undelivered = new ArrayDeque<>();
+    /** The change which is being delivered to listeners, guarded by the lock. */
+    private Notification delivering;
+    /** Whether a thread is delivering changes to listeners, guarded by the lock. */
+    private boolean deliveryInProgress;
+
+    /**
+     * Creates a new notifier which retains the last 1000 changes and which does
+     * not support waiting for changes: watch actions complete immediately.
+     */
+    public ResourceChangeNotifier() {
+        this(DEFAULT_HISTORY_SIZE, null);
+    }
+
+    /**
+     * Creates a new notifier which retains the provided number of changes and
+     * which uses the provided scheduler for expiring watch actions which are
+     * waiting for changes.
+     *
+     * @param historySize
+     *            The maximum number of changes to retain for resuming watches.
+     * @param scheduler
+     *            The scheduler used for expiring pending watch actions, or
+     *            {@code null} if watch actions should always complete
+     *            immediately.
+     */
+    public ResourceChangeNotifier(final int historySize, final ScheduledExecutorService scheduler) {
+        Reject.ifTrue(historySize < 0, "historySize must not be negative");
+        this.historySize = historySize;
+        this.history = new ArrayDeque<>(Math.min(historySize, DEFAULT_HISTORY_SIZE));
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Returns a filter which notifies this notifier of successful create,
+     * update, patch and delete requests passing through it, and which handles
+     * watch actions. Resource paths are relative to the point at which the
+     * filter is inserted into the request handler chain.
+     *
+     * @return A filter which publishes changes to this notifier.
+     */
+    public Filter asFilter() {
+        return new ChangeNotificationFilter();
+    }
+
+    /**
+     * Returns the sequence number of the most recently published change, or
+     * {@code 0} if no changes have been published.
+     *
+     * @return The sequence number of the most recently published change.
+     */
+    public long getLastSequenceNumber() {
+        synchronized (lock) {
+            return lastSequenceNumber;
+        }
+    }
+
+    /**
+     * Publishes a change to all matching subscribers. Listeners are notified
+     * without holding any lock of this notifier, and in the order in which the
+     * changes were published: a change published while another thread is
+     * notifying listeners may be delivered by that thread.
+     *
+     * @param type
+     *            The type of operation which changed the resource.
+     * @param resourcePath
+     *            The path of the changed resource.
+     * @param resource
+     *            The resource after the change was applied, or the removed
+     *            resource in the case of a delete.
+     * @return The published change.
+     */
+    public ResourceChange notifyChange(final RequestType type, final ResourcePath resourcePath,
+            final ResourceResponse resource) {
+        final ResourceChange change = recordChange(type, resourcePath, resource);
+        deliverChanges();
+        return change;
+    }
+
+    /**
+     * Records a change and the subscriptions it matches, without notifying
+     * the listeners. This allows resource providers to record changes while
+     * holding their own locks, so that changes are ordered as they were made,
+     * and to call {@link #deliverChanges()} once the locks are released.
+     */
+    ResourceChange recordChange(final RequestType type, final ResourcePath resourcePath,
+            final ResourceResponse resource) {
+        synchronized (lock) {
+            final ResourceChange change = new ResourceChange(++lastSequenceNumber, type, resourcePath, resource);
+            if (historySize > 0) {
+                if (history.size() == historySize) {
+                    history.removeFirst();
+                }
+                history.addLast(change);
+            }
+            final List<Subscription> matching = new ArrayList<>();
+            for (final Subscription subscription : subscriptions) {
+                if (subscription.matches(change)) {
+                    matching.add(subscription);
+                }
+            }
+            if (!matching.isEmpty()) {
+                undelivered.addLast(new Notification(change, matching));
+            }
+            return change;
+        }
+    }
+
+    /**
+     * Notifies listeners of the recorded changes, unless another thread is
+     * already doing so, in which case that thread will deliver them.
+     */
+    void deliverChanges() {
+        synchronized (lock) {
+            if (deliveryInProgress) {
+                return;
+            }
+            deliveryInProgress = true;
+        }
+        boolean drained = false;
+        try {
+            while (true) {
+                final Notification notification;
+                synchronized (lock) {
+                    notification = undelivered.pollFirst();
+                    delivering = notification;
+                    if (notification == null) {
+                        deliveryInProgress = false;
+                        drained = true;
+                        return;
+                    }
+                }
+                notification.deliver();
+            }
+        } finally {
+            if (!drained) {
+                // A listener failed: let the next published change resume the delivery.
+                synchronized (lock) {
+                    delivering = null;
+                    deliveryInProgress = false;
+                }
+            }
+        }
+    }
+
+    /**
+     * Registers interest in changes to resources beneath the provided resource
+     * path.
+     *
+     * @param resourcePath
+     *            The path of the resource or collection to watch.
+     * @param filter
+     *            The query filter which changed resources must match, or
+     *            {@code null} if all changes should be notified.
+     * @param listener
+     *            The listener which will be notified of changes.
+     * @return The subscription, which should be cancelled once the listener
+     *         is no longer interested in changes.
+     */
+    public Subscription subscribe(final ResourcePath resourcePath, final QueryFilter<JsonPointer> filter,
+            final ResourceChangeListener listener) {
+        final Subscription subscription = new Subscription(resourcePath, filter, listener);
+        subscriptions.add(subscription);
+        return subscription;
+    }
+
+    /**
+     * Registers interest in changes to resources beneath the provided resource
+     * path, first replaying any retained changes following the provided
+     * sequence number.
+     *
+     * @param resourcePath
+     *            The path of the resource or collection to watch.
+     * @param filter
+     *            The query filter which changed resources must match, or
+     *            {@code null} if all changes should be notified.
+     * @param since
+     *            The sequence number of the last change seen by the listener.
+     * @param listener
+     *            The listener which will be notified of changes.
+     * @return The subscription, which should be cancelled once the listener
+     *         is no longer interested in changes.
+     * @throws ResourceException
+     *             If the changes following the sequence number are no longer
+     *             retained, or if the sequence number is invalid.
+     */
+    public Subscription subscribe(final ResourcePath resourcePath, final QueryFilter<JsonPointer> filter,
+            final long since, final ResourceChangeListener listener) throws ResourceException {
+        final Subscription subscription = new Subscription(resourcePath, filter, listener);
+        synchronized (lock) {
+            // Replay the retained changes ahead of the changes which have not been delivered yet, since they
+            // were published first, and without notifying the listener while holding the lock.
+            final List<ResourceChange> changes = getChangesSince(subscription, since);
+            final List<Subscription> replay = Collections.singletonList(subscription);
+            for (int i = changes.size() - 1; i >= 0; i--) {
+                undelivered.addFirst(new Notification(changes.get(i), replay));
+            }
+            subscriptions.add(subscription);
+        }
+        deliverChanges();
+        return subscription;
+    }
+
+    /**
+     * Returns the changes to resources beneath the provided resource path
+     * which follow the provided sequence number, waiting up to the provided
+     * timeout for a change if there are none.
+     *
+     * @param resourcePath
+     *            The path of the resource or collection to watch.
+     * @param filter
+     *            The query filter which changed resources must match, or
+     *            {@code null} if all changes should be returned.
+     * @param since
+     *            The sequence number of the last change seen by the client, or
+     *            a negative number if only new changes should be returned.
+     * @param timeoutMillis
+     *            The maximum number of milliseconds to wait for a change.
+     * @return A promise completed with the watch action response.
+     */
+    public Promise<ActionResponse, ResourceException> watch(final ResourcePath resourcePath,
+            final QueryFilter<JsonPointer> filter, final long since, final long timeoutMillis) {
+        final PendingWatch pendingWatch = new PendingWatch();
+        synchronized (lock) {
+            final List<ResourceChange> changes;
+            try {
+                changes = since >= 0
+                        ? getChangesSince(new Subscription(resourcePath, filter, null), since)
+                        : Collections.<ResourceChange>emptyList();
+            } catch (final ResourceException e) {
+                return e.asPromise();
+            }
+            if (!changes.isEmpty() || timeoutMillis <= 0 || scheduler == null) {
+                return newResultPromise(newWatchResponse(changes, lastSequenceNumber));
+            }
+            pendingWatch.subscription = subscribe(resourcePath, filter, pendingWatch);
+            pendingWatch.timeout = scheduler.schedule(pendingWatch, timeoutMillis, TimeUnit.MILLISECONDS);
+        }
+        return pendingWatch.promise;
+    }
+
+    Promise<ActionResponse, ResourceException> handleWatchAction(final ResourcePath resourcePath,
+            final ActionRequest request) {
+        try {
+            final long since = getLongParameter(request, PARAM_SINCE, -1);
+            final long timeout = getLongParameter(request, PARAM_TIMEOUT, 0);
+            final String filterString = request.getAdditionalParameter(PARAM_QUERY_FILTER);
+            QueryFilter<JsonPointer> filter = null;
+            if (filterString != null) {
+                try {
+                    filter = QueryFilters.parse(filterString);
+                } catch (final IllegalArgumentException e) {
+                    throw new BadRequestException("The value '" + filterString + "' for parameter '"
+                            + PARAM_QUERY_FILTER + "' could not be parsed as a valid query filter");
+                }
+            }
+            return watch(resourcePath, filter, since, timeout);
+        } catch (final ResourceException e) {
+            return e.asPromise();
+        }
+    }
+
+    // Must be called while holding the lock.
+    private List<ResourceChange> getChangesSince(final Subscription subscription, final long since)
+            throws ResourceException {
+        if (since > lastSequenceNumber) {
+            throw new BadRequestException("The sequence number " + since + " has not been reached");
+        }
+        final long oldestRetained = history.isEmpty() ? lastSequenceNumber + 1 : history.peekFirst()
+                .getSequenceNumber();
+        if (since + 1 < oldestRetained) {
+            throw new PreconditionFailedException("The changes following sequence number " + since
+                    + " are no longer available");
+        }
+        final List<ResourceChange> changes = new ArrayList<>();
+        for (final ResourceChange change : history) {
+            if (change.getSequenceNumber() > since && subscription.matches(change)) {
+                changes.add(change);
+            }
+        }
+        return changes;
+    }
+
+    // Must be called while holding the lock.
+    private boolean isUndelivered(final Subscription subscription) {
+        if (delivering != null && delivering.subscriptions.contains(subscription)) {
+            return true;
+        }
+        for (final Notification notification : undelivered) {
+            if (notification.subscriptions.contains(subscription)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static ActionResponse newWatchResponse(final List<ResourceChange> changes, final long sequence) {
+        final List<Object> json = new ArrayList<>(changes.size());
+        for (final ResourceChange change : changes) {
+            json.add(change.toJsonValue().getObject());
+        }
+        final Map<String, Object> result = new LinkedHashMap<>(2);
+        result.put(ResourceChange.FIELD_SEQUENCE, sequence);
+        result.put(FIELD_CHANGES, json);
+        return newActionResponse(new JsonValue(result));
+    }
+
+    private static long getLongParameter(final ActionRequest request, final String name, final long defaultValue)
+            throws BadRequestException {
+        final String value = request.getAdditionalParameter(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (final NumberFormatException e) {
+            throw new BadRequestException("The value '" + value + "' for parameter '" + name
+                    + "' could not be parsed as a valid integer");
+        }
+    }
+}
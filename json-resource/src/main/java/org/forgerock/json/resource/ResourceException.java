@@ -12,11 +12,13 @@
  * information: "Portions Copyrighted [year] [name of copyright owner]".
  *
  * Copyright 2011-2015 ForgeRock AS.
+ * Portions Copyright 2026 Wren Security.
  */
 
 package org.forgerock.json.resource;
 
 import java.io.IOException;
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
@@ -34,6 +36,18 @@ import org.forgerock.util.promise.Promises;
  * exceptions that correspond with HTTP status codes. For the sake of
  * interoperability with HTTP, if an exception corresponds with an HTTP error
  * status, use the matching HTTP status code.
+ * <p>
+ * Applications which routinely return client errors, such as a "not found"
+ * error for each cache miss, may enable the stackless mode using
+ * {@link #setStacklessClientErrors(boolean)} or the
+ * {@value #STACKLESS_CLIENT_ERRORS_PROPERTY} system property. In this mode,
+ * {@link BadRequestException}, {@link ConflictException},
+ * {@link ForbiddenException}, {@link NotFoundException},
+ * {@link PreconditionFailedException} and
+ * {@link PreconditionRequiredException} do not capture a stack trace when they
+ * are constructed, and their JSON representation is cached. Exceptions
+ * returned by the {@code newResourceException} methods always include a stack
+ * trace, so that they remain useful for debugging.
  */
 public class ResourceException extends IOException implements Response {
 
@@ -134,9 +148,45 @@ public class ResourceException extends IOException implements Response {
      */
     public static final int VERSION_REQUIRED = 428;
 
+    /**
+     * The name of the system property which enables the stackless mode for
+     * client errors when set to {@code true}.
+     *
+     * @see #setStacklessClientErrors(boolean)
+     */
+    public static final String STACKLESS_CLIENT_ERRORS_PROPERTY =
+            "org.forgerock.json.resource.stacklessClientErrors";
+
     /** Serializable class a version number. */
     private static final long serialVersionUID = 1L;
 
+    private static volatile boolean stacklessClientErrors = Boolean.getBoolean(STACKLESS_CLIENT_ERRORS_PROPERTY);
+
+    /**
+     * Enables or disables the stackless mode, in which expected client errors
+     * are created without a stack trace and cache their JSON representation.
+     * The stackless mode is disabled by default.
+     *
+     * @param enabled
+     *            {@code true} if expected client errors should be created
+     *            without a stack trace.
+     */
+    public static void setStacklessClientErrors(final boolean enabled) {
+        stacklessClientErrors = enabled;
+    }
+
+    /**
+     * Returns {@code true} if expected client errors are created without a
+     * stack trace.
+     *
+     * @return {@code true} if expected client errors are created without a
+     *         stack trace.
+     * @see #setStacklessClientErrors(boolean)
+     */
+    public static boolean isStacklessClientErrors() {
+        return stacklessClientErrors;
+    }
+
     /** flag to indicate whether to include the cause. */
     private boolean includeCause = false;
 
@@ -247,6 +297,7 @@ public class ResourceException extends IOException implements Response {
 
         // Temporary failures without specific exception classes
         case 408: // Request Time-out
+        case 429: // Too Many Requests
         case 504: // Gateway Time-out
             ex = new RetryableException(code, message, cause);
             break;
@@ -271,6 +322,10 @@ public class ResourceException extends IOException implements Response {
         default:
             ex = new UncategorizedException(code, message, cause);
         }
+        if (ex.isStackless()) {
+            // Keep the stack trace of exceptions created generically, since they are typically not expected.
+            ex.captureStackTrace();
+        }
         return ex;
     }
 
@@ -442,6 +497,16 @@ public class ResourceException extends IOException implements Response {
     /** Resource API Version. */
     private Version resourceApiVersion;
 
+    /** The cached JSON representation of stackless exceptions. */
+    private transient JsonValue cachedJsonValue;
+
+    /**
+     * Whether the stack trace was not captured. This field must not have an
+     * initializer, since it is set by {@link #fillInStackTrace()} during the
+     * construction of the {@code Throwable}.
+     */
+    private transient boolean stackless;
+
     /**
      * Constructs a new exception with the specified exception code, and
      * {@code null} as its detail message. If the error code corresponds with a
@@ -551,6 +616,7 @@ public class ResourceException extends IOException implements Response {
      */
     public final ResourceException setDetail(JsonValue detail) {
         this.detail = detail != null ? detail : new JsonValue(null);
+        this.cachedJsonValue = null;
         return this;
     }
 
@@ -563,6 +629,7 @@ public class ResourceException extends IOException implements Response {
      */
     public final ResourceException setReason(final String reason) {
         this.reason = reason;
+        this.cachedJsonValue = null;
         return this;
     }
 
@@ -575,6 +642,7 @@ public class ResourceException extends IOException implements Response {
      */
     public final ResourceException includeCauseInJsonValue() {
         includeCause = true;
+        cachedJsonValue = null;
         return this;
     }
 
@@ -593,10 +661,23 @@ public class ResourceException extends IOException implements Response {
      * }
      * </pre>
      *
+     * In the stackless mode, the JSON representation of expected client errors
+     * is computed once and the returned JSON value is read-only.
+     *
      * @return The exception in a JSON object structure, suitable for inclusion
      *         in the entity of an HTTP error response.
      */
     public final JsonValue toJsonValue() {
+        if (cachedJsonValue != null) {
+            return cachedJsonValue;
+        } else if (isStackless()) {
+            cachedJsonValue = new JsonValue(Collections.unmodifiableMap(toJsonMap()));
+            return cachedJsonValue;
+        }
+        return new JsonValue(toJsonMap());
+    }
+
+    private Map<String, Object> toJsonMap() {
         final Map<String, Object> result = new LinkedHashMap<>(4);
         result.put(FIELD_CODE, code); // required
         if (reason != null) { // optional
@@ -614,7 +695,41 @@ public class ResourceException extends IOException implements Response {
             cause.put("message", getCause().getMessage());
             result.put(FIELD_CAUSE, cause);
         }
-        return new JsonValue(result);
+        return result;
+    }
+
+    /**
+     * Does not capture the stack trace of expected client errors in the
+     * stackless mode. Note that this method is invoked by the constructor of
+     * {@code Throwable}, before the fields of this exception are initialized.
+     *
+     * @return This exception.
+     */
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        if (stacklessClientErrors && isExpectedClientError(this)) {
+            stackless = true;
+            return this;
+        }
+        return captureStackTrace();
+    }
+
+    private synchronized Throwable captureStackTrace() {
+        stackless = false;
+        return super.fillInStackTrace();
+    }
+
+    private boolean isStackless() {
+        return stackless;
+    }
+
+    private static boolean isExpectedClientError(final ResourceException e) {
+        return e instanceof NotFoundException
+                || e instanceof PreconditionFailedException
+                || e instanceof BadRequestException
+                || e instanceof ConflictException
+                || e instanceof ForbiddenException
+                || e instanceof PreconditionRequiredException;
     }
 
     @Override
@@ -12,18 +12,17 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2012-2015 ForgeRock AS.
+ * Portions Copyright 2026 Wren Security.
  */
 
 package org.forgerock.json.resource;
 
 import static org.forgerock.http.routing.RoutingMode.EQUALS;
-import static org.forgerock.json.resource.Responses.newResourceResponse;
 import static org.forgerock.util.promise.Promises.newResultPromise;
 import static org.forgerock.json.resource.RouteMatchers.requestUriMatcher;
 
 import java.util.Collection;
-import java.util.LinkedHashMap;
-import java.util.Map;
+import java.util.List;
 
 import org.forgerock.services.context.Context;
 import org.forgerock.http.routing.UriRouterContext;
@@ -59,6 +58,39 @@ public final class Resources {
         }
     }
 
+    /**
+     * Returns a batch query resource handler for the provided handler. If the
+     * provided handler already supports batches then it is returned unchanged,
+     * otherwise it is adapted so that the resources of each batch are passed
+     * to it one at a time until it asks for the remaining resources to be
+     * skipped.
+     *
+     * @param handler
+     *            The query resource handler to be adapted.
+     * @return The batch query resource handler.
+     */
+    public static BatchQueryResourceHandler asBatchQueryResourceHandler(final QueryResourceHandler handler) {
+        if (handler instanceof BatchQueryResourceHandler) {
+            return (BatchQueryResourceHandler) handler;
+        }
+        return new BatchQueryResourceHandler() {
+            @Override
+            public boolean handleResource(final ResourceResponse resource) {
+                return handler.handleResource(resource);
+            }
+
+            @Override
+            public boolean handleResources(final List<ResourceResponse> resources) {
+                for (final ResourceResponse resource : resources) {
+                    if (!handler.handleResource(resource)) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+        };
+    }
+
     /**
      * Adapts the provided {@link SynchronousRequestHandler} as a
      * {@link RequestHandler}.
@@ -74,7 +106,8 @@ public final class Resources {
     /**
      * Returns a JSON object containing only the specified fields from the
      * provided JSON value. If the list of fields is empty then the value is
-     * returned unchanged.
+     * returned unchanged. Fields which traverse arrays are handled as
+     * described in {@link FieldProjection}.
      * <p>
      * <b>NOTE:</b> this method only performs a shallow copy of extracted
      * fields, so changes to the filtered JSON value may impact the original
@@ -88,25 +121,7 @@ public final class Resources {
      */
     public static JsonValue filterResource(final JsonValue resource,
             final Collection<JsonPointer> fields) {
-        if (fields.isEmpty() || resource.isNull() || resource.size() == 0) {
-            return resource;
-        } else {
-            final Map<String, Object> filtered = new LinkedHashMap<>(fields.size());
-            for (final JsonPointer field : fields) {
-                if (field.isEmpty()) {
-                    // Special case - copy resource fields (assumes Map).
-                    filtered.putAll(resource.asMap());
-                } else {
-                    // FIXME: what should we do if the field refers to an array element?
-                    final JsonValue value = resource.get(field);
-                    if (value != null) {
-                        final String key = field.leaf();
-                        filtered.put(key, value.getObject());
-                    }
-                }
-            }
-            return new JsonValue(filtered);
-        }
+        return FieldProjection.of(fields).project(resource);
     }
 
     /**
@@ -126,16 +141,7 @@ public final class Resources {
      */
     public static ResourceResponse filterResource(final ResourceResponse resource,
             final Collection<JsonPointer> fields) {
-        final JsonValue unfiltered = resource.getContent();
-        final Collection<JsonPointer> filterFields = resource.hasFields()
-                ? resource.getFields()
-                : fields;
-        final JsonValue filtered = filterResource(unfiltered, filterFields);
-        if (filtered == unfiltered) {
-            return resource; // Unchanged.
-        } else {
-            return newResourceResponse(resource.getId(), resource.getRevision(), filtered);
-        }
+        return FieldProjection.of(fields).project(resource);
     }
 
     /**
@@ -12,6 +12,7 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2015 ForgeRock AS.
+ * Portions Copyright 2026 Wren Security.
  */
 
 package org.forgerock.json.resource;
@@ -19,7 +20,6 @@ package org.forgerock.json.resource;
 import static org.forgerock.http.routing.RoutingMode.EQUALS;
 import static org.forgerock.http.routing.RoutingMode.STARTS_WITH;
 import static org.forgerock.json.resource.Requests.*;
-import static org.forgerock.json.resource.ResourceApiVersionRoutingFilter.setApiVersionInfo;
 import static org.forgerock.json.resource.Resources.newCollection;
 import static org.forgerock.json.resource.Resources.newSingleton;
 import static org.forgerock.json.resource.RouteMatchers.requestResourceApiVersionMatcher;
@@ -59,6 +59,11 @@ import org.forgerock.util.promise.Promise;
  * router.removeRoute(routeOne, routeTwo);
  * </pre>
  *
+ * <p>Routed requests are re-targeted to the remaining resource path without
+ * copying their state, which is shared with the original request until either
+ * of them is modified, so nested routers do not add the cost of a request
+ * copy at each level.
+ *
  * @see AbstractRouter
  * @see RouteMatchers
  */
@@ -236,7 +241,7 @@ public class Router extends AbstractRouter<Router, Request, RequestHandler> impl
             Pair<Context, RequestHandler> bestMatch = getBestMatch(context, request);
             UriRouterContext routerContext = getRouterContext(bestMatch.getFirst());
             ActionRequest routedRequest = wasRouted(context, routerContext)
-                    ? copyOfActionRequest(request).setResourcePath(getResourcePath(routerContext))
+                    ? withResourcePath(request, getResourcePath(routerContext))
                     : request;
             return bestMatch.getSecond().handleAction(bestMatch.getFirst(), routedRequest);
         } catch (ResourceException e) {
@@ -250,7 +255,7 @@ public class Router extends AbstractRouter<Router, Request, RequestHandler> impl
             Pair<Context, RequestHandler> bestMatch = getBestMatch(context, request);
             UriRouterContext routerContext = getRouterContext(bestMatch.getFirst());
             CreateRequest routedRequest = wasRouted(context, routerContext)
-                    ? copyOfCreateRequest(request).setResourcePath(getResourcePath(routerContext))
+                    ? withResourcePath(request, getResourcePath(routerContext))
                     : request;
             return bestMatch.getSecond().handleCreate(bestMatch.getFirst(), routedRequest);
         } catch (ResourceException e) {
@@ -264,7 +269,7 @@ public class Router extends AbstractRouter<Router, Request, RequestHandler> impl
             Pair<Context, RequestHandler> bestMatch = getBestMatch(context, request);
             UriRouterContext routerContext = getRouterContext(bestMatch.getFirst());
             DeleteRequest routedRequest = wasRouted(context, routerContext)
-                    ? copyOfDeleteRequest(request).setResourcePath(getResourcePath(routerContext))
+                    ? withResourcePath(request, getResourcePath(routerContext))
                     : request;
             return bestMatch.getSecond().handleDelete(bestMatch.getFirst(), routedRequest);
         } catch (ResourceException e) {
@@ -278,7 +283,7 @@ public class Router extends AbstractRouter<Router, Request, RequestHandler> impl
             Pair<Context, RequestHandler> bestMatch = getBestMatch(context, request);
             UriRouterContext routerContext = getRouterContext(bestMatch.getFirst());
             PatchRequest routedRequest = wasRouted(context, routerContext)
-                    ? copyOfPatchRequest(request).setResourcePath(getResourcePath(routerContext))
+                    ? withResourcePath(request, getResourcePath(routerContext))
                     : request;
             return bestMatch.getSecond().handlePatch(bestMatch.getFirst(), routedRequest);
         } catch (ResourceException e) {
@@ -294,19 +299,13 @@ public class Router extends AbstractRouter<Router, Request, RequestHandler> impl
             final Context decoratedContext = bestMatch.getFirst();
             UriRouterContext routerContext = getRouterContext(decoratedContext);
             QueryRequest routedRequest = wasRouted(context, routerContext)
-                    ? copyOfQueryRequest(request).setResourcePath(getResourcePath(routerContext))
+                    ? withResourcePath(request, getResourcePath(routerContext))
                     : request;
-            QueryResourceHandler resourceHandler = new QueryResourceHandler() {
-                @Override
-                public boolean handleResource(ResourceResponse resource) {
-                    if (decoratedContext.containsContext(ApiVersionRouterContext.class)) {
-                        ApiVersionRouterContext apiVersionRouterContext =
-                                decoratedContext.asContext(ApiVersionRouterContext.class);
-                        setApiVersionInfo(apiVersionRouterContext, request, resource);
-                    }
-                    return handler.handleResource(resource);
-                }
-            };
+            // Resolve the version context once per query rather than once per resource.
+            QueryResourceHandler resourceHandler = decoratedContext.containsContext(ApiVersionRouterContext.class)
+                    ? ApiVersionQueryResourceHandler.wrap(handler,
+                            decoratedContext.asContext(ApiVersionRouterContext.class), request)
+                    : handler;
             return bestMatch.getSecond().handleQuery(decoratedContext, routedRequest, resourceHandler);
         } catch (ResourceException e) {
             return newExceptionPromise(e);
@@ -319,7 +318,7 @@ public class Router extends AbstractRouter<Router, Request, RequestHandler> impl
             Pair<Context, RequestHandler> bestMatch = getBestMatch(context, request);
             UriRouterContext routerContext = getRouterContext(bestMatch.getFirst());
             ReadRequest routedRequest = wasRouted(context, routerContext)
-                    ? copyOfReadRequest(request).setResourcePath(getResourcePath(routerContext))
+                    ? withResourcePath(request, getResourcePath(routerContext))
                     : request;
             return bestMatch.getSecond().handleRead(bestMatch.getFirst(), routedRequest);
         } catch (ResourceException e) {
@@ -333,7 +332,7 @@ public class Router extends AbstractRouter<Router, Request, RequestHandler> impl
             Pair<Context, RequestHandler> bestMatch = getBestMatch(context, request);
             UriRouterContext routerContext = getRouterContext(bestMatch.getFirst());
             UpdateRequest routedRequest = wasRouted(context, routerContext)
-                    ? copyOfUpdateRequest(request).setResourcePath(getResourcePath(routerContext))
+                    ? withResourcePath(request, getResourcePath(routerContext))
                     : request;
             return bestMatch.getSecond().handleUpdate(bestMatch.getFirst(), routedRequest);
         } catch (ResourceException e) {
@@ -355,8 +354,8 @@ public class Router extends AbstractRouter<Router, Request, RequestHandler> impl
                 || routerContext != originalContext.asContext(UriRouterContext.class));
     }
 
-    private String getResourcePath(UriRouterContext routerContext) {
-        return routerContext.getRemainingUri();
+    private ResourcePath getResourcePath(UriRouterContext routerContext) {
+        return ResourcePath.valueOf(routerContext.getRemainingUri());
     }
 
     /**
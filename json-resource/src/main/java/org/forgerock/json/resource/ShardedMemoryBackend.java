@@ -0,0 +1,449 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+
+package org.forgerock.json.resource;
+
+import static org.forgerock.json.resource.MemoryBackend.QUERY_BATCH_SIZE;
+import static org.forgerock.json.resource.Requests.copyOfCreateRequest;
+import static org.forgerock.json.resource.Requests.copyOfQueryRequest;
+import static org.forgerock.json.resource.Resources.asBatchQueryResourceHandler;
+import static org.forgerock.json.resource.Responses.newQueryResponse;
+import static org.forgerock.util.promise.Promises.newResultPromise;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.forgerock.json.JsonPointer;
+import org.forgerock.json.JsonValue;
+import org.forgerock.services.context.Context;
+import org.forgerock.util.AsyncFunction;
+import org.forgerock.util.Reject;
+import org.forgerock.util.encode.Base64;
+import org.forgerock.util.promise.ExceptionHandler;
+import org.forgerock.util.promise.Promise;
+import org.forgerock.util.promise.PromiseImpl;
+import org.forgerock.util.promise.ResultHandler;
+import org.forgerock.util.query.QueryFilter;
+
+/**
+ * An in-memory collection resource provider which partitions its resources
+ * across several {@link MemoryBackend} shards according to the hash of their
+ * identifier. Each shard has its own map, write lock, cursors and indexes, so
+ * that writes of resources held by distinct shards do not contend with each
+ * other. Identifiers of created resources which are not chosen by the client
+ * are random UUIDs rather than a shared sequence.
+ * <p>
+ * Unsorted queries search the shards one after the other, and pass the
+ * results of the requested page to the handler as each shard returns them,
+ * without retaining them. Sorted queries are sent to every shard, on the
+ * provided executor if any so that the shards are searched in parallel, and
+ * the sorted results of the shards, which each shard only retains up to the
+ * end of the requested page, are merged. Paged results cookies encode the
+ * index of the next result, so that deeper pages cost more to return. The
+ * total number of paged results, when requested, is the sum of the counts
+ * that the shards compute using their indexes. All the results are only
+ * counted by searching the shards when an exact count was requested and the
+ * indexes of a shard can only estimate it.
+ * <p>
+ * The shards share the change notifier, if any, so that all the changes of
+ * the collection are numbered in a single sequence. Each write records its
+ * change under the lock of the notifier while holding the write lock of its
+ * shard, so writes to distinct shards are briefly serialized while their
+ * changes are recorded. Listeners are notified once both locks have been
+ * released.
+ */
+public final class ShardedMemoryBackend implements CollectionResourceProvider {
+
+    /**
+     * The results of a sorted query which are returned by a shard, up to the
+     * end of the requested page. The shard is stopped after the first result
+     * beyond the page unless all the results must be counted.
+     */
+    private static final class ShardResults implements BatchQueryResourceHandler {
+        private final int limit;
+        private final boolean counted;
+        private final List<ResourceResponse> resources = new ArrayList<>();
+        private int count;
+
+        private ShardResults(final int limit, final boolean counted) {
+            this.limit = limit;
+            this.counted = counted;
+        }
+
+        @Override
+        public boolean handleResource(final ResourceResponse resource) {
+            if (resources.size() < limit) {
+                resources.add(resource);
+            }
+            count++;
+            return counted || count <= limit;
+        }
+
+        @Override
+        public boolean handleResources(final List<ResourceResponse> batch) {
+            for (final ResourceResponse resource : batch) {
+                if (!handleResource(resource)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Passes the results of the requested page to the handler as the shards
+     * return them, counting the results across the shards. The shards are
+     * stopped after the first result beyond the page unless all the results
+     * must be counted, or once the handler stops.
+     */
+    private static final class PageWriter implements BatchQueryResourceHandler {
+        private final BatchQueryResourceHandler handler;
+        private final int firstResultIndex;
+        private final int lastResultIndex;
+        private final boolean counted;
+        private int resultIndex;
+        private boolean stopped;
+
+        private PageWriter(final QueryResourceHandler handler, final int firstResultIndex,
+                final int lastResultIndex, final boolean counted) {
+            this.handler = asBatchQueryResourceHandler(handler);
+            this.firstResultIndex = firstResultIndex;
+            this.lastResultIndex = lastResultIndex;
+            this.counted = counted;
+        }
+
+        @Override
+        public boolean handleResource(final ResourceResponse resource) {
+            return handleResources(Collections.singletonList(resource));
+        }
+
+        @Override
+        public boolean handleResources(final List<ResourceResponse> batch) {
+            final int from = Math.max(firstResultIndex - resultIndex, 0);
+            final int to = (int) Math.min((long) lastResultIndex - resultIndex, batch.size());
+            resultIndex += batch.size();
+            if (from < to && !handler.handleResources(batch.subList(from, to))) {
+                stopped = true;
+            }
+            return !isComplete();
+        }
+
+        /** Returns {@code true} if the remaining shards do not need to be searched. */
+        private boolean isComplete() {
+            return stopped || !counted && resultIndex > lastResultIndex;
+        }
+    }
+
+    private final MemoryBackend[] shards;
+    private final Executor executor;
+
+    /**
+     * Creates a new sharded in-memory collection containing no resources,
+     * whose queries search the shards one after the other.
+     *
+     * @param shardCount
+     *            The number of shards.
+     * @param indexedFields
+     *            The fields for which each shard maintains value counts.
+     */
+    public ShardedMemoryBackend(final int shardCount, final JsonPointer... indexedFields) {
+        this(shardCount, null, null, indexedFields);
+    }
+
+    /**
+     * Creates a new sharded in-memory collection containing no resources.
+     *
+     * @param shardCount
+     *            The number of shards.
+     * @param executor
+     *            The executor on which the shards are searched in parallel
+     *            by sorted queries, or {@code null} if they should be
+     *            searched one after the other by the thread performing the
+     *            query.
+     * @param changeNotifier
+     *            The notifier to which all the shards publish resource
+     *            changes, or {@code null} if changes should not be published.
+     * @param indexedFields
+     *            The fields for which each shard maintains value counts.
+     * @see MemoryBackend#MemoryBackend(ResourceChangeNotifier, JsonPointer...)
+     */
+    public ShardedMemoryBackend(final int shardCount, final Executor executor,
+            final ResourceChangeNotifier changeNotifier, final JsonPointer... indexedFields) {
+        Reject.ifTrue(shardCount < 1, "The number of shards must be positive");
+        this.shards = new MemoryBackend[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new MemoryBackend(changeNotifier, indexedFields);
+        }
+        this.executor = executor;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The {@code clear} action clears all the shards, and other actions are
+     * handled as by {@link MemoryBackend}.
+     */
+    @Override
+    public Promise<ActionResponse, ResourceException> actionCollection(final Context context,
+            final ActionRequest request) {
+        if (!request.getAction().equals("clear")) {
+            return shards[0].actionCollection(context, request);
+        }
+        int cleared = 0;
+        for (final MemoryBackend shard : shards) {
+            try {
+                cleared += shard.actionCollection(context, request).getOrThrowUninterruptibly()
+                        .getJsonContent().get("cleared").asInteger();
+            } catch (final ResourceException e) {
+                return e.asPromise();
+            }
+        }
+        final JsonValue result = new JsonValue(new LinkedHashMap<>(1));
+        result.put("cleared", cleared);
+        return newResultPromise(Responses.newActionResponse(result));
+    }
+
+    @Override
+    public Promise<ActionResponse, ResourceException> actionInstance(final Context context, final String id,
+            final ActionRequest request) {
+        return shardOf(id).actionInstance(context, id, request);
+    }
+
+    @Override
+    public Promise<ResourceResponse, ResourceException> createInstance(final Context context,
+            final CreateRequest request) {
+        if (request.getNewResourceId() != null) {
+            return shardOf(request.getNewResourceId()).createInstance(context, request);
+        }
+        final String id = UUID.randomUUID().toString();
+        return shardOf(id).createInstance(context, copyOfCreateRequest(request).setNewResourceId(id));
+    }
+
+    @Override
+    public Promise<ResourceResponse, ResourceException> deleteInstance(final Context context, final String id,
+            final DeleteRequest request) {
+        return shardOf(id).deleteInstance(context, id, request);
+    }
+
+    @Override
+    public Promise<ResourceResponse, ResourceException> patchInstance(final Context context, final String id,
+            final PatchRequest request) {
+        return shardOf(id).patchInstance(context, id, request);
+    }
+
+    @Override
+    public Promise<QueryResponse, ResourceException> queryCollection(final Context context,
+            final QueryRequest request, final QueryResourceHandler handler) {
+        if (request.getQueryId() != null) {
+            return new NotSupportedException("Query by ID not supported").asPromise();
+        } else if (request.getQueryExpression() != null) {
+            return new NotSupportedException("Query by expression not supported").asPromise();
+        }
+
+        final int pageSize = request.getPageSize();
+        final boolean pagedResultsRequested = pageSize > 0;
+        final int firstResultIndex;
+        if (pagedResultsRequested && request.getPagedResultsCookie() != null) {
+            if (request.getPagedResultsOffset() > 0) {
+                return new BadRequestException("Cookies and offsets are mutually exclusive").asPromise();
+            }
+            try {
+                firstResultIndex = Integer.parseInt(new String(Base64.decode(request.getPagedResultsCookie())));
+            } catch (final RuntimeException e) {
+                return new BadRequestException("Invalid paged results cookie").asPromise();
+            }
+        } else {
+            firstResultIndex = Math.max(request.getPagedResultsOffset(), 0);
+        }
+        final int lastResultIndex = pagedResultsRequested ? firstResultIndex + pageSize : Integer.MAX_VALUE;
+        final CountPolicy countPolicy = request.getTotalPagedResultsPolicy();
+        final MemoryBackend.Count count = pagedResultsRequested && countPolicy != CountPolicy.NONE
+                ? countResults(request.getQueryFilter())
+                : null;
+        final boolean counted = count != null && !count.isExact() && countPolicy == CountPolicy.EXACT;
+
+        final QueryRequest shardRequest = copyOfQueryRequest(request)
+                .setPageSize(0)
+                .setPagedResultsCookie(null)
+                .setPagedResultsOffset(0)
+                .setTotalPagedResultsPolicy(CountPolicy.NONE);
+        if (request.getSortKeys().isEmpty()) {
+            final PageWriter writer = new PageWriter(handler, firstResultIndex, lastResultIndex, counted);
+            return queryShards(context, request, shardRequest, writer, count, 0);
+        }
+
+        // Each shard only needs to return the results up to the end of the page, which are then merged.
+        final ShardResults[] results = new ShardResults[shards.length];
+        final PromiseImpl<QueryResponse, ResourceException> promise = PromiseImpl.create();
+        final AtomicInteger remaining = new AtomicInteger(shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            final MemoryBackend shard = shards[i];
+            final ShardResults shardResults = new ShardResults(lastResultIndex, counted);
+            results[i] = shardResults;
+            final Runnable search = new Runnable() {
+                @Override
+                public void run() {
+                    shard.queryCollection(context, shardRequest, shardResults)
+                            .thenOnResult(new ResultHandler<QueryResponse>() {
+                                @Override
+                                public void handleResult(final QueryResponse response) {
+                                    if (remaining.decrementAndGet() == 0) {
+                                        promise.handleResult(merge(request, results, handler,
+                                                firstResultIndex, lastResultIndex, count));
+                                    }
+                                }
+                            })
+                            .thenOnException(new ExceptionHandler<ResourceException>() {
+                                @Override
+                                public void handleException(final ResourceException e) {
+                                    // Later results and errors are ignored once the promise has been failed.
+                                    remaining.set(-1);
+                                    promise.handleException(e);
+                                }
+                            });
+                }
+            };
+            if (executor != null) {
+                executor.execute(search);
+            } else {
+                search.run();
+            }
+        }
+        return promise;
+    }
+
+    @Override
+    public Promise<ResourceResponse, ResourceException> readInstance(final Context context, final String id,
+            final ReadRequest request) {
+        return shardOf(id).readInstance(context, id, request);
+    }
+
+    @Override
+    public Promise<ResourceResponse, ResourceException> updateInstance(final Context context, final String id,
+            final UpdateRequest request) {
+        return shardOf(id).updateInstance(context, id, request);
+    }
+
+    /** Searches the shards one after the other, starting with the provided shard, until the page is complete. */
+    private Promise<QueryResponse, ResourceException> queryShards(final Context context, final QueryRequest request,
+            final QueryRequest shardRequest, final PageWriter writer, final MemoryBackend.Count count,
+            final int shard) {
+        if (shard == shards.length || writer.isComplete()) {
+            return newResultPromise(newPagedResponse(request, writer.resultIndex, !writer.stopped,
+                    writer.lastResultIndex, count));
+        }
+        return shards[shard].queryCollection(context, shardRequest, writer)
+                .thenAsync(new AsyncFunction<QueryResponse, QueryResponse, ResourceException>() {
+                    @Override
+                    public Promise<QueryResponse, ResourceException> apply(final QueryResponse response) {
+                        return queryShards(context, request, shardRequest, writer, count, shard + 1);
+                    }
+                });
+    }
+
+    /** Returns the sum of the numbers of resources of the shards matching the provided filter. */
+    private MemoryBackend.Count countResults(final QueryFilter<JsonPointer> filter) {
+        int count = 0;
+        boolean exact = true;
+        for (final MemoryBackend shard : shards) {
+            final MemoryBackend.Count shardCount = shard.countResults(filter);
+            count += shardCount.getCount();
+            exact &= shardCount.isExact();
+        }
+        return new MemoryBackend.Count(count, exact);
+    }
+
+    private MemoryBackend shardOf(final String id) {
+        final int hash = id.hashCode();
+        return shards[((hash ^ (hash >>> 16)) & Integer.MAX_VALUE) % shards.length];
+    }
+
+    /** Returns the requested page of the merged sorted results of the shards to the handler. */
+    private static QueryResponse merge(final QueryRequest request, final ShardResults[] results,
+            final QueryResourceHandler handler, final int firstResultIndex, final int lastResultIndex,
+            final MemoryBackend.Count count) {
+        final BatchQueryResourceHandler batchHandler = asBatchQueryResourceHandler(handler);
+        final List<ResourceResponse> batch = new ArrayList<>(QUERY_BATCH_SIZE);
+        final MemoryBackend.ResourceComparator comparator =
+                new MemoryBackend.ResourceComparator(request.getSortKeys());
+        // The position of the next result of each shard.
+        final int[] positions = new int[results.length];
+        int resultIndex = 0;
+        boolean skipRemaining = false;
+        while (resultIndex < lastResultIndex && !skipRemaining) {
+            // Return the first of the next results of the shards, favoring earlier shards on ties.
+            int shard = results.length;
+            for (int i = 0; i < results.length; i++) {
+                if (positions[i] < results[i].resources.size() && (shard == results.length
+                        || comparator.compare(results[i].resources.get(positions[i]),
+                                results[shard].resources.get(positions[shard])) < 0)) {
+                    shard = i;
+                }
+            }
+            if (shard == results.length) {
+                break;
+            }
+            final ResourceResponse resource = results[shard].resources.get(positions[shard]++);
+            if (resultIndex++ >= firstResultIndex) {
+                batch.add(resource);
+                if (batch.size() == QUERY_BATCH_SIZE) {
+                    skipRemaining = !batchHandler.handleResources(batch);
+                    batch.clear();
+                }
+            }
+        }
+        if (!batch.isEmpty() && !skipRemaining) {
+            batchHandler.handleResources(batch);
+        }
+
+        int resultCount = 0;
+        for (final ShardResults shardResults : results) {
+            resultCount += shardResults.count;
+        }
+        return newPagedResponse(request, resultCount, true, lastResultIndex, count);
+    }
+
+    /**
+     * Returns the response to a query whose shards have returned the provided
+     * number of results. Shards which were stopped have counted at least one
+     * result beyond the page, so there are more results. Otherwise the shards
+     * have returned all their results, unless the handler stopped the query,
+     * and the number of results is exact.
+     */
+    private static QueryResponse newPagedResponse(final QueryRequest request, final int resultCount,
+            final boolean searchedAll, final int lastResultIndex, final MemoryBackend.Count count) {
+        if (request.getPageSize() <= 0) {
+            return newQueryResponse();
+        }
+        final boolean hasMoreResults = resultCount > lastResultIndex;
+        final String nextCookie = hasMoreResults
+                ? Base64.encode(String.valueOf(lastResultIndex).getBytes())
+                : null;
+        if (count == null) {
+            return newQueryResponse(nextCookie);
+        } else if (count.isExact()) {
+            return newQueryResponse(nextCookie, CountPolicy.EXACT, count.getCount());
+        } else if (searchedAll && (!hasMoreResults || request.getTotalPagedResultsPolicy() == CountPolicy.EXACT)) {
+            return newQueryResponse(nextCookie, CountPolicy.EXACT, resultCount);
+        }
+        return newQueryResponse(nextCookie, CountPolicy.ESTIMATE, Math.max(count.getCount(), resultCount));
+    }
+}
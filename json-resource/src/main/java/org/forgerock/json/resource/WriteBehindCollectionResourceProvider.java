@@ -0,0 +1,390 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+
+package org.forgerock.json.resource;
+
+import static org.forgerock.json.resource.Requests.copyOfCreateRequest;
+import static org.forgerock.util.promise.Promises.newResultPromise;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.forgerock.services.context.Context;
+import org.forgerock.util.AsyncFunction;
+import org.forgerock.util.Reject;
+import org.forgerock.util.promise.ExceptionHandler;
+import org.forgerock.util.promise.Promise;
+import org.forgerock.util.promise.PromiseImpl;
+import org.forgerock.util.promise.ResultHandler;
+
+/**
+ * A collection resource provider which buffers the creation and update of
+ * resources, and writes them to another provider in batches, for providers
+ * backed by remote stores where each write costs a round trip.
+ * <p>
+ * Updates, and creations of resources whose identifier is chosen by the
+ * client, are buffered per resource. An update without a revision replaces
+ * the buffered write of the same resource, unless that write is a conditional
+ * update, so that only the last content is written, with the context of the
+ * last request, and all the coalesced requests complete with the outcome of
+ * that single write. Other writes of a resource which is already buffered
+ * start a new batch. Buffered writes are flushed once the batch size is reached, once
+ * the oldest of them has been buffered for the maximum delay, or when
+ * {@link #flush()} is called. The writes of a batch are sent to the provider
+ * concurrently, and a batch is only sent once the previous one has completed,
+ * so that successive writes of a resource reach the provider in order. The
+ * promise of a buffered request completes once its write does, and fails with
+ * the error returned by the provider.
+ * <p>
+ * All the requests for the collection must go through this provider, which
+ * preserves read-your-writes consistency: reads, patches, deletions and
+ * actions of a resource are performed once its buffered writes have
+ * completed, and queries and collection actions once all buffered writes have
+ * completed. Creations of resources whose identifier is chosen by the
+ * provider are not buffered.
+ */
+public class WriteBehindCollectionResourceProvider implements CollectionResourceProvider {
+
+    /** A buffered write of a resource, whose promise is shared by the coalesced requests. */
+    private static final class PendingWrite {
+        private final String resourceId;
+        private Context context;
+        private Request request;
+        private final PromiseImpl<ResourceResponse, ResourceException> promise = PromiseImpl.create();
+
+        private PendingWrite(final String resourceId, final Context context, final Request request) {
+            this.resourceId = resourceId;
+            this.context = context;
+            this.request = request;
+        }
+
+        /** Replaces the content written by this write, returning {@code false} if the update cannot be merged. */
+        private boolean coalesce(final Context context, final UpdateRequest update) {
+            // Conditional updates must reach the provider, which checks their revision, as they were requested.
+            if (update.getRevision() != null
+                    || request instanceof UpdateRequest && ((UpdateRequest) request).getRevision() != null) {
+                return false;
+            }
+            if (request instanceof CreateRequest) {
+                request = copyOfCreateRequest((CreateRequest) request).setContent(update.getContent());
+            } else {
+                request = update;
+            }
+            this.context = context;
+            return true;
+        }
+    }
+
+    /** A set of writes of distinct resources which are sent together. */
+    private static final class Batch {
+        private final Map<String, PendingWrite> writes = new LinkedHashMap<>();
+        /** Completed once all the writes of this batch have completed, and never failed. */
+        private final PromiseImpl<Void, ResourceException> completed = PromiseImpl.create();
+    }
+
+    /** A request which is performed once the writes it depends on have completed. */
+    private abstract static class Operation<V> implements AsyncFunction<Void, V, ResourceException> {
+        @Override
+        public final Promise<V, ResourceException> apply(final Void ignored) {
+            return execute();
+        }
+
+        abstract Promise<V, ResourceException> execute();
+    }
+
+    private final CollectionResourceProvider provider;
+    private final int maxBatchSize;
+    private final long maxDelay;
+    private final TimeUnit unit;
+    private final ScheduledExecutorService scheduler;
+
+    private final Object lock = new Object();
+    /** The batches waiting to be sent, the last of which receives new writes, guarded by the lock. */
+    private final Deque<Batch> pending = new ArrayDeque<>();
+    /** The batch which has been sent and has not completed yet, guarded by the lock. */
+    private Batch inFlight;
+    /** Whether all pending batches should be sent without waiting, guarded by the lock. */
+    private boolean flushRequested;
+    /** The task flushing the buffered writes once the maximum delay has elapsed, guarded by the lock. */
+    private ScheduledFuture<?> timer;
+
+    /**
+     * Creates a new write-behind provider.
+     *
+     * @param provider
+     *            The provider to which writes are sent.
+     * @param maxBatchSize
+     *            The number of buffered writes which triggers a flush.
+     * @param maxDelay
+     *            The maximum time for which writes are buffered.
+     * @param unit
+     *            The unit of the maximum delay.
+     * @param scheduler
+     *            The scheduler used for flushing writes after the maximum
+     *            delay, or {@code null} if writes should only be flushed once
+     *            the batch size is reached, when required by other requests,
+     *            or by calling {@link #flush()}.
+     */
+    public WriteBehindCollectionResourceProvider(final CollectionResourceProvider provider, final int maxBatchSize,
+            final long maxDelay, final TimeUnit unit, final ScheduledExecutorService scheduler) {
+        Reject.ifNull(provider, unit);
+        Reject.ifTrue(maxBatchSize < 1, "The batch size must be positive");
+        this.provider = provider;
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelay = maxDelay;
+        this.unit = unit;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Sends all the buffered writes to the provider.
+     *
+     * @return A promise completed once all the writes buffered when this
+     *         method was called have completed, successfully or not.
+     */
+    public Promise<Void, ResourceException> flush() {
+        return barrier(null);
+    }
+
+    /**
+     * Returns the number of buffered writes which have not been sent yet.
+     *
+     * @return The number of buffered writes.
+     */
+    public int getBufferedWriteCount() {
+        synchronized (lock) {
+            int count = 0;
+            for (final Batch batch : pending) {
+                count += batch.writes.size();
+            }
+            return count;
+        }
+    }
+
+    @Override
+    public Promise<ActionResponse, ResourceException> actionCollection(final Context context,
+            final ActionRequest request) {
+        return barrier(null).thenAsync(new Operation<ActionResponse>() {
+            @Override
+            Promise<ActionResponse, ResourceException> execute() {
+                return provider.actionCollection(context, request);
+            }
+        });
+    }
+
+    @Override
+    public Promise<ActionResponse, ResourceException> actionInstance(final Context context, final String resourceId,
+            final ActionRequest request) {
+        return barrier(resourceId).thenAsync(new Operation<ActionResponse>() {
+            @Override
+            Promise<ActionResponse, ResourceException> execute() {
+                return provider.actionInstance(context, resourceId, request);
+            }
+        });
+    }
+
+    @Override
+    public Promise<ResourceResponse, ResourceException> createInstance(final Context context,
+            final CreateRequest request) {
+        if (request.getNewResourceId() == null) {
+            return provider.createInstance(context, request);
+        }
+        return write(request.getNewResourceId(), context, request);
+    }
+
+    @Override
+    public Promise<ResourceResponse, ResourceException> deleteInstance(final Context context, final String resourceId,
+            final DeleteRequest request) {
+        return barrier(resourceId).thenAsync(new Operation<ResourceResponse>() {
+            @Override
+            Promise<ResourceResponse, ResourceException> execute() {
+                return provider.deleteInstance(context, resourceId, request);
+            }
+        });
+    }
+
+    @Override
+    public Promise<ResourceResponse, ResourceException> patchInstance(final Context context, final String resourceId,
+            final PatchRequest request) {
+        return barrier(resourceId).thenAsync(new Operation<ResourceResponse>() {
+            @Override
+            Promise<ResourceResponse, ResourceException> execute() {
+                return provider.patchInstance(context, resourceId, request);
+            }
+        });
+    }
+
+    @Override
+    public Promise<QueryResponse, ResourceException> queryCollection(final Context context,
+            final QueryRequest request, final QueryResourceHandler handler) {
+        return barrier(null).thenAsync(new Operation<QueryResponse>() {
+            @Override
+            Promise<QueryResponse, ResourceException> execute() {
+                return provider.queryCollection(context, request, handler);
+            }
+        });
+    }
+
+    @Override
+    public Promise<ResourceResponse, ResourceException> readInstance(final Context context, final String resourceId,
+            final ReadRequest request) {
+        return barrier(resourceId).thenAsync(new Operation<ResourceResponse>() {
+            @Override
+            Promise<ResourceResponse, ResourceException> execute() {
+                return provider.readInstance(context, resourceId, request);
+            }
+        });
+    }
+
+    @Override
+    public Promise<ResourceResponse, ResourceException> updateInstance(final Context context, final String resourceId,
+            final UpdateRequest request) {
+        return write(resourceId, context, request);
+    }
+
+    private Promise<ResourceResponse, ResourceException> write(final String resourceId, final Context context,
+            final Request request) {
+        final PendingWrite write;
+        final boolean send;
+        synchronized (lock) {
+            Batch batch = pending.peekLast();
+            final PendingWrite buffered = batch != null ? batch.writes.get(resourceId) : null;
+            if (buffered != null && request instanceof UpdateRequest
+                    && buffered.coalesce(context, (UpdateRequest) request)) {
+                return buffered.promise;
+            }
+            if (batch == null || buffered != null) {
+                batch = new Batch();
+                pending.addLast(batch);
+            }
+            write = new PendingWrite(resourceId, context, request);
+            batch.writes.put(resourceId, write);
+            if (timer == null && scheduler != null) {
+                timer = scheduler.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        synchronized (lock) {
+                            timer = null;
+                            flushRequested = true;
+                        }
+                        sendNextBatch();
+                    }
+                }, maxDelay, unit);
+            }
+            send = pending.size() > 1 || batch.writes.size() >= maxBatchSize;
+        }
+        if (send) {
+            sendNextBatch();
+        }
+        return write.promise;
+    }
+
+    /**
+     * Returns a promise completed once the buffered writes of the resource, or of all resources if the identifier
+     * is {@code null}, have completed, and makes sure that they are sent without waiting.
+     */
+    private Promise<Void, ResourceException> barrier(final String resourceId) {
+        Batch last = null;
+        synchronized (lock) {
+            final Iterator<Batch> batches = pending.descendingIterator();
+            while (last == null && batches.hasNext()) {
+                final Batch batch = batches.next();
+                if (resourceId == null || batch.writes.containsKey(resourceId)) {
+                    last = batch;
+                    flushRequested = true;
+                }
+            }
+            if (last == null && inFlight != null
+                    && (resourceId == null || inFlight.writes.containsKey(resourceId))) {
+                last = inFlight;
+            }
+        }
+        if (last == null) {
+            return newResultPromise(null);
+        }
+        sendNextBatch();
+        return last.completed;
+    }
+
+    /** Sends the oldest pending batch if it is due and no other batch is in flight. */
+    private void sendNextBatch() {
+        final Batch batch;
+        synchronized (lock) {
+            batch = pending.peekFirst();
+            if (inFlight != null || batch == null
+                    || (!flushRequested && pending.size() == 1 && batch.writes.size() < maxBatchSize)) {
+                return;
+            }
+            inFlight = pending.removeFirst();
+            if (pending.isEmpty()) {
+                flushRequested = false;
+                if (timer != null) {
+                    timer.cancel(false);
+                    timer = null;
+                }
+            }
+        }
+        final List<PendingWrite> writes = new ArrayList<>(batch.writes.values());
+        final AtomicInteger remaining = new AtomicInteger(writes.size());
+        final Runnable onCompletion = new Runnable() {
+            @Override
+            public void run() {
+                if (remaining.decrementAndGet() == 0) {
+                    // Operations waiting for this batch are issued before the next batch is sent.
+                    batch.completed.handleResult(null);
+                    synchronized (lock) {
+                        inFlight = null;
+                    }
+                    sendNextBatch();
+                }
+            }
+        };
+        for (final PendingWrite write : writes) {
+            send(write).thenOnResult(new ResultHandler<ResourceResponse>() {
+                @Override
+                public void handleResult(final ResourceResponse resource) {
+                    write.promise.handleResult(resource);
+                }
+            }).thenOnException(new ExceptionHandler<ResourceException>() {
+                @Override
+                public void handleException(final ResourceException e) {
+                    write.promise.handleException(e);
+                }
+            }).thenAlways(onCompletion);
+        }
+    }
+
+    private Promise<ResourceResponse, ResourceException> send(final PendingWrite write) {
+        try {
+            if (write.request instanceof CreateRequest) {
+                return provider.createInstance(write.context, (CreateRequest) write.request);
+            }
+            return provider.updateInstance(write.context, write.resourceId, (UpdateRequest) write.request);
+        } catch (final RuntimeException e) {
+            // Make sure that the batch completes, so that later writes are not blocked.
+            return new InternalServerErrorException(e.getMessage(), e).asPromise();
+        }
+    }
+}
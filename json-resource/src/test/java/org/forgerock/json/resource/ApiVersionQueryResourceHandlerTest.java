@@ -0,0 +1,80 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+
+package org.forgerock.json.resource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.forgerock.http.routing.Version.version;
+import static org.forgerock.json.JsonValue.json;
+import static org.forgerock.json.JsonValue.object;
+import static org.forgerock.json.resource.Requests.newQueryRequest;
+import static org.forgerock.json.resource.Responses.newResourceResponse;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.forgerock.http.routing.ApiVersionRouterContext;
+import org.forgerock.http.routing.DefaultVersionBehaviour;
+import org.forgerock.services.context.RootContext;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public class ApiVersionQueryResourceHandlerTest {
+
+    @Test
+    public void shouldFuseNestedHandlers() {
+        final List<ResourceResponse> resources = new ArrayList<>();
+        final QueryResourceHandler handler = new QueryResourceHandler() {
+            @Override
+            public boolean handleResource(ResourceResponse resource) {
+                return resources.add(resource);
+            }
+        };
+
+        final QueryResourceHandler outer = ApiVersionQueryResourceHandler.wrap(handler, version(2));
+        final QueryResourceHandler inner = ApiVersionQueryResourceHandler.wrap(outer, version(1));
+        inner.handleResource(newResourceResponse("1", null, json(object())));
+
+        assertThat(resources).hasSize(1);
+        assertThat(resources.get(0).getResourceApiVersion()).isEqualTo(version(2));
+    }
+
+    @Test
+    public void shouldApplySharedContextOnce() {
+        final AdviceContext adviceContext = new AdviceContext(new RootContext(), Collections.<String>emptySet());
+        final ApiVersionRouterContext context =
+                new ApiVersionRouterContext(adviceContext, DefaultVersionBehaviour.LATEST);
+        context.setResourceVersion(version(3));
+        context.setWarningEnabled(true);
+        final QueryRequest request = newQueryRequest("users");
+
+        final QueryResourceHandler outer = ApiVersionQueryResourceHandler.wrap(new QueryResourceHandler() {
+            @Override
+            public boolean handleResource(ResourceResponse resource) {
+                return true;
+            }
+        }, context, request);
+        final QueryResourceHandler inner = ApiVersionQueryResourceHandler.wrap(outer, context, request);
+        final ResourceResponse first = newResourceResponse("1", null, json(object()));
+        inner.handleResource(first);
+        inner.handleResource(newResourceResponse("2", null, json(object())));
+
+        assertThat(inner).isSameAs(outer);
+        assertThat(first.getResourceApiVersion()).isEqualTo(version(3));
+        assertThat(adviceContext.getAdvices().get("Warning")).hasSize(1);
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+
+package org.forgerock.json.resource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.forgerock.http.routing.Version.version;
+import static org.forgerock.json.JsonValue.json;
+import static org.forgerock.json.JsonValue.object;
+import static org.forgerock.json.resource.Requests.newReadRequest;
+import static org.forgerock.json.resource.Responses.newResourceResponse;
+import static org.forgerock.util.promise.Promises.newResultPromise;
+
+import java.util.Collections;
+
+import org.forgerock.http.routing.ApiVersionRouterContext;
+import org.forgerock.http.routing.DefaultVersionBehaviour;
+import org.forgerock.http.routing.ResourceApiVersionBehaviourManager;
+import org.forgerock.http.routing.Version;
+import org.forgerock.services.context.Context;
+import org.forgerock.services.context.RootContext;
+import org.forgerock.util.promise.Promise;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public class ApiVersionRouterTest {
+
+    private ResourceApiVersionBehaviourManager behaviourManager;
+    private ApiVersionRouter router;
+
+    @BeforeMethod
+    public void setup() {
+        behaviourManager = RouteMatchers.newResourceApiVersionBehaviourManager();
+        router = new ApiVersionRouter(behaviourManager)
+                .addVersion(version(1), newHandler("1.0"))
+                .addVersion(version(2), newHandler("2.0"))
+                .addVersion(version(1, 1), newHandler("1.1"));
+    }
+
+    @DataProvider
+    public Object[][] versions() {
+        // @formatter:off
+        return new Object[][] {
+            { null, DefaultVersionBehaviour.LATEST, "2.0" },
+            { null, DefaultVersionBehaviour.OLDEST, "1.0" },
+            { null, DefaultVersionBehaviour.NONE, null },
+            { "1.0", DefaultVersionBehaviour.NONE, "1.1" },
+            { "1.1", DefaultVersionBehaviour.LATEST, "1.1" },
+            { "1.2", DefaultVersionBehaviour.LATEST, null },
+            { "2.0", DefaultVersionBehaviour.OLDEST, "2.0" },
+            { "3.0", DefaultVersionBehaviour.LATEST, null },
+        };
+        // @formatter:on
+    }
+
+    @Test(dataProvider = "versions")
+    public void shouldRouteToBestMatchingVersion(String requested, DefaultVersionBehaviour behaviour,
+            String expected) throws Exception {
+        behaviourManager.setDefaultVersionBehaviour(behaviour);
+        final ReadRequest request = newReadRequest("users/1");
+        if (requested != null) {
+            request.setResourceVersion(Version.valueOf(requested));
+        }
+
+        final Promise<ResourceResponse, ResourceException> promise = router.handleRead(newContext(), request);
+
+        if (expected != null) {
+            final ResourceResponse response = promise.getOrThrowUninterruptibly();
+            assertThat(response.getId()).isEqualTo(expected);
+            assertThat(response.getResourceApiVersion().toString()).isEqualTo(expected);
+        } else {
+            try {
+                promise.getOrThrowUninterruptibly();
+                throw new AssertionError("Expected the request to fail");
+            } catch (NotFoundException e) {
+                assertThat(e.getResourceApiVersion()).isNull();
+            }
+        }
+    }
+
+    @Test
+    public void shouldWarnWhenVersionIsNotRequested() throws Exception {
+        final AdviceContext context = newContext();
+
+        router.handleRead(context, newReadRequest("users/1")).getOrThrowUninterruptibly();
+
+        assertThat(context.getAdvices()).containsKey("Warning");
+    }
+
+    @Test
+    public void shouldLeaveWarningToEnclosingVersionRoutingFilter() throws Exception {
+        final AdviceContext context = newContext();
+        final ApiVersionRouterContext routerContext =
+                new ApiVersionRouterContext(context, DefaultVersionBehaviour.LATEST);
+
+        router.handleRead(routerContext, newReadRequest("users/1")).getOrThrowUninterruptibly();
+
+        assertThat(context.getAdvices()).doesNotContainKey("Warning");
+        assertThat(routerContext.getResourceVersion()).isEqualTo(version(2));
+    }
+
+    @Test
+    public void shouldNotWarnWhenVersionIsRequested() throws Exception {
+        final AdviceContext context = newContext();
+
+        router.handleRead(context, newReadRequest("users/1").setResourceVersion(version(2)))
+                .getOrThrowUninterruptibly();
+
+        assertThat(context.getAdvices()).doesNotContainKey("Warning");
+    }
+
+    @Test
+    public void shouldReplaceAndRemoveVersions() throws Exception {
+        router.addVersion(version(2), newHandler("2.0-new"));
+        assertThat(router.getVersions()).hasSize(3);
+        assertThat(router.handleRead(newContext(), newReadRequest("users/1")).getOrThrowUninterruptibly().getId())
+                .isEqualTo("2.0-new");
+
+        assertThat(router.removeVersion(version(2), version(3))).isTrue();
+        assertThat(router.getVersions().keySet().toString()).isEqualTo("[1.0, 1.1]");
+        assertThat(router.handleRead(newContext(), newReadRequest("users/1")).getOrThrowUninterruptibly().getId())
+                .isEqualTo("1.1");
+        assertThat(router.removeVersion(version(2))).isFalse();
+    }
+
+    private static AdviceContext newContext() {
+        return new AdviceContext(new RootContext(), Collections.<String>emptySet());
+    }
+
+    private static RequestHandler newHandler(final String id) {
+        return new AbstractRequestHandler() {
+            @Override
+            public Promise<ResourceResponse, ResourceException> handleRead(Context context, ReadRequest request) {
+                return newResultPromise(newResourceResponse(id, null, json(object())));
+            }
+        };
+    }
+}
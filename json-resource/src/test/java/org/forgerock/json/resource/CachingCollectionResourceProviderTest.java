@@ -0,0 +1,163 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+
+package org.forgerock.json.resource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.forgerock.json.JsonValue.field;
+import static org.forgerock.json.JsonValue.json;
+import static org.forgerock.json.JsonValue.object;
+import static org.forgerock.json.resource.Requests.newCreateRequest;
+import static org.forgerock.json.resource.Requests.newDeleteRequest;
+import static org.forgerock.json.resource.Requests.newQueryRequest;
+import static org.forgerock.json.resource.Requests.newReadRequest;
+import static org.forgerock.json.resource.Requests.newUpdateRequest;
+import static org.forgerock.json.resource.Resources.newInternalConnection;
+import static org.forgerock.json.resource.Router.uriTemplate;
+import static org.forgerock.json.resource.TestUtils.ctx;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.forgerock.json.JsonValue;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public class CachingCollectionResourceProviderTest {
+
+    @Test
+    public void shouldServeRepeatedReadsFromCache() throws Exception {
+        final CachingCollectionResourceProvider cache = newCache(100, false);
+        final Connection connection = newConnection(cache);
+        connection.create(ctx(), newCreateRequest("users", "alice", user("alice")));
+
+        connection.read(ctx(), newReadRequest("users/alice"));
+        final ResourceResponse resource = connection.read(ctx(), newReadRequest("users/alice"));
+
+        assertThat(resource.getContent().get("name").asString()).isEqualTo("alice");
+        assertThat(cache.getReadMissCount()).isEqualTo(1);
+        assertThat(cache.getReadHitCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldProjectFieldsFromCachedResource() throws Exception {
+        final CachingCollectionResourceProvider cache = newCache(100, false);
+        final Connection connection = newConnection(cache);
+        connection.create(ctx(), newCreateRequest("users", "alice", user("alice")));
+        connection.read(ctx(), newReadRequest("users/alice"));
+
+        final ResourceResponse resource = connection.read(ctx(), newReadRequest("users/alice").addField("age"));
+
+        assertThat(cache.getReadHitCount()).isEqualTo(1);
+        assertThat(resource.getContent().isDefined("name")).isFalse();
+        assertThat(resource.getContent().get("age").asInteger()).isEqualTo(20);
+    }
+
+    @Test
+    public void shouldInvalidateResourcesWhenWritten() throws Exception {
+        final CachingCollectionResourceProvider cache = newCache(100, false);
+        final Connection connection = newConnection(cache);
+        connection.create(ctx(), newCreateRequest("users", "alice", user("alice")));
+        connection.read(ctx(), newReadRequest("users/alice"));
+
+        connection.update(ctx(), newUpdateRequest("users/alice", user("alicia")));
+        final ResourceResponse resource = connection.read(ctx(), newReadRequest("users/alice"));
+
+        assertThat(resource.getContent().get("name").asString()).isEqualTo("alicia");
+        assertThat(resource.getRevision()).isEqualTo("1");
+        assertThat(cache.getReadHitCount()).isEqualTo(0);
+
+        connection.delete(ctx(), newDeleteRequest("users/alice"));
+        try {
+            connection.read(ctx(), newReadRequest("users/alice"));
+            throw new AssertionError("Read succeeded unexpectedly");
+        } catch (NotFoundException e) {
+            assertThat(cache.getReadHitCount()).isEqualTo(0);
+        }
+    }
+
+    @Test
+    public void shouldServeRepeatedQueriesFromCacheUntilWritten() throws Exception {
+        final CachingCollectionResourceProvider cache = newCache(100, true);
+        final Connection connection = newConnection(cache);
+        connection.create(ctx(), newCreateRequest("users", "alice", user("alice")));
+
+        assertThat(query(connection)).hasSize(1);
+        assertThat(query(connection)).hasSize(1);
+        assertThat(cache.getQueryMissCount()).isEqualTo(1);
+        assertThat(cache.getQueryHitCount()).isEqualTo(1);
+
+        connection.create(ctx(), newCreateRequest("users", "bob", user("bob")));
+        assertThat(query(connection)).hasSize(2);
+        assertThat(cache.getQueryMissCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldRemoveStaleQueryPages() throws Exception {
+        final CachingCollectionResourceProvider cache = newCache(100, true);
+        final Connection connection = newConnection(cache);
+        connection.create(ctx(), newCreateRequest("users", "alice", user("alice")));
+        query(connection);
+        assertThat(cache.getWeight()).isEqualTo(2);
+
+        // The page cannot be cached again because the handler stops the query early.
+        connection.create(ctx(), newCreateRequest("users", "bob", user("bob")));
+        connection.query(ctx(), newQueryRequest("users"), new QueryResourceHandler() {
+            @Override
+            public boolean handleResource(final ResourceResponse resource) {
+                return false;
+            }
+        });
+
+        assertThat(cache.getWeight()).isEqualTo(0);
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsedEntries() throws Exception {
+        final CachingCollectionResourceProvider cache = newCache(2, false);
+        final Connection connection = newConnection(cache);
+        for (final String name : new String[] { "alice", "bob", "carol" }) {
+            connection.create(ctx(), newCreateRequest("users", name, user(name)));
+            connection.read(ctx(), newReadRequest("users/" + name));
+        }
+
+        assertThat(cache.getWeight()).isEqualTo(2);
+        assertThat(cache.getEvictionCount()).isEqualTo(1);
+        connection.read(ctx(), newReadRequest("users/carol"));
+        connection.read(ctx(), newReadRequest("users/alice"));
+        assertThat(cache.getReadHitCount()).isEqualTo(1);
+    }
+
+    private static CachingCollectionResourceProvider newCache(final long maxWeight, final boolean cacheQueries) {
+        return new CachingCollectionResourceProvider(new MemoryBackend(), maxWeight, cacheQueries);
+    }
+
+    private static Connection newConnection(final CachingCollectionResourceProvider cache) {
+        final Router router = new Router();
+        router.addRoute(uriTemplate("users"), cache);
+        return newInternalConnection(router);
+    }
+
+    private static List<ResourceResponse> query(final Connection connection) throws ResourceException {
+        final List<ResourceResponse> results = new ArrayList<>();
+        connection.query(ctx(), newQueryRequest("users"), results);
+        return results;
+    }
+
+    private static JsonValue user(final String name) {
+        return json(object(field("name", name), field("age", 20)));
+    }
+}
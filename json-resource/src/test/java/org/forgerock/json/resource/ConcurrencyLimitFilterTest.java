@@ -0,0 +1,130 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+
+package org.forgerock.json.resource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.forgerock.json.JsonValue.json;
+import static org.forgerock.json.JsonValue.object;
+import static org.forgerock.json.resource.Requests.newReadRequest;
+import static org.forgerock.json.resource.Responses.newResourceResponse;
+import static org.forgerock.json.resource.test.assertj.AssertJResourceResponseAssert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.forgerock.services.context.Context;
+import org.forgerock.services.context.RootContext;
+import org.forgerock.util.promise.Promise;
+import org.forgerock.util.promise.PromiseImpl;
+import org.forgerock.util.time.TimeService;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public class ConcurrencyLimitFilterTest {
+
+    private TimeService time;
+    private List<PromiseImpl<ResourceResponse, ResourceException>> pending;
+    private RequestHandler handler;
+
+    @BeforeMethod
+    public void setup() {
+        time = mock(TimeService.class);
+        pending = new ArrayList<>();
+        handler = new AbstractRequestHandler() {
+            @Override
+            public Promise<ResourceResponse, ResourceException> handleRead(Context context, ReadRequest request) {
+                final PromiseImpl<ResourceResponse, ResourceException> promise = PromiseImpl.create();
+                pending.add(promise);
+                return promise;
+            }
+        };
+    }
+
+    @Test
+    public void shouldRejectRequestsAboveTheLimit() {
+        final ConcurrencyLimitFilter filter = new ConcurrencyLimitFilter(time, 2, 10, 100, TimeUnit.MILLISECONDS);
+        final AdviceContext context = newContext();
+
+        filter.filterRead(context, newReadRequest("users/1"), handler);
+        filter.filterRead(context, newReadRequest("users/2"), handler);
+        final Promise<ResourceResponse, ResourceException> rejected =
+                filter.filterRead(context, newReadRequest("users/3"), handler);
+
+        assertThat(rejected).failedWithException().isInstanceOf(ServiceUnavailableException.class);
+        assertThat(context.getAdvices()).containsKey(ConcurrencyLimitFilter.RETRY_AFTER_ADVICE);
+        assertThat(pending).hasSize(2);
+        assertThat(filter.getInFlight(RequestType.READ)).isEqualTo(2);
+        // Other request types have their own limit.
+        assertThat(filter.getInFlight(RequestType.QUERY)).isEqualTo(0);
+    }
+
+    @Test
+    public void shouldReleaseCapacityWhenRequestsComplete() {
+        final ConcurrencyLimitFilter filter = new ConcurrencyLimitFilter(time, 1, 10, 100, TimeUnit.MILLISECONDS);
+
+        filter.filterRead(newContext(), newReadRequest("users/1"), handler);
+        pending.get(0).handleResult(newResourceResponse("1", null, json(object())));
+        filter.filterRead(newContext(), newReadRequest("users/2"), handler);
+        pending.get(1).handleException(new NotFoundException());
+
+        assertThat(pending).hasSize(2);
+        assertThat(filter.getInFlight(RequestType.READ)).isEqualTo(0);
+    }
+
+    @Test
+    public void shouldIncreaseLimitWhenLatencyIsLow() {
+        final ConcurrencyLimitFilter filter = new ConcurrencyLimitFilter(time, 2, 3, 100, TimeUnit.MILLISECONDS);
+        when(time.since(0L)).thenReturn(10L);
+
+        for (int i = 0; i < 4; i++) {
+            filter.filterRead(newContext(), newReadRequest("users/1"), handler);
+            filter.filterRead(newContext(), newReadRequest("users/2"), handler);
+            completeAll();
+        }
+
+        assertThat(filter.getLimit(RequestType.READ)).isEqualTo(3);
+    }
+
+    @Test
+    public void shouldDecreaseLimitWhenLatencyIsHigh() {
+        final ConcurrencyLimitFilter filter = new ConcurrencyLimitFilter(time, 10, 10, 100, TimeUnit.MILLISECONDS);
+        when(time.since(0L)).thenReturn(500L);
+
+        filter.filterRead(newContext(), newReadRequest("users/1"), handler);
+        completeAll();
+
+        assertThat(filter.getLimit(RequestType.READ)).isEqualTo(9);
+        assertThat(filter.getLimit(RequestType.UPDATE)).isEqualTo(10);
+    }
+
+    private void completeAll() {
+        for (final PromiseImpl<ResourceResponse, ResourceException> promise : pending) {
+            if (!promise.isDone()) {
+                promise.handleResult(newResourceResponse("1", null, json(object())));
+            }
+        }
+    }
+
+    private static AdviceContext newContext() {
+        return new AdviceContext(new RootContext(), Collections.<String>emptySet());
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+
+package org.forgerock.json.resource;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.forgerock.json.JsonValue.array;
+import static org.forgerock.json.JsonValue.field;
+import static org.forgerock.json.JsonValue.object;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import org.forgerock.http.routing.ApiVersionRouterContext;
+import org.forgerock.http.routing.DefaultVersionBehaviour;
+import org.forgerock.http.routing.Version;
+import org.forgerock.services.context.AttributesContext;
+import org.forgerock.services.context.Context;
+import org.forgerock.services.context.RootContext;
+import org.forgerock.services.context.SecurityContext;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public final class ContextSerializerTest {
+
+    @Test
+    public void testRoundTripDefaultContexts() throws Exception {
+        final RootContext root = new RootContext();
+        final Map<String, Object> authorization = object(field("roles", array("admin", "user")),
+                field("level", 3), field("expiry", 1234567890123L), field("ratio", 0.5), field("none", null));
+        final SecurityContext security = new SecurityContext(root, "alice", authorization);
+        final AdviceContext advice = new AdviceContext(security, asList("Location"));
+        advice.putAdvice("Warning", "first", "second");
+        final ApiVersionRouterContext apiVersion =
+                new ApiVersionRouterContext(advice, DefaultVersionBehaviour.LATEST);
+        apiVersion.setWarningEnabled(true);
+        apiVersion.setResourceVersion(Version.version(2, 1));
+
+        final ContextSerializer serializer = new ContextSerializer();
+        final Context restored = serializer.deserialize(serializer.serialize(apiVersion));
+
+        final ApiVersionRouterContext restoredApiVersion = restored.asContext(ApiVersionRouterContext.class);
+        assertThat(restoredApiVersion.getDefaultVersionBehaviour()).isEqualTo(DefaultVersionBehaviour.LATEST);
+        assertThat(restoredApiVersion.isWarningEnabled()).isTrue();
+        assertThat(restoredApiVersion.getResourceVersion()).isEqualTo(Version.version(2, 1));
+
+        final AdviceContext restoredAdvice = restored.asContext(AdviceContext.class);
+        assertThat(restoredAdvice.getAdvices().get("warning")).containsExactly("first", "second");
+        assertThat(restoredAdvice.getRestrictedAdviceNames()).containsOnly("Location");
+
+        final SecurityContext restoredSecurity = restored.asContext(SecurityContext.class);
+        assertThat(restoredSecurity.getAuthenticationId()).isEqualTo("alice");
+        assertThat(restoredSecurity.getAuthorization()).isEqualTo(authorization);
+
+        assertThat(restored.asContext(RootContext.class).getId()).isEqualTo(root.getId());
+    }
+
+    @Test
+    public void testBinaryFormIsSmallerThanJsonForm() throws Exception {
+        final AdviceContext advice = new AdviceContext(new SecurityContext(new RootContext(), "alice",
+                object(field("roles", array("admin", "user")))), asList("Location"));
+        advice.putAdvice("Warning", "advice");
+
+        final byte[] binary = new ContextSerializer().serialize(advice);
+
+        assertThat(binary.length).isLessThan(advice.toJsonValue().toString().length());
+    }
+
+    @Test
+    public void testCustomCodec() throws Exception {
+        final ContextSerializer serializer = new ContextSerializer(new ContextCodec<AttributesContext>() {
+            @Override
+            public Class<AttributesContext> getContextClass() {
+                return AttributesContext.class;
+            }
+
+            @Override
+            public String getName() {
+                return "attributes";
+            }
+
+            @Override
+            public int getVersion() {
+                return 1;
+            }
+
+            @Override
+            public void encode(AttributesContext context, DataOutput out) throws IOException {
+                ContextSerializer.writeValue(out, context.getAttributes());
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public AttributesContext decode(Context parent, int version, DataInput in)
+                    throws IOException {
+                final AttributesContext context = new AttributesContext(parent);
+                context.getAttributes().putAll((Map<String, Object>) ContextSerializer.readValue(in));
+                return context;
+            }
+        });
+        final AttributesContext attributes = new AttributesContext(new RootContext());
+        attributes.getAttributes().put("key", "value");
+
+        final Context restored = serializer.deserialize(serializer.serialize(attributes));
+
+        assertThat(restored.asContext(AttributesContext.class).getAttributes()).containsEntry("key", "value");
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void testSerializeContextWithoutCodecFails() throws Exception {
+        new ContextSerializer().serialize(new AttributesContext(new RootContext()));
+    }
+
+    @Test(expectedExceptions = StreamCorruptedException.class)
+    public void testDeserializeGarbageFails() throws Exception {
+        new ContextSerializer().deserialize(new byte[] { 1, 2, 3 });
+    }
+
+    @Test(expectedExceptions = StreamCorruptedException.class)
+    public void testDeserializeUnknownCodecVersionFails() throws Exception {
+        final ContextSerializer serializer = new ContextSerializer();
+        final byte[] bytes = serializer.serialize(new RootContext());
+        // Magic, format version, chain length and the "root" codec name precede the codec version.
+        final int versionIndex = 3 + 1 + "root".length();
+        assertThat(bytes[versionIndex]).isEqualTo((byte) 1);
+        bytes[versionIndex] = 2;
+
+        serializer.deserialize(bytes);
+    }
+
+    @Test(expectedExceptions = EOFException.class)
+    public void testReadValueDoesNotTrustClaimedLength() throws Exception {
+        // A list claiming Integer.MAX_VALUE elements must not be allocated up-front.
+        final byte[] bytes = { 10, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07 };
+        ContextSerializer.readValue(new DataInputStream(new ByteArrayInputStream(bytes)));
+    }
+
+    @Test(expectedExceptions = StreamCorruptedException.class)
+    public void testReadValueRejectsNegativeLength() throws Exception {
+        final byte[] bytes = { 11, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F };
+        ContextSerializer.readValue(new DataInputStream(new ByteArrayInputStream(bytes)));
+    }
+
+    @Test(expectedExceptions = StreamCorruptedException.class)
+    public void testReadValueRejectsDeeplyNestedValues() throws Exception {
+        // Each list contains a single list, so that the nesting never ends before the limit.
+        final byte[] bytes = new byte[2 * 1_000];
+        for (int i = 0; i < bytes.length; i += 2) {
+            bytes[i] = 10;
+            bytes[i + 1] = 1;
+        }
+        ContextSerializer.readValue(new DataInputStream(new ByteArrayInputStream(bytes)));
+    }
+
+    @Test(expectedExceptions = StreamCorruptedException.class)
+    public void testDeserializeSecurityContextWithInvalidAuthorizationFails() throws Exception {
+        final ContextSerializer serializer = new ContextSerializer();
+        final byte[] bytes = serializer.serialize(
+                new SecurityContext(new RootContext(), "bob", Collections.<String, Object>emptyMap()));
+        // The empty authorization map is encoded by its tag and size, which are replaced by a boolean.
+        assertThat(bytes[bytes.length - 2]).isEqualTo((byte) 11);
+        bytes[bytes.length - 2] = 2;
+
+        serializer.deserialize(Arrays.copyOf(bytes, bytes.length - 1));
+    }
+}
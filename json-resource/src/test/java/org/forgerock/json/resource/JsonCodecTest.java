@@ -0,0 +1,126 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+
+package org.forgerock.json.resource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.forgerock.json.JsonValue.array;
+import static org.forgerock.json.JsonValue.field;
+import static org.forgerock.json.JsonValue.json;
+import static org.forgerock.json.JsonValue.object;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.forgerock.json.JsonValue;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public class JsonCodecTest {
+
+    enum Role {
+        ADMIN, USER
+    }
+
+    static final class Address {
+        String city;
+    }
+
+    static final class Node {
+        String name;
+        long weight;
+        Role role;
+        Set<String> tags;
+        Map<String, Address> addresses;
+        List<Node> children;
+        transient String ignored;
+    }
+
+    static final class Task {
+        String name;
+        Runnable action;
+    }
+
+    @Test
+    public void shouldDecodeNestedObjects() {
+        final JsonValue json = json(object(
+                field("name", "root"),
+                field("weight", 3),
+                field("role", "ADMIN"),
+                field("tags", array("a", "b", "a")),
+                field("addresses", object(field("home", object(field("city", "Bristol"))))),
+                field("children", array(object(field("name", "leaf")))),
+                field("ignored", "value")));
+
+        final Node node = (Node) JsonCodec.of(Node.class).decodeContent(json);
+
+        assertThat(node.name).isEqualTo("root");
+        assertThat(node.weight).isEqualTo(3L);
+        assertThat(node.role).isEqualTo(Role.ADMIN);
+        assertThat(node.tags).containsExactly("a", "b");
+        assertThat(node.addresses.get("home").city).isEqualTo("Bristol");
+        assertThat(node.children).hasSize(1);
+        assertThat(node.children.get(0).name).isEqualTo("leaf");
+        assertThat(node.ignored).isNull();
+    }
+
+    @Test
+    public void shouldEncodeObjects() {
+        final Node node = new Node();
+        node.name = "root";
+        node.role = Role.USER;
+        node.ignored = "value";
+
+        final JsonValue json = new JsonValue(JsonCodec.of(Node.class).encode(node));
+
+        assertThat(json.get("name").asString()).isEqualTo("root");
+        assertThat(json.get("weight").asLong()).isEqualTo(0L);
+        assertThat(json.get("role").asString()).isEqualTo("USER");
+        assertThat(json.isDefined("ignored")).isFalse();
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void shouldRejectMismatchedTypes() {
+        JsonCodec.of(Node.class).decodeContent(json(object(field("children", "none"))));
+    }
+
+    @Test
+    public void shouldCacheCodecs() {
+        assertThat(JsonCodec.of(Node.class)).isSameAs(JsonCodec.of(Node.class));
+    }
+
+    @Test
+    public void shouldConvertGenericTypes() throws Exception {
+        final JsonCodec<Object> codec = JsonCodec.of(Node.class.getDeclaredField("addresses").getGenericType());
+
+        @SuppressWarnings("unchecked")
+        final Map<String, Address> addresses =
+                (Map<String, Address>) codec.decode(object(field("home", object(field("city", "Bristol")))));
+
+        assertThat(addresses.get("home").city).isEqualTo("Bristol");
+    }
+
+    @Test
+    public void shouldNotSupportInterfaces() {
+        assertThat(JsonCodec.of(Runnable.class)).isNull();
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void shouldRejectClassesHavingUnsupportedFields() {
+        JsonCodec.of(Task.class);
+    }
+}
@@ -12,6 +12,7 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2013-2015 ForgeRock AS.
+ * Portions Copyright 2026 Wren Security.
  */
 
 package org.forgerock.json.resource;
@@ -35,7 +36,9 @@ import org.testng.annotations.Test;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Tests for {@link MemoryBackend}.
@@ -237,6 +240,141 @@ public final class MemoryBackendTest {
         assertThat(result.getPagedResultsCookie()).isNull();
     }
 
+    @Test
+    public void testQueryCollectionWithCookieResumesSortedSnapshot() throws Exception {
+        final Connection connection = getConnection();
+        connection.create(ctx(), newCreateRequest("users", jsonUser("foo1", 31, "eng")));
+        connection.create(ctx(), newCreateRequest("users", jsonUser("foo2", 32, "eng")));
+        connection.create(ctx(), newCreateRequest("users", jsonUser("foo3", 33, "eng")));
+
+        QueryRequest request = newQueryRequest("users").addSortKey("+/name").setPageSize(2);
+        QueryResponse result = connection.query(ctx(), request, new ArrayList<ResourceResponse>());
+        final String cookie = result.getPagedResultsCookie();
+        assertThat(cookie).contains(".");
+
+        // The next page is returned from the results sorted for the first page.
+        List<ResourceResponse> results = new ArrayList<>();
+        result = connection.query(ctx(), request.setPagedResultsCookie(cookie), results);
+        assertThat(results).hasSize(1);
+        assertThat(results.get(0).getContent().get("name").asString()).isEqualTo("foo3");
+        assertThat(result.getPagedResultsCookie()).isNull();
+
+        // The cursor has been consumed, so the query continues from the index in the cookie.
+        results = new ArrayList<>();
+        result = connection.query(ctx(), request.setPagedResultsCookie(cookie), results);
+        assertThat(results).hasSize(2);
+        assertThat(results.get(0).getContent().get("name").asString()).isEqualTo("foo2");
+        assertThat(results.get(1).getContent().get("name").asString()).isEqualTo("foo3");
+    }
+
+    @Test
+    public void testQueryCollectionWithCookieDiscardsSortedSnapshotWhenModified() throws Exception {
+        final Connection connection = getConnection();
+        connection.create(ctx(), newCreateRequest("users", jsonUser("foo1", 31, "eng")));
+        connection.create(ctx(), newCreateRequest("users", jsonUser("foo2", 32, "eng")));
+        connection.create(ctx(), newCreateRequest("users", jsonUser("foo3", 33, "eng")));
+
+        QueryRequest request = newQueryRequest("users").addSortKey("+/name").setPageSize(2);
+        QueryResponse result = connection.query(ctx(), request, new ArrayList<ResourceResponse>());
+        final String cookie = result.getPagedResultsCookie();
+
+        // The update invalidates the sorted results, so the next page reflects it.
+        connection.update(ctx(), newUpdateRequest("users", "1", jsonUser("foo4", 34, "eng")));
+        final List<ResourceResponse> results = new ArrayList<>();
+        connection.query(ctx(), request.setPagedResultsCookie(cookie), results);
+        assertThat(results).hasSize(1);
+        assertThat(results.get(0).getContent().get("name").asString()).isEqualTo("foo4");
+    }
+
+    @Test
+    public void testQueryCollectionWithCookieResumesStreamedQuery() throws Exception {
+        final Connection connection = getConnection();
+        for (int i = 0; i < 10; i++) {
+            connection.create(ctx(), newCreateRequest("users", jsonUser("foo" + i, 30 + i, "eng")));
+        }
+
+        final QueryRequest request = newQueryRequest("users")
+                .setQueryFilter(QueryFilter.greaterThan(new JsonPointer("age"), 30))
+                .setPageSize(4);
+        final List<ResourceResponse> results = new ArrayList<>();
+        QueryResponse result = connection.query(ctx(), request, results);
+        assertThat(results).hasSize(4);
+        assertThat(result.getPagedResultsCookie()).contains(".");
+
+        result = connection.query(ctx(), request.setPagedResultsCookie(result.getPagedResultsCookie()), results);
+        assertThat(results).hasSize(8);
+        assertThat(result.getPagedResultsCookie()).isNotNull();
+
+        result = connection.query(ctx(), request.setPagedResultsCookie(result.getPagedResultsCookie()), results);
+        assertThat(results).hasSize(9);
+        assertThat(result.getPagedResultsCookie()).isNull();
+
+        final Set<String> names = new HashSet<>();
+        for (final ResourceResponse resource : results) {
+            names.add(resource.getContent().get("name").asString());
+        }
+        assertThat(names).hasSize(9).doesNotContain("foo0");
+    }
+
+    @Test
+    public void testQueryCollectionWithCookieRereadsFirstResourceOfStreamedPage() throws Exception {
+        final Connection connection = getConnection();
+        connection.create(ctx(), newCreateRequest("users", jsonUser("foo1", 31, "eng")));
+        connection.create(ctx(), newCreateRequest("users", jsonUser("foo2", 32, "eng")));
+
+        final QueryRequest request = newQueryRequest("users")
+                .setQueryFilter(QueryFilter.greaterThan(new JsonPointer("age"), 30))
+                .setPageSize(1);
+        List<ResourceResponse> results = new ArrayList<>();
+        final String cookie = connection.query(ctx(), request, results).getPagedResultsCookie();
+        assertThat(cookie).contains(".");
+        final String nextId = results.get(0).getId().equals("0") ? "1" : "0";
+
+        // The first resource of the next page was updated after the first page was returned.
+        connection.update(ctx(), newUpdateRequest("users", nextId, jsonUser("bar", 33, "eng")));
+        results = new ArrayList<>();
+        connection.query(ctx(), request.setPagedResultsCookie(cookie), results);
+        assertThat(results).hasSize(1);
+        assertThat(results.get(0).getContent().get("name").asString()).isEqualTo("bar");
+    }
+
+    @Test
+    public void testQueryCollectionWithCookieSkipsFirstResourceOfStreamedPageWhenDeleted() throws Exception {
+        final Connection connection = getConnection();
+        connection.create(ctx(), newCreateRequest("users", jsonUser("foo1", 31, "eng")));
+        connection.create(ctx(), newCreateRequest("users", jsonUser("foo2", 32, "eng")));
+
+        final QueryRequest request = newQueryRequest("users").setPageSize(1);
+        List<ResourceResponse> results = new ArrayList<>();
+        final String cookie = connection.query(ctx(), request, results).getPagedResultsCookie();
+        assertThat(cookie).contains(".");
+        final String nextId = results.get(0).getId().equals("0") ? "1" : "0";
+
+        connection.delete(ctx(), newDeleteRequest("users", nextId));
+        results = new ArrayList<>();
+        final QueryResponse result = connection.query(ctx(), request.setPagedResultsCookie(cookie), results);
+        assertThat(results).isEmpty();
+        assertThat(result.getPagedResultsCookie()).isNull();
+    }
+
+    @Test
+    public void testQueryCollectionWithCookieIgnoresCursorOfDifferentQuery() throws Exception {
+        final Connection connection = getConnection();
+        connection.create(ctx(), newCreateRequest("users", jsonUser("foo1", 31, "eng")));
+        connection.create(ctx(), newCreateRequest("users", jsonUser("foo2", 32, "eng")));
+        connection.create(ctx(), newCreateRequest("users", jsonUser("foo3", 33, "eng")));
+
+        QueryRequest request = newQueryRequest("users").addSortKey("+/name").setPageSize(1);
+        QueryResponse result = connection.query(ctx(), request, new ArrayList<ResourceResponse>());
+
+        final List<ResourceResponse> results = new ArrayList<>();
+        request = newQueryRequest("users").addSortKey("-/name").setPageSize(1)
+                .setPagedResultsCookie(result.getPagedResultsCookie());
+        connection.query(ctx(), request, results);
+        assertThat(results).hasSize(1);
+        assertThat(results.get(0).getContent().get("name").asString()).isEqualTo("foo2");
+    }
+
     @Test
     public void testQueryCollectionFailsWithOffsetAndCookie() throws Exception {
         final Connection connection = getConnection();
@@ -356,6 +494,120 @@ public final class MemoryBackendTest {
         assertThat(result.getTotalPagedResults()).isEqualTo(2);
     }
 
+    @Test
+    public void testQueryCollectionWithFilterAndExactCount() throws Exception {
+        final Connection connection = getConnectionWithAliceAndBob();
+
+        final QueryRequest request = newQueryRequest("users")
+                .setQueryFilter(QueryFilter.equalTo(new JsonPointer("role"), "it"))
+                .setTotalPagedResultsPolicy(CountPolicy.EXACT)
+                .setPageSize(5);
+
+        final Collection<ResourceResponse> results = new ArrayList<>();
+        final QueryResponse result = connection.query(ctx(), request, results);
+
+        assertThat(results).hasSize(1);
+        assertThat(result.getTotalPagedResultsPolicy()).isEqualTo(CountPolicy.EXACT);
+        assertThat(result.getTotalPagedResults()).isEqualTo(1);
+    }
+
+    @Test
+    public void testQueryCollectionWithIndexedFilterAndEstimatedCount() throws Exception {
+        final Connection connection = getIndexedConnection();
+        connection.create(ctx(), newCreateRequest("users", jsonUser("foo", 30, "eng")));
+        connection.create(ctx(), newCreateRequest("users", jsonUser("foo1", 31, "eng")));
+        connection.create(ctx(), newCreateRequest("users", jsonUser("foo2", 32, "ENG")));
+        connection.create(ctx(), newCreateRequest("users", jsonUser("foo3", 33, "sales")));
+        connection.update(ctx(), newUpdateRequest("users/1", jsonUser("foo1", 31, "sales")));
+        connection.delete(ctx(), newDeleteRequest("users/3"));
+
+        final QueryRequest request = newQueryRequest("users")
+                .setQueryFilter(QueryFilter.equalTo(new JsonPointer("role"), "eng"))
+                .setTotalPagedResultsPolicy(CountPolicy.ESTIMATE)
+                .setPageSize(1);
+
+        final Collection<ResourceResponse> results = new ArrayList<>();
+        final QueryResponse result = connection.query(ctx(), request, results);
+
+        assertThat(results).hasSize(1);
+        assertThat(result.getPagedResultsCookie()).isNotNull();
+        assertThat(result.getTotalPagedResultsPolicy()).isEqualTo(CountPolicy.EXACT);
+        assertThat(result.getTotalPagedResults()).isEqualTo(2);
+    }
+
+    @Test
+    public void testQueryCollectionWithNonIndexedFilterAndEstimatedCount() throws Exception {
+        final Connection connection = getIndexedConnection();
+        connection.create(ctx(), newCreateRequest("users", jsonUser("foo", 30, "eng")));
+        connection.create(ctx(), newCreateRequest("users", jsonUser("foo1", 31, "eng")));
+        connection.create(ctx(), newCreateRequest("users", jsonUser("foo2", 32, "sales")));
+
+        final QueryRequest request = newQueryRequest("users")
+                .setQueryFilter(QueryFilter.and(
+                        QueryFilter.equalTo(new JsonPointer("role"), "eng"),
+                        QueryFilter.greaterThan(new JsonPointer("age"), 30)))
+                .setTotalPagedResultsPolicy(CountPolicy.ESTIMATE)
+                .setPageSize(5);
+
+        final Collection<ResourceResponse> results = new ArrayList<>();
+        final QueryResponse result = connection.query(ctx(), request, results);
+
+        assertThat(results).hasSize(1);
+        assertThat(result.getTotalPagedResultsPolicy()).isEqualTo(CountPolicy.EXACT);
+        assertThat(result.getTotalPagedResults()).isEqualTo(1);
+
+        request.setPageSize(1).setQueryFilter(QueryFilter.greaterThan(new JsonPointer("age"), 29));
+        final QueryResponse estimate = connection.query(ctx(), request, new ArrayList<ResourceResponse>());
+        assertThat(estimate.getTotalPagedResultsPolicy()).isEqualTo(CountPolicy.ESTIMATE);
+        assertThat(estimate.getTotalPagedResults()).isEqualTo(3);
+        assertThat(estimate.getPagedResultsCookie()).isNotNull();
+    }
+
+    @Test
+    public void testQueryCollectionReturnsBatches() throws Exception {
+        final Connection connection = getConnection();
+        for (int i = 0; i < 150; i++) {
+            connection.create(ctx(), newCreateRequest("users", String.valueOf(i), userAlice()));
+        }
+        final List<Integer> batchSizes = new ArrayList<>();
+        final BatchQueryResourceHandler handler = new BatchQueryResourceHandler() {
+            @Override
+            public boolean handleResource(ResourceResponse resource) {
+                batchSizes.add(1);
+                return true;
+            }
+
+            @Override
+            public boolean handleResources(List<ResourceResponse> resources) {
+                batchSizes.add(resources.size());
+                return true;
+            }
+        };
+
+        connection.query(ctx(), newQueryRequest("users"), handler);
+        assertThat(batchSizes).containsExactly(64, 64, 22);
+
+        batchSizes.clear();
+        connection.query(ctx(), newQueryRequest("users").addSortKey("_id").setPageSize(100), handler);
+        assertThat(batchSizes).containsExactly(64, 36);
+    }
+
+    @Test
+    public void testQueryCollectionStopsWhenHandlerSkipsRemainingResources() throws Exception {
+        final Connection connection = getConnectionWithAliceAndBob();
+        final List<ResourceResponse> results = new ArrayList<>();
+
+        connection.query(ctx(), newQueryRequest("users"), new QueryResourceHandler() {
+            @Override
+            public boolean handleResource(ResourceResponse resource) {
+                results.add(resource);
+                return false;
+            }
+        });
+
+        assertThat(results).hasSize(1);
+    }
+
     @Test(expectedExceptions = BadRequestException.class)
     public void testReadCollection() throws Exception {
         final Connection connection = getConnection();
@@ -408,6 +660,13 @@ public final class MemoryBackendTest {
         return newInternalConnection(router);
     }
 
+    private Connection getIndexedConnection() {
+        final MemoryBackend users = new MemoryBackend(new JsonPointer("role"));
+        final Router router = new Router();
+        router.addRoute(uriTemplate("users"), users);
+        return newInternalConnection(router);
+    }
+
     private Connection getConnectionWithAliceAndBob() throws Exception {
         final Connection connection = getConnection();
 
@@ -0,0 +1,99 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+
+package org.forgerock.json.resource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.TimeUnit;
+
+import org.forgerock.util.time.TimeService;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public class QueryCursorRegistryTest {
+
+    private TimeService time;
+
+    @BeforeMethod
+    public void setup() {
+        time = mock(TimeService.class);
+        when(time.now()).thenReturn(10_000L);
+    }
+
+    @Test
+    public void shouldResumeCursorOnce() {
+        final QueryCursorRegistry<String> registry = new QueryCursorRegistry<>(time, 10, 100, 1, TimeUnit.SECONDS);
+        final String id = registry.register("state", 5);
+
+        assertThat(registry.size()).isEqualTo(1);
+        assertThat(registry.getWeight()).isEqualTo(5);
+        assertThat(registry.resume(id)).isEqualTo("state");
+        assertThat(registry.resume(id)).isNull();
+        assertThat(registry.size()).isEqualTo(0);
+        assertThat(registry.getWeight()).isEqualTo(0);
+    }
+
+    @Test
+    public void shouldExpireIdleCursors() {
+        final QueryCursorRegistry<String> registry = new QueryCursorRegistry<>(time, 10, 100, 1, TimeUnit.SECONDS);
+        final String first = registry.register("first", 1);
+        when(time.now()).thenReturn(10_500L);
+        final String second = registry.register("second", 1);
+
+        when(time.now()).thenReturn(11_000L);
+        assertThat(registry.resume(first)).isNull();
+        assertThat(registry.resume(second)).isEqualTo("second");
+    }
+
+    @Test
+    public void shouldDiscardEldestCursorsWhenFull() {
+        final QueryCursorRegistry<String> registry = new QueryCursorRegistry<>(time, 2, 100, 1, TimeUnit.SECONDS);
+        final String first = registry.register("first", 1);
+        final String second = registry.register("second", 1);
+        final String third = registry.register("third", 1);
+
+        assertThat(registry.size()).isEqualTo(2);
+        assertThat(registry.resume(first)).isNull();
+        assertThat(registry.resume(second)).isEqualTo("second");
+        assertThat(registry.resume(third)).isEqualTo("third");
+    }
+
+    @Test
+    public void shouldDiscardEldestCursorsWhenTooHeavy() {
+        final QueryCursorRegistry<String> registry = new QueryCursorRegistry<>(time, 10, 10, 1, TimeUnit.SECONDS);
+        final String first = registry.register("first", 4);
+        final String second = registry.register("second", 4);
+        final String third = registry.register("third", 4);
+
+        assertThat(registry.getWeight()).isEqualTo(8);
+        assertThat(registry.resume(first)).isNull();
+        assertThat(registry.resume(second)).isEqualTo("second");
+        assertThat(registry.resume(third)).isEqualTo("third");
+    }
+
+    @Test
+    public void shouldNotRegisterCursorHeavierThanTheRegistry() {
+        final QueryCursorRegistry<String> registry = new QueryCursorRegistry<>(time, 10, 10, 1, TimeUnit.SECONDS);
+        final String first = registry.register("first", 4);
+
+        assertThat(registry.register("huge", 11)).isNull();
+        assertThat(registry.resume(first)).isEqualTo("first");
+    }
+}
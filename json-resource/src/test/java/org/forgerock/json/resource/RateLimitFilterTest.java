@@ -0,0 +1,151 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+
+package org.forgerock.json.resource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.forgerock.json.JsonValue.json;
+import static org.forgerock.json.JsonValue.object;
+import static org.forgerock.json.resource.Requests.newReadRequest;
+import static org.forgerock.json.resource.Requests.newUpdateRequest;
+import static org.forgerock.json.resource.Responses.newResourceResponse;
+import static org.forgerock.util.promise.Promises.newResultPromise;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.forgerock.services.context.Context;
+import org.forgerock.services.context.RootContext;
+import org.forgerock.services.context.SecurityContext;
+import org.forgerock.util.promise.Promise;
+import org.forgerock.util.time.TimeService;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public class RateLimitFilterTest {
+
+    private TimeService time;
+    private RequestHandler handler;
+
+    @BeforeMethod
+    public void setup() {
+        time = mock(TimeService.class);
+        when(time.now()).thenReturn(10_000L);
+        handler = new AbstractRequestHandler() {
+            @Override
+            public Promise<ResourceResponse, ResourceException> handleRead(Context context, ReadRequest request) {
+                return newResultPromise(newResourceResponse("1", null, json(object())));
+            }
+
+            @Override
+            public Promise<ResourceResponse, ResourceException> handleUpdate(Context context,
+                    UpdateRequest request) {
+                return newResultPromise(newResourceResponse("1", null, json(object())));
+            }
+        };
+    }
+
+    @Test
+    public void shouldRejectRequestsAboveTheRate() throws Exception {
+        final RateLimitFilter filter = new RateLimitFilter(time, 2, 1, TimeUnit.SECONDS, 100);
+        final AdviceContext context = newContext("alice");
+
+        read(filter, context).getOrThrowUninterruptibly();
+        read(filter, context).getOrThrowUninterruptibly();
+        try {
+            read(filter, context).getOrThrowUninterruptibly();
+            throw new AssertionError("Expected the request to be rejected");
+        } catch (RetryableException e) {
+            assertThat(e.getCode()).isEqualTo(429);
+        }
+        assertThat(context.getAdvices().get(ConcurrencyLimitFilter.RETRY_AFTER_ADVICE)).containsExactly("1");
+    }
+
+    @Test
+    public void shouldRefillBucketsOverTime() throws Exception {
+        final RateLimitFilter filter = new RateLimitFilter(time, 2, 1, TimeUnit.SECONDS, 100);
+        final AdviceContext context = newContext("alice");
+
+        read(filter, context).getOrThrowUninterruptibly();
+        read(filter, context).getOrThrowUninterruptibly();
+        when(time.now()).thenReturn(10_500L);
+
+        read(filter, context).getOrThrowUninterruptibly();
+        assertThat(context.getAdvices()).doesNotContainKey(ConcurrencyLimitFilter.RETRY_AFTER_ADVICE);
+        try {
+            read(filter, context).getOrThrowUninterruptibly();
+            throw new AssertionError("Expected the request to be rejected");
+        } catch (RetryableException e) {
+            assertThat(context.getAdvices()).containsKey(ConcurrencyLimitFilter.RETRY_AFTER_ADVICE);
+        }
+    }
+
+    @Test
+    public void shouldLimitPrincipalsAndRequestTypesIndependently() throws Exception {
+        final RateLimitFilter filter = new RateLimitFilter(time, 1, 1, TimeUnit.SECONDS, 100);
+
+        read(filter, newContext("alice")).getOrThrowUninterruptibly();
+        read(filter, newContext("bob")).getOrThrowUninterruptibly();
+        read(filter, newContext(null)).getOrThrowUninterruptibly();
+        filter.filterUpdate(newContext("alice"), newUpdateRequest("users/1", json(object())), handler)
+                .getOrThrowUninterruptibly();
+
+        assertThat(filter.getBucketCount()).isEqualTo(4);
+    }
+
+    @Test
+    public void shouldEvictIdleBuckets() throws Exception {
+        final RateLimitFilter filter = new RateLimitFilter(time, 1, 1, TimeUnit.SECONDS, 2);
+
+        read(filter, newContext("alice")).getOrThrowUninterruptibly();
+        read(filter, newContext("bob")).getOrThrowUninterruptibly();
+        when(time.now()).thenReturn(20_000L);
+        read(filter, newContext("carol")).getOrThrowUninterruptibly();
+
+        assertThat(filter.getBucketCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldShareAnOverflowBucketOnceTheMaximumIsReached() throws Exception {
+        final RateLimitFilter filter = new RateLimitFilter(time, 1, 1, TimeUnit.SECONDS, 2);
+
+        read(filter, newContext("alice")).getOrThrowUninterruptibly();
+        read(filter, newContext("bob")).getOrThrowUninterruptibly();
+        read(filter, newContext("carol")).getOrThrowUninterruptibly();
+        try {
+            read(filter, newContext("dave")).getOrThrowUninterruptibly();
+            throw new AssertionError("Expected the request to be rejected");
+        } catch (RetryableException e) {
+            assertThat(e.getCode()).isEqualTo(429);
+        }
+
+        assertThat(filter.getBucketCount()).isEqualTo(2);
+    }
+
+    private Promise<ResourceResponse, ResourceException> read(final RateLimitFilter filter, final Context context) {
+        return filter.filterRead(context, newReadRequest("users/1"), handler);
+    }
+
+    private static AdviceContext newContext(final String principal) {
+        final Context parent = principal != null
+                ? new SecurityContext(new RootContext(), principal, Collections.<String, Object>emptyMap())
+                : new RootContext();
+        return new AdviceContext(parent, Collections.<String>emptySet());
+    }
+}
@@ -12,13 +12,24 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2013-2015 ForgeRock AS.
+ * Portions Copyright 2026 Wren Security.
  */
 
 package org.forgerock.json.resource;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.forgerock.json.JsonValue.json;
+import static org.forgerock.json.JsonValue.object;
+import static org.forgerock.json.resource.Requests.newCreateRequest;
+import static org.forgerock.json.resource.Requests.newPatchRequest;
+import static org.forgerock.json.resource.Requests.newQueryRequest;
 import static org.forgerock.json.resource.Requests.newReadRequest;
+import static org.forgerock.json.resource.Requests.newUpdateRequest;
+import static org.testng.Assert.fail;
 
+import java.util.List;
+
+import org.forgerock.json.JsonPointer;
 import org.forgerock.json.JsonValue;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
@@ -94,4 +105,85 @@ public final class RequestsTest {
         assertThat(r.getNewResourceId()).isEqualTo("forward/slash");
     }
 
+    @Test
+    public void testWithResourcePathSharesStateUntilModified() throws Exception {
+        final QueryRequest request = newQueryRequest("realms/root/users")
+                .addField("uid")
+                .addSortKey("uid")
+                .setAdditionalParameter("realm", "root");
+
+        final QueryRequest routed = Requests.withResourcePath(request, ResourcePath.valueOf("users"));
+        assertThat(routed.getResourcePath()).isEqualTo("users");
+
+        routed.addField("mail").addSortKey("mail").setAdditionalParameter("tenant", "acme");
+        assertThat(request.getResourcePath()).isEqualTo("realms/root/users");
+        assertThat(request.getFields()).hasSize(1);
+        assertThat(request.getSortKeys()).hasSize(1);
+        assertThat(request.getAdditionalParameters()).hasSize(1).containsKey("realm");
+        assertThat(routed.getFields()).hasSize(2);
+        assertThat(routed.getSortKeys()).hasSize(2);
+        assertThat(routed.getAdditionalParameters()).hasSize(2).containsKey("tenant");
+    }
+
+    @Test
+    public void testWithResourcePathExposesSharedCollectionsAsReadOnly() throws Exception {
+        final QueryRequest request = newQueryRequest("realms/root/users")
+                .addField("uid")
+                .addSortKey("uid")
+                .setAdditionalParameter("realm", "root");
+        final PatchRequest patch = newPatchRequest("users/alice", PatchOperation.remove("mail"));
+
+        final QueryRequest routed = Requests.withResourcePath(request, ResourcePath.valueOf("users"));
+        final PatchRequest routedPatch = Requests.withResourcePath(patch, ResourcePath.valueOf("alice"));
+
+        assertReadOnly(routed.getFields(), new JsonPointer("mail"));
+        assertReadOnly(routed.getSortKeys(), SortKey.valueOf("mail"));
+        assertReadOnly(request.getFields(), new JsonPointer("mail"));
+        assertReadOnly(routedPatch.getPatchOperations(), PatchOperation.remove("uid"));
+        try {
+            routed.getAdditionalParameters().put("tenant", "acme");
+            fail("The shared parameters could be modified");
+        } catch (UnsupportedOperationException e) {
+            // Expected.
+        }
+        assertThat(request.getFields()).hasSize(1);
+        assertThat(patch.getPatchOperations()).hasSize(1);
+
+        routed.addField("mail");
+        routed.getFields().add(new JsonPointer("cn"));
+        assertThat(routed.getFields()).hasSize(3);
+        assertThat(request.getFields()).hasSize(1);
+    }
+
+    private static <T> void assertReadOnly(final List<T> list, final T element) {
+        try {
+            list.add(element);
+            fail("The shared list could be modified");
+        } catch (UnsupportedOperationException e) {
+            // Expected.
+        }
+    }
+
+    @Test
+    public void testWithResourcePathCopiesBeforeOriginalIsModified() {
+        final UpdateRequest request = newUpdateRequest("users/alice", json(object())).addField("uid");
+
+        final UpdateRequest routed = Requests.withResourcePath(request, ResourcePath.valueOf("alice"));
+        request.addField("mail");
+
+        assertThat(routed.getContent()).isNotSameAs(request.getContent());
+        assertThat(routed.getFields()).hasSize(1);
+        assertThat(request.getFields()).hasSize(2);
+    }
+
+    @Test
+    public void testWithResourcePathCopiesContent() {
+        final CreateRequest request = newCreateRequest("users", json(object()));
+
+        final CreateRequest routed = Requests.withResourcePath(request, ResourcePath.valueOf("alice"));
+        routed.getContent().put("_id", "alice");
+
+        assertThat(request.getContent().isDefined("_id")).isFalse();
+    }
+
 }
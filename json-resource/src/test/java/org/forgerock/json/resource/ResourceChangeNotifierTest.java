@@ -0,0 +1,277 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+
+package org.forgerock.json.resource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.forgerock.http.routing.RoutingMode.STARTS_WITH;
+import static org.forgerock.json.JsonValue.field;
+import static org.forgerock.json.JsonValue.object;
+import static org.forgerock.json.resource.Requests.*;
+import static org.forgerock.json.resource.Resources.newCollection;
+import static org.forgerock.json.resource.Resources.newInternalConnection;
+import static org.forgerock.json.resource.Router.uriTemplate;
+import static org.forgerock.json.resource.TestUtils.*;
+import static org.testng.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.forgerock.json.JsonPointer;
+import org.forgerock.json.JsonValue;
+import org.forgerock.util.promise.Promise;
+import org.forgerock.util.query.QueryFilter;
+import org.testng.annotations.Test;
+
+/**
+ * Tests for {@link ResourceChangeNotifier}.
+ */
+@SuppressWarnings("javadoc")
+public final class ResourceChangeNotifierTest {
+
+    @Test
+    public void testFilterPublishesChanges() throws Exception {
+        final ResourceChangeNotifier notifier = new ResourceChangeNotifier();
+        final Router router = new Router();
+        router.addRoute(STARTS_WITH, uriTemplate("users"),
+                new FilterChain(newCollection(new MemoryBackend()), notifier.asFilter()));
+        final Connection connection = newInternalConnection(router);
+
+        final List<ResourceChange> changes = new ArrayList<>();
+        notifier.subscribe(ResourcePath.empty(), null, new ResourceChangeListener() {
+            @Override
+            public void handleChange(final ResourceChange change) {
+                changes.add(change);
+            }
+        });
+
+        connection.create(ctx(), newCreateRequest("users", user("alice", "sales")));
+        connection.update(ctx(), newUpdateRequest("users/0", user("alice", "it")));
+        connection.read(ctx(), newReadRequest("users/0"));
+        connection.delete(ctx(), newDeleteRequest("users/0"));
+
+        assertThat(changes).hasSize(3);
+        assertThat(changes.get(0).getType()).isEqualTo(RequestType.CREATE);
+        assertThat(changes.get(0).getResourcePath()).isEqualTo(new ResourcePath("0"));
+        assertThat(changes.get(1).getType()).isEqualTo(RequestType.UPDATE);
+        assertThat(changes.get(1).getResource().getRevision()).isEqualTo("1");
+        assertThat(changes.get(2).getType()).isEqualTo(RequestType.DELETE);
+        assertThat(changes.get(2).getSequenceNumber()).isEqualTo(3);
+    }
+
+    @Test
+    public void testSubscriptionWithFilterAndCancel() throws Exception {
+        final ResourceChangeNotifier notifier = new ResourceChangeNotifier();
+        final Connection connection = getConnection(notifier);
+
+        final List<ResourceChange> changes = new ArrayList<>();
+        final ResourceChangeNotifier.Subscription subscription = notifier.subscribe(ResourcePath.empty(),
+                QueryFilter.equalTo(new JsonPointer("role"), "sales"), new ResourceChangeListener() {
+                    @Override
+                    public void handleChange(final ResourceChange change) {
+                        changes.add(change);
+                    }
+                });
+
+        connection.create(ctx(), newCreateRequest("users", user("alice", "sales")));
+        connection.create(ctx(), newCreateRequest("users", user("bob", "it")));
+        subscription.cancel();
+        connection.create(ctx(), newCreateRequest("users", user("carol", "sales")));
+
+        assertThat(changes).hasSize(1);
+        assertThat(changes.get(0).getResource().getId()).isEqualTo("0");
+    }
+
+    @Test
+    public void testListenersAreNotifiedWithoutHoldingBackendLock() throws Exception {
+        final ResourceChangeNotifier notifier = new ResourceChangeNotifier();
+        final Connection connection = getConnection(notifier);
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final List<ResourceChange> changes = new ArrayList<>();
+            notifier.subscribe(ResourcePath.empty(), null, new ResourceChangeListener() {
+                @Override
+                public void handleChange(final ResourceChange change) {
+                    changes.add(change);
+                    if (changes.size() == 1) {
+                        // Another writer must not be blocked while the listener is notified.
+                        try {
+                            executor.submit(new Callable<ResourceResponse>() {
+                                @Override
+                                public ResourceResponse call() throws Exception {
+                                    return connection.create(ctx(), newCreateRequest("users", user("bob", "it")));
+                                }
+                            }).get(10, TimeUnit.SECONDS);
+                        } catch (final Exception e) {
+                            throw new IllegalStateException(e);
+                        }
+                    }
+                }
+            });
+
+            connection.create(ctx(), newCreateRequest("users", user("alice", "sales")));
+
+            assertThat(changes).hasSize(2);
+            assertThat(changes.get(0).getSequenceNumber()).isEqualTo(1);
+            assertThat(changes.get(1).getSequenceNumber()).isEqualTo(2);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testChangesPublishedByListenersAreDeliveredInOrder() throws Exception {
+        final ResourceChangeNotifier notifier = new ResourceChangeNotifier();
+        final Connection connection = getConnection(notifier);
+
+        final List<Long> first = new ArrayList<>();
+        final List<Long> second = new ArrayList<>();
+        notifier.subscribe(ResourcePath.empty(), null, new ResourceChangeListener() {
+            @Override
+            public void handleChange(final ResourceChange change) {
+                first.add(change.getSequenceNumber());
+                if (first.size() == 1) {
+                    try {
+                        connection.create(ctx(), newCreateRequest("users", user("bob", "it")));
+                    } catch (final ResourceException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            }
+        });
+        notifier.subscribe(ResourcePath.empty(), null, new ResourceChangeListener() {
+            @Override
+            public void handleChange(final ResourceChange change) {
+                second.add(change.getSequenceNumber());
+            }
+        });
+
+        connection.create(ctx(), newCreateRequest("users", user("alice", "sales")));
+
+        assertThat(first).containsExactly(1L, 2L);
+        assertThat(second).containsExactly(1L, 2L);
+    }
+
+    @Test
+    public void testClearActionPublishesDeletions() throws Exception {
+        final ResourceChangeNotifier notifier = new ResourceChangeNotifier();
+        final Connection connection = getConnection(notifier);
+        connection.create(ctx(), newCreateRequest("users", user("alice", "sales")));
+        connection.create(ctx(), newCreateRequest("users", user("bob", "it")));
+
+        final List<ResourceChange> changes = new ArrayList<>();
+        notifier.subscribe(ResourcePath.empty(), null, new ResourceChangeListener() {
+            @Override
+            public void handleChange(final ResourceChange change) {
+                changes.add(change);
+            }
+        });
+        connection.action(ctx(), newActionRequest("users", "clear"));
+
+        assertThat(changes).hasSize(2);
+        for (final ResourceChange change : changes) {
+            assertThat(change.getType()).isEqualTo(RequestType.DELETE);
+        }
+    }
+
+    @Test
+    public void testWatchActionResumesFromSequenceNumber() throws Exception {
+        final ResourceChangeNotifier notifier = new ResourceChangeNotifier();
+        final Connection connection = getConnection(notifier);
+
+        connection.create(ctx(), newCreateRequest("users", user("alice", "sales")));
+        connection.create(ctx(), newCreateRequest("users", user("bob", "it")));
+        connection.patch(ctx(), newPatchRequest("users/1", PatchOperation.replace("role", "sales")));
+
+        final ActionRequest request = newActionRequest("users", ResourceChangeNotifier.ACTION_ID_WATCH);
+        request.setAdditionalParameter(ResourceChangeNotifier.PARAM_SINCE, "1");
+        request.setAdditionalParameter(ResourceChangeNotifier.PARAM_QUERY_FILTER, "role eq \"sales\"");
+        final JsonValue response = connection.action(ctx(), request).getJsonContent();
+
+        assertThat(response.get(ResourceChange.FIELD_SEQUENCE).asLong()).isEqualTo(3L);
+        final JsonValue changes = response.get(ResourceChangeNotifier.FIELD_CHANGES);
+        assertThat(changes.size()).isEqualTo(1);
+        assertThat(changes.get(0).get(ResourceChange.FIELD_TYPE).asString()).isEqualTo("patch");
+        assertThat(changes.get(0).get(ResourceChange.FIELD_RESOURCE_PATH).asString()).isEqualTo("1");
+    }
+
+    @Test
+    public void testWatchActionFailsWhenHistoryExpired() throws Exception {
+        final ResourceChangeNotifier notifier = new ResourceChangeNotifier(1, null);
+        final Connection connection = getConnection(notifier);
+
+        connection.create(ctx(), newCreateRequest("users", user("alice", "sales")));
+        connection.create(ctx(), newCreateRequest("users", user("bob", "it")));
+
+        final ActionRequest request = newActionRequest("users", ResourceChangeNotifier.ACTION_ID_WATCH);
+        request.setAdditionalParameter(ResourceChangeNotifier.PARAM_SINCE, "0");
+        try {
+            connection.action(ctx(), request);
+            fail("Watch succeeded unexpectedly");
+        } catch (final Exception e) {
+            assertThat(e).isInstanceOf(PreconditionFailedException.class);
+        }
+    }
+
+    @Test
+    public void testWatchWaitsForChange() throws Exception {
+        final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        try {
+            final ResourceChangeNotifier notifier = new ResourceChangeNotifier(10, scheduler);
+            final Connection connection = getConnection(notifier);
+
+            final Promise<ActionResponse, ResourceException> promise =
+                    notifier.watch(new ResourcePath("0"), null, notifier.getLastSequenceNumber(), 60000);
+            assertThat(promise.isDone()).isFalse();
+
+            connection.create(ctx(), newCreateRequest("users", user("alice", "sales")));
+
+            final JsonValue response = promise.getOrThrow().getJsonContent();
+            assertThat(response.get(ResourceChangeNotifier.FIELD_CHANGES).size()).isEqualTo(1);
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testWatchTimesOut() throws Exception {
+        final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        try {
+            final ResourceChangeNotifier notifier = new ResourceChangeNotifier(10, scheduler);
+            final JsonValue response = notifier.watch(ResourcePath.empty(), null, -1, 10)
+                    .getOrThrow().getJsonContent();
+            assertThat(response.get(ResourceChangeNotifier.FIELD_CHANGES).size()).isEqualTo(0);
+            assertThat(response.get(ResourceChange.FIELD_SEQUENCE).asLong()).isEqualTo(0L);
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+
+    private Connection getConnection(final ResourceChangeNotifier notifier) {
+        final Router router = new Router();
+        router.addRoute(uriTemplate("users"), new MemoryBackend(notifier));
+        return newInternalConnection(router);
+    }
+
+    private JsonValue user(final String name, final String role) {
+        return content(object(field("name", name), field("role", role)));
+    }
+}
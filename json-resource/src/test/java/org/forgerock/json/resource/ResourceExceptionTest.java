@@ -12,16 +12,21 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2013 ForgeRock AS.
+ * Portions Copyright 2026 Wren Security.
  */
 
 package org.forgerock.json.resource;
 
+import org.forgerock.json.JsonValue;
 import org.forgerock.util.promise.Promise;
 import org.testng.annotations.Test;
 
 import static org.forgerock.json.resource.ResourceException.newResourceException;
 import static org.forgerock.util.test.assertj.AssertJPromiseAssert.assertThat;
+import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
 import static org.testng.Assert.assertTrue;
 
 @SuppressWarnings("javadoc")
@@ -92,4 +97,41 @@ public class ResourceExceptionTest {
         assertThat(responsePromise).failedWithException().isInstanceOf(InternalServerErrorException.class);
         assertThat(integerPromise).failedWithException().isInstanceOf(InternalServerErrorException.class);
     }
+
+    @Test
+    public void shouldNotCaptureStackTraceOfClientErrorsInStacklessMode() {
+        ResourceException.setStacklessClientErrors(true);
+        try {
+            assertEquals(new NotFoundException("missing").getStackTrace().length, 0);
+            assertTrue(new InternalServerErrorException().getStackTrace().length > 0);
+            assertTrue(newResourceException(ResourceException.NOT_FOUND).getStackTrace().length > 0);
+        } finally {
+            ResourceException.setStacklessClientErrors(false);
+        }
+        assertTrue(new NotFoundException("missing").getStackTrace().length > 0);
+    }
+
+    @Test
+    public void shouldCacheJsonValueOfClientErrorsInStacklessMode() {
+        final ResourceException e;
+        ResourceException.setStacklessClientErrors(true);
+        try {
+            e = new NotFoundException("missing");
+        } finally {
+            ResourceException.setStacklessClientErrors(false);
+        }
+        final JsonValue json = e.toJsonValue();
+        assertSame(e.toJsonValue(), json);
+
+        e.setReason("Gone");
+        assertNotSame(e.toJsonValue(), json);
+        assertEquals(e.toJsonValue().get(ResourceException.FIELD_REASON).asString(), "Gone");
+        assertEquals(e.toJsonValue().get(ResourceException.FIELD_MESSAGE).asString(), "missing");
+    }
+
+    @Test
+    public void shouldNotCacheJsonValueByDefault() {
+        final ResourceException e = new NotFoundException("missing");
+        assertNotSame(e.toJsonValue(), e.toJsonValue());
+    }
 }
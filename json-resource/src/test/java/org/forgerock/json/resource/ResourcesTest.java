@@ -12,6 +12,7 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2012-2015 ForgeRock AS.
+ * Portions Copyright 2026 Wren Security.
  */
 
 package org.forgerock.json.resource;
@@ -174,6 +175,45 @@ public final class ResourcesTest {
                     expected(object(field("a", object(field("b", "1"), field("c", "2"))), field("b", "1")))
             },
 
+            // Arrays
+            {
+                    filter("/a/1"),
+                    content(object(field("a", array("1", "2")), field("d", "3"))),
+                    expected(object(field("1", "2")))
+            },
+
+            {
+                    filter("/a/2"),
+                    content(object(field("a", array("1", "2")), field("d", "3"))),
+                    expected(object())
+            },
+
+            {
+                    filter("/a/1/b"),
+                    content(object(field("a", array(object(field("b", "1")), object(field("b", "2")))))),
+                    expected(object(field("b", "2")))
+            },
+
+            {
+                    filter("/a/b"),
+                    content(object(field("a", array(object(field("b", "1")), object(field("c", "2")),
+                            object(field("b", "3")))))),
+                    expected(object(field("b", array("1", "3"))))
+            },
+
+            {
+                    filter("/a/b/c"),
+                    content(object(field("a", array(object(field("b", array(object(field("c", "1")),
+                            object(field("c", "2"))))), object(field("b", array(object(field("c", "3"))))))))),
+                    expected(object(field("c", array("1", "2", "3"))))
+            },
+
+            {
+                    filter("/a/c"),
+                    content(object(field("a", array(object(field("b", "1")))))),
+                    expected(object())
+            },
+
         };
         // @formatter:on
     }
@@ -440,6 +480,76 @@ public final class ResourcesTest {
         }
     }
 
+    @Test
+    public void testActionContentIsBoundToTypedParameter() throws Exception {
+        Connection connection = Resources.newInternalConnection(createHandler(false, new TypedActionSingleton()));
+
+        ActionRequest validate = Requests.newActionRequest("/test", "validate")
+                .setContent(json(object(field("user", "bjensen"))));
+        ActionRequest echo = Requests.newActionRequest("/test", "echo")
+                .setContent(json(object(field("value", "hello"))));
+
+        assertThat(connection.actionAsync(new RootContext(), validate))
+                .succeeded().withContent().stringAt("result").isEqualTo("bjensen");
+        assertThat(connection.actionAsync(new RootContext(), echo))
+                .succeeded().withContent().stringAt("value").isEqualTo("hello");
+    }
+
+    @Test
+    public void testActionContentWhichCannotBeDecodedIsRejected() throws Exception {
+        Connection connection = Resources.newInternalConnection(createHandler(false, new TypedActionSingleton()));
+
+        ActionRequest validate = Requests.newActionRequest("/test", "validate").setContent(json(object()));
+
+        assertThat(connection.actionAsync(new RootContext(), validate))
+                .failedWithException().isInstanceOf(BadRequestException.class);
+    }
+
+    @Test
+    public void testActionParameterWhichCannotBeBoundIsPassedNull() throws Exception {
+        Connection connection = Resources.newInternalConnection(createHandler(false, new UnboundActionSingleton()));
+
+        ActionRequest inspect = Requests.newActionRequest("/test", "inspect")
+                .setContent(json(object(field("callback", "none"))));
+
+        Assertions.assertThat(connection.action(new RootContext(), inspect).getJsonContent().get("bound").asBoolean())
+                .isFalse();
+    }
+
+    @Test
+    public void testCreateContentIsBoundToPojo() throws Exception {
+        Connection connection = Resources.newInternalConnection(createHandler(true, new TypedCollection()));
+        CreateRequest request = Requests.newCreateRequest("/test", "bjensen",
+                json(object(field("name", "Barbara"), field("age", 42), field("roles", array("admin")))));
+
+        Promise<ResourceResponse, ResourceException> promise = connection.createAsync(new RootContext(), request);
+
+        assertThat(promise).succeeded().withId().isEqualTo("bjensen");
+        assertThat(promise).succeeded().withContent().stringAt("name").isEqualTo("Barbara");
+        Assertions.assertThat(promise.get().getContent().get("age").asInteger()).isEqualTo(43);
+        assertThat(promise).succeeded().withContent().stringAt("roles/0").isEqualTo("admin");
+    }
+
+    @Test
+    public void testCreateContentWhichCannotBeBoundIsRejected() throws Exception {
+        Connection connection = Resources.newInternalConnection(createHandler(true, new TypedCollection()));
+        CreateRequest request = Requests.newCreateRequest("/test", json(object(field("age", "forty-two"))));
+
+        assertThat(connection.createAsync(new RootContext(), request))
+                .failedWithException().isInstanceOf(BadRequestException.class);
+    }
+
+    @Test
+    public void testReadPojoIsConvertedToResource() throws Exception {
+        Connection connection = Resources.newInternalConnection(createHandler(true, new TypedCollection()));
+
+        Promise<ResourceResponse, ResourceException> promise =
+                connection.readAsync(new RootContext(), Requests.newReadRequest("/test/bjensen"));
+
+        assertThat(promise).succeeded().withId().isEqualTo("bjensen");
+        assertThat(promise).succeeded().withContent().stringAt("name").isEqualTo("bjensen");
+    }
+
     @Test(dataProvider = "annotatedRequestHandlerData")
     public void testActionCollectionItemAnnotatedRequestHandler(Class<?> requestHandler, boolean collection,
             boolean create, boolean read, boolean update, boolean delete, boolean patch, boolean resourceAction,
@@ -621,6 +731,66 @@ public final class ResourcesTest {
         }
     }
 
+    public static final class Credentials {
+        private final String user;
+
+        private Credentials(String user) {
+            this.user = user;
+        }
+
+        public static Credentials valueOf(JsonValue json) throws BadRequestException {
+            if (json.get("user").isNull()) {
+                throw new BadRequestException("Missing user");
+            }
+            return new Credentials(json.get("user").asString());
+        }
+    }
+
+    @org.forgerock.json.resource.annotations.RequestHandler
+    public static final class TypedActionSingleton {
+        @Action
+        public Promise<ActionResponse, ResourceException> validate(Context context, Credentials credentials) {
+            return newResultPromise(newActionResponse(json(object(field("result", credentials.user)))));
+        }
+        @Action
+        public Promise<ActionResponse, ResourceException> echo(JsonValue content) {
+            return newResultPromise(newActionResponse(content));
+        }
+    }
+
+    public static final class Callback {
+        Runnable callback;
+    }
+
+    @org.forgerock.json.resource.annotations.RequestHandler
+    public static final class UnboundActionSingleton {
+        @Action
+        public Promise<ActionResponse, ResourceException> inspect(ActionRequest request, Callback callback) {
+            return newResultPromise(newActionResponse(json(object(field("bound", callback != null)))));
+        }
+    }
+
+    public static final class User {
+        String name;
+        int age;
+        List<String> roles;
+    }
+
+    @org.forgerock.json.resource.annotations.RequestHandler
+    public static final class TypedCollection {
+        @Create
+        public Promise<User, ResourceException> create(CreateRequest request, User user) {
+            user.age++;
+            return newResultPromise(user);
+        }
+        @Read
+        public Promise<User, ResourceException> read(String id) {
+            User user = new User();
+            user.name = id;
+            return newResultPromise(user);
+        }
+    }
+
     @org.forgerock.json.resource.annotations.RequestHandler
     public static final class ConventionCollection {
         public Promise<ResourceResponse, ResourceException> create(CreateRequest request) {
@@ -0,0 +1,210 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+
+package org.forgerock.json.resource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.forgerock.json.JsonValue.field;
+import static org.forgerock.json.JsonValue.json;
+import static org.forgerock.json.JsonValue.object;
+import static org.forgerock.json.resource.Requests.newActionRequest;
+import static org.forgerock.json.resource.Requests.newCreateRequest;
+import static org.forgerock.json.resource.Requests.newQueryRequest;
+import static org.forgerock.json.resource.Requests.newReadRequest;
+import static org.forgerock.json.resource.Resources.newInternalConnection;
+import static org.forgerock.json.resource.Router.uriTemplate;
+import static org.forgerock.json.resource.TestUtils.ctx;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.forgerock.json.JsonPointer;
+import org.forgerock.json.JsonValue;
+import org.forgerock.util.query.QueryFilter;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public class ShardedMemoryBackendTest {
+
+    private static final int USER_COUNT = 20;
+
+    @Test
+    public void shouldReadResourcesCreatedWithGeneratedIds() throws Exception {
+        final Connection connection = newConnection(new ShardedMemoryBackend(4));
+        final ResourceResponse created = connection.create(ctx(), newCreateRequest("users", user("alice", 20)));
+
+        final ResourceResponse resource = connection.read(ctx(), newReadRequest("users/" + created.getId()));
+
+        assertThat(resource.getId()).isEqualTo(created.getId());
+        assertThat(resource.getContent().get("name").asString()).isEqualTo("alice");
+    }
+
+    @Test
+    public void shouldMergeSortedPagesAcrossShards() throws Exception {
+        final Connection connection = newPopulatedConnection(new ShardedMemoryBackend(4));
+        final List<Integer> ages = new ArrayList<>();
+        String cookie = null;
+        do {
+            final List<ResourceResponse> page = new ArrayList<>();
+            final QueryResponse response = connection.query(ctx(), newQueryRequest("users").addSortKey("-age")
+                    .setPageSize(7).setPagedResultsCookie(cookie)
+                    .setTotalPagedResultsPolicy(CountPolicy.EXACT), page);
+            assertThat(response.getTotalPagedResults()).isEqualTo(USER_COUNT);
+            for (final ResourceResponse resource : page) {
+                ages.add(resource.getContent().get("age").asInteger());
+            }
+            cookie = response.getPagedResultsCookie();
+        } while (cookie != null);
+
+        assertThat(ages).hasSize(USER_COUNT);
+        for (int i = 0; i < USER_COUNT; i++) {
+            assertThat(ages.get(i)).isEqualTo(USER_COUNT - 1 - i);
+        }
+    }
+
+    @Test
+    public void shouldReturnEachResourceOnceWhenPagingUnsortedResults() throws Exception {
+        final Connection connection = newPopulatedConnection(new ShardedMemoryBackend(3));
+        final Set<String> ids = new HashSet<>();
+        for (int offset = 0; offset < USER_COUNT; offset += 6) {
+            final List<ResourceResponse> page = new ArrayList<>();
+            final QueryResponse response = connection.query(ctx(),
+                    newQueryRequest("users").setPageSize(6).setPagedResultsOffset(offset), page);
+            assertThat(response.getPagedResultsCookie() != null).isEqualTo(offset + 6 < USER_COUNT);
+            for (final ResourceResponse resource : page) {
+                assertThat(ids.add(resource.getId())).isTrue();
+            }
+        }
+
+        assertThat(ids).hasSize(USER_COUNT);
+    }
+
+    @Test
+    public void shouldCountUnsortedResultsAcrossShards() throws Exception {
+        final Connection connection = newPopulatedConnection(new ShardedMemoryBackend(3));
+        final List<ResourceResponse> page = new ArrayList<>();
+
+        final QueryResponse response = connection.query(ctx(), newQueryRequest("users").setPageSize(6)
+                .setPagedResultsOffset(15).setTotalPagedResultsPolicy(CountPolicy.EXACT), page);
+
+        assertThat(page).hasSize(5);
+        assertThat(response.getTotalPagedResults()).isEqualTo(USER_COUNT);
+        assertThat(response.getPagedResultsCookie()).isNull();
+    }
+
+    @Test
+    public void shouldSumIndexedCountsOfShards() throws Exception {
+        final Connection connection =
+                newPopulatedConnection(new ShardedMemoryBackend(3, null, null, new JsonPointer("age")));
+        final List<ResourceResponse> page = new ArrayList<>();
+
+        final QueryResponse response = connection.query(ctx(), newQueryRequest("users")
+                .setQueryFilter(QueryFilter.present(new JsonPointer("age"))).setPageSize(2)
+                .setTotalPagedResultsPolicy(CountPolicy.ESTIMATE), page);
+
+        assertThat(page).hasSize(2);
+        assertThat(response.getTotalPagedResultsPolicy()).isEqualTo(CountPolicy.EXACT);
+        assertThat(response.getTotalPagedResults()).isEqualTo(USER_COUNT);
+        assertThat(response.getPagedResultsCookie()).isNotNull();
+    }
+
+    @Test
+    public void shouldOnlyCountUnindexedResultsWhenExactCountIsRequested() throws Exception {
+        final Connection connection = newPopulatedConnection(new ShardedMemoryBackend(3));
+        final QueryFilter<JsonPointer> filter = QueryFilter.startsWith(new JsonPointer("name"), "user1");
+
+        final QueryResponse estimate = connection.query(ctx(), newQueryRequest("users").setQueryFilter(filter)
+                .setPageSize(2).setTotalPagedResultsPolicy(CountPolicy.ESTIMATE), new ArrayList<ResourceResponse>());
+        final QueryResponse exact = connection.query(ctx(), newQueryRequest("users").setQueryFilter(filter)
+                .setPageSize(2).setTotalPagedResultsPolicy(CountPolicy.EXACT), new ArrayList<ResourceResponse>());
+
+        // The shards can only estimate the count using the number of their resources.
+        assertThat(estimate.getTotalPagedResultsPolicy()).isEqualTo(CountPolicy.ESTIMATE);
+        assertThat(estimate.getTotalPagedResults()).isEqualTo(USER_COUNT);
+        // user1 and user10 to user19.
+        assertThat(exact.getTotalPagedResultsPolicy()).isEqualTo(CountPolicy.EXACT);
+        assertThat(exact.getTotalPagedResults()).isEqualTo(11);
+    }
+
+    @Test
+    public void shouldStopSearchingShardsWhenHandlerStops() throws Exception {
+        final Connection connection = newPopulatedConnection(new ShardedMemoryBackend(3));
+        final List<ResourceResponse> results = new ArrayList<>();
+
+        connection.query(ctx(), newQueryRequest("users"), new QueryResourceHandler() {
+            @Override
+            public boolean handleResource(final ResourceResponse resource) {
+                results.add(resource);
+                return false;
+            }
+        });
+
+        assertThat(results).hasSize(1);
+    }
+
+    @Test
+    public void shouldSearchShardsInParallel() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final Connection connection = newPopulatedConnection(new ShardedMemoryBackend(4, executor, null));
+            final List<ResourceResponse> results = new ArrayList<>();
+
+            connection.query(ctx(), newQueryRequest("users")
+                    .setQueryFilter(QueryFilter.lessThan(new JsonPointer("age"), 5))
+                    .addSortKey("age"), results);
+
+            assertThat(results).hasSize(5);
+            assertThat(results.get(0).getContent().get("age").asInteger()).isEqualTo(0);
+            assertThat(results.get(4).getContent().get("age").asInteger()).isEqualTo(4);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void shouldClearAllShards() throws Exception {
+        final Connection connection = newPopulatedConnection(new ShardedMemoryBackend(4));
+
+        final ActionResponse response = connection.action(ctx(), newActionRequest("users", "clear"));
+
+        assertThat(response.getJsonContent().get("cleared").asInteger()).isEqualTo(USER_COUNT);
+        final List<ResourceResponse> results = new ArrayList<>();
+        connection.query(ctx(), newQueryRequest("users"), results);
+        assertThat(results).isEmpty();
+    }
+
+    private static Connection newPopulatedConnection(final ShardedMemoryBackend backend) throws ResourceException {
+        final Connection connection = newConnection(backend);
+        for (int i = 0; i < USER_COUNT; i++) {
+            connection.create(ctx(), newCreateRequest("users", "user" + i, user("user" + i, i)));
+        }
+        return connection;
+    }
+
+    private static Connection newConnection(final ShardedMemoryBackend backend) {
+        final Router router = new Router();
+        router.addRoute(uriTemplate("users"), backend);
+        return newInternalConnection(router);
+    }
+
+    private static JsonValue user(final String name, final int age) {
+        return json(object(field("name", name), field("age", age)));
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+
+package org.forgerock.json.resource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.forgerock.json.JsonValue.field;
+import static org.forgerock.json.JsonValue.json;
+import static org.forgerock.json.JsonValue.object;
+import static org.forgerock.json.resource.Requests.newCreateRequest;
+import static org.forgerock.json.resource.Requests.newQueryRequest;
+import static org.forgerock.json.resource.Requests.newReadRequest;
+import static org.forgerock.json.resource.Requests.newUpdateRequest;
+import static org.forgerock.json.resource.TestUtils.ctx;
+import static org.forgerock.json.resource.test.assertj.AssertJResourceResponseAssert.assertThat;
+import static org.forgerock.util.promise.Promises.newResultPromise;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.same;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.forgerock.json.JsonValue;
+import org.forgerock.services.context.Context;
+import org.forgerock.util.promise.Promise;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public class WriteBehindCollectionResourceProviderTest {
+
+    @Test
+    public void shouldBufferWritesUntilBatchIsFull() throws Exception {
+        final MemoryBackend backend = new MemoryBackend();
+        final WriteBehindCollectionResourceProvider writeBehind = newWriteBehind(backend, 2);
+
+        final Promise<ResourceResponse, ResourceException> alice = create(writeBehind, "alice");
+        assertThat(alice.isDone()).isFalse();
+        assertThat(writeBehind.getBufferedWriteCount()).isEqualTo(1);
+        assertThat(backend.readInstance(ctx(), "alice", newReadRequest("alice")))
+                .failedWithException().isInstanceOf(NotFoundException.class);
+
+        final Promise<ResourceResponse, ResourceException> bob = create(writeBehind, "bob");
+
+        assertThat(alice.get().getId()).isEqualTo("alice");
+        assertThat(bob.get().getId()).isEqualTo("bob");
+        assertThat(writeBehind.getBufferedWriteCount()).isEqualTo(0);
+        assertThat(read(backend, "bob").getContent().get("name").asString()).isEqualTo("bob");
+    }
+
+    @Test
+    public void shouldCoalesceUpdatesOfBufferedResource() throws Exception {
+        final MemoryBackend backend = new MemoryBackend();
+        final WriteBehindCollectionResourceProvider writeBehind = newWriteBehind(backend, 10);
+
+        final Promise<ResourceResponse, ResourceException> created = create(writeBehind, "alice");
+        final Promise<ResourceResponse, ResourceException> updated =
+                writeBehind.updateInstance(ctx(), "alice", newUpdateRequest("alice", user("alicia")));
+        assertThat(writeBehind.getBufferedWriteCount()).isEqualTo(1);
+        writeBehind.flush().get();
+
+        assertThat(created.get()).isSameAs(updated.get());
+        final ResourceResponse resource = read(backend, "alice");
+        assertThat(resource.getRevision()).isEqualTo("0");
+        assertThat(resource.getContent().get("name").asString()).isEqualTo("alicia");
+    }
+
+    @Test
+    public void shouldWriteConditionalUpdatesInLaterBatch() throws Exception {
+        final MemoryBackend backend = new MemoryBackend();
+        final WriteBehindCollectionResourceProvider writeBehind = newWriteBehind(backend, 10);
+
+        create(writeBehind, "alice");
+        final Promise<ResourceResponse, ResourceException> updated = writeBehind.updateInstance(ctx(), "alice",
+                newUpdateRequest("alice", user("alicia")).setRevision("0"));
+        assertThat(writeBehind.getBufferedWriteCount()).isEqualTo(1);
+        writeBehind.flush().get();
+
+        assertThat(updated.get().getRevision()).isEqualTo("1");
+        assertThat(read(backend, "alice").getContent().get("name").asString()).isEqualTo("alicia");
+    }
+
+    @Test
+    public void shouldNotCoalesceUpdatesOfBufferedConditionalUpdate() throws Exception {
+        final MemoryBackend backend = new MemoryBackend();
+        backend.createInstance(ctx(), newCreateRequest("", "alice", user("alice"))).getOrThrowUninterruptibly();
+        final WriteBehindCollectionResourceProvider writeBehind = newWriteBehind(backend, 10);
+
+        final Promise<ResourceResponse, ResourceException> conditional = writeBehind.updateInstance(ctx(), "alice",
+                newUpdateRequest("alice", user("alicia")).setRevision("1"));
+        final Promise<ResourceResponse, ResourceException> updated =
+                writeBehind.updateInstance(ctx(), "alice", newUpdateRequest("alice", user("ally")));
+        assertThat(writeBehind.getBufferedWriteCount()).isEqualTo(2);
+        writeBehind.flush().get();
+
+        assertThat(conditional).failedWithException().isInstanceOf(PreconditionFailedException.class);
+        assertThat(updated.get().getRevision()).isEqualTo("1");
+        assertThat(read(backend, "alice").getContent().get("name").asString()).isEqualTo("ally");
+    }
+
+    @Test
+    public void shouldSendCoalescedWriteWithLatestContext() throws Exception {
+        final CollectionResourceProvider provider = mock(CollectionResourceProvider.class);
+        when(provider.createInstance(any(Context.class), any(CreateRequest.class)))
+                .thenReturn(newResultPromise(Responses.newResourceResponse("alice", "0", user("alicia"))));
+        final WriteBehindCollectionResourceProvider writeBehind =
+                new WriteBehindCollectionResourceProvider(provider, 10, 0, TimeUnit.MILLISECONDS, null);
+        final Context latest = ctx();
+
+        create(writeBehind, "alice");
+        writeBehind.updateInstance(latest, "alice", newUpdateRequest("alice", user("alicia")));
+        writeBehind.flush().get();
+
+        verify(provider).createInstance(same(latest), any(CreateRequest.class));
+    }
+
+    @Test
+    public void shouldReadYourWrites() throws Exception {
+        final MemoryBackend backend = new MemoryBackend();
+        final WriteBehindCollectionResourceProvider writeBehind = newWriteBehind(backend, 10);
+        create(writeBehind, "alice");
+        create(writeBehind, "bob");
+
+        final ResourceResponse resource =
+                writeBehind.readInstance(ctx(), "alice", newReadRequest("alice")).getOrThrowUninterruptibly();
+        final List<ResourceResponse> results = new ArrayList<>();
+        writeBehind.queryCollection(ctx(), newQueryRequest(""), new QueryResourceHandler() {
+            @Override
+            public boolean handleResource(final ResourceResponse resource) {
+                return results.add(resource);
+            }
+        }).getOrThrowUninterruptibly();
+
+        assertThat(resource.getContent().get("name").asString()).isEqualTo("alice");
+        assertThat(results).hasSize(2);
+        assertThat(writeBehind.getBufferedWriteCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void shouldFailCoalescedRequestsWhenWriteFails() throws Exception {
+        final MemoryBackend backend = new MemoryBackend();
+        backend.createInstance(ctx(), newCreateRequest("", "alice", user("alice"))).getOrThrowUninterruptibly();
+        final WriteBehindCollectionResourceProvider writeBehind = newWriteBehind(backend, 10);
+
+        final Promise<ResourceResponse, ResourceException> created = create(writeBehind, "alice");
+        final Promise<ResourceResponse, ResourceException> updated =
+                writeBehind.updateInstance(ctx(), "alice", newUpdateRequest("alice", user("alicia")));
+        final Promise<ResourceResponse, ResourceException> other = create(writeBehind, "bob");
+        writeBehind.flush().get();
+
+        assertThat(created).failedWithException().isInstanceOf(PreconditionFailedException.class);
+        assertThat(updated).failedWithException().isInstanceOf(PreconditionFailedException.class);
+        assertThat(other.get().getId()).isEqualTo("bob");
+        assertThat(read(backend, "alice").getContent().get("name").asString()).isEqualTo("alice");
+    }
+
+    @Test
+    public void shouldFlushAfterMaximumDelay() throws Exception {
+        final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        try {
+            final MemoryBackend backend = new MemoryBackend();
+            final WriteBehindCollectionResourceProvider writeBehind =
+                    new WriteBehindCollectionResourceProvider(backend, 10, 10, TimeUnit.MILLISECONDS, scheduler);
+
+            final ResourceResponse resource = create(writeBehind, "alice").get(10, TimeUnit.SECONDS);
+
+            assertThat(resource.getId()).isEqualTo("alice");
+            assertThat(writeBehind.getBufferedWriteCount()).isEqualTo(0);
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+
+    private static WriteBehindCollectionResourceProvider newWriteBehind(final MemoryBackend backend,
+            final int maxBatchSize) {
+        return new WriteBehindCollectionResourceProvider(backend, maxBatchSize, 0, TimeUnit.MILLISECONDS, null);
+    }
+
+    private static Promise<ResourceResponse, ResourceException> create(
+            final WriteBehindCollectionResourceProvider writeBehind, final String name) {
+        return writeBehind.createInstance(ctx(), newCreateRequest("", name, user(name)));
+    }
+
+    private static ResourceResponse read(final MemoryBackend backend, final String id) throws ResourceException {
+        return backend.readInstance(ctx(), id, newReadRequest(id)).getOrThrowUninterruptibly();
+    }
+
+    private static JsonValue user(final String name) {
+        return json(object(field("name", name), field("age", 20)));
+    }
+}